@@ -205,6 +205,8 @@ public class BenchmarkRunner {
             new SQL2SearchTest(),
             new DescendantSearchTest(),
             new SQL2DescendantSearchTest(),
+            new JoinSearchTest(),
+            new RestrictionPreFilterSearchTest(),
             new FlatTreeUpdateTest(),
             new CreateManyChildNodesTest(),
             new CompareManyChildNodesTest(),
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.RowIterator;
+
+/**
+ * Performance test of SQL-2 joins. Run it with and without
+ * {@code -Doak.queryCostBasedJoins=true} to compare the nested loop join with
+ * the cost based join strategies.
+ */
+public class JoinSearchTest extends AbstractTest {
+
+    private static final int NODE_COUNT = 100;
+
+    private static final int CHILD_COUNT = 10;
+
+    private Session session;
+
+    private Node root;
+
+    String testNodeName = "test" + TEST_ID;
+
+    @Override
+    public void beforeSuite() throws RepositoryException {
+        session = getRepository().login(getCredentials());
+        root = session.getRootNode().addNode(testNodeName, "nt:unstructured");
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Node node = root.addNode("node" + i, "nt:unstructured");
+            node.setProperty("id", i);
+            for (int j = 0; j < CHILD_COUNT; j++) {
+                Node child = node.addNode("node" + j, "nt:unstructured");
+                child.setProperty("ref", i);
+            }
+            session.save();
+        }
+    }
+
+    @Override
+    public void runTest() throws Exception {
+        QueryManager manager = session.getWorkspace().getQueryManager();
+        String path = "/" + testNodeName;
+        assertRowCount(manager,
+                "SELECT * FROM [nt:base] AS a " +
+                "INNER JOIN [nt:base] AS b ON a.id = b.ref " +
+                "WHERE ISDESCENDANTNODE(a, '" + path + "') " +
+                "AND ISDESCENDANTNODE(b, '" + path + "')");
+        assertRowCount(manager,
+                "SELECT * FROM [nt:base] AS a " +
+                "INNER JOIN [nt:base] AS b ON ISDESCENDANTNODE(b, a) " +
+                "WHERE ISDESCENDANTNODE(a, '" + path + "') AND a.id IS NOT NULL " +
+                "AND ISDESCENDANTNODE(b, '" + path + "')");
+    }
+
+    private static void assertRowCount(QueryManager manager, String statement)
+            throws Exception {
+        Query query = manager.createQuery(statement, Query.JCR_SQL2);
+        RowIterator iterator = query.execute().getRows();
+        long count = 0;
+        while (iterator.hasNext()) {
+            iterator.nextRow();
+            count++;
+        }
+        if (count != NODE_COUNT * CHILD_COUNT) {
+            throw new Exception("Invalid test result: " + count + " rows for " + statement);
+        }
+    }
+
+    @Override
+    public void afterSuite() throws RepositoryException {
+        for (int i = 0; i < NODE_COUNT; i++) {
+            root.getNode("node" + i).remove();
+            session.save();
+        }
+
+        root.remove();
+        session.save();
+        session.logout();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.RowIterator;
+
+/**
+ * Performance test of a selective query whose property restrictions are not
+ * covered by an index. Run it with and without
+ * {@code -Doak.queryBatchSize=100} to compare row by row evaluation with the
+ * restriction pre-filter of the batch mode.
+ */
+public class RestrictionPreFilterSearchTest extends AbstractTest {
+
+    private static final int NODE_COUNT = 100;
+
+    private static final int CHILD_COUNT = 100;
+
+    /**
+     * One in this many nodes matches.
+     */
+    private static final int SELECTIVITY = 50;
+
+    private Session session;
+
+    private Node root;
+
+    String testNodeName = "test" + TEST_ID;
+
+    @Override
+    public void beforeSuite() throws RepositoryException {
+        session = getRepository().login(getCredentials());
+        root = session.getRootNode().addNode(testNodeName, "nt:unstructured");
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Node node = root.addNode("node" + i, "nt:unstructured");
+            for (int j = 0; j < CHILD_COUNT; j++) {
+                Node child = node.addNode("node" + j, "nt:unstructured");
+                child.setProperty("status", j % SELECTIVITY == 0 ? "match" : "other");
+                child.setProperty("title", "node " + i + "/" + j);
+            }
+            session.save();
+        }
+    }
+
+    @Override
+    public void runTest() throws Exception {
+        QueryManager manager = session.getWorkspace().getQueryManager();
+        Query query = manager.createQuery(
+                "SELECT * FROM [nt:unstructured] " +
+                "WHERE ISDESCENDANTNODE('/" + testNodeName + "') " +
+                "AND [status] = 'match' AND [title] LIKE 'node %'", Query.JCR_SQL2);
+        RowIterator iterator = query.execute().getRows();
+        long count = 0;
+        while (iterator.hasNext()) {
+            iterator.nextRow();
+            count++;
+        }
+        long expected = NODE_COUNT * (CHILD_COUNT / SELECTIVITY);
+        if (count != expected) {
+            throw new Exception("Invalid test result: " + count + " rows, expected " + expected);
+        }
+    }
+
+    @Override
+    public void afterSuite() throws RepositoryException {
+        for (int i = 0; i < NODE_COUNT; i++) {
+            root.getNode("node" + i).remove();
+            session.save();
+        }
+
+        root.remove();
+        session.save();
+        session.logout();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.jackrabbit.oak.api.Result.SizePrecision;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
+
+/**
+ * A cursor that reads the rows of another cursor in blocks. The node states
+ * of a block are prefetched from the node store with one call, and rows that
+ * can not match the property restrictions of the filter are removed from the
+ * block, so that the selector does not need to read their trees and evaluate
+ * the constraints for them. This is a pre-filter only: the constraints of the
+ * remaining rows are evaluated row by row by the selector.
+ * <p>
+ * Like the rows returned by an index, rows are removed based on the node
+ * states of the given root state. Rows of nodes that do not exist there are
+ * kept.
+ */
+class BatchCursor extends AbstractCursor {
+
+    private final Cursor cursor;
+    private final PrefetchNodeStore store;
+    private final int batchSize;
+    private final NodeState rootState;
+    private final PropertyRestrictionMatcher matcher;
+    private Iterator<IndexRow> block = Collections.emptyIterator();
+
+    private String lastParentPath;
+    private NodeState lastParent;
+
+    BatchCursor(Cursor cursor, Filter filter, PrefetchNodeStore store, int batchSize, NodeState rootState) {
+        this.cursor = cursor;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.rootState = rootState;
+        this.matcher = new PropertyRestrictionMatcher(filter);
+    }
+
+    @Override
+    public long getSize(SizePrecision precision, long max) {
+        return cursor.getSize(precision, max);
+    }
+
+    @Override
+    public IndexRow next() {
+        hasNext();
+        return block.next();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!block.hasNext() && cursor.hasNext()) {
+            block = readBlock().iterator();
+        }
+        return block.hasNext();
+    }
+
+    private List<IndexRow> readBlock() {
+        ArrayList<IndexRow> rows = new ArrayList<>(batchSize);
+        TreeSet<String> paths = new TreeSet<>();
+        for (int i = 0; i < batchSize && cursor.hasNext(); i++) {
+            IndexRow row = cursor.next();
+            rows.add(row);
+            if (store == PrefetchNodeStore.NOOP || !isNodeRow(row)) {
+                continue;
+            }
+            String p = row.getPath();
+            do {
+                paths.add(p);
+                p = PathUtils.getParentPath(p);
+            } while (!PathUtils.denotesRoot(p));
+        }
+        if (!paths.isEmpty()) {
+            store.prefetch(paths, rootState);
+        }
+        if (matcher.isEmpty()) {
+            return rows;
+        }
+        ArrayList<IndexRow> result = new ArrayList<>(rows.size());
+        for (IndexRow row : rows) {
+            if (isNodeRow(row)) {
+                NodeState node = getNode(row.getPath());
+                if (node.exists() && !matcher.mayMatch(node)) {
+                    continue;
+                }
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private static boolean isNodeRow(IndexRow row) {
+        return !row.isVirtualRow() && PathUtils.isAbsolute(row.getPath());
+    }
+
+    /**
+     * Get the node state. Rows of an index are often siblings, so the last
+     * parent node state is kept.
+     *
+     * @param path the absolute path
+     * @return the node state
+     */
+    private NodeState getNode(String path) {
+        if (PathUtils.denotesRoot(path)) {
+            return rootState;
+        }
+        String parentPath = PathUtils.getParentPath(path);
+        if (!parentPath.equals(lastParentPath)) {
+            lastParent = NodeStateUtils.getNode(rootState, parentPath);
+            lastParentPath = parentPath;
+        }
+        return lastParent.getChildNode(PathUtils.getName(path));
+    }
+
+}
@@ -58,6 +58,23 @@ public class Cursors {
         return new PrefetchCursor(cursor, store, prefetchCount, rootState, prefetchRelative);
     }
 
+    /**
+     * Creates a cursor that reads the given cursor in blocks, prefetches the
+     * nodes of each block, and skips rows that can not match the property
+     * restrictions of the filter (a restriction pre-filter).
+     *
+     * @param cursor the cursor
+     * @param filter the filter
+     * @param store the store used to prefetch nodes
+     * @param batchSize the number of rows per block
+     * @param rootState the root state
+     * @return the cursor
+     */
+    public static Cursor newBatchCursor(Cursor cursor, Filter filter, PrefetchNodeStore store,
+            int batchSize, NodeState rootState) {
+        return new BatchCursor(cursor, filter, store, batchSize, rootState);
+    }
+
     /**
      * Creates a {@link Cursor} over paths.
      *
@@ -92,6 +109,24 @@ public class Cursors {
         return new TraversingCursor(filter, rootState);
     }
 
+    /**
+     * Returns a traversing cursor that reads the subtree using multiple
+     * threads. Only the path restrictions
+     * {@link Filter.PathRestriction#NO_RESTRICTION} and
+     * {@link Filter.PathRestriction#ALL_CHILDREN} are supported.
+     *
+     * @param filter the filter.
+     * @param rootState the root {@link NodeState}.
+     * @param ordered whether the nodes need to be returned in the same order
+     *            as by {@link #newTraversingCursor(Filter, NodeState)}
+     * @return the {@link Cursor}.
+     */
+    public static Cursor newParallelTraversingCursor(Filter filter,
+                                                     NodeState rootState,
+                                                     boolean ordered) {
+        return new ParallelTraversingCursor(filter, rootState, ordered);
+    }
+
     /**
      * Returns a cursor wrapper, which returns the ancestor rows at the given
      * <code>level</code> of the wrapped cursor <code>c</code>. With
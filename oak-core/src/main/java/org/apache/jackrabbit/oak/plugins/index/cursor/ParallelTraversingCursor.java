@@ -0,0 +1,457 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryChildNodeEntry;
+import org.apache.jackrabbit.oak.query.FilterIterators;
+import org.apache.jackrabbit.oak.query.index.IndexRowImpl;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PathRestriction;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.query.QueryLimits;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.jackrabbit.guava.common.collect.Iterators;
+
+/**
+ * A cursor that reads all nodes in a given subtree, using multiple threads.
+ * <p>
+ * The top of the subtree is split at child node boundaries into partitions,
+ * which are traversed in a fork-join pool. Each partition is read in batches
+ * of a limited size, so that only a few batches are kept in memory. The
+ * workers skip nodes that can not match the property restrictions of the
+ * filter; the complete condition is still evaluated by the selector.
+ * <p>
+ * If ordered, the nodes are returned in the same order as by the
+ * {@link TraversingCursor}. Otherwise, batches are returned as soon as they
+ * are read.
+ * <p>
+ * Only a window of batches is submitted ahead of the consumer. Outstanding
+ * batches are cancelled when the cursor is exhausted or fails, and when it is
+ * garbage collected without being read to the end.
+ */
+class ParallelTraversingCursor extends AbstractCursor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelTraversingCursor.class);
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * The maximum number of nodes read by a task, whether they match or not.
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * The number of partitions per thread the subtree is split into (if
+     * possible).
+     */
+    static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * The maximum depth, relative to the start node, at which the subtree is
+     * split.
+     */
+    static final int MAX_SPLIT_DEPTH = 3;
+
+    private final Filter filter;
+
+    private final QueryLimits settings;
+
+    private final boolean ordered;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * The state shared with the tasks. It must not reference the cursor, so
+     * that an abandoned cursor can be garbage collected while tasks run.
+     */
+    private final TraversalState state;
+
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * The tasks that were submitted, in document order.
+     */
+    private final List<Batch> running = new ArrayList<>();
+
+    private final Deque<Iterator<? extends ChildNodeEntry>> splitIterators = new ArrayDeque<>();
+
+    private String splitParentPath;
+
+    private int splitDepth;
+
+    private long nextWarnCount = 1000;
+
+    private Iterator<String> batch = Collections.emptyIterator();
+
+    private String currentPath;
+
+    private boolean init;
+
+    private boolean closed;
+
+    ParallelTraversingCursor(Filter filter, NodeState rootState, boolean ordered) {
+        this(filter, rootState, ordered, PoolHolder.POOL);
+    }
+
+    ParallelTraversingCursor(Filter filter, NodeState rootState, boolean ordered, ForkJoinPool pool) {
+        this.filter = filter;
+        this.settings = filter.getQueryLimits();
+        this.ordered = ordered;
+        this.pool = pool;
+        this.state = new TraversalState(settings, new PropertyRestrictionMatcher(filter));
+        this.cleanable = CLEANER.register(this, state::cancel);
+
+        PathRestriction restriction = filter.getPathRestriction();
+        if (restriction != PathRestriction.NO_RESTRICTION &&
+                restriction != PathRestriction.ALL_CHILDREN) {
+            throw new IllegalArgumentException("Unsupported restriction: " + restriction);
+        }
+        if (filter.isAlwaysFalse()) {
+            // nothing can match this filter, leave nodes empty
+            return;
+        }
+        String path = filter.getPath();
+        NodeState node = rootState;
+        for (String name : PathUtils.elements(path)) {
+            node = node.getChildNode(name);
+        }
+        if (!node.exists()) {
+            // nothing can match this filter, leave nodes empty
+            return;
+        }
+        splitDepth = getSplitDepth(node, pool.getParallelism() * PARTITIONS_PER_THREAD);
+        splitIterators.add(Iterators.singletonIterator(new MemoryChildNodeEntry(path, node)));
+        splitParentPath = "";
+    }
+
+    @Override
+    public IndexRow next() {
+        if (closed) {
+            throw new IllegalStateException("This cursor is closed");
+        }
+        if (!init) {
+            fetchNext();
+            init = true;
+        }
+        IndexRowImpl result = new IndexRowImpl(currentPath);
+        fetchNext();
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!closed && !init) {
+            fetchNext();
+            init = true;
+        }
+        return !closed;
+    }
+
+    private void fetchNext() {
+        while (!batch.hasNext()) {
+            List<String> next;
+            try {
+                next = nextBatch();
+            } catch (RuntimeException e) {
+                cancel();
+                throw e;
+            }
+            if (next == null) {
+                cancel();
+                return;
+            }
+            batch = next.iterator();
+        }
+        currentPath = batch.next();
+    }
+
+    /**
+     * Stop the traversal, and cancel the outstanding tasks.
+     */
+    private void cancel() {
+        currentPath = null;
+        closed = true;
+        cleanable.clean();
+        for (Batch b : running) {
+            b.cancel(false);
+        }
+        running.clear();
+    }
+
+    long getReadCount() {
+        return state.readCount.get();
+    }
+
+    /**
+     * Wait for the next batch of paths.
+     *
+     * @return the paths, or null if the traversal is done
+     */
+    private List<String> nextBatch() {
+        int window = pool.getParallelism() * 2;
+        while (running.size() < window) {
+            Traversal t = nextPartition();
+            if (t == null) {
+                break;
+            }
+            running.add(submit(t));
+        }
+        if (running.isEmpty()) {
+            return null;
+        }
+        int index = 0;
+        if (!ordered) {
+            for (int i = 0; i < running.size(); i++) {
+                if (running.get(i).isDone()) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        Batch b = running.get(index);
+        List<String> result = b.join();
+        if (b.traversal.isDone()) {
+            running.remove(index);
+        } else if (ordered) {
+            // the rest of this partition is needed first
+            running.set(index, submit(b.traversal));
+        } else {
+            running.remove(index);
+            running.add(submit(b.traversal));
+        }
+        checkReadCount();
+        return result;
+    }
+
+    private Batch submit(Traversal t) {
+        Batch b = new Batch(t);
+        pool.execute(b);
+        return b;
+    }
+
+    private void checkReadCount() {
+        long count = state.readCount.get();
+        if (count < nextWarnCount) {
+            return;
+        }
+        FilterIterators.checkReadLimit(count, settings);
+        if (nextWarnCount <= 20000 && count >= 20000) {
+            LOG.warn("Traversed {} nodes with filter {}; consider creating an index or changing the query",
+                    count, filter, new Exception("call stack"));
+        } else {
+            String caller = IndexUtils.getCaller(settings.getIgnoredClassNamesInCallTrace());
+            LOG.warn("Traversed {} nodes with filter {} called by {}; consider creating an index or changing the query",
+                    count, filter, caller);
+        }
+        nextWarnCount = (count / 1000 + 1) * 1000;
+    }
+
+    /**
+     * Get the next partition, in document order. Nodes above the split depth
+     * are partitions of their own, nodes at the split depth are partitions
+     * together with their descendants.
+     *
+     * @return the next partition, or null if there are no more
+     */
+    private Traversal nextPartition() {
+        while (!splitIterators.isEmpty()) {
+            Iterator<? extends ChildNodeEntry> iterator = splitIterators.getLast();
+            if (!iterator.hasNext()) {
+                splitIterators.removeLast();
+                splitParentPath = PathUtils.getParentPath(splitParentPath);
+                continue;
+            }
+            ChildNodeEntry entry = iterator.next();
+            String name = entry.getName();
+            if (NodeStateUtils.isHidden(name)) {
+                continue;
+            }
+            String path = PathUtils.concat(splitParentPath, name);
+            NodeState node = entry.getNodeState();
+            if (splitIterators.size() > splitDepth) {
+                return new Traversal(state, path, node, true);
+            }
+            splitIterators.addLast(node.getChildNodeEntries().iterator());
+            splitParentPath = path;
+            return new Traversal(state, path, node, false);
+        }
+        return null;
+    }
+
+    /**
+     * Get the depth at which the subtree should be split, so that there are
+     * at least the given number of partitions (if possible).
+     *
+     * @param node the start node
+     * @param partitions the number of partitions
+     * @return the depth, relative to the start node
+     */
+    static int getSplitDepth(NodeState node, int partitions) {
+        List<NodeState> level = Collections.singletonList(node);
+        for (int depth = 1; depth < MAX_SPLIT_DEPTH; depth++) {
+            List<NodeState> next = new ArrayList<>();
+            for (NodeState n : level) {
+                for (ChildNodeEntry e : n.getChildNodeEntries()) {
+                    if (NodeStateUtils.isHidden(e.getName())) {
+                        continue;
+                    }
+                    next.add(e.getNodeState());
+                    if (next.size() >= partitions) {
+                        return depth;
+                    }
+                }
+            }
+            if (next.isEmpty()) {
+                return depth;
+            }
+            level = next;
+        }
+        return MAX_SPLIT_DEPTH;
+    }
+
+    /**
+     * The state of the traversal that is shared by all partitions.
+     */
+    private static final class TraversalState {
+
+        private final QueryLimits settings;
+
+        private final PropertyRestrictionMatcher matcher;
+
+        private final AtomicLong readCount = new AtomicLong();
+
+        private volatile boolean cancelled;
+
+        TraversalState(QueryLimits settings, PropertyRestrictionMatcher matcher) {
+            this.settings = settings;
+            this.matcher = matcher;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * The state of the traversal of a partition. Only accessed by one thread
+     * at a time.
+     */
+    private static final class Traversal {
+
+        private final TraversalState state;
+
+        private final Deque<Iterator<? extends ChildNodeEntry>> nodeIterators = new ArrayDeque<>();
+
+        private final boolean descend;
+
+        private String parentPath = "";
+
+        Traversal(TraversalState state, String path, NodeState node, boolean descend) {
+            this.state = state;
+            nodeIterators.add(Iterators.singletonIterator(new MemoryChildNodeEntry(path, node)));
+            this.descend = descend;
+        }
+
+        boolean isDone() {
+            return nodeIterators.isEmpty();
+        }
+
+        List<String> read() {
+            List<String> result = new ArrayList<>();
+            int read = 0;
+            while (!nodeIterators.isEmpty() && read < BATCH_SIZE) {
+                if (state.cancelled) {
+                    nodeIterators.clear();
+                    break;
+                }
+                Iterator<? extends ChildNodeEntry> iterator = nodeIterators.getLast();
+                if (!iterator.hasNext()) {
+                    nodeIterators.removeLast();
+                    parentPath = PathUtils.getParentPath(parentPath);
+                    continue;
+                }
+                ChildNodeEntry entry = iterator.next();
+                read++;
+                long count = state.readCount.incrementAndGet();
+                if (count % 1000 == 0) {
+                    FilterIterators.checkReadLimit(count, state.settings);
+                }
+                String name = entry.getName();
+                if (NodeStateUtils.isHidden(name)) {
+                    continue;
+                }
+                NodeState node = entry.getNodeState();
+                String path = PathUtils.concat(parentPath, name);
+                if (state.matcher.mayMatch(node)) {
+                    result.add(path);
+                }
+                if (descend) {
+                    nodeIterators.addLast(node.getChildNodeEntries().iterator());
+                    parentPath = path;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Batch extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Traversal traversal;
+
+        Batch(Traversal traversal) {
+            this.traversal = traversal;
+        }
+
+        @Override
+        protected List<String> compute() {
+            return traversal.read();
+        }
+    }
+
+    private static final class PoolHolder {
+
+        static final ForkJoinPool POOL = new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    t.setName("oak-query-traversal-" + t.getPoolIndex());
+                    return t;
+                }, null, false);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PropertyRestriction;
+import org.apache.jackrabbit.oak.spi.query.QueryConstants;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Checks whether a node state can match the property restrictions of a
+ * filter. This is a conservative check: it only returns false if the node
+ * does not have a restricted property, or if a property and the value of an
+ * equality restriction are of the same simple type, and no value is equal.
+ * The complete condition still needs to be evaluated for the other nodes.
+ * <p>
+ * Property values are compared as they are stored, without creating
+ * {@link PropertyValue} objects for the node.
+ */
+final class PropertyRestrictionMatcher {
+
+    private final String[] names;
+
+    /**
+     * The values of the equality restrictions, or null if the restriction
+     * is only checked for existence.
+     */
+    private final Object[] values;
+
+    private final Type<?>[] types;
+
+    PropertyRestrictionMatcher(Filter filter) {
+        List<PropertyRestriction> list = getExistenceRestrictions(filter);
+        int size = list.size();
+        names = new String[size];
+        values = new Object[size];
+        types = new Type<?>[size];
+        for (int i = 0; i < size; i++) {
+            PropertyRestriction pr = list.get(i);
+            names[i] = pr.propertyName;
+            PropertyValue v = pr.first;
+            if (v != null && v == pr.last && pr.firstIncluding && pr.lastIncluding &&
+                    !pr.isLike && !v.isArray() && isSimpleType(v.getType())) {
+                types[i] = v.getType();
+                values[i] = v.getValue(v.getType());
+            }
+        }
+    }
+
+    /**
+     * Whether there are restrictions that are checked.
+     *
+     * @return true if nodes can be rejected
+     */
+    boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    /**
+     * Whether the node can match the restrictions.
+     *
+     * @param node the node
+     * @return false if the node can not match
+     */
+    boolean mayMatch(NodeState node) {
+        for (int i = 0; i < names.length; i++) {
+            PropertyState p = node.getProperty(names[i]);
+            if (p == null) {
+                return false;
+            }
+            Object v = values[i];
+            if (v != null && p.getType().tag() == types[i].tag() && !containsValue(p, types[i], v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsValue(PropertyState p, Type<?> type, Object value) {
+        for (int j = 0, count = p.count(); j < count; j++) {
+            if (value.equals(p.getValue(type, j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSimpleType(Type<?> type) {
+        switch (type.tag()) {
+        case PropertyType.STRING:
+        case PropertyType.LONG:
+        case PropertyType.BOOLEAN:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Get the restrictions of the filter that a node can only match if it has
+     * the property. Restrictions on functions, relative properties and pseudo
+     * properties are ignored.
+     *
+     * @param filter the filter
+     * @return the restrictions
+     */
+    static List<PropertyRestriction> getExistenceRestrictions(Filter filter) {
+        List<PropertyRestriction> list = new ArrayList<>();
+        if (filter.getFullTextConstraint() != null) {
+            return list;
+        }
+        for (PropertyRestriction pr : filter.getPropertyRestrictions()) {
+            String name = pr.propertyName;
+            if (pr.isNullRestriction() || name.startsWith(":") ||
+                    name.contains("/") || name.contains("*") || name.contains("(") ||
+                    name.equals(QueryConstants.JCR_PATH) ||
+                    name.equals(QueryConstants.JCR_SCORE) ||
+                    name.equals(QueryConstants.REP_EXCERPT) ||
+                    name.equals(QueryConstants.REP_FACET) ||
+                    name.equals(QueryConstants.OAK_SCORE_EXPLANATION)) {
+                continue;
+            }
+            list.add(pr);
+        }
+        return list;
+    }
+
+}
@@ -13,14 +13,20 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import org.apache.jackrabbit.oak.spi.query.QueryLimits;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,15 +84,29 @@ public class FilterIterators {
     public static <K> Iterator<K> newCombinedFilter(
             Iterator<K> it, boolean distinct, long limit, long offset, 
             Comparator<K> orderBy, QueryLimits settings) {
+        return newCombinedFilter(it, distinct, limit, offset, orderBy, settings, null);
+    }
+
+    /**
+     * Combine the filters for distinct, order by, offset and limit. If a
+     * codec is given, distinct and order by spill entries to disk instead of
+     * failing once the number of entries exceeds the limit in memory.
+     *
+     * @param codec the codec used to spill entries to disk, or null to keep
+     *            all entries in memory
+     */
+    public static <K> Iterator<K> newCombinedFilter(
+            Iterator<K> it, boolean distinct, long limit, long offset, 
+            Comparator<K> orderBy, QueryLimits settings, @Nullable RowCodec<K> codec) {
         if (distinct) {
-            it = FilterIterators.newDistinct(it, settings);
+            it = FilterIterators.newDistinct(it, settings, codec);
         }
         if (orderBy != null) {
             // avoid overflow (both offset and limit could be Long.MAX_VALUE)
             int max = (int) Math.min(Integer.MAX_VALUE, 
                     Math.min(Integer.MAX_VALUE, offset) + 
                     Math.min(Integer.MAX_VALUE, limit));
-            it = FilterIterators.newSort(it, orderBy, max, settings);
+            it = FilterIterators.newSort(it, orderBy, max, settings, codec);
         }
         if (offset != 0) {
             it = FilterIterators.newOffset(it, offset);
@@ -98,7 +118,12 @@ public class FilterIterators {
     }
     
     public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, QueryLimits settings) {
-        return new DistinctIterator<K>(it, settings);
+        return newDistinct(it, settings, null);
+    }
+
+    public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, QueryLimits settings,
+                                                      @Nullable RowCodec<K> codec) {
+        return new DistinctIterator<K>(it, settings, codec);
     }
     
     public static <K> Iterator<K> newLimit(Iterator<K> it, long limit) {
@@ -110,13 +135,84 @@ public class FilterIterators {
     }
     
     public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryLimits settings) {
-        return new SortIterator<K>(it, orderBy, max, settings);
+        return newSort(it, orderBy, max, settings, null);
+    }
+
+    public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryLimits settings,
+                                          @Nullable RowCodec<K> codec) {
+        return new SortIterator<K>(it, orderBy, max, settings, codec);
+    }
+
+    /**
+     * Writes and reads entries, so that they can be spilled to disk.
+     *
+     * @param <K> the entry type
+     */
+    public interface RowCodec<K> {
+
+        void write(@NotNull DataOutput out, @NotNull K row) throws IOException;
+
+        @NotNull
+        K read(@NotNull DataInput in) throws IOException;
+    }
+
+    /**
+     * The number of entries kept in memory before they are spilled to disk.
+     */
+    private static int getRunSize(QueryLimits settings) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, settings.getLimitInMemory()));
+    }
+
+    /**
+     * An entry together with its position in the source, so that sorting is
+     * stable even if entries are sorted in a heap or in multiple runs.
+     *
+     * @param <K> the entry type
+     */
+    private static final class Sequenced<K> {
+
+        final long seq;
+        final K row;
+
+        Sequenced(long seq, K row) {
+            this.seq = seq;
+            this.row = row;
+        }
+
+        static <K> Comparator<Sequenced<K>> comparator(Comparator<K> orderBy) {
+            return (a, b) -> {
+                int comp = orderBy.compare(a.row, b.row);
+                return comp != 0 ? comp : Long.compare(a.seq, b.seq);
+            };
+        }
+
+        static <K> RowCodec<Sequenced<K>> codec(RowCodec<K> codec) {
+            return new RowCodec<Sequenced<K>>() {
+
+                @Override
+                public void write(@NotNull DataOutput out, @NotNull Sequenced<K> e) throws IOException {
+                    out.writeLong(e.seq);
+                    codec.write(out, e.row);
+                }
+
+                @NotNull
+                @Override
+                public Sequenced<K> read(@NotNull DataInput in) throws IOException {
+                    long seq = in.readLong();
+                    return new Sequenced<>(seq, codec.read(in));
+                }
+            };
+        }
     }
 
     /**
      * An iterator that filters duplicate entries, that is, it only returns each
      * unique entry once. The internal set of unique entries is filled only when
      * needed (on demand).
+     * <p>
+     * If a codec is set and the set of unique entries reaches the limit in
+     * memory, the remaining entries are de-duplicated with an external sort
+     * by hash code, and then sorted back into their original order.
      * 
      * @param <K> the entry type
      */
@@ -124,13 +220,16 @@ public class FilterIterators {
 
         private final Iterator<K> source;
         private final QueryLimits settings;
+        private final RowCodec<K> codec;
         private final HashSet<K> distinctSet;
+        private Iterator<K> spilled;
         private K current;
         private boolean end;
 
-        DistinctIterator(Iterator<K> source, QueryLimits settings) {
+        DistinctIterator(Iterator<K> source, QueryLimits settings, RowCodec<K> codec) {
             this.source = source;
             this.settings = settings;
+            this.codec = codec;
             distinctSet = new HashSet<K>();
         }
 
@@ -138,17 +237,101 @@ public class FilterIterators {
             if (end) {
                 return;
             }
-            while (source.hasNext()) {
-                current = source.next();
-                if (distinctSet.add(current)) {
-                    checkMemoryLimit(distinctSet.size(), settings);
+            if (spilled == null && codec != null && distinctSet.size() >= getRunSize(settings)) {
+                spilled = spill();
+            }
+            if (spilled != null) {
+                if (spilled.hasNext()) {
+                    current = spilled.next();
                     return;
                 }
+            } else {
+                while (source.hasNext()) {
+                    current = source.next();
+                    if (distinctSet.add(current)) {
+                        if (codec == null) {
+                            checkMemoryLimit(distinctSet.size(), settings);
+                        }
+                        return;
+                    }
+                }
             }
             current = null;
             end = true;
         }
 
+        /**
+         * Reads the remaining entries and removes the duplicates using the
+         * disk. Entries already returned are sorted with a sequence number of
+         * -1, so that they come first among equal entries and are not
+         * returned again.
+         */
+        private Iterator<K> spill() {
+            LOG.info("The query read more than {} distinct nodes in memory, spilling to disk",
+                    distinctSet.size());
+            int runSize = getRunSize(settings);
+            RowCodec<Sequenced<K>> entryCodec = Sequenced.codec(codec);
+            SpillingSort<Sequenced<K>> byHash = new SpillingSort<>((a, b) -> {
+                int comp = Integer.compare(a.row.hashCode(), b.row.hashCode());
+                return comp != 0 ? comp : Long.compare(a.seq, b.seq);
+            }, entryCodec);
+            List<Sequenced<K>> run = new ArrayList<>();
+            for (K k : distinctSet) {
+                run.add(new Sequenced<>(-1, k));
+            }
+            distinctSet.clear();
+            long seq = 0;
+            while (source.hasNext()) {
+                run.add(new Sequenced<>(seq++, source.next()));
+                if (run.size() >= runSize) {
+                    byHash.spill(run);
+                }
+            }
+            Iterator<Sequenced<K>> it = byHash.merge(run);
+            run = new ArrayList<>();
+
+            SpillingSort<Sequenced<K>> bySeq = new SpillingSort<>(
+                    (a, b) -> Long.compare(a.seq, b.seq), entryCodec);
+            // the distinct entries with the current hash code
+            List<Sequenced<K>> group = new ArrayList<>();
+            while (it.hasNext()) {
+                Sequenced<K> e = it.next();
+                if (!group.isEmpty() && group.get(0).row.hashCode() != e.row.hashCode()) {
+                    group.clear();
+                }
+                boolean duplicate = false;
+                for (Sequenced<K> g : group) {
+                    if (g.row.equals(e.row)) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (duplicate) {
+                    continue;
+                }
+                group.add(e);
+                if (e.seq >= 0) {
+                    run.add(e);
+                    if (run.size() >= runSize) {
+                        bySeq.spill(run);
+                    }
+                }
+            }
+            Iterator<Sequenced<K>> result = bySeq.merge(run);
+            return new Iterator<K>() {
+
+                @Override
+                public boolean hasNext() {
+                    return result.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return result.next().row;
+                }
+            };
+        }
+
         @Override
         public boolean hasNext() {
             if (current == null) {
@@ -181,6 +364,11 @@ public class FilterIterators {
      * An iterator that returns entries in sorted order. The internal list of
      * sorted entries can be limited to a given number of entries, and the
      * entries are only read when needed (on demand).
+     * <p>
+     * Once more than the given number of entries were read, the first entries
+     * are kept in a bounded heap (top-N). Otherwise, if a codec is set, sorted
+     * runs are spilled to disk when the limit in memory is reached, and merged
+     * when the result is read.
      * 
      * @param <K> the entry type
      */
@@ -189,37 +377,103 @@ public class FilterIterators {
         private final Iterator<K> source;
         private final QueryLimits settings;
         private final Comparator<K> orderBy;
+        private final RowCodec<K> codec;
         private Iterator<K> result;
         private final int max;
 
-        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryLimits settings) {
+        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryLimits settings,
+                     RowCodec<K> codec) {
             this.source = source;
             this.orderBy = orderBy;
             this.max = max;
             this.settings = settings;
+            this.codec = codec;
         }
         
         private void init() {
             if (result != null) {
                 return;
             }
-            ArrayList<K> list = new ArrayList<K>();
+            Comparator<Sequenced<K>> comparator = Sequenced.comparator(orderBy);
+            int runSize = getRunSize(settings);
+            ArrayList<Sequenced<K>> list = new ArrayList<>();
+            PriorityQueue<Sequenced<K>> topN = null;
+            SpillingSort<Sequenced<K>> spill = null;
+            long seq = 0;
             while (source.hasNext()) {
-                K x = source.next();
-                list.add(x);
-                checkMemoryLimit(list.size(), settings);
-                // from time to time, sort and truncate
-                // this should need less than O(n*log(3*keep)) operations,
-                // which is close to the optimum O(n*log(keep))
-                if (list.size() > (long) max * 2) {
-                    // remove tail entries right now, to save memory
-                    Collections.sort(list, orderBy);
-                    keepFirst(list, max);
+                Sequenced<K> x = new Sequenced<>(seq++, source.next());
+                if (max == 0) {
+                    // read all entries, but keep none
+                    continue;
+                }
+                if (topN != null) {
+                    // the head of the heap is the last entry to keep; this
+                    // needs O(n*log(keep)) operations in the worst case,
+                    // but mostly just one comparison per entry
+                    if (comparator.compare(x, topN.peek()) < 0) {
+                        topN.poll();
+                        topN.add(x);
+                    }
+                } else if (list.size() == max && spill == null) {
+                    // more entries than needed: from now on only keep the
+                    // first entries
+                    topN = new PriorityQueue<>(max, comparator.reversed());
+                    topN.addAll(list);
+                    list = null;
+                    if (comparator.compare(x, topN.peek()) < 0) {
+                        topN.poll();
+                        topN.add(x);
+                    }
+                } else {
+                    list.add(x);
+                    if (codec != null && list.size() >= runSize) {
+                        if (spill == null) {
+                            LOG.info("The query read more than {} nodes in memory, spilling to disk", runSize);
+                            spill = new SpillingSort<>(comparator, Sequenced.codec(codec));
+                        }
+                        list.sort(comparator);
+                        keepFirst(list, max);
+                        spill.spill(list);
+                    } else {
+                        checkMemoryLimit(list.size(), settings);
+                    }
                 }
             }
-            Collections.sort(list, orderBy);
-            keepFirst(list, max);
-            result = list.iterator();
+            Iterator<Sequenced<K>> it;
+            SpillingSort<Sequenced<K>> spilled = spill;
+            if (topN != null) {
+                list = new ArrayList<>(topN);
+                list.sort(comparator);
+                it = list.iterator();
+            } else if (spill != null) {
+                it = spill.merge(list);
+            } else {
+                list.sort(comparator);
+                keepFirst(list, max);
+                it = list.iterator();
+            }
+            result = new Iterator<K>() {
+
+                private int count;
+
+                @Override
+                public boolean hasNext() {
+                    return count < max && it.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    K next = it.next().row;
+                    if (++count == max && spilled != null) {
+                        // delete the temporary files right away
+                        spilled.close();
+                    }
+                    return next;
+                }
+            };
         }
         
         /**
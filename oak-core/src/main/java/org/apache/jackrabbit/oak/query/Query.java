@@ -213,4 +213,21 @@ public interface Query {
     
     QueryExecutionStats getQueryExecutionStats();
 
+    /**
+     * Get the index plans that were selected, so they can be cached. The
+     * query must already be prepared.
+     *
+     * @return one entry per query (two or more for a union query), where an
+     *         entry is null if the index plan can not be cached
+     */
+    List<QueryPlanCache.IndexHint> getIndexHints();
+
+    /**
+     * Use the given index plans, if possible, instead of asking all indexes
+     * for their cost. Must be called before the query is prepared.
+     *
+     * @param hints the index plans, as returned by {@link #getIndexHints()}
+     */
+    void setIndexHints(List<QueryPlanCache.IndexHint> hints);
+
 }
@@ -34,10 +34,12 @@ import org.apache.jackrabbit.oak.api.Result;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.namepath.impl.LocalNameMapper;
 import org.apache.jackrabbit.oak.namepath.impl.NamePathMapperImpl;
+import org.apache.jackrabbit.oak.query.QueryPlanCache.CachedPlan;
 import org.apache.jackrabbit.oak.query.ast.NodeTypeInfoProvider;
 import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
 import org.apache.jackrabbit.oak.query.xpath.XPathToSQL2Converter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -127,7 +129,7 @@ public abstract class QueryEngineImpl implements QueryEngine {
     public List<String> getBindVariableNames(
             String statement, String language, Map<String, String> mappings)
             throws ParseException {
-        List<Query> qs = parseQuery(statement, language, getExecutionContext(), mappings);
+        List<Query> qs = parseQuery(statement, language, getExecutionContext(), mappings, null);
         
         return qs.iterator().next().getBindVariableNames();
     }
@@ -139,12 +141,13 @@ public abstract class QueryEngineImpl implements QueryEngine {
      * @param language the language
      * @param context the context
      * @param mappings the mappings
+     * @param cached the cached plan, or null
      * @return the list of queries, where the first is the original, and all
      *         others are alternatives (for example, a "union" query)
      */
     private static List<Query> parseQuery(
             String statement, String language, ExecutionContext context,
-            Map<String, String> mappings) throws ParseException {
+            Map<String, String> mappings, @Nullable CachedPlan cached) throws ParseException {
         
         boolean isInternal = SQL2Parser.isInternal(statement);
         if (isInternal) {
@@ -189,8 +192,13 @@ public abstract class QueryEngineImpl implements QueryEngine {
             parser.setSupportSQL1(true);
             q = parser.parse(statement, false);
         } else if (XPATH.equals(language)) {
-            XPathToSQL2Converter converter = new XPathToSQL2Converter(settings);
-            String sql2 = converter.convert(statement);
+            String sql2;
+            if (cached != null && cached.sql2 != null) {
+                sql2 = cached.sql2;
+            } else {
+                XPathToSQL2Converter converter = new XPathToSQL2Converter(settings);
+                sql2 = converter.convert(statement);
+            }
             LOG.debug("XPath > SQL2: {}", sql2);
             try {
                 // OAK-874: No artificial XPath selector name in wildcards
@@ -213,7 +221,9 @@ public abstract class QueryEngineImpl implements QueryEngine {
         
         queries.add(q);
         
-        if (settings.isSql2Optimisation()) {
+        if (cached != null && cached.alternative == 0) {
+            LOG.trace("Skipping optimisation as the original query was selected before.");
+        } else if (settings.isSql2Optimisation()) {
             if (q.isInternal()) {
                 LOG.trace("Skipping optimisation as internal query.");
             } else {
@@ -263,7 +273,15 @@ public abstract class QueryEngineImpl implements QueryEngine {
         }
 
         ExecutionContext context = getExecutionContext();
-        List<Query> queries = parseQuery(statement, language, context, mappings);
+        QueryPlanCache planCache = context.getSettings().getQueryPlanCache();
+        String cacheKey = null;
+        CachedPlan cached = null;
+        if (planCache.isEnabled()) {
+            cacheKey = QueryPlanCache.getKey(statement, language, bindings, mappings,
+                    traversalEnabled, querySelectionMode, context.getSettings());
+            cached = planCache.get(cacheKey, context.getBaseState());
+        }
+        List<Query> queries = parseQuery(statement, language, context, mappings, cached);
 
         long actualLimit = getValue(queries, limit, Query::getLimit, Long.MAX_VALUE);
         long actualOffset = getValue(queries, offset, Query::getOffset, 0L);
@@ -283,7 +301,24 @@ public abstract class QueryEngineImpl implements QueryEngine {
         boolean mdc = false;
         try {
             long start = System.nanoTime();
-            Query query = prepareAndSelect(queries);
+            Query query;
+            if (cached != null) {
+                query = prepareCached(queries, cached);
+            } else {
+                query = prepareAndSelect(queries);
+            }
+            if (cached == null && cacheKey != null) {
+                planCache.put(cacheKey, createCachedPlan(statement, language, queries, query,
+                        planCache.getIndexDefinitionsFingerprint(context.getBaseState()),
+                        context.getSettings()));
+            } else if (cached != null) {
+                List<QueryPlanCache.IndexHint> hints = query.getIndexHints();
+                if (!QueryPlanCache.sameIndexes(hints, cached.hints)) {
+                    // the cached index could not be used
+                    planCache.put(cacheKey, new CachedPlan(cached.fingerprint, cached.sql2,
+                            cached.alternative, cached.verify, hints, query.getEstimatedCost()));
+                }
+            }
             query.getQueryExecutionStats().execute(System.nanoTime() - start);
             mdc = setupMDC(query);
             return query.executeQuery();
@@ -380,6 +415,46 @@ public abstract class QueryEngineImpl implements QueryEngine {
         return result;
     }
     
+    /**
+     * Prepare the query that was selected before, using the cached index
+     * plans if possible.
+     *
+     * @param queries the list of queries
+     * @param cached the cached plan
+     * @return the query
+     */
+    @NotNull
+    private static Query prepareCached(@NotNull List<Query> queries, @NotNull CachedPlan cached) {
+        Query result = queries.get(Math.min(cached.alternative, queries.size() - 1));
+        result.setIndexHints(cached.hints);
+        result.prepare();
+        if (cached.verify) {
+            result.verifyNotPotentiallySlow();
+        }
+        LOG.trace("Using cached plan. Query: {}", result);
+        return result;
+    }
+
+    @NotNull
+    private static CachedPlan createCachedPlan(String statement, String language,
+            List<Query> queries, Query query, long fingerprint,
+            QueryEngineSettings settings) throws ParseException {
+        String sql2 = null;
+        if (language.startsWith(XPATH)) {
+            sql2 = new XPathToSQL2Converter(settings).convert(statement);
+        }
+        boolean verify = true;
+        if (queries.size() > 1) {
+            for (Query q : queries) {
+                if (!q.isPotentiallySlow()) {
+                    verify = false;
+                }
+            }
+        }
+        return new CachedPlan(fingerprint, sql2, queries.indexOf(query), verify,
+                query.getIndexHints(), query.getEstimatedCost());
+    }
+
     protected void setTraversalEnabled(boolean traversalEnabled) {
         this.traversalEnabled = traversalEnabled;
     }
@@ -73,6 +73,26 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
     private static final boolean DEFAULT_FAIL_TRAVERSAL =
             Boolean.getBoolean(OAK_QUERY_FAIL_TRAVERSAL);
 
+    public static final String OAK_QUERY_SPILL_TO_DISK = "oak.querySpillToDisk";
+    private static final boolean DEFAULT_SPILL_TO_DISK =
+            Boolean.getBoolean(OAK_QUERY_SPILL_TO_DISK);
+
+    public static final String OAK_QUERY_COST_BASED_JOINS = "oak.queryCostBasedJoins";
+    private static final boolean DEFAULT_COST_BASED_JOINS =
+            Boolean.getBoolean(OAK_QUERY_COST_BASED_JOINS);
+
+    public static final String OAK_QUERY_PARALLEL_TRAVERSAL = "oak.queryParallelTraversal";
+    private static final boolean DEFAULT_PARALLEL_TRAVERSAL =
+            Boolean.getBoolean(OAK_QUERY_PARALLEL_TRAVERSAL);
+
+    public static final String OAK_QUERY_BATCH_SIZE = "oak.queryBatchSize";
+    private static final int DEFAULT_BATCH_SIZE =
+            Integer.getInteger(OAK_QUERY_BATCH_SIZE, 0);
+
+    public static final String OAK_QUERY_PLAN_CACHE_SIZE = "oak.queryPlanCacheSize";
+    public static final int DEFAULT_QUERY_PLAN_CACHE_SIZE =
+            Integer.getInteger(OAK_QUERY_PLAN_CACHE_SIZE, 0);
+
     private static final boolean DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX =
             Boolean.getBoolean("oak.queryFullTextComparisonWithoutIndex");
     
@@ -83,6 +103,14 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
     private int prefetchCount = DEFAULT_PREFETCH_COUNT;
 
     private boolean failTraversal = DEFAULT_FAIL_TRAVERSAL;
+
+    private boolean spillToDisk = DEFAULT_SPILL_TO_DISK;
+
+    private boolean costBasedJoins = DEFAULT_COST_BASED_JOINS;
+
+    private boolean parallelTraversal = DEFAULT_PARALLEL_TRAVERSAL;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
     
     private boolean fullTextComparisonWithoutIndex = 
             DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX;
@@ -96,6 +124,8 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
 
     private StrictPathRestriction strictPathRestriction = StrictPathRestriction.DISABLE;
 
+    private final QueryPlanCache queryPlanCache = new QueryPlanCache(DEFAULT_QUERY_PLAN_CACHE_SIZE);
+
     private final QueryStatsMBeanImpl queryStats = new QueryStatsMBeanImpl(this);
 
     /**
@@ -200,6 +230,81 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
         this.failTraversal = failTraversal;
     }
 
+    /**
+     * Whether queries that sort or de-duplicate more than the limit in memory
+     * spill to disk instead of failing.
+     *
+     * @return true if spilling to disk is enabled
+     */
+    public boolean isSpillToDisk() {
+        return spillToDisk;
+    }
+
+    public void setSpillToDisk(boolean spillToDisk) {
+        this.spillToDisk = spillToDisk;
+    }
+
+    /**
+     * Whether the strategy of joins (nested loop, index nested loop, hash or
+     * merge join) is chosen based on the estimated cost. If disabled, all
+     * joins are nested loop joins.
+     *
+     * @return true if the join strategy is chosen based on the cost
+     */
+    public boolean isCostBasedJoins() {
+        return costBasedJoins;
+    }
+
+    public void setCostBasedJoins(boolean costBasedJoins) {
+        this.costBasedJoins = costBasedJoins;
+    }
+
+    /**
+     * Whether queries that traverse a subtree do so using multiple threads.
+     *
+     * @return true if traversal is parallel
+     */
+    public boolean isParallelTraversal() {
+        return parallelTraversal;
+    }
+
+    public void setParallelTraversal(boolean parallelTraversal) {
+        this.parallelTraversal = parallelTraversal;
+    }
+
+    /**
+     * The number of rows that selectors read from an index in one block. The
+     * nodes of a block are prefetched together, and a restriction pre-filter
+     * skips rows that can not match the property restrictions. The remaining
+     * rows are still evaluated one by one. 0 if rows are not read in blocks.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The maximum number of cached query plans, 0 if plans are not cached.
+     *
+     * @return the maximum number of entries
+     */
+    public int getQueryPlanCacheSize() {
+        return queryPlanCache.getMaxSize();
+    }
+
+    public void setQueryPlanCacheSize(int queryPlanCacheSize) {
+        queryPlanCache.setMaxSize(queryPlanCacheSize);
+    }
+
+    public QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
+    }
+
     @Override
     public boolean isFastQuerySize() {
         return fastQuerySize;
@@ -291,6 +396,11 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
                 "limitInMemory=" + limitInMemory +
                 ", limitReads=" + limitReads +
                 ", failTraversal=" + failTraversal +
+                ", spillToDisk=" + spillToDisk +
+                ", costBasedJoins=" + costBasedJoins +
+                ", parallelTraversal=" + parallelTraversal +
+                ", batchSize=" + batchSize +
+                ", queryPlanCacheSize=" + queryPlanCache.getMaxSize() +
                 ", fullTextComparisonWithoutIndex=" + fullTextComparisonWithoutIndex +
                 ", sql2Optimisation=" + sql2Optimisation +
                 ", fastQuerySize=" + fastQuerySize +
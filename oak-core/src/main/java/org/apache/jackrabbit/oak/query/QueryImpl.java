@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -100,6 +101,7 @@ import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -196,6 +198,12 @@ public class QueryImpl implements Query {
 
     private boolean potentiallySlowTraversalQuery;
 
+    /**
+     * The index plan from the plan cache, or null if none (or if it could
+     * not be used).
+     */
+    private QueryPlanCache.IndexHint indexHint;
+
     QueryImpl(String statement, SourceImpl source, ConstraintImpl constraint,
         ColumnImpl[] columns, NamePathMapper mapper, QueryEngineSettings settings,
         QueryExecutionStats stats) {
@@ -625,7 +633,8 @@ public class QueryImpl implements Query {
         long localLimit = limit.orElse(Long.MAX_VALUE);
         long localOffset = offset.orElse(0L);
         Iterator<ResultRowImpl> it =
-                FilterIterators.newCombinedFilter(rowIt, distinct, localLimit, localOffset, orderBy, settings);
+                FilterIterators.newCombinedFilter(rowIt, distinct, localLimit, localOffset, orderBy, settings,
+                        settings.isSpillToDisk() ? ResultRowImpl.newCodec() : null);
         if (orderBy != null) {
             // this will force the rows to be read, so that the size is known
             it.hasNext();
@@ -1073,9 +1082,41 @@ public class QueryImpl implements Query {
                 context.getIndexProvider(), traversalEnabled);
     }
 
+    /**
+     * Get the best plan to read a selector once, without the join condition,
+     * for a hash or merge join. Unlike
+     * {@link #getBestSelectorExecutionPlan(FilterImpl)}, this doesn't change
+     * whether the query is considered potentially slow.
+     *
+     * @param filter the filter, without the join condition
+     * @return the plan, or null if the plan would be a potentially slow
+     *         traversal, and the query is not potentially slow otherwise
+     */
+    @Nullable
+    public SelectorExecutionPlan getBestJoinBuildPlan(FilterImpl filter) {
+        boolean slow = potentiallySlowTraversalQuery;
+        SelectorExecutionPlan plan = getBestSelectorExecutionPlan(filter);
+        boolean buildSlow = potentiallySlowTraversalQuery;
+        potentiallySlowTraversalQuery = slow;
+        if (buildSlow && !slow) {
+            // don't turn a query that uses an index into a traversal query
+            return null;
+        }
+        return plan;
+    }
+
     private SelectorExecutionPlan getBestSelectorExecutionPlan(
             NodeState rootState, FilterImpl filter,
             QueryIndexProvider indexProvider, boolean traversalEnabled) {
+        if (indexHint != null && filter.getSelector() == source) {
+            SelectorExecutionPlan plan = getCachedSelectorExecutionPlan(
+                    rootState, filter, indexProvider, traversalEnabled);
+            if (plan != null) {
+                return plan;
+            }
+            LOG.debug("cached index plan {} is not used for filter {}", indexHint, filter);
+            indexHint = null;
+        }
         QueryIndex bestIndex = null;
         if (LOG.isDebugEnabled()) {
             logDebug("cost using filter " + filter);
@@ -1120,18 +1161,7 @@ public class QueryImpl implements Query {
                         filter, sortOrder, rootState);
                 cost = Double.POSITIVE_INFINITY;
                 for (IndexPlan p : ipList) {
-                    
-                    long entryCount = p.getEstimatedEntryCount();
-                    if (p.getSupportsPathRestriction()) {
-                        entryCount = scaleEntryCount(rootState, filter, entryCount);
-                    }
-                    if (sortOrder == null || p.getSortOrder() != null) {
-                        // if the query is unordered, or
-                        // if the query contains "order by" and the index can sort on that,
-                        // then we don't need to read all entries from the index
-                        entryCount = Math.min(maxEntryCount, entryCount);
-                    }
-                    double c = p.getCostPerExecution() + entryCount * p.getCostPerEntry();
+                    double c = getCost(rootState, filter, sortOrder, maxEntryCount, p);
 
                     if (LOG.isDebugEnabled()) {
                         String plan = advIndex.getPlanDescription(p, rootState);
@@ -1222,6 +1252,80 @@ public class QueryImpl implements Query {
                 bestPlan, bestCost);
     }
     
+    private double getCost(NodeState rootState, FilterImpl filter,
+            List<OrderEntry> sortOrder, long maxEntryCount, IndexPlan p) {
+        long entryCount = p.getEstimatedEntryCount();
+        if (p.getSupportsPathRestriction()) {
+            entryCount = scaleEntryCount(rootState, filter, entryCount);
+        }
+        if (sortOrder == null || p.getSortOrder() != null) {
+            // if the query is unordered, or
+            // if the query contains "order by" and the index can sort on that,
+            // then we don't need to read all entries from the index
+            entryCount = Math.min(maxEntryCount, entryCount);
+        }
+        return p.getCostPerExecution() + entryCount * p.getCostPerEntry();
+    }
+
+    /**
+     * Get the plan using the index from the plan cache, without asking the
+     * other indexes.
+     *
+     * @return the plan, or null if the index can not be used, or if the cost
+     *         is much higher than the cached cost
+     */
+    private SelectorExecutionPlan getCachedSelectorExecutionPlan(
+            NodeState rootState, FilterImpl filter,
+            QueryIndexProvider indexProvider, boolean traversalEnabled) {
+        QueryPlanCache.IndexHint hint = indexHint;
+        QueryIndex bestIndex = null;
+        IndexPlan bestPlan = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        if (hint.traversal) {
+            if (traversalEnabled) {
+                bestIndex = new TraversingIndex();
+                bestCost = bestIndex.getCost(filter, rootState);
+            }
+        } else {
+            long maxEntryCount = saturatedAdd(offset.orElse(0L), limit.orElse(Long.MAX_VALUE));
+            List<OrderEntry> sortOrder = getSortOrder(filter);
+            for (QueryIndex index : indexProvider.getQueryIndexes(rootState)) {
+                if (!hint.indexName.equals(index.getIndexName())) {
+                    continue;
+                }
+                if (index instanceof AdvancedQueryIndex) {
+                    for (IndexPlan p : ((AdvancedQueryIndex) index).getPlans(filter, sortOrder, rootState)) {
+                        if (!Objects.equals(hint.planName, p.getPlanName())) {
+                            continue;
+                        }
+                        double c = getCost(rootState, filter, sortOrder, maxEntryCount, p);
+                        if (c < bestCost) {
+                            bestCost = c;
+                            bestIndex = index;
+                            bestPlan = p;
+                        }
+                    }
+                } else if (hint.planName == null) {
+                    double c = index.getCost(filter, rootState);
+                    if (c < bestCost) {
+                        bestCost = c;
+                        bestIndex = index;
+                    }
+                }
+            }
+        }
+        if (bestIndex == null || bestCost == Double.POSITIVE_INFINITY
+                || bestCost > hint.cost * QueryPlanCache.REPLAN_FACTOR + 1) {
+            return null;
+        }
+        if (LOG.isDebugEnabled()) {
+            logDebug("cost for cached " + hint + " is " + bestCost);
+        }
+        potentiallySlowTraversalQuery = hint.potentiallySlow;
+        return new SelectorExecutionPlan(filter.getSelector(), bestIndex,
+                bestPlan, bestCost);
+    }
+
     private long scaleEntryCount(NodeState rootState, FilterImpl filter, long count) {
         PathRestriction r = filter.getPathRestriction();
         if (r != PathRestriction.ALL_CHILDREN) {
@@ -1585,4 +1689,26 @@ public class QueryImpl implements Query {
         return stats;
     }
 
+    @Override
+    public List<QueryPlanCache.IndexHint> getIndexHints() {
+        QueryPlanCache.IndexHint hint = null;
+        if (source instanceof SelectorImpl) {
+            SelectorExecutionPlan plan = ((SelectorImpl) source).getExecutionPlan();
+            if (plan != null && plan.getIndex() != null) {
+                QueryIndex index = plan.getIndex();
+                IndexPlan p = plan.getIndexPlan();
+                hint = new QueryPlanCache.IndexHint(index.getIndexName(),
+                        p == null ? null : p.getPlanName(),
+                        index instanceof TraversingIndex,
+                        potentiallySlowTraversalQuery, plan.getEstimatedCost());
+            }
+        }
+        return Collections.singletonList(hint);
+    }
+
+    @Override
+    public void setIndexHints(List<QueryPlanCache.IndexHint> hints) {
+        indexHint = hints.size() == 1 ? hints.get(0) : null;
+    }
+
 }
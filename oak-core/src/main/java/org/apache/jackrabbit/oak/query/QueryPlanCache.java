@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.query.QueryEngineImpl.QuerySelectionMode;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded cache of query plans, keyed by the normalized statement, the
+ * language, the types of the bind variables and the namespace mappings.
+ * <p>
+ * A cached plan contains the SQL-2 statement (for XPath queries), which of
+ * the alternative queries was selected, and for queries with a single
+ * selector, the index and index plan that was used, with the cost. Queries
+ * are still parsed, and the cached index is asked for the cost using the
+ * actual bind variable values, but the other indexes are not.
+ * <p>
+ * All entries are invalidated if the index definitions change. Only the
+ * properties of the index definitions in /oak:index are taken into account;
+ * changes that need a reindex or refresh of an index also change one of
+ * those properties.
+ */
+public final class QueryPlanCache {
+
+    /**
+     * If the cost of the cached plan using the actual bind variable values is
+     * this many times higher than the cached cost, the query is planned again.
+     */
+    static final double REPLAN_FACTOR = 10;
+
+    private final Map<String, CachedPlan> map = new LinkedHashMap<String, CachedPlan>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPlan> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong fingerprintComputations = new AtomicLong();
+
+    private volatile int maxSize;
+
+    private volatile Fingerprint lastFingerprint;
+
+    QueryPlanCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Change the maximum number of entries. All entries are removed. Zero
+     * disables the cache.
+     *
+     * @param maxSize the new maximum number of entries
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        invalidate();
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void invalidate() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the ratio of cache hits to lookups.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    long getFingerprintComputations() {
+        return fingerprintComputations.get();
+    }
+
+    /**
+     * Get the cached plan for the given key. If the index definitions changed
+     * since the entry was added, all entries are removed.
+     *
+     * @param key the key
+     * @param rootState the root node state
+     * @return the cached plan, or null if none
+     */
+    @Nullable
+    CachedPlan get(@NotNull String key, @NotNull NodeState rootState) {
+        long fingerprint = getIndexDefinitionsFingerprint(rootState);
+        CachedPlan plan;
+        synchronized (map) {
+            plan = map.get(key);
+            if (plan != null && plan.fingerprint != fingerprint) {
+                map.clear();
+                plan = null;
+            }
+        }
+        if (plan == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return plan;
+    }
+
+    void put(@NotNull String key, @NotNull CachedPlan plan) {
+        synchronized (map) {
+            map.put(key, plan);
+        }
+    }
+
+    /**
+     * Whether the hints use the same indexes and index plans.
+     *
+     * @param a the first list
+     * @param b the second list
+     * @return true if the same
+     */
+    static boolean sameIndexes(@NotNull List<IndexHint> a, @NotNull List<IndexHint> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            IndexHint x = a.get(i);
+            IndexHint y = b.get(i);
+            if (x == null || y == null) {
+                if (x != y) {
+                    return false;
+                }
+            } else if (!x.indexName.equals(y.indexName) ||
+                    !Objects.equals(x.planName, y.planName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the cache key.
+     *
+     * @param statement the statement
+     * @param language the language
+     * @param bindings the bind variable values (only the types are used)
+     * @param mappings the namespace mappings
+     * @param traversalEnabled whether traversal is enabled
+     * @param mode the query selection mode
+     * @param settings the settings
+     * @return the key
+     */
+    @NotNull
+    static String getKey(@NotNull String statement, @NotNull String language,
+            @NotNull Map<String, ? extends PropertyValue> bindings,
+            @NotNull Map<String, String> mappings, boolean traversalEnabled,
+            @NotNull QuerySelectionMode mode, @NotNull QueryEngineSettings settings) {
+        StringBuilder buff = new StringBuilder();
+        buff.append(language).append(' ').append(mode).append(' ')
+                .append(traversalEnabled).append(' ')
+                .append(settings.isSql2Optimisation()).append('\n');
+        for (Entry<String, ? extends PropertyValue> e : new TreeMap<>(bindings).entrySet()) {
+            PropertyValue v = e.getValue();
+            buff.append('$').append(e.getKey()).append(':');
+            if (v != null) {
+                buff.append(v.getType());
+            }
+            buff.append('\n');
+        }
+        for (Entry<String, String> e : new TreeMap<>(mappings).entrySet()) {
+            buff.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        buff.append(normalize(statement));
+        return buff.toString();
+    }
+
+    /**
+     * Normalize the statement: leading and trailing whitespace is removed,
+     * and other whitespace outside of quotes is replaced with a single space.
+     *
+     * @param statement the statement
+     * @return the normalized statement
+     */
+    @NotNull
+    static String normalize(@NotNull String statement) {
+        StringBuilder buff = new StringBuilder(statement.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < statement.length(); i++) {
+            char c = statement.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && buff.length() > 0) {
+                buff.append(' ');
+            }
+            space = false;
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                // a doubled quote is read as closing and re-opening
+                quote = 0;
+            }
+            buff.append(c);
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Get a hash of the properties of all index definitions. The last result
+     * is re-used as long as the index definitions node state is equal. Each
+     * new root returns a new node state instance, but node stores compare
+     * unchanged node states cheaply, by revision or record id.
+     *
+     * @param rootState the root node state
+     * @return the hash
+     */
+    long getIndexDefinitionsFingerprint(@NotNull NodeState rootState) {
+        NodeState indexes = rootState.getChildNode(INDEX_DEFINITIONS_NAME);
+        Fingerprint last = lastFingerprint;
+        if (last != null && indexes.equals(last.indexes)) {
+            return last.value;
+        }
+        fingerprintComputations.incrementAndGet();
+        long hash = 0;
+        for (ChildNodeEntry e : indexes.getChildNodeEntries()) {
+            String name = e.getName();
+            if (NodeStateUtils.isHidden(name)) {
+                continue;
+            }
+            long h = name.hashCode();
+            for (PropertyState p : e.getNodeState().getProperties()) {
+                if (NodeStateUtils.isHidden(p.getName())) {
+                    continue;
+                }
+                h = h * 31 + p.getName().hashCode();
+                if (p.getType().tag() == Type.BINARY.tag()) {
+                    h = h * 31 + p.count();
+                } else {
+                    h = h * 31 + p.getValue(Type.STRINGS).hashCode();
+                }
+            }
+            // the order of child nodes is not relevant
+            hash += h * 0x9E3779B97F4A7C15L;
+        }
+        lastFingerprint = new Fingerprint(indexes, hash);
+        return hash;
+    }
+
+    private static final class Fingerprint {
+
+        final NodeState indexes;
+
+        final long value;
+
+        Fingerprint(NodeState indexes, long value) {
+            this.indexes = indexes;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A cached query plan.
+     */
+    static final class CachedPlan {
+
+        final long fingerprint;
+
+        /**
+         * The statement converted to SQL-2, or null if not converted.
+         */
+        final String sql2;
+
+        /**
+         * The index of the selected query (0 is the original query, 1 the
+         * alternative).
+         */
+        final int alternative;
+
+        /**
+         * Whether the selected query needs to be verified to not be
+         * potentially slow.
+         */
+        final boolean verify;
+
+        /**
+         * The index plans, one entry per (non-union) query; null entries if
+         * the index plans are not cached for that query.
+         */
+        final List<IndexHint> hints;
+
+        final double cost;
+
+        CachedPlan(long fingerprint, @Nullable String sql2, int alternative,
+                boolean verify, @NotNull List<IndexHint> hints, double cost) {
+            this.fingerprint = fingerprint;
+            this.sql2 = sql2;
+            this.alternative = alternative;
+            this.verify = verify;
+            this.hints = hints;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * The index plan used for a query with a single selector.
+     */
+    static final class IndexHint {
+
+        final String indexName;
+
+        /**
+         * The plan name, or null if the index is not an advanced index.
+         */
+        final String planName;
+
+        final boolean traversal;
+
+        final boolean potentiallySlow;
+
+        final double cost;
+
+        IndexHint(@NotNull String indexName, @Nullable String planName,
+                boolean traversal, boolean potentiallySlow, double cost) {
+            this.indexName = indexName;
+            this.planName = planName;
+            this.traversal = traversal;
+            this.potentiallySlow = potentiallySlow;
+            this.cost = cost;
+        }
+
+        @Override
+        public String toString() {
+            return indexName + (planName == null ? "" : " " + planName) + " cost " + cost;
+        }
+    }
+
+}
@@ -16,18 +16,32 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.ResultRow;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.query.FilterIterators.RowCodec;
 import org.apache.jackrabbit.oak.query.ast.ColumnImpl;
 import org.apache.jackrabbit.oak.query.ast.OrderingImpl;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
 import org.apache.jackrabbit.oak.spi.query.QueryConstants;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * A query result row that keeps all data (for this row only) in memory.
@@ -265,6 +279,160 @@ public class ResultRowImpl implements ResultRow {
 
     }
 
+    /**
+     * Creates a codec to spill rows to disk. Trees are written as paths and
+     * read back from the query the row belongs to. Binary values are not
+     * written, instead the codec keeps a reference to the blob.
+     *
+     * @return a new codec
+     */
+    static RowCodec<ResultRowImpl> newCodec() {
+        return new Codec();
+    }
+
+    private static final class Codec implements RowCodec<ResultRowImpl> {
+
+        /**
+         * The queries of the rows written so far (a union query contains
+         * rows of multiple queries).
+         */
+        private final List<Query> queries = new ArrayList<>();
+
+        private final List<Blob> blobs = new ArrayList<>();
+
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull ResultRowImpl row) throws IOException {
+            int q = 0;
+            while (q < queries.size() && queries.get(q) != row.query) {
+                q++;
+            }
+            if (q == queries.size()) {
+                queries.add(row.query);
+            }
+            out.writeInt(q);
+            out.writeInt(row.trees.length);
+            for (Tree t : row.trees) {
+                writeString(out, t == null ? null : t.getPath());
+            }
+            writeValues(out, row.values);
+            if (row.distinctValues == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(row.distinctValues.length);
+                for (boolean b : row.distinctValues) {
+                    out.writeBoolean(b);
+                }
+            }
+            writeValues(out, row.orderValues);
+        }
+
+        @NotNull
+        @Override
+        public ResultRowImpl read(@NotNull DataInput in) throws IOException {
+            Query query = queries.get(in.readInt());
+            Tree[] trees = new Tree[in.readInt()];
+            for (int i = 0; i < trees.length; i++) {
+                String path = readString(in);
+                trees[i] = path == null ? null : query.getTree(path);
+            }
+            PropertyValue[] values = readValues(in);
+            boolean[] distinctValues = null;
+            int len = in.readInt();
+            if (len >= 0) {
+                distinctValues = new boolean[len];
+                for (int i = 0; i < len; i++) {
+                    distinctValues[i] = in.readBoolean();
+                }
+            }
+            PropertyValue[] orderValues = readValues(in);
+            return new ResultRowImpl(query, trees, values, distinctValues, orderValues);
+        }
+
+        private void writeValues(DataOutput out, PropertyValue[] values) throws IOException {
+            if (values == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(values.length);
+            for (PropertyValue v : values) {
+                if (v == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                Type<?> type = v.getType();
+                PropertyState ps = PropertyValues.create(v);
+                out.writeInt(type.tag());
+                out.writeBoolean(type.isArray());
+                writeString(out, ps == null ? "" : ps.getName());
+                out.writeInt(v.count());
+                for (int i = 0; i < v.count(); i++) {
+                    if (type.tag() == PropertyType.BINARY) {
+                        out.writeInt(blobs.size());
+                        blobs.add(v.getValue(Type.BINARY, i));
+                    } else {
+                        writeString(out, v.getValue(Type.STRING, i));
+                    }
+                }
+            }
+        }
+
+        private PropertyValue[] readValues(DataInput in) throws IOException {
+            int len = in.readInt();
+            if (len < 0) {
+                return null;
+            }
+            PropertyValue[] values = new PropertyValue[len];
+            for (int i = 0; i < len; i++) {
+                int tag = in.readInt();
+                if (tag < 0) {
+                    continue;
+                }
+                Type<?> type = Type.fromTag(tag, in.readBoolean());
+                String name = readString(in);
+                int count = in.readInt();
+                PropertyState ps;
+                if (tag == PropertyType.BINARY) {
+                    List<Blob> list = new ArrayList<>(count);
+                    for (int j = 0; j < count; j++) {
+                        list.add(blobs.get(in.readInt()));
+                    }
+                    ps = PropertyStates.createProperty(name, type.isArray() ? list : list.get(0), type);
+                } else {
+                    List<String> list = new ArrayList<>(count);
+                    for (int j = 0; j < count; j++) {
+                        list.add(readString(in));
+                    }
+                    ps = type.isArray()
+                            ? PropertyStates.createProperty(name, list, Type.STRINGS)
+                            : PropertyStates.createProperty(name, list.get(0), Type.STRING);
+                    ps = PropertyStates.convert(ps, type);
+                }
+                values[i] = PropertyValues.create(ps);
+            }
+            return values;
+        }
+
+        private static void writeString(DataOutput out, String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+
+        private static String readString(DataInput in) throws IOException {
+            int len = in.readInt();
+            if (len < 0) {
+                return null;
+            }
+            byte[] b = new byte[len];
+            in.readFully(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
     static ResultRowImpl getMappingResultRow(ResultRowImpl delegate, final Map<String, String> columnToFacetMap) {
         if (columnToFacetMap.size() == 0) {
             return delegate;
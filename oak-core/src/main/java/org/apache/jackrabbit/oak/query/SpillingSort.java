@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.jackrabbit.oak.query.FilterIterators.RowCodec;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An external merge sort. Sorted runs are written to temporary files and
+ * merged lazily when the result is read. The temporary files are deleted
+ * when the result was read completely, or otherwise when this object is
+ * garbage collected.
+ *
+ * @param <T> the entry type
+ */
+final class SpillingSort<T> implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpillingSort.class);
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Comparator<T> comparator;
+    private final RowCodec<T> codec;
+    private final List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+    private final Cleaner.Cleanable cleanable;
+    private MergeIterator merged;
+
+    SpillingSort(@NotNull Comparator<T> comparator, @NotNull RowCodec<T> codec) {
+        this.comparator = comparator;
+        this.codec = codec;
+        this.cleanable = CLEANER.register(this, new DeleteRuns(runs));
+    }
+
+    /**
+     * Sorts the entries and writes them to a new run. The list is cleared
+     * afterwards.
+     *
+     * @param entries the entries to spill
+     */
+    void spill(@NotNull List<T> entries) {
+        entries.sort(comparator);
+        try {
+            Path file = Files.createTempFile("oak-query-sort-", ".tmp");
+            runs.add(file);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(entries.size());
+                for (T e : entries) {
+                    codec.write(out, e);
+                }
+            }
+            LOG.debug("Spilled {} entries to {}", entries.size(), file);
+        } catch (IOException e) {
+            cleanable.clean();
+            throw new UncheckedIOException("Could not spill query result to disk", e);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Returns an iterator over all spilled entries and the given entries, in
+     * sorted order. Entries that compare equal are returned in the order they
+     * were spilled, with the given entries last.
+     *
+     * @param remaining the entries not spilled to disk
+     * @return the merged entries
+     */
+    @NotNull
+    Iterator<T> merge(@NotNull List<T> remaining) {
+        remaining.sort(comparator);
+        MergeIterator it = new MergeIterator();
+        merged = it;
+        try {
+            for (Path file : runs) {
+                it.add(new FileRun(file));
+            }
+        } catch (IOException e) {
+            it.close();
+            throw new UncheckedIOException("Could not read query result from disk", e);
+        }
+        it.add(new ListRun<>(remaining.iterator()));
+        return it;
+    }
+
+    /**
+     * Closes the merged result, if any, and deletes the temporary files.
+     */
+    @Override
+    public void close() {
+        if (merged != null) {
+            merged.close();
+        }
+        cleanable.clean();
+    }
+
+    private abstract static class Run<T> implements Closeable {
+
+        int index;
+
+        T head;
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return {@code false} if there are no more entries
+         */
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class ListRun<T> extends Run<T> {
+
+        private final Iterator<T> it;
+
+        ListRun(Iterator<T> it) {
+            this.it = it;
+        }
+
+        @Override
+        boolean advance() {
+            if (!it.hasNext()) {
+                return false;
+            }
+            head = it.next();
+            return true;
+        }
+    }
+
+    private final class FileRun extends Run<T> {
+
+        private final DataInputStream in;
+
+        private int remaining;
+
+        FileRun(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            remaining = in.readInt();
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            head = codec.read(in);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private final class MergeIterator implements Iterator<T>, Closeable {
+
+        private final List<Run<T>> all = new ArrayList<>();
+
+        private final PriorityQueue<Run<T>> queue = new PriorityQueue<>((a, b) -> {
+            int comp = comparator.compare(a.head, b.head);
+            return comp != 0 ? comp : Integer.compare(a.index, b.index);
+        });
+
+        void add(Run<T> run) {
+            run.index = all.size();
+            all.add(run);
+            try {
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Could not read query result from disk", e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Run<T> run = queue.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            T result = run.head;
+            try {
+                if (run.advance()) {
+                    queue.add(run);
+                } else if (queue.isEmpty()) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Could not read query result from disk", e);
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            queue.clear();
+            for (Run<T> run : all) {
+                try {
+                    run.close();
+                } catch (IOException e) {
+                    LOG.debug("Could not close run", e);
+                }
+            }
+            cleanable.clean();
+        }
+    }
+
+    private static final class DeleteRuns implements Runnable {
+
+        private final List<Path> runs;
+
+        DeleteRuns(List<Path> runs) {
+            this.runs = runs;
+        }
+
+        @Override
+        public void run() {
+            synchronized (runs) {
+                for (Path file : runs) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        LOG.warn("Could not delete temporary file {}", file, e);
+                    }
+                }
+                runs.clear();
+            }
+        }
+    }
+}
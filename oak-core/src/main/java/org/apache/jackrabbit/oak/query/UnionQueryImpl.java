@@ -332,7 +332,8 @@ public class UnionQueryImpl implements Query {
             it = Iterators.mergeSorted(ImmutableList.of(leftIter, rightIter), orderBy);
         }
 
-        it = FilterIterators.newCombinedFilter(it, distinct, limit.orElse(Long.MAX_VALUE), offset.orElse(0L), null, settings);
+        it = FilterIterators.newCombinedFilter(it, distinct, limit.orElse(Long.MAX_VALUE), offset.orElse(0L), null, settings,
+                settings.isSpillToDisk() ? ResultRowImpl.newCodec() : null);
 
         if (measure) {
             // return the measuring iterator for the union
@@ -434,6 +435,31 @@ public class UnionQueryImpl implements Query {
         return left.getQueryExecutionStats();
     }
 
+    @Override
+    public List<QueryPlanCache.IndexHint> getIndexHints() {
+        List<QueryPlanCache.IndexHint> list = new ArrayList<>(left.getIndexHints());
+        list.addAll(right.getIndexHints());
+        return list;
+    }
+
+    @Override
+    public void setIndexHints(List<QueryPlanCache.IndexHint> hints) {
+        int leftCount = getQueryCount(left);
+        if (hints.size() != leftCount + getQueryCount(right)) {
+            return;
+        }
+        left.setIndexHints(hints.subList(0, leftCount));
+        right.setIndexHints(hints.subList(leftCount, hints.size()));
+    }
+
+    private static int getQueryCount(Query q) {
+        if (q instanceof UnionQueryImpl) {
+            UnionQueryImpl u = (UnionQueryImpl) q;
+            return getQueryCount(u.left) + getQueryCount(u.right);
+        }
+        return 1;
+    }
+
     static class FacetMerger {
 
         private final Iterator<ResultRowImpl> leftIterator;
@@ -18,6 +18,7 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.List;
 import java.util.Set;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -103,6 +104,26 @@ public class ChildNodeJoinConditionImpl extends JoinConditionImpl {
         return available.contains(childSelector) && available.contains(parentSelector);
     }
 
+    @Override
+    SelectorImpl getHashJoinPartner(SelectorImpl s) {
+        if (s.equals(childSelector)) {
+            return parentSelector;
+        } else if (s.equals(parentSelector)) {
+            return childSelector;
+        }
+        return null;
+    }
+
+    @Override
+    List<JoinHashTable.Key> getHashKeys(SelectorImpl s) {
+        String p = s.currentPath();
+        if (s.equals(childSelector) && p != null) {
+            // the root node is not a child node
+            p = PathUtils.denotesRoot(p) ? null : PathUtils.getParentPath(p);
+        }
+        return pathKey(p);
+    }
+
     @Override
     public AstElement copyOf() {
         return new ChildNodeJoinConditionImpl(childSelectorName, parentSelectorName);
@@ -18,8 +18,13 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.query.Filter;
@@ -97,6 +102,34 @@ public class DescendantNodeJoinConditionImpl extends JoinConditionImpl {
         return available.contains(descendantSelector) && available.contains(ancestorSelector);
     }
 
+    @Override
+    SelectorImpl getHashJoinPartner(SelectorImpl s) {
+        if (s.equals(descendantSelector)) {
+            return ancestorSelector;
+        } else if (s.equals(ancestorSelector)) {
+            return descendantSelector;
+        }
+        return null;
+    }
+
+    @Override
+    List<JoinHashTable.Key> getHashKeys(SelectorImpl s) {
+        String p = s.currentPath();
+        if (!s.equals(descendantSelector) || p == null) {
+            return pathKey(p);
+        }
+        // the keys of a descendant are all its ancestors
+        int depth = PathUtils.getDepth(p);
+        if (depth == 0) {
+            return Collections.emptyList();
+        }
+        List<JoinHashTable.Key> keys = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            keys.add(new JoinHashTable.Key(PropertyType.PATH, PathUtils.getAncestorPath(p, depth - i)));
+        }
+        return keys;
+    }
+
     @Override
     public AstElement copyOf() {
         return new DescendantNodeJoinConditionImpl(descendantSelectorName, ancestorSelectorName);
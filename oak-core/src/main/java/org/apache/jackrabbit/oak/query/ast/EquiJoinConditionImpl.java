@@ -18,11 +18,19 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.util.ISO8601;
 
 /**
  * The "a.x = b.y" join condition.
@@ -172,6 +180,67 @@ public class EquiJoinConditionImpl extends JoinConditionImpl {
         return available.contains(selector1) && available.contains(selector2);
     }
 
+    @Override
+    SelectorImpl getHashJoinPartner(SelectorImpl s) {
+        if (selector1.equals(selector2)) {
+            return null;
+        } else if (s.equals(selector1)) {
+            return selector2;
+        } else if (s.equals(selector2)) {
+            return selector1;
+        }
+        return null;
+    }
+
+    @Override
+    List<JoinHashTable.Key> getHashKeys(SelectorImpl s) {
+        PropertyValue p;
+        if (s.equals(selector1)) {
+            p = selector1.currentProperty(property1Name);
+        } else if (s.equals(selector2)) {
+            p = selector2.currentProperty(property2Name);
+        } else {
+            return null;
+        }
+        if (p == null) {
+            // nodes without the property don't match
+            return Collections.emptyList();
+        }
+        int type = p.getType().tag();
+        int count = p.count();
+        if (count == 0 || type == PropertyType.BINARY) {
+            // empty arrays are equal to each other,
+            // and binaries are compared by content
+            return null;
+        }
+        List<JoinHashTable.Key> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(new JoinHashTable.Key(type, getKeyValue(p, type, i)));
+        }
+        return keys;
+    }
+
+    /**
+     * Get the value in a form where equal values of the same type have equal
+     * strings.
+     */
+    private static String getKeyValue(PropertyValue p, int type, int index) {
+        switch (type) {
+        case PropertyType.DECIMAL:
+            // 1.5 is equal to 1.50
+            return p.getValue(Type.DECIMAL, index).stripTrailingZeros().toString();
+        case PropertyType.DOUBLE:
+            return p.getValue(Type.DOUBLE, index).toString();
+        case PropertyType.DATE:
+            // dates are compared as points in time, if possible
+            String date = p.getValue(Type.STRING, index);
+            Calendar c = ISO8601.parse(date);
+            return c == null ? date : Long.toString(c.getTimeInMillis());
+        default:
+            return p.getValue(Type.STRING, index);
+        }
+    }
+
     @Override
     public AstElement copyOf() {
         return new EquiJoinConditionImpl(selector1Name, property1Name, selector2Name, property2Name);
@@ -13,9 +13,15 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * The base class for join conditions.
@@ -81,4 +87,45 @@ public abstract class JoinConditionImpl extends AstElement {
      */
     public abstract boolean canEvaluate(Set<SourceImpl> available);
 
+    /**
+     * Get the other selector of this condition, for a hash or merge join.
+     *
+     * @param s one of the selectors of this condition
+     * @return the other selector, or null if this condition does not support
+     *         a hash or merge join
+     */
+    @Nullable
+    SelectorImpl getHashJoinPartner(@NotNull SelectorImpl s) {
+        return null;
+    }
+
+    /**
+     * Get the keys of the current row of the given selector, for a hash or
+     * merge join. Two rows can only match if they have a key in common, unless
+     * the keys are of a different type (in which case the values need to be
+     * converted before they can be compared).
+     *
+     * @param s one of the selectors of this condition
+     * @return the keys (empty if the row can not match any row), or null if
+     *         the row could match any row
+     */
+    @Nullable
+    List<JoinHashTable.Key> getHashKeys(@NotNull SelectorImpl s) {
+        return null;
+    }
+
+    /**
+     * Get the hash join key for a path.
+     *
+     * @param path the path, or null
+     * @return a list with the key, or an empty list if the path is null
+     */
+    @NotNull
+    static List<JoinHashTable.Key> pathKey(@Nullable String path) {
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new JoinHashTable.Key(PropertyType.PATH, path));
+    }
+
 }
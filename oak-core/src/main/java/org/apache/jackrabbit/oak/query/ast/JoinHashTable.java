@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The build side of a hash join: the paths of the rows of the right hand side
+ * selector, by the keys of their join condition.
+ * <p>
+ * Keys are partitioned by type. Two values of a different type need to be
+ * converted before they can be compared, so a lookup returns all rows of the
+ * other types, in addition to the rows with a matching key. Rows without keys
+ * could match any row, and are always returned. The result is therefore a
+ * superset of the matching rows, and the join condition still needs to be
+ * evaluated for each of them.
+ */
+final class JoinHashTable {
+
+    /**
+     * The key type -> (key value -> paths)
+     */
+    private final Map<Integer, Partition> partitions = new HashMap<>();
+
+    /**
+     * The paths of the rows without keys.
+     */
+    private final List<String> unkeyed = new ArrayList<>();
+
+    /**
+     * The number of rows added.
+     */
+    private int rowCount;
+
+    /**
+     * Add a row.
+     *
+     * @param path the path of the row
+     * @param keys the keys of the row, or null if the row could match any row
+     */
+    void add(@NotNull String path, @Nullable List<Key> keys) {
+        int row = rowCount++;
+        if (keys == null) {
+            unkeyed.add(path);
+            return;
+        }
+        for (Key k : keys) {
+            Partition p = partitions.computeIfAbsent(k.type, t -> new Partition());
+            p.paths.computeIfAbsent(k.value, v -> new ArrayList<>(1)).add(path);
+            if (p.lastRow != row) {
+                // a multi-valued property has multiple keys per row
+                p.rows.add(path);
+                p.lastRow = row;
+            }
+        }
+    }
+
+    /**
+     * Get the paths of the rows that could match a row with the given keys.
+     * The result may contain duplicates.
+     *
+     * @param keys the keys, or null if the row could match any row
+     * @return the paths
+     */
+    @NotNull
+    List<String> get(@Nullable List<Key> keys) {
+        if (keys != null && keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(unkeyed);
+        for (Map.Entry<Integer, Partition> e : partitions.entrySet()) {
+            Partition p = e.getValue();
+            if (keys == null || !containsType(keys, e.getKey())) {
+                result.addAll(p.rows);
+                continue;
+            }
+            for (Key k : keys) {
+                if (k.type == e.getKey()) {
+                    List<String> paths = p.paths.get(k.value);
+                    if (paths != null) {
+                        result.addAll(paths);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsType(List<Key> keys, int type) {
+        for (Key k : keys) {
+            if (k.type == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The rows with keys of one type.
+     */
+    private static final class Partition {
+
+        final Map<String, List<String>> paths = new HashMap<>();
+
+        final List<String> rows = new ArrayList<>();
+
+        int lastRow = -1;
+
+    }
+
+    /**
+     * A join key: the property type, and the value in a form where equal
+     * values of this type have equal strings.
+     */
+    static final class Key {
+
+        final int type;
+
+        final String value;
+
+        Key(int type, @NotNull String value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + value;
+        }
+
+    }
+
+}
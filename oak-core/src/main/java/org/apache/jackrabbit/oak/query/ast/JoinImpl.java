@@ -16,19 +16,38 @@ package org.apache.jackrabbit.oak.query.ast;
 import static org.apache.jackrabbit.oak.query.ast.AstElementFactory.copyElementAndCheckReference;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.query.index.TraversingIndex;
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.JoinExecutionPlan;
+import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A join. This object contains the left hand side source, the right hand side
  * source, the join type, and the join condition.
+ * <p>
+ * By default, joins are nested loop joins: the right hand side is executed for
+ * each row of the left hand side, restricted by the join condition. If cost
+ * based joins are enabled, the right hand side may instead be read only once:
+ * into a hash table (hash join), or into a sorted list of paths (merge join,
+ * for descendant node joins). Each row of the left hand side then only reads
+ * the candidate rows of the right hand side again. See
+ * {@link org.apache.jackrabbit.oak.query.QueryEngineSettings#isCostBasedJoins()}.
  */
 public class JoinImpl extends SourceImpl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JoinImpl.class);
+
     private final JoinConditionImpl joinCondition;
     private JoinType joinType;
     private SourceImpl left;
@@ -42,6 +61,14 @@ public class JoinImpl extends SourceImpl {
     
     private JoinExecutionPlan plan;
 
+    /**
+     * The strategy used for the current execution: null for a nested loop
+     * join, or if reading the right hand side failed (too many rows).
+     */
+    private JoinStrategy materialized;
+    private JoinHashTable hashTable;
+    private List<String> sortedPaths;
+
     public JoinImpl(SourceImpl left, SourceImpl right, JoinType joinType,
             JoinConditionImpl joinCondition) {
         this.left = left;
@@ -107,6 +134,9 @@ public class JoinImpl extends SourceImpl {
             append(right.getPlan(rootState)).
             append(" on ").
             append(joinCondition);
+        if (plan != null && plan.getStrategy() != null) {
+            buff.append(" /* ").append(plan.getStrategy()).append(" */");
+        }
         return buff.toString();
     }
 
@@ -190,11 +220,72 @@ public class JoinImpl extends SourceImpl {
         // on the left selector)
         ExecutionPlan leftPlan = left.prepare();
         ExecutionPlan rightPlan = right.prepare();
+        if (joinCondition.query != null && joinCondition.query.getSettings().isCostBasedJoins()) {
+            plan = prepareStrategy(leftPlan, rightPlan);
+            return plan;
+        }
         double cost = leftPlan.getEstimatedCost() + 2 * rightPlan.getEstimatedCost();
         plan = new JoinExecutionPlan(this, leftPlan, rightPlan, cost);
         return plan;
     }
 
+    private JoinExecutionPlan prepareStrategy(ExecutionPlan leftPlan, ExecutionPlan rightPlan) {
+        double leftCost = leftPlan.getEstimatedCost();
+        double leftRows = getEstimatedRowCount(leftPlan);
+        // nested loop: the right hand side is executed for each row
+        // on the left hand side
+        double cost = leftCost + leftRows * rightPlan.getEstimatedCost();
+        JoinStrategy strategy = usesIndex(rightPlan) ?
+                JoinStrategy.INDEX_NESTED_LOOP : JoinStrategy.NESTED_LOOP;
+        SelectorExecutionPlan buildPlan = null;
+        if (right instanceof SelectorImpl) {
+            SelectorImpl s = (SelectorImpl) right;
+            SelectorExecutionPlan p = joinCondition.getHashJoinPartner(s) == null ?
+                    null : s.prepareWithoutJoinCondition();
+            if (p != null) {
+                // hash or merge join: the right hand side is read once,
+                // and then the candidates are read again for each row
+                // on the left hand side
+                double c = leftCost + p.getEstimatedCost() + leftRows;
+                if (c < cost) {
+                    cost = c;
+                    buildPlan = p;
+                    strategy = isMergeJoin() ? JoinStrategy.MERGE : JoinStrategy.HASH;
+                }
+            }
+        }
+        return new JoinExecutionPlan(this, leftPlan, rightPlan, buildPlan, strategy, cost);
+    }
+
+    /**
+     * Whether the right hand side are the descendants in a descendant node
+     * join. The candidates are then a range of the sorted paths, which needs
+     * less memory than a hash table keyed by all ancestors.
+     */
+    private boolean isMergeJoin() {
+        return joinCondition instanceof DescendantNodeJoinConditionImpl
+                && !joinCondition.isParent(right);
+    }
+
+    private static double getEstimatedRowCount(ExecutionPlan p) {
+        if (p instanceof SelectorExecutionPlan) {
+            IndexPlan indexPlan = ((SelectorExecutionPlan) p).getIndexPlan();
+            if (indexPlan != null) {
+                return Math.max(1, indexPlan.getEstimatedEntryCount());
+            }
+        }
+        // for traversal, the cost is about the number of nodes read
+        return Math.max(1, p.getEstimatedCost());
+    }
+
+    private static boolean usesIndex(ExecutionPlan p) {
+        if (!(p instanceof SelectorExecutionPlan)) {
+            return false;
+        }
+        QueryIndex index = ((SelectorExecutionPlan) p).getIndex();
+        return index != null && !(index instanceof TraversingIndex);
+    }
+
     @Override
     public SelectorImpl getSelector(String selectorName) {
         SelectorImpl s = left.getSelector(selectorName);
@@ -209,6 +300,12 @@ public class JoinImpl extends SourceImpl {
         this.rootState = rootState;
         leftNeedExecute = true;
         end = false;
+        materialized = null;
+        hashTable = null;
+        sortedPaths = null;
+        if (plan != null && plan.getBuildPlan() != null) {
+            materialized = plan.getStrategy();
+        }
     }
 
     @Override
@@ -255,7 +352,7 @@ public class JoinImpl extends SourceImpl {
                 rightNeedExecute = true;
             }
             if (rightNeedExecute) {
-                right.execute(rootState);
+                executeRight();
                 foundJoinedRow = false;
                 rightNeedExecute = false;
             }
@@ -275,6 +372,86 @@ public class JoinImpl extends SourceImpl {
         }
     }
     
+    private void executeRight() {
+        if (materialized != null && hashTable == null && sortedPaths == null) {
+            if (!readRight()) {
+                materialized = null;
+            }
+        }
+        if (materialized == null) {
+            right.execute(rootState);
+            return;
+        }
+        SelectorImpl s = (SelectorImpl) right;
+        List<JoinHashTable.Key> keys = joinCondition.getHashKeys(joinCondition.getHashJoinPartner(s));
+        if (sortedPaths != null) {
+            s.executeOnPaths(getDescendants(sortedPaths, keys));
+        } else {
+            s.executeOnPaths(hashTable.get(keys));
+        }
+    }
+
+    /**
+     * Read the right hand side of a hash or merge join.
+     *
+     * @return false if there are too many rows (in which case a nested loop
+     *         join is used)
+     */
+    private boolean readRight() {
+        SelectorImpl s = (SelectorImpl) right;
+        long limit = s.query.getSettings().getLimitInMemory();
+        JoinHashTable table = new JoinHashTable();
+        List<String> paths = new ArrayList<>();
+        long count = 0;
+        s.executeWithoutJoinCondition(rootState, plan.getBuildPlan());
+        while (s.next()) {
+            String path = s.currentPath();
+            if (path == null || ++count > limit) {
+                LOG.debug("Using a nested loop join instead of a {} for {}", materialized, this);
+                return false;
+            }
+            if (materialized == JoinStrategy.MERGE) {
+                paths.add(path);
+            } else {
+                table.add(path, joinCondition.getHashKeys(s));
+            }
+        }
+        if (materialized == JoinStrategy.MERGE) {
+            Collections.sort(paths);
+            sortedPaths = paths;
+        } else {
+            hashTable = table;
+        }
+        return true;
+    }
+
+    /**
+     * Get the paths that are descendants of the given ancestor paths.
+     *
+     * @param sortedPaths the sorted paths
+     * @param keys the ancestor paths
+     * @return the descendants (may contain duplicates)
+     */
+    private static List<String> getDescendants(List<String> sortedPaths, List<JoinHashTable.Key> keys) {
+        if (keys == null) {
+            return sortedPaths;
+        }
+        List<String> result = new ArrayList<>();
+        for (JoinHashTable.Key k : keys) {
+            String prefix = PathUtils.denotesRoot(k.value) ? k.value : k.value + "/";
+            // the paths that start with the prefix are a range
+            int i = Collections.binarySearch(sortedPaths, prefix);
+            for (i = i < 0 ? -i - 1 : i; i < sortedPaths.size(); i++) {
+                String p = sortedPaths.get(i);
+                if (!p.startsWith(prefix)) {
+                    break;
+                }
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean isOuterJoinRightHandSide() {
         return left.isOuterJoinRightHandSide() || right.isOuterJoinRightHandSide();
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.ast;
+
+/**
+ * The enumeration of all join strategies.
+ */
+public enum JoinStrategy {
+
+    /**
+     * The right hand side is traversed for each row of the left hand side.
+     */
+    NESTED_LOOP("nested loop join"),
+
+    /**
+     * The right hand side is looked up in an index for each row of the left
+     * hand side.
+     */
+    INDEX_NESTED_LOOP("index nested loop join"),
+
+    /**
+     * The right hand side is read once into a hash table, which is probed for
+     * each row of the left hand side.
+     */
+    HASH("hash join"),
+
+    /**
+     * The paths of the right hand side are read once and sorted. The
+     * descendants of each row of the left hand side are then a range of the
+     * sorted paths.
+     */
+    MERGE("merge join");
+
+    /**
+     * The name of this join strategy.
+     */
+    private final String name;
+
+    JoinStrategy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the join strategy.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
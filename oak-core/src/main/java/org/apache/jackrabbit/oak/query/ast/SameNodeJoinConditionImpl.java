@@ -18,6 +18,7 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.List;
 import java.util.Set;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -126,4 +127,23 @@ public class SameNodeJoinConditionImpl extends JoinConditionImpl {
         return available.contains(selector1) && available.contains(selector2);
     }
 
+    @Override
+    SelectorImpl getHashJoinPartner(SelectorImpl s) {
+        if (s.equals(selector1)) {
+            return selector2;
+        } else if (s.equals(selector2)) {
+            return selector1;
+        }
+        return null;
+    }
+
+    @Override
+    List<JoinHashTable.Key> getHashKeys(SelectorImpl s) {
+        String p = s.currentPath();
+        if (s.equals(selector2) && p != null && !selector2Path.equals(".")) {
+            p = PathUtils.concat(p, normalizePath(selector2Path));
+        }
+        return pathKey(p);
+    }
+
 }
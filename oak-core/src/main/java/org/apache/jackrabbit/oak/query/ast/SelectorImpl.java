@@ -106,6 +106,12 @@ public class SelectorImpl extends SourceImpl {
      */
     private JoinConditionImpl joinCondition;
 
+    /**
+     * Whether the join condition is ignored, while the right hand side of a
+     * hash or merge join is read.
+     */
+    private boolean ignoreJoinCondition;
+
     /**
      * The node type associated with the {@link #nodeTypeName}
      */
@@ -316,6 +322,32 @@ public class SelectorImpl extends SourceImpl {
         return plan;
     }
 
+    /**
+     * Get the best plan to read this selector once, without the join
+     * condition, for a hash or merge join.
+     *
+     * @return the plan, or null if not supported
+     */
+    @Nullable
+    SelectorExecutionPlan prepareWithoutJoinCondition() {
+        FilterImpl f;
+        ignoreJoinCondition = true;
+        try {
+            f = createFilter(true);
+        } finally {
+            ignoreJoinCondition = false;
+        }
+        if (f.getFullTextConstraint() != null
+                || f.getPropertyRestriction(QueryConstants.REP_EXCERPT) != null
+                || f.getPropertyRestriction(QueryConstants.REP_FACET) != null
+                || f.getPropertyRestriction(QueryConstants.OAK_SCORE_EXPLANATION) != null) {
+            // rows are read again by path, so values
+            // provided by the index would be lost
+            return null;
+        }
+        return query.getBestJoinBuildPlan(f);
+    }
+
     @Override
     public void setQueryConstraint(ConstraintImpl queryConstraint) {
         this.queryConstraint = queryConstraint;
@@ -342,12 +374,45 @@ public class SelectorImpl extends SourceImpl {
     public void execute(NodeState rootState) {
         long start = startTimer();
         try {
+            ignoreJoinCondition = false;
             executeInternal(rootState);
         } finally {
             stopTimer(start, true);
         }
     }
 
+    /**
+     * Execute the given plan, without the join condition. This is used to
+     * read the right hand side of a hash or merge join once.
+     *
+     * @param rootState the root
+     * @param buildPlan the plan from {@link #prepareWithoutJoinCondition()}
+     */
+    void executeWithoutJoinCondition(NodeState rootState, SelectorExecutionPlan buildPlan) {
+        long start = startTimer();
+        SelectorExecutionPlan p = plan;
+        try {
+            ignoreJoinCondition = true;
+            plan = buildPlan;
+            executeInternal(rootState);
+        } finally {
+            plan = p;
+            stopTimer(start, true);
+        }
+    }
+
+    /**
+     * Execute this selector on the given paths. The rows are evaluated as
+     * usual, including the join condition. This is used to read the
+     * candidate rows of a hash or merge join.
+     *
+     * @param paths the paths
+     */
+    void executeOnPaths(Iterable<String> paths) {
+        ignoreJoinCondition = false;
+        cursor = Cursors.newPathCursor(paths, query.getSettings());
+    }
+
     private void executeInternal(NodeState rootState) {
         QueryIndex index = plan.getIndex();
         timerDuration = null;
@@ -357,13 +422,13 @@ public class SelectorImpl extends SourceImpl {
             return;
         }
         IndexPlan p = plan.getIndexPlan();
+        FilterImpl f = createFilter(false);
         if (p != null) {
             planIndexName = p.getPlanName();
-            p.setFilter(createFilter(false));
+            p.setFilter(f);
             AdvancedQueryIndex adv = (AdvancedQueryIndex) index;
             cursor = adv.query(p, rootState);
         } else {
-            FilterImpl f = createFilter(false);
             planIndexName = index.getIndexName(f, rootState);
             cursor = index.query(f, rootState);
         }
@@ -374,6 +439,13 @@ public class SelectorImpl extends SourceImpl {
             cursor = Cursors.newPrefetchCursor(cursor, store, prefetchCount,
                     rootState, query.getQueryOptions().prefetch);
         }
+        int batchSize = query.getExecutionContext().getSettings().getBatchSize();
+        if (batchSize > 0 && !f.isAlwaysFalse()) {
+            // nodes are already prefetched if there is a prefetch cursor
+            PrefetchNodeStore store = prefetchCount > 0 ? PrefetchNodeStore.NOOP :
+                    query.getExecutionContext().getPrefetchNodeStore();
+            cursor = Cursors.newBatchCursor(cursor, f, store, batchSize, rootState);
+        }
     }
 
     private long startTimer() {
@@ -467,7 +539,7 @@ public class SelectorImpl extends SourceImpl {
     public FilterImpl createFilter(boolean preparing) {
         FilterImpl f = new FilterImpl(this, query.getStatement(), query.getSettings());
         f.setPreparing(preparing);
-        if (joinCondition != null) {
+        if (joinCondition != null && !ignoreJoinCondition) {
             joinCondition.restrict(f);
         }
         // rep:excerpt handling: create a (fake) restriction
@@ -607,7 +679,7 @@ public class SelectorImpl extends SourceImpl {
                 return false;
             }
         }
-        if (joinCondition != null && !joinCondition.evaluate()) {
+        if (joinCondition != null && !ignoreJoinCondition && !joinCondition.evaluate()) {
             return false;
         }
         return true;
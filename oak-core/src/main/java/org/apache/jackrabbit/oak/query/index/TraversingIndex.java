@@ -21,7 +21,10 @@ package org.apache.jackrabbit.oak.query.index;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
 import org.apache.jackrabbit.oak.plugins.index.cursor.Cursors;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.QueryImpl;
 import org.apache.jackrabbit.oak.query.ast.JoinConditionImpl;
+import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.query.Filter.PathRestriction;
@@ -42,8 +45,51 @@ public class TraversingIndex implements QueryIndex {
 
     @Override
     public Cursor query(Filter filter, NodeState rootState) {
+        if (isParallel(filter)) {
+            return Cursors.newParallelTraversingCursor(filter, rootState, !isSorted(filter));
+        }
         return Cursors.newTraversingCursor(filter, rootState);
     }
+
+    /**
+     * Whether the subtree is traversed using multiple threads.
+     *
+     * @param filter the filter
+     * @return true if parallel traversal is enabled and supported
+     */
+    static boolean isParallel(Filter filter) {
+        if (!(filter.getQueryLimits() instanceof QueryEngineSettings)
+                || !((QueryEngineSettings) filter.getQueryLimits()).isParallelTraversal()) {
+            return false;
+        }
+        if (filter.containsNativeConstraint() || filter.isAlwaysFalse()
+                || filter.getPropertyRestriction(REP_FACET) != null) {
+            // handled by the traversing cursor
+            return false;
+        }
+        PathRestriction restriction = filter.getPathRestriction();
+        return restriction == PathRestriction.NO_RESTRICTION
+                || restriction == PathRestriction.ALL_CHILDREN;
+    }
+
+    /**
+     * Whether the result of the query is sorted anyway, so that the order of
+     * the traversal does not matter.
+     *
+     * @param filter the filter
+     * @return true if the query has an order by clause
+     */
+    private static boolean isSorted(Filter filter) {
+        if (!(filter instanceof FilterImpl)) {
+            return false;
+        }
+        SelectorImpl selector = ((FilterImpl) filter).getSelector();
+        if (selector == null) {
+            return false;
+        }
+        QueryImpl query = selector.getQuery();
+        return query != null && query.getOrderings() != null;
+    }
     
     public boolean isPotentiallySlow(Filter filter, NodeState rootState) {
         if (filter.getFullTextConstraint() != null) {
@@ -179,6 +225,9 @@ public class TraversingIndex implements QueryIndex {
             buff.append("    onlyDirectChildren: ").append(path);
             break;
         }
+        if (isParallel(filter)) {
+            buff.append("\n    parallel: ").append(isSorted(filter) ? "unordered" : "ordered");
+        }
         buff.append("\n").append("    estimatedEntries: ").append(getCost(filter, rootState));
         buff.append("\n");
         return buff.toString();
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.query.plan;
 
 import org.apache.jackrabbit.oak.query.ast.JoinImpl;
+import org.apache.jackrabbit.oak.query.ast.JoinStrategy;
 
 
 /**
@@ -26,12 +27,21 @@ public class JoinExecutionPlan implements ExecutionPlan {
 
     private final JoinImpl join;
     private final ExecutionPlan leftPlan, rightPlan;
+    private final SelectorExecutionPlan buildPlan;
+    private final JoinStrategy strategy;
     private final double estimatedCost;
     
     public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan, double estimatedCost) {
+        this(join, leftPlan, rightPlan, null, null, estimatedCost);
+    }
+
+    public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan,
+            SelectorExecutionPlan buildPlan, JoinStrategy strategy, double estimatedCost) {
         this.join = join;
         this.leftPlan = leftPlan;
         this.rightPlan = rightPlan;
+        this.buildPlan = buildPlan;
+        this.strategy = strategy;
         this.estimatedCost = estimatedCost;
     }
     
@@ -52,4 +62,24 @@ public class JoinExecutionPlan implements ExecutionPlan {
         return rightPlan;
     }
 
+    /**
+     * Get the plan to read the right hand side once, without the join
+     * condition, for a hash or merge join.
+     * 
+     * @return the plan, or null for a nested loop join
+     */
+    public SelectorExecutionPlan getBuildPlan() {
+        return buildPlan;
+    }
+
+    /**
+     * Get the join strategy.
+     * 
+     * @return the strategy, or null if it was not chosen based on the cost
+     *         (in which case a nested loop join is used)
+     */
+    public JoinStrategy getStrategy() {
+        return strategy;
+    }
+
 }
@@ -41,9 +41,18 @@ public interface QueryStatsMBean {
     @Description("Get all data as Json.")
     String asJson();
    
-    @Description("Reset the statistics (clear the list of queries).")
+    @Description("Reset the statistics (clear the list of queries, and the plan cache statistics).")
     void resetStats();
 
+    @Description("The number of queries that used a cached query plan.")
+    long getPlanCacheHits();
+
+    @Description("The number of queries that were not found in the query plan cache.")
+    long getPlanCacheMisses();
+
+    @Description("The ratio of query plan cache hits to lookups.")
+    double getPlanCacheHitRate();
+
     /**
      * Whether to capture a thread dump in addition to the thread name.
      * No thread name / thread dump is captures for internal queries.
@@ -95,6 +95,22 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
     @Override
     public void resetStats() {
         statistics.clear();
+        settings.getQueryPlanCache().resetStats();
+    }
+
+    @Override
+    public long getPlanCacheHits() {
+        return settings.getQueryPlanCache().getHits();
+    }
+
+    @Override
+    public long getPlanCacheMisses() {
+        return settings.getQueryPlanCache().getMisses();
+    }
+
+    @Override
+    public double getPlanCacheHitRate() {
+        return settings.getQueryPlanCache().getHitRate();
     }
     
     @Override
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.ast.Operator;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
+import org.junit.Test;
+
+public class BatchCursorTest {
+
+    private final NodeState rootState = createTree();
+
+    @Test
+    public void skipRows() {
+        FilterImpl f = new FilterImpl(null, null, new QueryEngineSettings());
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newLong(1L));
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            paths.add("/test/n" + i);
+        }
+        // the type is different, and does not exist
+        paths.addAll(Arrays.asList("/test/s", "/test/m", "/test/none", "/test/missing"));
+        BatchCursor c = new BatchCursor(new TestCursor(paths.iterator()), f,
+                PrefetchNodeStore.NOOP, 3, rootState);
+        assertEquals("/test/n1, /test/n3, /test/n5, /test/n7, /test/n9, " +
+                "/test/s, /test/m, /test/missing", CursorUtils.toString(c));
+    }
+
+    @Test
+    public void existence() {
+        FilterImpl f = new FilterImpl(null, null, new QueryEngineSettings());
+        f.restrictProperty("x", Operator.NOT_EQUAL, null);
+        // relative properties are not checked
+        f.restrictProperty("a/x", Operator.EQUAL, PropertyValues.newLong(1L));
+        List<String> paths = Arrays.asList("/", "/test", "/test/n0", "/test/none");
+        BatchCursor c = new BatchCursor(new TestCursor(paths.iterator()), f,
+                PrefetchNodeStore.NOOP, 10, rootState);
+        assertEquals("/test/n0", CursorUtils.toString(c));
+    }
+
+    @Test
+    public void prefetch() {
+        FilterImpl f = new FilterImpl(null, null, new QueryEngineSettings());
+        TestPrefetchNodeStore ns = new TestPrefetchNodeStore();
+        List<String> paths = Arrays.asList("/test/n0", "/test/n1", "/test/n2");
+        BatchCursor c = new BatchCursor(new TestCursor(paths.iterator()), f,
+                ns, 2, rootState);
+        assertTrue(c.hasNext());
+        assertEquals("[/test, /test/n0, /test/n1]", ns.toString());
+        ns.reset();
+        c.next();
+        c.next();
+        assertTrue(c.hasNext());
+        assertEquals("[/test, /test/n2]", ns.toString());
+        c.next();
+        assertFalse(c.hasNext());
+    }
+
+    @Test
+    public void virtualRows() {
+        FilterImpl f = new FilterImpl(null, null, new QueryEngineSettings());
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newLong(5L));
+        TestPrefetchNodeStore ns = new TestPrefetchNodeStore();
+        BatchCursor c = new BatchCursor(new TestCursorVirtual(Arrays.asList("/test/n0").iterator()),
+                f, ns, 10, rootState);
+        assertEquals("/test/n0", CursorUtils.toString(c));
+        assertEquals("[]", ns.toString());
+    }
+
+    private static NodeState createTree() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder test = builder.child("test");
+        for (int i = 0; i < 10; i++) {
+            test.child("n" + i).setProperty("x", (long) (i % 2));
+        }
+        test.child("s").setProperty("x", "1");
+        test.child("m").setProperty("x", Arrays.asList(0L, 1L), Type.LONGS);
+        test.child("none");
+        return builder.getNodeState();
+    }
+
+}
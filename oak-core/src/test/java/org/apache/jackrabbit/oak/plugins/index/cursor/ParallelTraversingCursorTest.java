@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.ast.Operator;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.query.Filter.PathRestriction;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelTraversingCursorTest {
+
+    private static final int PARTITIONS = 4;
+
+    private static final int PARTITION_SIZE = 5000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+
+    private final NodeState rootState = createTree();
+
+    @After
+    public void after() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void batchesBoundedByNodesRead() {
+        FilterImpl f = new FilterImpl(null, null, new QueryEngineSettings());
+        f.restrictPath("/content", PathRestriction.ALL_CHILDREN);
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newString("1"));
+        ParallelTraversingCursor c = new ParallelTraversingCursor(f, rootState, true, pool);
+
+        // the only match is the first node of the first partition, the
+        // consumer stops there
+        assertTrue(c.hasNext());
+        assertEquals("/content/a0", c.next().getPath());
+        assertTrue(pool.awaitQuiescence(1, TimeUnit.MINUTES));
+
+        // the first batch, its successor and the batch of the next partition
+        // (a window of two with one thread), plus the start node
+        long read = c.getReadCount();
+        assertTrue("read: " + read, read <= 3 * ParallelTraversingCursor.BATCH_SIZE + 1);
+    }
+
+    @Test
+    public void exhausted() {
+        FilterImpl f = new FilterImpl(null, null, new QueryEngineSettings());
+        f.restrictPath("/content", PathRestriction.ALL_CHILDREN);
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newString("1"));
+        ParallelTraversingCursor c = new ParallelTraversingCursor(f, rootState, false, pool);
+
+        assertEquals("/content/a0", CursorUtils.toString(c));
+        assertFalse(c.hasNext());
+        assertEquals(1 + PARTITIONS * (PARTITION_SIZE + 1), c.getReadCount());
+    }
+
+    private static NodeState createTree() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder content = builder.child("content");
+        for (int i = 0; i < PARTITIONS; i++) {
+            NodeBuilder a = content.child("a" + i);
+            // the first node of the partition
+            a.setProperty("x", i == 0 ? "1" : "0");
+            for (int j = 0; j < PARTITION_SIZE; j++) {
+                a.child("n" + j).setProperty("x", "0");
+            }
+        }
+        return builder.getNodeState();
+    }
+
+}
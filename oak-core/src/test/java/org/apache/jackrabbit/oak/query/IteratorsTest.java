@@ -21,14 +21,21 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.jackrabbit.oak.query.FilterIterators.RowCodec;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 /**
@@ -193,6 +200,106 @@ public class IteratorsTest {
 
 }
 
+    @Test
+    public void sortTopN() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(10);
+        // keeps 5 entries only, so the limit in memory is not reached
+        assertEquals("0, 1, 2, 3, 4", toString(FilterIterators.newSort(
+                range(1000, 7), INT_COMP, 5, small)));
+        try {
+            toString(FilterIterators.newSort(range(1000, 7), INT_COMP, 50, small));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void sortStable() {
+        // compare by tens only, entries with the same tens keep their order
+        Comparator<Integer> tens = Comparator.comparing(x -> x / 10);
+        assertEquals("3, 1, 2, 15, 12", toString(FilterIterators.newSort(
+                it(15, 3, 12, 1, 2, 31, 25), tens, 5, settings)));
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(2);
+        assertEquals("3, 1, 2, 15, 12, 25, 31", toString(FilterIterators.newSort(
+                it(15, 3, 12, 1, 2, 31, 25), tens, Integer.MAX_VALUE, small, INT_CODEC)));
+    }
+
+    @Test
+    public void sortSpill() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(10);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected.toString(), "[" + toString(FilterIterators.newSort(
+                range(1000, 7), INT_COMP, Integer.MAX_VALUE, small, INT_CODEC)) + "]");
+        // more entries to keep than the limit in memory
+        assertEquals(expected.subList(0, 50).toString(), "[" + toString(FilterIterators.newSort(
+                range(1000, 7), INT_COMP, 50, small, INT_CODEC)) + "]");
+    }
+
+    @Test
+    public void distinctSpill() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(10);
+        Random r = new Random(1);
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(r.nextInt(300));
+        }
+        String expected = new LinkedHashSet<>(list).toString();
+        assertEquals(expected, "[" + toString(FilterIterators.newDistinct(
+                list.iterator(), small, INT_CODEC)) + "]");
+        try {
+            toString(FilterIterators.newDistinct(list.iterator(), small));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void combinedSpill() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(2);
+        assertEquals("2, 3", 
+                toString(FilterIterators.newCombinedFilter(
+                it(3, 3, 2, 1, 4, 4, 2), true, 2, 1, INT_COMP, small, INT_CODEC)));
+        assertEquals("1, 2, 3, 4", 
+                toString(FilterIterators.newCombinedFilter(
+                it(3, 3, 2, 1, 4, 4, 2), true, Long.MAX_VALUE, 0, INT_COMP, small, INT_CODEC)));
+    }
+
+    private static final RowCodec<Integer> INT_CODEC = new RowCodec<Integer>() {
+
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull Integer row) throws IOException {
+            out.writeInt(row);
+        }
+
+        @NotNull
+        @Override
+        public Integer read(@NotNull DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /**
+     * The numbers from 0 to count - 1, in a shuffled order.
+     */
+    private static Iterator<Integer> range(int count, long seed) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(i);
+        }
+        Collections.shuffle(list, new Random(seed));
+        return list.iterator();
+    }
+
     private static <K> Iterator<K> it(K... x) {
         return Collections.unmodifiableCollection(List.of(x)).iterator();
     }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the query plan cache.
+ */
+public class QueryPlanCacheTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        Whiteboard whiteboard = new DefaultWhiteboard();
+        whiteboard.register(QueryEngineSettings.class, settings, Collections.emptyMap());
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(whiteboard)
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 10; i++) {
+            test.addChild("n" + i).setProperty("x", (long) (i % 3));
+        }
+        root.commit();
+        settings.setQueryPlanCacheSize(10);
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals("select * from [nt:base] where [x] = 'a  b'",
+                QueryPlanCache.normalize("  select *\n\tfrom [nt:base]  where [x] = 'a  b' "));
+        assertEquals("where [x] = 'it''s  ok' and [y] = \"a  b\"",
+                QueryPlanCache.normalize("where  [x] = 'it''s  ok'  and [y] = \"a  b\""));
+    }
+
+    @Test
+    public void key() {
+        String a = QueryPlanCache.getKey("select * from [nt:base]", SQL2,
+                Collections.emptyMap(), Collections.emptyMap(), true,
+                QueryEngineImpl.QuerySelectionMode.CHEAPEST, settings);
+        String b = QueryPlanCache.getKey("select *  from [nt:base]", SQL2,
+                Collections.emptyMap(), Collections.emptyMap(), true,
+                QueryEngineImpl.QuerySelectionMode.CHEAPEST, settings);
+        assertEquals(a, b);
+        b = QueryPlanCache.getKey("select * from [nt:base]", SQL2,
+                Collections.emptyMap(), Collections.emptyMap(), false,
+                QueryEngineImpl.QuerySelectionMode.CHEAPEST, settings);
+        assertNotEquals(a, b);
+        b = QueryPlanCache.getKey("select * from [nt:base]", SQL2,
+                Collections.emptyMap(), Collections.singletonMap("p", "http://x"), true,
+                QueryEngineImpl.QuerySelectionMode.CHEAPEST, settings);
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void sameResult() {
+        String query = "select [jcr:path] from [nt:base] " +
+                "where isdescendantnode('/test') and [x] = 1";
+        List<String> expected = executeQuery(query, SQL2);
+        assertEquals(3, expected.size());
+        QueryPlanCache cache = settings.getQueryPlanCache();
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.size());
+        assertEquals(expected, executeQuery(query, SQL2));
+        assertEquals(expected, executeQuery(query.replace(" where", "\n where"), SQL2));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        String plan = executeQuery("explain " + query, SQL2).get(0);
+        assertEquals(plan, executeQuery("explain " + query, SQL2).get(0));
+    }
+
+    @Test
+    public void xpath() {
+        String query = "/jcr:root/test//*[@x = 1 or @x = 2]";
+        List<String> expected = executeQuery(query, XPATH);
+        assertEquals(6, expected.size());
+        assertEquals(expected, executeQuery(query, XPATH));
+        assertEquals(1, settings.getQueryPlanCache().getHits());
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        String query = "select [jcr:path] from [nt:base] where [x] = 2";
+        List<String> expected = executeQuery(query, SQL2);
+        QueryPlanCache cache = settings.getQueryPlanCache();
+        assertEquals(1, cache.size());
+
+        createTestIndexNode("other-index", root.getTree("/"), "unknown");
+        root.commit();
+        assertEquals(expected, executeQuery(query, SQL2));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        settings.setQueryPlanCacheSize(0);
+        assertFalse(cache.isEnabled());
+        assertEquals(expected, executeQuery(query, SQL2));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void fingerprintReused() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        long fingerprint = cache.getIndexDefinitionsFingerprint(createRoot("a", "test"));
+        assertEquals(1, cache.getFingerprintComputations());
+
+        // a new root with equal index definitions
+        NodeBuilder builder = createRoot("a", "test").builder();
+        builder.child("content").setProperty("x", 1L);
+        assertEquals(fingerprint, cache.getIndexDefinitionsFingerprint(builder.getNodeState()));
+        assertEquals(1, cache.getFingerprintComputations());
+
+        assertNotEquals(fingerprint, cache.getIndexDefinitionsFingerprint(createRoot("a", "other")));
+        assertEquals(2, cache.getFingerprintComputations());
+    }
+
+    private static NodeState createRoot(String indexName, String type) {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child(INDEX_DEFINITIONS_NAME).child(indexName).setProperty("type", type);
+        return builder.getNodeState();
+    }
+
+    @Test
+    public void sameIndexes() {
+        QueryPlanCache.IndexHint a = new QueryPlanCache.IndexHint("x", "p", false, false, 1);
+        QueryPlanCache.IndexHint b = new QueryPlanCache.IndexHint("x", "p", false, false, 100);
+        QueryPlanCache.IndexHint c = new QueryPlanCache.IndexHint("x", "q", false, false, 1);
+        assertTrue(QueryPlanCache.sameIndexes(
+                Collections.singletonList(a), Collections.singletonList(b)));
+        assertFalse(QueryPlanCache.sameIndexes(
+                Collections.singletonList(a), Collections.singletonList(c)));
+        assertFalse(QueryPlanCache.sameIndexes(
+                Collections.singletonList(a), Collections.singletonList(null)));
+    }
+
+}
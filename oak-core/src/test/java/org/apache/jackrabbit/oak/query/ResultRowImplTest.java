@@ -19,14 +19,29 @@ package org.apache.jackrabbit.oak.query;
 
 import org.apache.jackrabbit.guava.common.collect.Maps;
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.query.FilterIterators.RowCodec;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newDate;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newDecimal;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newDouble;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newLong;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newName;
 import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newString;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -53,4 +68,34 @@ public class ResultRowImplTest {
         assertEquals("origVal", mappedVals[0].getValue(Type.STRING));
         assertEquals("val1", mappedVals[1].getValue(Type.STRING));
     }
+
+    @Test
+    public void codecRoundTrip() throws Exception {
+        Query query = mock(Query.class);
+        Tree tree = mock(Tree.class);
+        when(tree.getPath()).thenReturn("/content/a");
+        when(query.getTree("/content/a")).thenReturn(tree);
+        when(query.getSelectorIndex("s")).thenReturn(0);
+
+        PropertyValue[] values = new PropertyValue[]{
+                newString("x"), null, newLong(42L), newDouble(0.1),
+                newDecimal(new BigDecimal("1.50")), newDate("2024-01-02T03:04:05.006Z"),
+                newName(List.of("a", "b"))};
+        PropertyValue[] orderValues = new PropertyValue[]{newLong(-1L)};
+        ResultRowImpl row = new ResultRowImpl(query, new Tree[]{tree, null}, values,
+                new boolean[]{true, false, true, true, true, true, true}, orderValues);
+
+        RowCodec<ResultRowImpl> codec = ResultRowImpl.newCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(out), row);
+        ResultRowImpl read = codec.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(row, read);
+        assertEquals(row.hashCode(), read.hashCode());
+        assertSame(tree, read.getTree("s"));
+        assertArrayEquals(values, read.getValues());
+        assertArrayEquals(orderValues, read.getOrderValues());
+        assertEquals(Type.NAMES, read.getValues()[6].getType());
+        assertNull(read.getValues()[1]);
+    }
 }
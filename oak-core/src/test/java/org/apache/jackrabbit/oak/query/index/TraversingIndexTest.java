@@ -22,6 +22,8 @@ import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE
 import static org.apache.jackrabbit.oak.spi.query.QueryConstants.REP_FACET;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -30,8 +32,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.jackrabbit.oak.plugins.index.cursor.Cursors;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.RuntimeNodeTraversalException;
+import org.apache.jackrabbit.oak.query.ast.Operator;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PathRestriction;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Assert;
@@ -84,6 +92,90 @@ public class TraversingIndexTest {
         assertFalse(c.hasNext());
     }
 
+    @Test
+    public void parallelTraverse() throws Exception {
+        NodeState root = createTree();
+        QueryEngineSettings settings = new QueryEngineSettings();
+        FilterImpl f = new FilterImpl(null, null, settings);
+        f.restrictPath("/content", PathRestriction.ALL_CHILDREN);
+        TraversingIndex t = new TraversingIndex();
+        List<String> expected = getPaths(t.query(f, root));
+        assertEquals(1 + 20 + 20 * 20 + 20 * 20 * 5, expected.size());
+        assertFalse(expected.contains("/content/:hidden"));
+
+        settings.setParallelTraversal(true);
+        assertTrue(t.getPlan(f, root).contains("parallel: ordered"));
+        assertEquals(expected, getPaths(t.query(f, root)));
+
+        List<String> unordered = getPaths(Cursors.newParallelTraversingCursor(f, root, false));
+        Collections.sort(expected);
+        Collections.sort(unordered);
+        assertEquals(expected, unordered);
+    }
+
+    @Test
+    public void parallelTraverseWithRestriction() throws Exception {
+        NodeState root = createTree();
+        QueryEngineSettings settings = new QueryEngineSettings();
+        settings.setParallelTraversal(true);
+        FilterImpl f = new FilterImpl(null, null, settings);
+        f.restrictPath("/content", PathRestriction.ALL_CHILDREN);
+        TraversingIndex t = new TraversingIndex();
+
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newString("3"));
+        List<String> paths = getPaths(t.query(f, root));
+        assertEquals(20 * 20, paths.size());
+        assertTrue(paths.contains("/content/a0/b0/c3"));
+
+        // a different type is not compared by the cursor
+        f = new FilterImpl(null, null, settings);
+        f.restrictPath("/content", PathRestriction.ALL_CHILDREN);
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newLong(3L));
+        assertEquals(20 * 20 * 5, getPaths(t.query(f, root)).size());
+    }
+
+    @Test
+    public void parallelTraverseReadLimit() throws Exception {
+        NodeState root = createTree();
+        QueryEngineSettings settings = new QueryEngineSettings();
+        settings.setParallelTraversal(true);
+        settings.setLimitReads(1000);
+        FilterImpl f = new FilterImpl(null, null, settings);
+        f.restrictPath("/content", PathRestriction.ALL_CHILDREN);
+        Cursor c = new TraversingIndex().query(f, root);
+        try {
+            getPaths(c);
+            fail();
+        } catch (RuntimeNodeTraversalException e) {
+            // expected
+        }
+        assertFalse(c.hasNext());
+    }
+
+    private static NodeState createTree() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder content = builder.child("content");
+        content.child(":hidden").child("x");
+        for (int i = 0; i < 20; i++) {
+            NodeBuilder a = content.child("a" + i);
+            for (int j = 0; j < 20; j++) {
+                NodeBuilder b = a.child("b" + j);
+                for (int k = 0; k < 5; k++) {
+                    b.child("c" + k).setProperty("x", String.valueOf(k));
+                }
+            }
+        }
+        return builder.getNodeState();
+    }
+
+    private static List<String> getPaths(Cursor c) {
+        List<String> paths = new ArrayList<String>();
+        while (c.hasNext()) {
+            paths.add(c.next().getPath());
+        }
+        return paths;
+    }
+
     @Test
     public void testFacets() {
         TraversingIndex traversingIndex = new TraversingIndex();
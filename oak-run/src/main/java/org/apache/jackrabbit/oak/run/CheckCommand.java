@@ -69,6 +69,10 @@ class CheckCommand implements Command {
                 .withOptionalArg()
                 .ofType(Boolean.class)
                 .defaultsTo(false);
+        OptionSpec<Integer> nThreads = parser.accepts("threads", "number of threads used to traverse the content (default: 1)")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
         OptionSpec<String> persistentCachePath = parser.accepts("persistent-cache-path", "Path/URI to persistent cache where " +
                         "resulting segments will be written")
                 .withRequiredArg()
@@ -100,7 +104,8 @@ class CheckCommand implements Command {
                     .withIOStatistics(options.has(ioStatistics))
                     .withOutWriter(new PrintWriter(System.out, true))
                     .withErrWriter(new PrintWriter(System.err, true))
-                    .withFailFast(failFast.value(options));
+                    .withFailFast(failFast.value(options))
+                    .withConcurrency(nThreads.value(options));
 
             if (options.has(last)) {
                 builder.withRevisionsCount(options.valueOf(last) != null ? last.value(options) : 1);
@@ -124,7 +129,8 @@ class CheckCommand implements Command {
                     .withIOStatistics(options.has(ioStatistics))
                     .withOutWriter(new PrintWriter(System.out, true))
                     .withErrWriter(new PrintWriter(System.err, true))
-                    .withFailFast(failFast.value(options));
+                    .withFailFast(failFast.value(options))
+                    .withConcurrency(nThreads.value(options));
 
             if (options.has(journal)) {
                 builder.withJournal(new File(journal.value(options)));
@@ -25,6 +25,7 @@ import org.apache.jackrabbit.oak.run.commons.Command;
 import org.apache.jackrabbit.oak.segment.azure.tool.AzureCompact;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.CompactorType;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.NodeDeduplicationCacheType;
 import org.apache.jackrabbit.oak.segment.aws.tool.AwsCompact;
 import org.apache.jackrabbit.oak.segment.tool.Compact;
 
@@ -58,6 +59,12 @@ class CompactCommand implements Command {
                         "by the \"diff\" compactor which compacts the checkpoints on top of each other and \"parallel\" compactor, which splits " +
                         "the repository into smaller parts and compacts them concurrently. If not specified, \"parallel\" compactor is used.")
                 .withRequiredArg().ofType(String.class);
+        OptionSpec<String> nodeCache = parser.accepts("node-cache",
+                "Allow the user to control the type of the cache used for deduplicating nodes. Valid choices are " +
+                        "\"priority\" and \"lock-free\". If not specified, \"priority\" cache is used. The \"lock-free\" " +
+                        "cache is experimental. " +
+                        "This is only applicable to TAR segment stores.")
+                .withRequiredArg().ofType(String.class);
         OptionSpec<Integer> nThreads = parser.accepts("threads", "Specify the number of threads used" +
                 "for compaction. This is only applicable to the \"parallel\" compactor. Defaults to 1.")
                 .withRequiredArg()
@@ -168,6 +175,9 @@ class CompactCommand implements Command {
             if (options.has(compactor)) {
                 tarBuilder.withCompactorType(CompactorType.fromDescription(compactor.value(options)));
             }
+            if (options.has(nodeCache)) {
+                tarBuilder.withNodeDeduplicationCacheType(NodeDeduplicationCacheType.fromDescription(nodeCache.value(options)));
+            }
 
             code = tarBuilder.build().run();
         }
@@ -29,6 +29,7 @@ import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentNodeStoreBu
 import org.apache.jackrabbit.oak.run.commons.Command;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.FormatVersion;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDataSourceFactory;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
@@ -40,11 +41,12 @@ import joptsimple.OptionSpec;
 
 import static com.mongodb.MongoURI.MONGODB_PREFIX;
 import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore.OPT_IN_VERSION;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore.VERSION;
 
 /**
  * Unlocks the DocumentStore for an upgrade to the current DocumentNodeStore
- * version.
+ * version, or to the version that has to be enabled explicitly.
  */
 class UnlockUpgradeCommand implements Command {
 
@@ -54,6 +56,9 @@ class UnlockUpgradeCommand implements Command {
         // RDB specific options
         OptionSpec<String> rdbjdbcuser = parser.accepts("rdbjdbcuser", "RDB JDBC user").withOptionalArg().defaultsTo("");
         OptionSpec<String> rdbjdbcpasswd = parser.accepts("rdbjdbcpasswd", "RDB JDBC password").withOptionalArg().defaultsTo("");
+        OptionSpec<String> formatVersion = parser.accepts("formatVersion", "format version to upgrade to, either "
+                + VERSION + " or " + OPT_IN_VERSION + " (enables the compact RDB document encoding)")
+                .withRequiredArg().defaultsTo(VERSION.toString());
 
         OptionSpec<String> nonOption = parser.nonOptions("unlockUpgrade {<jdbc-uri> | <mongodb-uri>}");
         OptionSpec help = parser.acceptsAll(asList("h", "?", "help"), "show help").forHelp();
@@ -71,6 +76,12 @@ class UnlockUpgradeCommand implements Command {
             return;
         }
 
+        FormatVersion version = FormatVersion.valueOf(formatVersion.value(options));
+        if (!version.equals(VERSION) && !version.equals(OPT_IN_VERSION)) {
+            System.err.println("Unsupported format version: " + version);
+            return;
+        }
+
         DocumentStore store = null;
         try {
             String uri = nonOptions.get(0);
@@ -92,8 +103,8 @@ class UnlockUpgradeCommand implements Command {
                 System.err.println("Unrecognized URI: " + uri);
             }
 
-            if (store != null && VERSION.writeTo(store)) {
-                System.out.println("Format version set to " + VERSION);
+            if (store != null && version.writeTo(store)) {
+                System.out.println("Format version set to " + version);
             }
         } catch (DocumentStoreException e) {
             System.err.println(e.getMessage());
@@ -80,6 +80,8 @@ public class AzureCheck {
 
         private boolean failFast;
 
+        private int concurrency = 1;
+
         private String persistentCachePath;
 
         private Integer persistentCacheSizeGb;
@@ -251,6 +253,21 @@ public class AzureCheck {
             return this;
         }
 
+        /**
+         * The number of threads used to traverse the content. With more
+         * than one thread, subtrees already found consistent in a previous
+         * revision aren't checked again. This parameter is not required and
+         * defaults to {@code 1}.
+         *
+         * @param concurrency the number of threads. It must be positive.
+         * @return this builder.
+         */
+        public Builder withConcurrency(int concurrency) {
+            checkArgument(concurrency > 0);
+            this.concurrency = concurrency;
+            return this;
+        }
+
         /**
          * The path where segments in the persistent cache will be stored.
          *
@@ -343,6 +360,8 @@ public class AzureCheck {
 
     private final boolean failFast;
 
+    private final int concurrency;
+
     private final String persistentCachePath;
 
     private final Integer persistentCacheSizeGb;
@@ -364,6 +383,7 @@ public class AzureCheck {
         this.journal = builder.journal;
         this.revisionsCount = revisionsToCheckCount(builder.revisionsCount);
         this.failFast = builder.failFast;
+        this.concurrency = builder.concurrency;
         this.persistentCachePath = builder.persistentCachePath;
         this.persistentCacheSizeGb = builder.persistentCacheSizeGb;
         this.cloudBlobDirectory = builder.cloudBlobDirectory;
@@ -400,6 +420,7 @@ public class AzureCheck {
                 .withCheckHead(checkHead)
                 .withDebugInterval(debugInterval)
                 .withFailFast(failFast)
+                .withConcurrency(concurrency)
                 .withFilterPaths(filterPaths)
                 .withRevisionsCount(revisionsCount)
                 .withErrWriter(err)
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static java.util.concurrent.Executors.defaultThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
+import org.apache.jackrabbit.guava.common.cache.RemovalNotification;
+import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * A cache for the LZ4 compressed content of data segments evicted from the
+ * {@link SegmentCache}. The compressed content is kept in direct memory and
+ * thus does not add to the heap pressure caused by the segment cache.
+ * <p>
+ * Conceptually this cache serves as a 3rd level cache for segments, between
+ * the {@code SegmentCache} and the tar files. It is exclusive: a segment read
+ * from this cache is removed from it and will only be added again once it is
+ * evicted from the {@code SegmentCache} again.
+ * <p>
+ * The direct memory used by this cache is bounded by its maximum weight, but
+ * is also subject to the {@code -XX:MaxDirectMemorySize} limit of the JVM.
+ * <p>
+ * Segments are evicted from the {@code SegmentCache} on the threads reading
+ * segments. To keep the compression off these threads, segments are
+ * compressed on a background thread. Compressing is best effort: segments
+ * exceeding the capacity of its work queue are not cached. A segment that is
+ * read again before it has been compressed is read from the tar files.
+ * Segments that were evicted before the cache was {@link #clear() cleared}
+ * are not added once they are compressed.
+ */
+public abstract class CompressedSegmentCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedSegmentCache.class);
+
+    private static final String NAME = "Compressed Segment Cache";
+
+    /**
+     * Maximum number of evicted segments waiting to be compressed
+     */
+    private static final int QUEUE_SIZE = 64;
+
+    /**
+     * Create a new compressed segment cache of the given size. Returns an
+     * always empty cache for {@code cacheSizeMB <= 0}.
+     *
+     * @param cacheSizeMB size of the cache in megabytes.
+     */
+    @NotNull
+    public static CompressedSegmentCache newCompressedSegmentCache(long cacheSizeMB) {
+        if (cacheSizeMB > 0) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE), new CompressorThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            return new NonEmptyCache(cacheSizeMB, executor);
+        } else {
+            return new EmptyCache();
+        }
+    }
+
+    /**
+     * Create a new compressed segment cache of the given size, which compresses
+     * segments with the given executor (used for testing).
+     *
+     * @param cacheSizeMB size of the cache in megabytes.
+     * @param executor    executor compressing the segments.
+     */
+    @NotNull
+    static CompressedSegmentCache newCompressedSegmentCache(long cacheSizeMB, @NotNull Executor executor) {
+        if (cacheSizeMB > 0) {
+            return new NonEmptyCache(cacheSizeMB, executor);
+        } else {
+            return new EmptyCache();
+        }
+    }
+
+    /**
+     * Add the compressed content of a segment to this cache. Bulk segments are
+     * ignored. The segment is compressed asynchronously, this method never
+     * blocks.
+     *
+     * @param segment the segment to cache
+     */
+    public abstract void putSegment(@NotNull Segment segment);
+
+    /**
+     * Retrieve and remove the content of a segment from this cache.
+     *
+     * @param id the id of the segment
+     * @return the uncompressed content of the segment or {@code null} if the
+     * segment is not in this cache.
+     */
+    @Nullable
+    public abstract Buffer getSegment(@NotNull SegmentId id);
+
+    /**
+     * Clear all segments from this cache
+     */
+    public abstract void clear();
+
+    /**
+     * See the class comment regarding some peculiarities of this cache's
+     * statistics
+     *
+     * @return statistics for this cache.
+     */
+    @NotNull
+    public abstract AbstractCacheStats getCacheStats();
+
+    /**
+     * The actual cache implementation. Each entry is a direct buffer holding
+     * the length of the uncompressed segment followed by its LZ4 compressed
+     * content.
+     */
+    private static class NonEmptyCache extends CompressedSegmentCache {
+
+        @NotNull
+        private final Cache<UUID, ByteBuffer> cache;
+
+        @NotNull
+        private final SegmentCache.Stats stats;
+
+        @NotNull
+        private final LZ4Compressor compressor;
+
+        @NotNull
+        private final LZ4FastDecompressor decompressor;
+
+        @NotNull
+        private final Executor executor;
+
+        /**
+         * Incremented by {@link #clear()}. Segments evicted in an earlier
+         * generation are not added to the cache.
+         */
+        private final AtomicLong generation = new AtomicLong();
+
+        /**
+         * Create a new cache of the given size.
+         *
+         * @param cacheSizeMB size of the cache in megabytes.
+         * @param executor    executor compressing the segments.
+         */
+        private NonEmptyCache(long cacheSizeMB, @NotNull Executor executor) {
+            this.executor = executor;
+            long maximumWeight = cacheSizeMB * 1024 * 1024;
+            this.cache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(16)
+                    .maximumWeight(maximumWeight)
+                    .<UUID, ByteBuffer>weigher((id, buffer) -> buffer.capacity())
+                    .removalListener(this::onRemove)
+                    .build();
+            this.stats = new SegmentCache.Stats(NAME, maximumWeight, cache::size);
+            LZ4Factory factory = LZ4Factory.fastestInstance();
+            this.compressor = factory.fastCompressor();
+            this.decompressor = factory.fastDecompressor();
+        }
+
+        @Override
+        public void putSegment(@NotNull Segment segment) {
+            SegmentId id = segment.getSegmentId();
+            if (!id.isDataSegmentId()) {
+                return;
+            }
+
+            long g = generation.get();
+            try {
+                executor.execute(() -> compress(segment, g));
+            } catch (RejectedExecutionException e) {
+                // The queue is full: don't cache the segment
+                LOG.debug("Skipping compression of evicted segment {}", id);
+            }
+        }
+
+        private void compress(@NotNull Segment segment, long g) {
+            SegmentId id = segment.getSegmentId();
+            if (generation.get() != g) {
+                return;
+            }
+            try {
+                ByteArrayOutputStream stream = new ByteArrayOutputStream(segment.size());
+                segment.writeTo(stream);
+                byte[] data = stream.toByteArray();
+
+                byte[] compressed = new byte[compressor.maxCompressedLength(data.length)];
+                int length = compressor.compress(data, 0, data.length, compressed, 0);
+
+                ByteBuffer buffer = ByteBuffer.allocateDirect(4 + length);
+                buffer.putInt(data.length);
+                buffer.put(compressed, 0, length);
+                buffer.flip();
+
+                // Account for the weight first, as the put may evict entries
+                // (including this one) and the removal listener subtracts
+                // their weight
+                stats.currentWeight.addAndGet(buffer.capacity());
+                cache.put(id.asUUID(), buffer);
+                if (generation.get() != g) {
+                    // cleared while compressing: remove the entry again, in
+                    // case it was added after the cache was invalidated
+                    cache.asMap().remove(id.asUUID(), buffer);
+                }
+            } catch (IOException | OutOfMemoryError e) {
+                // Running out of direct memory must not fail the eviction
+                // from the segment cache: just don't cache the segment
+                LOG.debug("Unable to cache compressed segment {}", id, e);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Buffer getSegment(@NotNull SegmentId id) {
+            ByteBuffer buffer = cache.asMap().remove(id.asUUID());
+            if (buffer == null) {
+                stats.missCount.incrementAndGet();
+                return null;
+            }
+
+            long t0 = System.nanoTime();
+            ByteBuffer source = buffer.duplicate();
+            byte[] data = new byte[source.getInt()];
+            decompressor.decompress(source, source.position(), data, 0, data.length);
+            stats.loadTime.addAndGet(System.nanoTime() - t0);
+            stats.loadSuccessCount.incrementAndGet();
+            stats.hitCount.incrementAndGet();
+            return Buffer.wrap(data);
+        }
+
+        private void onRemove(@NotNull RemovalNotification<UUID, ByteBuffer> notification) {
+            ByteBuffer buffer = notification.getValue();
+            if (buffer != null) {
+                stats.currentWeight.addAndGet(-buffer.capacity());
+            }
+            if (notification.wasEvicted()) {
+                stats.evictionCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void clear() {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        }
+
+        @NotNull
+        @Override
+        public AbstractCacheStats getCacheStats() {
+            return stats;
+        }
+    }
+
+    private static class CompressorThreadFactory implements ThreadFactory {
+        private final ThreadFactory threadFactory = defaultThreadFactory();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName("compressed-segment-cache");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /** An always empty cache */
+    private static class EmptyCache extends CompressedSegmentCache {
+        private final SegmentCache.Stats stats = new SegmentCache.Stats(NAME, 0, () -> 0L);
+
+        @Override
+        public void putSegment(@NotNull Segment segment) {}
+
+        @Nullable
+        @Override
+        public Buffer getSegment(@NotNull SegmentId id) {
+            return null;
+        }
+
+        @Override
+        public void clear() {}
+
+        @NotNull
+        @Override
+        public AbstractCacheStats getCacheStats() {
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lock-free hash table of weak references to segment identifiers.
+ * <p>
+ * Like {@link SegmentIdTable} this is an open addressing table with linear
+ * probing indexed by the random bits of the least significant bits of the
+ * segment id. Unlike {@code SegmentIdTable} it does not take a monitor:
+ * slots are only ever filled by compare-and-set, so concurrent threads
+ * creating the same segment id always end up with the same instance, and
+ * resolving an already tracked segment id is a plain sequence of volatile
+ * reads.
+ * <p>
+ * Slots are never emptied while a table is in use. A slot whose referent
+ * has been garbage collected is reused for the same msb/lsb pair. Cleared
+ * slots of other segment ids are dropped when the table is transferred to a
+ * successor, which starts once the number of used slots exceeds 75% of the
+ * table size. The transfer is incremental: the slots are moved in chunks,
+ * and each thread that adds a segment id while a transfer is running moves
+ * one chunk and the probe sequence of its own segment id before adding the
+ * id to the successor. Lookups of tracked segment ids keep using the old
+ * table. The successor replaces the old table once the last chunk has been
+ * moved.
+ */
+public class ConcurrentSegmentIdTable {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * The number of slots moved to the successor table at a time.
+     */
+    private static final int TRANSFER_CHUNK_SIZE = 64;
+
+    /**
+     * The number of slots inspected to decide whether the successor table
+     * needs to be larger.
+     */
+    private static final int SAMPLE_SIZE = 256;
+
+    /**
+     * The current table. While it is transferred to a successor, the
+     * successor is linked from the table.
+     */
+    private volatile Table table = new Table(INITIAL_SIZE);
+
+    /**
+     * The number of completed transfers (for diagnostics and testing).
+     */
+    private final AtomicInteger rebuildCount = new AtomicInteger();
+
+    /**
+     * Get the segment id, and reference it in the weak references map. If the
+     * pair of MSB/LSB is not tracked by this table, a new instance of {@link
+     * SegmentId} is created using the provided {@link SegmentIdFactory} and
+     * tracked by this table.
+     *
+     * @param msb   The most significant bits of the {@link SegmentId}.
+     * @param lsb   The least significant bits of the {@link SegmentId}.
+     * @param maker A non-{@code null} instance of {@link SegmentIdFactory}.
+     * @return the segment id
+     */
+    @NotNull
+    SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+        Table t = table;
+        while (true) {
+            SegmentId id = t.newSegmentId(msb, lsb, maker);
+            if (id != null) {
+                return id;
+            }
+            t = t.next.get();
+        }
+    }
+
+    /**
+     * Returns all segment identifiers that are currently referenced in memory.
+     *
+     * @param ids referenced segment identifiers
+     */
+    void collectReferencedIds(Collection<SegmentId> ids) {
+        forEachId(ids::add);
+    }
+
+    void clearSegmentIdTables(@NotNull Set<UUID> reclaimed, @NotNull String gcInfo) {
+        forEachId(id -> {
+            if (reclaimed.contains(id.asUUID())) {
+                id.reclaimed(gcInfo);
+            }
+        });
+    }
+
+    private void forEachId(Consumer<SegmentId> consumer) {
+        // while a transfer is running, ids can be in both tables
+        Set<SegmentId> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Table t = table; t != null; t = t.next.get()) {
+            for (int i = 0; i < t.slots.length(); i++) {
+                IdReference reference = reference(t.slots.get(i));
+                if (reference != null) {
+                    SegmentId id = reference.get();
+                    if (id != null && seen.add(id)) {
+                        consumer.accept(id);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of map rebuild operations (used for testing and diagnostics).
+     *
+     * @return the rebuild count
+     */
+    int getMapRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    /**
+     * Get the number of used slots in the table, including slots whose segment
+     * id has been garbage collected but not yet cleaned up (used for testing and
+     * diagnostics). A running transfer is completed first.
+     *
+     * @return the entry count
+     */
+    int getEntryCount() {
+        return settle().used.get();
+    }
+
+    /**
+     * Get the size of the internal map (used for testing and diagnostics). A
+     * running transfer is completed first.
+     *
+     * @return the map size
+     */
+    int getMapSize() {
+        return settle().slots.length();
+    }
+
+    /**
+     * Get the raw list of segment ids (used for testing).
+     *
+     * @return the raw list
+     */
+    List<SegmentId> getRawSegmentIdList() {
+        List<SegmentId> list = new ArrayList<>();
+        forEachId(list::add);
+        return list;
+    }
+
+    /**
+     * Complete a running transfer (used for testing and diagnostics only, as
+     * this waits for chunks that are moved by other threads).
+     *
+     * @return the current table
+     */
+    private Table settle() {
+        Table t = table;
+        Table n;
+        while ((n = t.next.get()) != null) {
+            t.helpTransfer();
+            if (!t.transferred) {
+                Thread.onSpinWait();
+                continue;
+            }
+            t = n;
+        }
+        return t;
+    }
+
+    @Nullable
+    private static IdReference reference(Object slot) {
+        if (slot instanceof Frozen) {
+            return ((Frozen) slot).reference;
+        }
+        return (IdReference) slot;
+    }
+
+    /**
+     * Weak reference to a segment id remembering the id's msb and lsb, so that
+     * probing does not need to dereference the referent.
+     */
+    private static final class IdReference extends WeakReference<SegmentId> {
+        private final long msb;
+
+        private final long lsb;
+
+        IdReference(@NotNull SegmentId id) {
+            super(id);
+            this.msb = id.getMostSignificantBits();
+            this.lsb = id.getLeastSignificantBits();
+        }
+
+        boolean matches(long msb, long lsb) {
+            return this.msb == msb && this.lsb == lsb;
+        }
+    }
+
+    /**
+     * Content of a slot that has been moved to the successor table. Frozen
+     * slots cannot be modified anymore.
+     */
+    private static final class Frozen {
+        @Nullable
+        private final IdReference reference;
+
+        Frozen(@Nullable IdReference reference) {
+            this.reference = reference;
+        }
+    }
+
+    private final class Table {
+
+        /**
+         * Each slot is either {@code null}, an {@link IdReference} or a
+         * {@link Frozen} wrapping either of them.
+         */
+        private final AtomicReferenceArray<Object> slots;
+
+        private final int mask;
+
+        private final int threshold;
+
+        /**
+         * The number of non {@code null} slots
+         */
+        private final AtomicInteger used = new AtomicInteger();
+
+        /**
+         * The successor, once a transfer has been started.
+         */
+        private final AtomicReference<Table> next = new AtomicReference<>();
+
+        /**
+         * The start of the next chunk to move.
+         */
+        private final AtomicInteger transferIndex = new AtomicInteger();
+
+        private final AtomicInteger transferredChunks = new AtomicInteger();
+
+        /**
+         * Whether all slots have been moved to the successor.
+         */
+        private volatile boolean transferred;
+
+        /**
+         * The table that is transferred to this table, until the transfer is
+         * complete.
+         */
+        private volatile Table previous;
+
+        Table(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+            this.threshold = size / 4 * 3;
+        }
+
+        /**
+         * @return the segment id for {@code msb} and {@code lsb} or {@code null}
+         * if it needs to be added to the successor of this table.
+         */
+        @Nullable
+        SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+            int index = ((int) lsb) & mask;
+            int probes = 0;
+            SegmentId created = null;
+            while (true) {
+                Object slot = slots.get(index);
+                IdReference reference = reference(slot);
+                if (reference == null) {
+                    // end of the probe sequence: the id is not tracked
+                    if (next.get() != null) {
+                        return moveProbeSequence(msb, lsb);
+                    }
+                    if (previous != null && used.get() > threshold) {
+                        // full before it replaced the previous table: the
+                        // next transfer can only start after that
+                        awaitPrevious();
+                        continue;
+                    }
+                    if (created == null) {
+                        created = maker.newSegmentId(msb, lsb);
+                    }
+                    if (slots.compareAndSet(index, null, new IdReference(created))) {
+                        if (used.incrementAndGet() > threshold) {
+                            startTransfer();
+                        }
+                        return created;
+                    }
+                    // lost the race for this slot: re-read it
+                    continue;
+                }
+                if (reference.matches(msb, lsb)) {
+                    SegmentId id = reference.get();
+                    if (id != null) {
+                        return id;
+                    }
+                    if (slot instanceof Frozen || next.get() != null) {
+                        return moveProbeSequence(msb, lsb);
+                    }
+                    // the segment id has been garbage collected: track
+                    // a new instance in the same slot
+                    if (created == null) {
+                        created = maker.newSegmentId(msb, lsb);
+                    }
+                    if (slots.compareAndSet(index, reference, new IdReference(created))) {
+                        return created;
+                    }
+                    continue;
+                }
+                if (++probes > mask) {
+                    // no free slot left (only possible while this table
+                    // still receives a transfer)
+                    awaitPrevious();
+                    startTransfer();
+                    return moveProbeSequence(msb, lsb);
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        /**
+         * Move one chunk of this table and the probe sequence of the given
+         * segment id to the successor.
+         *
+         * @return the segment id, if it is tracked in this table, or
+         * {@code null} if it needs to be added to the successor
+         */
+        @Nullable
+        private SegmentId moveProbeSequence(long msb, long lsb) {
+            helpTransfer();
+            Table n = next.get();
+            int index = ((int) lsb) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                IdReference reference = moveSlot(index, n).reference;
+                if (reference == null) {
+                    break;
+                }
+                if (reference.matches(msb, lsb)) {
+                    SegmentId id = reference.get();
+                    if (id != null) {
+                        return id;
+                    }
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Start a transfer to a successor, unless this table still receives
+         * a transfer itself or a transfer has already been started.
+         */
+        private void startTransfer() {
+            if (previous != null || next.get() != null) {
+                return;
+            }
+            Table n = new Table(getSuccessorSize());
+            n.previous = this;
+            if (next.compareAndSet(null, n)) {
+                helpTransfer();
+            }
+        }
+
+        /**
+         * Estimate the number of reachable segment ids from a sample of the
+         * slots. The size is doubled if more than half of the slots are
+         * reachable, otherwise the transfer only drops cleared references.
+         */
+        private int getSuccessorSize() {
+            int length = slots.length();
+            int step = Math.max(1, length / SAMPLE_SIZE);
+            int sampled = 0;
+            int live = 0;
+            for (int i = 0; i < length; i += step) {
+                sampled++;
+                IdReference reference = reference(slots.get(i));
+                if (reference != null && reference.get() != null) {
+                    live++;
+                }
+            }
+            return 2 * live > sampled ? 2 * length : length;
+        }
+
+        /**
+         * Move the next chunk of slots to the successor, if there is one left.
+         */
+        void helpTransfer() {
+            Table n = next.get();
+            if (n == null) {
+                return;
+            }
+            int length = slots.length();
+            int start;
+            do {
+                // never advance past the length, so the index can't overflow
+                // however often completed transfers are helped
+                start = transferIndex.get();
+                if (start >= length) {
+                    return;
+                }
+            } while (!transferIndex.compareAndSet(start, start + TRANSFER_CHUNK_SIZE));
+            for (int i = start; i < start + TRANSFER_CHUNK_SIZE; i++) {
+                moveSlot(i, n);
+            }
+            if (transferredChunks.incrementAndGet() == length / TRANSFER_CHUNK_SIZE) {
+                transferred = true;
+                rebuildCount.incrementAndGet();
+                table = n;
+                n.previous = null;
+                if (n.used.get() > n.threshold) {
+                    n.startTransfer();
+                }
+            }
+        }
+
+        private void awaitPrevious() {
+            Table p;
+            while ((p = previous) != null) {
+                p.helpTransfer();
+                Thread.onSpinWait();
+            }
+        }
+
+        /**
+         * Move a slot to the successor. The reference is added to the
+         * successor before the slot is frozen, so that the reference of a
+         * frozen slot is always tracked by the successor.
+         */
+        @NotNull
+        private Frozen moveSlot(int index, Table n) {
+            while (true) {
+                Object slot = slots.get(index);
+                if (slot instanceof Frozen) {
+                    return (Frozen) slot;
+                }
+                IdReference reference = (IdReference) slot;
+                if (reference != null && reference.get() != null) {
+                    n.receive(reference);
+                }
+                Frozen frozen = new Frozen(reference);
+                if (slots.compareAndSet(index, slot, frozen)) {
+                    return frozen;
+                }
+            }
+        }
+
+        /**
+         * Add a reference moved from the previous table, unless the segment
+         * id is already tracked. Moving the same reference more than once is
+         * harmless.
+         */
+        private void receive(IdReference reference) {
+            int index = ((int) reference.lsb) & mask;
+            int probes = 0;
+            while (probes <= mask) {
+                Object slot = slots.get(index);
+                if (slot == null) {
+                    if (slots.compareAndSet(index, null, reference)) {
+                        used.incrementAndGet();
+                        return;
+                    }
+                    continue;
+                }
+                if (slot instanceof Frozen) {
+                    // this table is transferred itself, which only starts
+                    // after the transfer to this table is complete
+                    return;
+                }
+                IdReference existing = (IdReference) slot;
+                if (existing.matches(reference.msb, reference.lsb)) {
+                    // a reachable id was moved before, a cleared one is
+                    // replaced
+                    if (existing.get() != null ||
+                            slots.compareAndSet(index, existing, reference)) {
+                        return;
+                    }
+                    continue;
+                }
+                probes++;
+                index = (index + 1) & mask;
+            }
+            throw new IllegalStateException("Segment id table is full");
+        }
+    }
+
+}
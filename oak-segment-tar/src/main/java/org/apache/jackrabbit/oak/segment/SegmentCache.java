@@ -45,6 +45,9 @@ import org.jetbrains.annotations.NotNull;
  * level cache is implemented by memoising the segment in its id (see {@code
  * SegmentId#segment}. Every time an segment is evicted from this cache the
  * memoised segment is discarded (see {@code SegmentId#onAccess}.
+ * <p>
+ * Segments evicted from this cache because of its size limit are handed to an
+ * optional {@link CompressedSegmentCache}, which serves as 3rd level cache.
  */
 public abstract class SegmentCache {
 
@@ -63,8 +66,21 @@ public abstract class SegmentCache {
      */
     @NotNull
     public static SegmentCache newSegmentCache(long cacheSizeMB) {
+        return newSegmentCache(cacheSizeMB, CompressedSegmentCache.newCompressedSegmentCache(0));
+    }
+
+    /**
+     * Create a new segment cache of the given size, which hands segments
+     * evicted because of its size limit to {@code evictedSegments}. Returns an
+     * always empty cache for {@code cacheSizeMB <= 0}.
+     *
+     * @param cacheSizeMB     size of the cache in megabytes.
+     * @param evictedSegments cache for segments evicted from this cache
+     */
+    @NotNull
+    public static SegmentCache newSegmentCache(long cacheSizeMB, @NotNull CompressedSegmentCache evictedSegments) {
         if (cacheSizeMB > 0) {
-            return new NonEmptyCache(cacheSizeMB);
+            return new NonEmptyCache(cacheSizeMB, requireNonNull(evictedSegments));
         } else {
             return new EmptyCache();
         }
@@ -124,12 +140,20 @@ public abstract class SegmentCache {
         @NotNull
         private final Stats stats;
 
+        /**
+         * Cache for segments evicted from this cache
+         */
+        @NotNull
+        private final CompressedSegmentCache evictedSegments;
+
         /**
          * Create a new cache of the given size.
          *
-         * @param cacheSizeMB size of the cache in megabytes.
+         * @param cacheSizeMB     size of the cache in megabytes.
+         * @param evictedSegments cache for segments evicted from this cache
          */
-        private NonEmptyCache(long cacheSizeMB) {
+        private NonEmptyCache(long cacheSizeMB, @NotNull CompressedSegmentCache evictedSegments) {
+            this.evictedSegments = evictedSegments;
             long maximumWeight = cacheSizeMB * 1024 * 1024;
             this.cache = CacheBuilder.newBuilder()
                     .concurrencyLevel(16)
@@ -151,6 +175,9 @@ public abstract class SegmentCache {
             if (notification.getKey() != null) {
                 notification.getKey().unloaded();
             }
+            if (notification.wasEvicted() && notification.getValue() != null) {
+                evictedSegments.putSegment(notification.getValue());
+            }
         }
 
         @Override
@@ -201,6 +228,7 @@ public abstract class SegmentCache {
         @Override
         public void clear() {
             cache.invalidateAll();
+            evictedSegments.clear();
         }
 
         @Override
@@ -262,7 +290,7 @@ public abstract class SegmentCache {
      * cache hits are taken by {@link SegmentId#getSegment()} and thus never
      * seen by the cache.
      */
-    private static class Stats extends AbstractCacheStats {
+    static class Stats extends AbstractCacheStats {
         private final long maximumWeight;
 
         @NotNull
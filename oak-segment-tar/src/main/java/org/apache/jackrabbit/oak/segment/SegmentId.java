@@ -22,6 +22,7 @@ import static org.apache.jackrabbit.oak.segment.CacheWeights.OBJECT_HEADER_SIZE;
 import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
 
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
@@ -64,7 +65,7 @@ public class SegmentId implements Comparable<SegmentId> {
     private final long creationTime;
 
     /** Callback called whenever an underlying and locally memoised segment is accessed */
-    private final Runnable onAccess;
+    private final Consumer<SegmentId> onAccess;
 
     /**
      * The gc generation of this segment or -1 if unknown.
@@ -84,14 +85,20 @@ public class SegmentId implements Comparable<SegmentId> {
      */
     private volatile Segment segment;
 
+    /**
+     * Whether the segment was loaded by the {@link SegmentPrefetcher} and
+     * has not been accessed since.
+     */
+    private volatile boolean prefetched;
+
     /**
      * Create a new segment id with access tracking.
      * @param store  store this is belongs to
      * @param msb    most significant bits of this id
      * @param lsb    least significant bits of this id
-     * @param onAccess  callback called whenever an underlying and locally memoised segment is accessed.
+     * @param onAccess  callback called with this id whenever an underlying and locally memoised segment is accessed.
      */
-    public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Runnable onAccess) {
+    public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Consumer<SegmentId> onAccess) {
         this.store = store;
         this.msb = msb;
         this.lsb = lsb;
@@ -99,6 +106,17 @@ public class SegmentId implements Comparable<SegmentId> {
         this.creationTime = System.currentTimeMillis();
     }
 
+    /**
+     * Create a new segment id with access tracking.
+     * @param store  store this is belongs to
+     * @param msb    most significant bits of this id
+     * @param lsb    least significant bits of this id
+     * @param onAccess  callback called whenever an underlying and locally memoised segment is accessed.
+     */
+    public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Runnable onAccess) {
+        this(store, msb, lsb, id -> onAccess.run());
+    }
+
     /**
      * Create a new segment id without access tracking.
      * @param store  store this is belongs to
@@ -154,7 +172,7 @@ public class SegmentId implements Comparable<SegmentId> {
                 }
             }
         }
-        onAccess.run();
+        onAccess.accept(this);
         return segment;
     }
 
@@ -214,6 +232,36 @@ public class SegmentId implements Comparable<SegmentId> {
         this.segment = null;
     }
 
+    /**
+     * Mark the segment of this id as loaded by the {@link SegmentPrefetcher}.
+     */
+    void markPrefetched() {
+        prefetched = true;
+    }
+
+    /**
+     * Clear the mark set by {@link #markPrefetched()}.
+     *
+     * @return {@code true} iff the mark was set
+     */
+    boolean clearPrefetched() {
+        if (!prefetched) {
+            return false;
+        }
+        prefetched = false;
+        return true;
+    }
+
+    /**
+     * @return  {@code true} iff the segment identified by this instance is
+     *          currently memoised.
+     * @see #loaded(Segment)
+     * @see #unloaded()
+     */
+    boolean isLoaded() {
+        return segment != null;
+    }
+
     /**
      * Determine whether this instance belongs to the passed {@code store}
      * @param store
@@ -35,6 +35,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Hash table of weak references to segment identifiers.
+ * <p>
+ * All operations of this table are synchronized. {@link SegmentTracker}
+ * uses the lock-free {@link ConcurrentSegmentIdTable} instead.
  */
 public class SegmentIdTable {
 
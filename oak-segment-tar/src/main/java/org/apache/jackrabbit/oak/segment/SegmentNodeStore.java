@@ -82,6 +82,8 @@ public class SegmentNodeStore implements NodeStore, Observable {
 
         private boolean dispatchChanges = true;
 
+        private boolean groupCommit = Boolean.getBoolean("oak.segmentNodeStore.groupCommit");
+
         @NotNull
         private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
 
@@ -105,6 +107,20 @@ public class SegmentNodeStore implements NodeStore, Observable {
             return this;
         }
 
+        /**
+         * Group concurrent commits and publish them as a single head state
+         * instead of serializing them behind the commit lock.
+         *
+         * @param groupCommit whether to group concurrent commits
+         * @return this instance
+         * @see org.apache.jackrabbit.oak.segment.scheduler.GroupCommitScheduler
+         */
+        @NotNull
+        public SegmentNodeStoreBuilder groupCommit(boolean groupCommit) {
+            this.groupCommit = groupCommit;
+            return this;
+        }
+
         /**
          * {@link StatisticsProvider} for collecting statistics related to SegmentStore
          * @param statisticsProvider
@@ -181,6 +197,7 @@ public class SegmentNodeStore implements NodeStore, Observable {
         this.stats = new SegmentNodeStoreStats(builder.statsProvider);
         this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
                 .dispatchChanges(builder.dispatchChanges)
+                .groupCommit(builder.groupCommit)
                 .build();
         this.loggingHook = builder.loggingHook;
     }
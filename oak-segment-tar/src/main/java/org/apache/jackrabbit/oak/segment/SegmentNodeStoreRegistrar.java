@@ -293,6 +293,14 @@ class SegmentNodeStoreRegistrar {
             segmentCacheStats.getName()
         ));
 
+        CacheStatsMBean compressedSegmentCacheStats = store.getCompressedSegmentCacheStats();
+        registerCloseable(registerMBean(
+            CacheStatsMBean.class,
+            compressedSegmentCacheStats,
+            CacheStats.TYPE,
+            compressedSegmentCacheStats.getName()
+        ));
+
         // Expose stats about the string and template caches
 
         CacheStatsMBean stringCacheStats = store.getStringCacheStats();
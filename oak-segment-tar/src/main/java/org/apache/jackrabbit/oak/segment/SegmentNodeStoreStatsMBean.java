@@ -45,6 +45,21 @@ public interface SegmentNodeStoreStatsMBean {
      * @return  time series of the queuing times
      */
     CompositeData getQueuingTimes();
+
+    /**
+     * @return  time series of the number of segments loaded by the segment prefetcher
+     */
+    CompositeData getPrefetchedSegmentsCount();
+
+    /**
+     * @return  time series of the number of prefetched segments accessed afterwards
+     */
+    CompositeData getPrefetchHits();
+
+    /**
+     * @return  time series of the number of prefetched segments never accessed
+     */
+    CompositeData getPrefetchWaste();
     
     /**
      * @return tabular data of the form &lt;commits,writerGroup&gt; collected 
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static java.lang.Thread.currentThread;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.defaultThreadFactory;
+import static org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats.SEGMENT_PREFETCH_COUNT;
+import static org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats.SEGMENT_PREFETCH_HITS;
+import static org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats.SEGMENT_PREFETCH_WASTE;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
+import org.apache.jackrabbit.guava.common.cache.RemovalNotification;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous prefetcher for {@link Segment segments}. Whenever a data
+ * segment has to be loaded from the underlying store, the segments it
+ * references (as recorded in its header) are loaded into the {@link
+ * SegmentCache} on a bounded pool of background threads. This takes the
+ * latency of resolving the next segments of a cold traversal off the reading
+ * thread.
+ * <p>
+ * The prefetcher is best effort: requests exceeding the capacity of the work
+ * queue are dropped and failures to load a segment are only logged. Prefetched
+ * segments which are accessed afterwards are counted as hits, those which are
+ * evicted from the book keeping of this class without being accessed are
+ * counted as waste.
+ */
+public class SegmentPrefetcher implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    /**
+     * Default depth up to which references are followed
+     */
+    public static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+    /**
+     * Default maximum number of references followed per segment
+     */
+    public static final int DEFAULT_PREFETCH_FAN_OUT = 16;
+
+    /**
+     * Maximum number of prefetch requests waiting for a thread
+     */
+    private static final int QUEUE_SIZE = Integer.getInteger("oak.segment.prefetch.queueSize", 1024);
+
+    /**
+     * Maximum number of prefetched, not yet accessed segments to track for
+     * the hit and waste statistics
+     */
+    private static final int MAX_PENDING = Integer.getInteger("oak.segment.prefetch.maxPending", 16384);
+
+    @NotNull
+    private final SegmentCache segmentCache;
+
+    @NotNull
+    private final SegmentIdProvider segmentIdProvider;
+
+    private final int depth;
+
+    private final int fanOut;
+
+    /**
+     * Executor running the prefetch requests or {@code null} if prefetching
+     * is disabled.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Segments for which a prefetch request is currently queued or running
+     */
+    @NotNull
+    private final Set<SegmentId> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Prefetched segments that have not been accessed yet
+     */
+    @NotNull
+    private final Cache<UUID, Boolean> pending;
+
+    @NotNull
+    private final MeterStats prefetchCount;
+
+    @NotNull
+    private final MeterStats hitCount;
+
+    @NotNull
+    private final MeterStats wasteCount;
+
+    /**
+     * Create a new prefetcher. Prefetching is disabled for {@code threads <= 0},
+     * {@code depth <= 0} or {@code fanOut <= 0}.
+     *
+     * @param threads            number of threads loading segments
+     * @param depth              depth up to which segment references are followed
+     * @param fanOut             maximum number of references followed per segment
+     * @param segmentCache       cache the prefetched segments are loaded into
+     * @param segmentIdProvider  provider for resolving referenced segment ids
+     * @param statisticsProvider provider for the prefetch statistics
+     */
+    public SegmentPrefetcher(
+            int threads,
+            int depth,
+            int fanOut,
+            @NotNull SegmentCache segmentCache,
+            @NotNull SegmentIdProvider segmentIdProvider,
+            @NotNull StatisticsProvider statisticsProvider) {
+        this.segmentCache = requireNonNull(segmentCache);
+        this.segmentIdProvider = requireNonNull(segmentIdProvider);
+        this.depth = depth;
+        this.fanOut = fanOut;
+        if (threads > 0 && depth > 0 && fanOut > 0) {
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE), new PrefetchThreadFactory());
+            this.executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
+        this.pending = CacheBuilder.newBuilder()
+                .maximumSize(MAX_PENDING)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .removalListener(this::onRemove)
+                .build();
+        this.prefetchCount = statisticsProvider.getMeter(SEGMENT_PREFETCH_COUNT, StatsOptions.DEFAULT);
+        this.hitCount = statisticsProvider.getMeter(SEGMENT_PREFETCH_HITS, StatsOptions.DEFAULT);
+        this.wasteCount = statisticsProvider.getMeter(SEGMENT_PREFETCH_WASTE, StatsOptions.DEFAULT);
+    }
+
+    /**
+     * @return {@code true} iff this prefetcher is enabled
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Asynchronously load the segments referenced by {@code segment} into
+     * the segment cache. This method never blocks.
+     *
+     * @param segment the segment whose references to prefetch
+     * @param loader  function for loading a segment bypassing the cache
+     */
+    public void prefetch(@NotNull Segment segment, @NotNull Function<SegmentId, Segment> loader) {
+        if (executor != null) {
+            prefetch(segment, depth, loader);
+        }
+    }
+
+    private void prefetch(Segment segment, int depth, Function<SegmentId, Segment> loader) {
+        int count = Math.min(fanOut, segment.getReferencedSegmentIdCount());
+        for (int i = 0; i < count && !executor.isShutdown(); i++) {
+            UUID uuid = segment.getReferencedSegmentId(i);
+            SegmentId id = segmentIdProvider.newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (id.isDataSegmentId() && !id.isLoaded() && inFlight.add(id)) {
+                try {
+                    executor.execute(() -> load(id, depth, loader));
+                } catch (RejectedExecutionException e) {
+                    // Queue is full or the prefetcher has been closed: skip
+                    inFlight.remove(id);
+                }
+            }
+        }
+    }
+
+    private void load(SegmentId id, int depth, Function<SegmentId, Segment> loader) {
+        try {
+            AtomicInteger loaded = new AtomicInteger();
+            Segment segment = segmentCache.getSegment(id, () -> {
+                loaded.incrementAndGet();
+                return loader.apply(id);
+            });
+            if (loaded.get() > 0) {
+                prefetchCount.mark();
+                pending.put(id.asUUID(), Boolean.TRUE);
+                id.markPrefetched();
+            }
+            if (depth > 1) {
+                prefetch(segment, depth - 1, loader);
+            }
+        } catch (Exception e) {
+            LOG.debug("Unable to prefetch segment {}", id, e);
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    /**
+     * Notify this prefetcher about an access to a memoised segment. Only the
+     * first access to a prefetched segment looks up the book keeping of this
+     * class, other accesses just read the mark on the segment id.
+     *
+     * @param id the segment id
+     */
+    public void onAccess(@NotNull SegmentId id) {
+        if (id.clearPrefetched() && pending.asMap().remove(id.asUUID()) != null) {
+            hitCount.mark();
+        }
+    }
+
+    private void onRemove(@NotNull RemovalNotification<UUID, Boolean> notification) {
+        if (notification.wasEvicted()) {
+            wasteCount.mark();
+        }
+    }
+
+    /**
+     * Stop prefetching. Pending requests are discarded.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    LOG.warn("The segment prefetcher takes too long to shut down");
+                }
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupt while shutting down the segment prefetcher", e);
+                currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentPrefetcher{" +
+                "enabled=" + isEnabled() +
+                ", depth=" + depth +
+                ", fanOut=" + fanOut +
+                '}';
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+        private final ThreadFactory threadFactory = defaultThreadFactory();
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = threadFactory.newThread(runnable);
+            thread.setName("segment-prefetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
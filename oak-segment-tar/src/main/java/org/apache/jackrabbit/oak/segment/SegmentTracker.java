@@ -51,16 +51,16 @@ public class SegmentTracker implements SegmentIdProvider {
     private final SecureRandom random = new SecureRandom();
 
     /**
-     * Hash table of weak references to segment identifiers that are
-     * currently being accessed. The size of the table is always a power
-     * of two, which optimizes the {@code refresh()} operation. The table is
-     * indexed by the random identifier bits, which guarantees uniform
-     * distribution of entries. Each table entry is either {@code null}
-     * (when there are no matching identifiers) or a list of weak references
-     * to the matching identifiers.
+     * Lock-free hash tables of weak references to segment identifiers that
+     * are currently being accessed. The tables are indexed by the random
+     * identifier bits, which guarantees uniform distribution of entries.
+     * Spreading the identifiers across several tables keeps the individual
+     * tables small, which bounds the time it takes to rebuild them.
+     *
+     * @see ConcurrentSegmentIdTable
      */
     @NotNull
-    private final SegmentIdTable[] tables = new SegmentIdTable[32];
+    private final ConcurrentSegmentIdTable[] tables = new ConcurrentSegmentIdTable[32];
 
     /**
      * Number of segment tracked since this tracker was instantiated
@@ -74,7 +74,7 @@ public class SegmentTracker implements SegmentIdProvider {
     public SegmentTracker(@NotNull SegmentIdFactory segmentIdFactory) {
         this.segmentIdFactory = requireNonNull(segmentIdFactory);
         for (int i = 0; i < tables.length; i++) {
-            tables[i] = new SegmentIdTable();
+            tables[i] = new ConcurrentSegmentIdTable();
         }
     }
 
@@ -90,7 +90,7 @@ public class SegmentTracker implements SegmentIdProvider {
      */
     public synchronized Set<SegmentId> getReferencedSegmentIds() {
         Set<SegmentId> ids = new HashSet<>();
-        for (SegmentIdTable table : tables) {
+        for (ConcurrentSegmentIdTable table : tables) {
             table.collectReferencedIds(ids);
         }
         return ids;
@@ -142,7 +142,7 @@ public class SegmentTracker implements SegmentIdProvider {
     }
 
     public synchronized void clearSegmentIdTables(@NotNull Set<UUID> reclaimed, @NotNull String gcInfo) {
-        for (SegmentIdTable table : tables) {
+        for (ConcurrentSegmentIdTable table : tables) {
             table.clearSegmentIdTables(reclaimed, gcInfo);
         }
     }
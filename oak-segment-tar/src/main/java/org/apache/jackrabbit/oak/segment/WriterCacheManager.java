@@ -32,6 +32,7 @@ import java.util.function.Supplier;
 
 import org.apache.jackrabbit.guava.common.cache.CacheStats;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.file.GenerationalCache;
 import org.apache.jackrabbit.oak.segment.file.PriorityCache;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
@@ -229,7 +230,7 @@ public abstract class WriterCacheManager {
          * Cache of recently stored nodes to avoid duplicating linked nodes (i.e. checkpoints)
          * during compaction.
          */
-        private final Supplier<PriorityCache<String, RecordId>> nodeCache;
+        private final Supplier<GenerationalCache<String, RecordId>> nodeCache;
 
         /**
          * New instance using the passed factories for creating cache instances.
@@ -243,7 +244,7 @@ public abstract class WriterCacheManager {
         public Default(
                 @NotNull Supplier<RecordCache<String>> stringCacheFactory,
                 @NotNull Supplier<RecordCache<Template>> templateCacheFactory,
-                @NotNull Supplier<PriorityCache<String, RecordId>> nodeCacheFactory) {
+                @NotNull Supplier<? extends GenerationalCache<String, RecordId>> nodeCacheFactory) {
             this.stringCaches = new Generations<>(stringCacheFactory);
             this.templateCaches = new Generations<>(templateCacheFactory);
             this.nodeCache = memoize(nodeCacheFactory::get);
@@ -306,7 +307,7 @@ public abstract class WriterCacheManager {
             return templateCaches.getGeneration(generation);
         }
 
-        private PriorityCache<String, RecordId> nodeCache() {
+        private GenerationalCache<String, RecordId> nodeCache() {
             return nodeCache.get();
         }
 
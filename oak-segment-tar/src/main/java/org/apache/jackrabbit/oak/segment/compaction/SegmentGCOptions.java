@@ -86,6 +86,43 @@ public class SegmentGCOptions {
         }
     }
 
+    /**
+     * The type of the cache used to deduplicate nodes during compaction
+     */
+    public enum NodeDeduplicationCacheType {
+        /**
+         * Cache with lock striped segments
+         */
+        PRIORITY("priority"),
+
+        /**
+         * Cache without locks, see {@code LockFreePriorityCache}. This cache
+         * is experimental, it has not been shown to speed up compaction.
+         */
+        LOCK_FREE("lock-free");
+
+        private final String description;
+
+        NodeDeduplicationCacheType(String description) {
+            this.description = description;
+        }
+
+        public static NodeDeduplicationCacheType fromDescription(String description) {
+            switch (description) {
+            case "priority":
+                return PRIORITY;
+            case "lock-free":
+                return LOCK_FREE;
+            default:
+                throw new IllegalArgumentException("Unrecognized node deduplication cache type " + description);
+            }
+        }
+
+        public String description() {
+            return description;
+        }
+    }
+
     /**
      * Default value for {@link #isPaused()}
      */
@@ -131,6 +168,16 @@ public class SegmentGCOptions {
      */
     public static final int DEFAULT_CONCURRENCY = 1;
 
+    /**
+     * Default value for {@link #getCompactionDuration()} in seconds.
+     */
+    public static final int COMPACTION_DURATION_DEFAULT = 0;
+
+    /**
+     * Default value for {@link #getCompactionCheckpointInterval()} in seconds.
+     */
+    public static final int COMPACTION_CHECKPOINT_INTERVAL_DEFAULT = 0;
+
     private boolean paused = PAUSE_DEFAULT;
 
     /**
@@ -169,6 +216,20 @@ public class SegmentGCOptions {
 
     private CompactorType compactorType = CompactorType.PARALLEL_COMPACTOR;
 
+    private NodeDeduplicationCacheType nodeDeduplicationCacheType = NodeDeduplicationCacheType.PRIORITY;
+
+    /**
+     * Number of seconds after which compaction stops at the next checkpoint.
+     * 0 for unlimited.
+     */
+    private int compactionDuration = COMPACTION_DURATION_DEFAULT;
+
+    /**
+     * Number of seconds between two checkpoints of the compaction progress.
+     * 0 for none.
+     */
+    private int compactionCheckpointInterval = COMPACTION_CHECKPOINT_INTERVAL_DEFAULT;
+
     public SegmentGCOptions(boolean paused, int retryCount, int forceTimeout) {
         this.paused = paused;
         this.retryCount = retryCount;
@@ -293,7 +354,10 @@ public class SegmentGCOptions {
                     "offline=" + offline +
                     ", retainedGenerations=" + retainedGenerations +
                     ", compactorType=" + compactorType +
+                    ", nodeDeduplicationCacheType=" + nodeDeduplicationCacheType +
                     ", concurrency=" + concurrency +
+                    ", compactionDuration=" + compactionDuration +
+                    ", compactionCheckpointInterval=" + compactionCheckpointInterval +
                     "}";
         } else {
             return getClass().getSimpleName() + "{" +
@@ -305,6 +369,9 @@ public class SegmentGCOptions {
                     ", retainedGenerations=" + retainedGenerations +
                     ", gcType=" + gcType +
                     ", compactorType=" + compactorType +
+                    ", nodeDeduplicationCacheType=" + nodeDeduplicationCacheType +
+                    ", compactionDuration=" + compactionDuration +
+                    ", compactionCheckpointInterval=" + compactionCheckpointInterval +
                     "}";
         }
     }
@@ -419,6 +486,24 @@ public class SegmentGCOptions {
         return this;
     }
 
+    /**
+     * @return the type of the cache used to deduplicate nodes
+     */
+    public NodeDeduplicationCacheType getNodeDeduplicationCacheType() {
+        return nodeDeduplicationCacheType;
+    }
+
+    /**
+     * Sets the type of the cache used to deduplicate nodes. This only takes
+     * effect for stores created after the call.
+     * @param nodeDeduplicationCacheType
+     * @return this instance
+     */
+    public SegmentGCOptions setNodeDeduplicationCacheType(NodeDeduplicationCacheType nodeDeduplicationCacheType) {
+        this.nodeDeduplicationCacheType = nodeDeduplicationCacheType;
+        return this;
+    }
+
     /**
      * @return the current level of concurrency
      */
@@ -435,4 +520,49 @@ public class SegmentGCOptions {
         this.concurrency = concurrency;
         return this;
     }
+
+    /**
+     * Get the number of seconds after which compaction stops at its next
+     * checkpoint. Compaction stopped this way leaves the repository in a
+     * consistent, partially compacted state and the next garbage collection
+     * resumes where it stopped.
+     * @return  the compaction duration in seconds, {@code 0} for unlimited.
+     */
+    public int getCompactionDuration() {
+        return compactionDuration;
+    }
+
+    /**
+     * Set the number of seconds after which compaction stops at its next
+     * checkpoint. Setting this to {@code 0} removes the limit.
+     * @param compactionDuration  the compaction duration in seconds
+     * @return this instance
+     */
+    public SegmentGCOptions setCompactionDuration(int compactionDuration) {
+        this.compactionDuration = compactionDuration;
+        return this;
+    }
+
+    /**
+     * Get the number of seconds between two checkpoints of the compaction
+     * progress. At each checkpoint the partially compacted state is set as
+     * the head state and the progress is recorded next to the gc journal,
+     * such that a crashed or cancelled compaction loses at most the work of
+     * one interval.
+     * @return  the checkpoint interval in seconds, {@code 0} for none.
+     */
+    public int getCompactionCheckpointInterval() {
+        return compactionCheckpointInterval;
+    }
+
+    /**
+     * Set the number of seconds between two checkpoints of the compaction
+     * progress. Setting this to {@code 0} disables intermediate checkpoints.
+     * @param compactionCheckpointInterval  the checkpoint interval in seconds
+     * @return this instance
+     */
+    public SegmentGCOptions setCompactionCheckpointInterval(int compactionCheckpointInterval) {
+        this.compactionCheckpointInterval = compactionCheckpointInterval;
+        return this;
+    }
 }
@@ -172,6 +172,33 @@ public interface SegmentRevisionGC {
      */
     void setMemoryThreshold(int memoryThreshold);
 
+    /**
+     * @return the number of seconds after which compaction stops at its next
+     * checkpoint, {@code 0} for unlimited.
+     */
+    int getCompactionDuration();
+
+    /**
+     * Set the number of seconds after which compaction stops at its next
+     * checkpoint. The next revision gc resumes the stopped compaction.
+     * Setting this to {@code 0} removes the limit.
+     * @param compactionDuration
+     */
+    void setCompactionDuration(int compactionDuration);
+
+    /**
+     * @return the number of seconds between two checkpoints of the compaction
+     * progress, {@code 0} for none.
+     */
+    int getCompactionCheckpointInterval();
+
+    /**
+     * Set the number of seconds between two checkpoints of the compaction
+     * progress. Setting this to {@code 0} disables intermediate checkpoints.
+     * @param compactionCheckpointInterval
+     */
+    void setCompactionCheckpointInterval(int compactionCheckpointInterval);
+
     /**
      * @return {@code true} if there is an online compaction cycle running
      */
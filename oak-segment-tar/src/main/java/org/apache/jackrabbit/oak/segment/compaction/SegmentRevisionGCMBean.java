@@ -193,6 +193,26 @@ public class SegmentRevisionGCMBean
         gcOptions.setMemoryThreshold(memoryThreshold);
     }
 
+    @Override
+    public int getCompactionDuration() {
+        return gcOptions.getCompactionDuration();
+    }
+
+    @Override
+    public void setCompactionDuration(int compactionDuration) {
+        gcOptions.setCompactionDuration(compactionDuration);
+    }
+
+    @Override
+    public int getCompactionCheckpointInterval() {
+        return gcOptions.getCompactionCheckpointInterval();
+    }
+
+    @Override
+    public void setCompactionCheckpointInterval(int compactionCheckpointInterval) {
+        gcOptions.setCompactionCheckpointInterval(compactionCheckpointInterval);
+    }
+
     @Override
     public boolean isRevisionGCRunning() {
         return fileStore.getGCNodeWriteMonitor().isCompactionRunning();
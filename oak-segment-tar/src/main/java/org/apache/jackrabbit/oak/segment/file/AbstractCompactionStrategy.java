@@ -157,6 +157,18 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
 
             context.getCompactionMonitor().init(gcEntry.getRepoSize(), gcEntry.getNodes(), initialSize);
 
+            CompactionProgress progress = context.getCompactionProgress();
+            CompactionProgress.CompactionProgressEntry unfinished = progress.getUnfinished(baseGeneration);
+            long resumedNodes = 0;
+            if (unfinished != null && unfinished.getType() == getCompactionType()) {
+                resumedNodes = unfinished.getNodes();
+                context.getGCListener().info("resuming unfinished compaction from {} with {} compacted nodes",
+                        unfinished.getRoot(), resumedNodes);
+            } else if (unfinished != null) {
+                context.getGCListener().info("discarding unfinished {} compaction",
+                        formatCompactionType(unfinished.getType()));
+            }
+
             Canceller hardCanceller = context.getHardCanceller().withShortCircuit();
             Canceller softCanceller = context.getSoftCanceller().withShortCircuit();
 
@@ -226,6 +238,11 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
 
                 if (success) {
                     flusher.flush();
+                    if (!compacted.isComplete()) {
+                        progress.checkpoint(getCompactionType(), partialGeneration, targetGeneration,
+                                resumedNodes + context.getCompactionMonitor().getCompactedNodes(),
+                                compacted.getRecordId().toString10());
+                    }
                 }
             } while (success && !compacted.isComplete() && !softCanceller.check().isCancelled());
 
@@ -270,6 +287,7 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
                 context.getCompactionMonitor().finished();
 
                 if (compacted.isComplete()) {
+                    progress.clear();
                     context.getGCListener().info("compaction succeeded in {}, after {} cycles", watch, cycles);
                     return compactionSucceeded(context, targetGeneration, compacted.getRecordId());
                 } else {
@@ -18,6 +18,7 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static org.apache.jackrabbit.oak.segment.CompressedSegmentCache.newCompressedSegmentCache;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.newSegmentCache;
 import static org.apache.jackrabbit.oak.segment.data.SegmentData.newSegmentData;
 
@@ -32,6 +33,7 @@ import java.util.function.Consumer;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.commons.Buffer;
 import org.apache.jackrabbit.oak.segment.CachingSegmentReader;
+import org.apache.jackrabbit.oak.segment.CompressedSegmentCache;
 import org.apache.jackrabbit.oak.segment.RecordType;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.Segment;
@@ -44,6 +46,7 @@ import org.apache.jackrabbit.oak.segment.SegmentIdFactory;
 import org.apache.jackrabbit.oak.segment.SegmentIdProvider;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.apache.jackrabbit.oak.segment.SegmentPrefetcher;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
 import org.apache.jackrabbit.oak.segment.SegmentStore;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
@@ -115,6 +118,12 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
     @NotNull
     final SegmentCache segmentCache;
 
+    @NotNull
+    final CompressedSegmentCache compressedSegmentCache;
+
+    @NotNull
+    final SegmentPrefetcher segmentPrefetcher;
+
     final TarRecovery recovery = new TarRecovery() {
 
         @Override
@@ -138,11 +147,20 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         this.tracker = new SegmentTracker(new SegmentIdFactory() {
             @Override @NotNull
             public SegmentId newSegmentId(long msb, long lsb) {
-                return new SegmentId(AbstractFileStore.this, msb, lsb, segmentCache::recordHit);
+                return new SegmentId(AbstractFileStore.this, msb, lsb, id -> onSegmentAccess(id));
             }
         });
         this.blobStore = builder.getBlobStore();
-        this.segmentCache = newSegmentCache(builder.getSegmentCacheSize());
+        this.compressedSegmentCache = newCompressedSegmentCache(builder.getCompressedSegmentCacheSize());
+        this.segmentCache = newSegmentCache(builder.getSegmentCacheSize(), compressedSegmentCache);
+        this.segmentPrefetcher = new SegmentPrefetcher(
+            builder.getSegmentPrefetchThreads(),
+            builder.getSegmentPrefetchDepth(),
+            builder.getSegmentPrefetchFanOut(),
+            segmentCache,
+            tracker,
+            builder.getStatsProvider()
+        );
         this.segmentReader = new CachingSegmentReader(
             this::getWriter,
             blobStore,
@@ -158,6 +176,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         this.binariesInlineThreshold = builder.getBinariesInlineThreshold();
     }
 
+    private void onSegmentAccess(SegmentId id) {
+        segmentCache.recordHit();
+        segmentPrefetcher.onAccess(id);
+    }
+
     static SegmentNotFoundException asSegmentNotFoundException(Exception e, SegmentId id) {
         if (e.getCause() instanceof SegmentNotFoundException) {
             return (SegmentNotFoundException) e.getCause();
@@ -170,6 +193,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return segmentCache.getCacheStats();
     }
 
+    @NotNull
+    public CacheStatsMBean getCompressedSegmentCacheStats() {
+        return compressedSegmentCache.getCacheStats();
+    }
+
     @NotNull
     public CacheStatsMBean getStringCacheStats() {
         return segmentReader.getStringCacheStats();
@@ -293,7 +321,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
     }
 
     Segment readSegmentUncached(TarFiles tarFiles, SegmentId id) {
-        Buffer buffer = tarFiles.readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        Buffer buffer = compressedSegmentCache.getSegment(id);
+        if (buffer != null) {
+            return new Segment(tracker, id, buffer);
+        }
+        buffer = tarFiles.readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
         if (buffer == null) {
             throw new SegmentNotFoundException(id);
         }
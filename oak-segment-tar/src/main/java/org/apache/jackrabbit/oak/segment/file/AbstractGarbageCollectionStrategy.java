@@ -18,6 +18,8 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType.FULL;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCStatus.ESTIMATION;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCStatus.IDLE;
 
@@ -105,8 +107,17 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
                 return;
             }
 
+            CompactionProgress.CompactionProgressEntry unfinished =
+                context.getCompactionProgress().getUnfinished(getGcGeneration(context));
+            if (unfinished != null) {
+                compactionStrategy = unfinished.getType() == FULL ? getFullCompactionStrategy() : getTailCompactionStrategy();
+            }
+
             boolean sufficientEstimatedGain = true;
-            if (context.getGCOptions().isEstimationDisabled()) {
+            if (unfinished != null) {
+                context.getGCListener().info("estimation skipped because an unfinished {} compaction with {} compacted nodes is resumed",
+                    unfinished.getType(), unfinished.getNodes());
+            } else if (context.getGCOptions().isEstimationDisabled()) {
                 context.getGCListener().info("estimation skipped because it was explicitly disabled");
             } else if (context.getGCOptions().isPaused()) {
                 context.getGCListener().info("estimation skipped because compaction is paused");
@@ -195,6 +206,11 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
                 return context.getGCJournal();
             }
 
+            @Override
+            public CompactionProgress getCompactionProgress() {
+                return context.getCompactionProgress();
+            }
+
             @Override
             public SegmentGCOptions getGCOptions() {
                 return context.getGCOptions();
@@ -237,11 +253,21 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
 
             @Override
             public Canceller getSoftCanceller() {
+                int duration = context.getGCOptions().getCompactionDuration();
+                if (duration > 0) {
+                    return Canceller.newCanceller()
+                        .withTimeout("compaction duration exceeded", duration, SECONDS);
+                }
                 return Canceller.newCanceller();
             }
 
             @Override
             public Supplier<Canceller> getStateSaveTriggerSupplier() {
+                int interval = context.getGCOptions().getCompactionCheckpointInterval();
+                if (interval > 0) {
+                    return () -> Canceller.newCanceller()
+                        .withTimeout("compaction checkpoint interval elapsed", interval, SECONDS);
+                }
                 return Canceller::newCanceller;
             }
 
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.jackrabbit.guava.common.base.Joiner;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType;
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.segment.spi.persistence.GCJournalFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the checkpoints of an unfinished, incremental compaction in the
+ * {@code gc.progress} file next to the {@link GCJournal}, with the format:
+ * 'gc type, partial gc generation, partial gc full generation, target gc
+ * generation, target gc full generation, number of nodes compacted,
+ * timestamp, root id'.
+ * <p>
+ * Each checkpoint corresponds to a partially compacted head state. As long as
+ * the head state is still of the partial generation of the latest checkpoint,
+ * the next compaction of the same type continues where the unfinished one
+ * stopped. The file is truncated once a compaction finishes.
+ */
+public class CompactionProgress {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactionProgress.class);
+
+    @Nullable
+    private final GCJournalFile progressFile;
+
+    private CompactionProgressEntry latest;
+
+    /**
+     * @param progressFile the file to persist the checkpoints to or {@code null}
+     *                     to only keep the latest checkpoint in memory.
+     */
+    public CompactionProgress(@Nullable GCJournalFile progressFile) {
+        this.progressFile = progressFile;
+    }
+
+    /**
+     * Record a checkpoint of an unfinished compaction after its partially
+     * compacted state has been set as the head state.
+     *
+     * @param type              type of the unfinished compaction
+     * @param partialGeneration gc generation of the partially compacted head state
+     * @param targetGeneration  gc generation of the fully compacted state
+     * @param nodes             number of nodes compacted so far
+     * @param root              record id of the partially compacted root node
+     */
+    public synchronized void checkpoint(@NotNull GCType type, @NotNull GCGeneration partialGeneration,
+            @NotNull GCGeneration targetGeneration, long nodes, @NotNull String root
+    ) {
+        latest = new CompactionProgressEntry(type, partialGeneration, targetGeneration, nodes,
+                System.currentTimeMillis(), requireNonNull(root));
+        if (progressFile != null) {
+            try {
+                progressFile.writeLine(latest.toString());
+            } catch (IOException e) {
+                LOG.error("Error writing compaction progress", e);
+            }
+        }
+    }
+
+    /**
+     * Discard all checkpoints after a compaction finished.
+     */
+    public synchronized void clear() {
+        latest = CompactionProgressEntry.EMPTY;
+        if (progressFile != null) {
+            try {
+                progressFile.truncate();
+            } catch (IOException e) {
+                LOG.error("Error truncating compaction progress", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the latest checkpoint if it belongs to the compaction that
+     * produced the given head generation, {@code null} otherwise.
+     *
+     * @param headGeneration gc generation of the current head state
+     */
+    @Nullable
+    public synchronized CompactionProgressEntry getUnfinished(@NotNull GCGeneration headGeneration) {
+        CompactionProgressEntry entry = read();
+        if (entry == CompactionProgressEntry.EMPTY) {
+            return null;
+        }
+        GCGeneration partial = entry.getPartialGeneration();
+        if (partial.getGeneration() == headGeneration.getGeneration()
+                && partial.getFullGeneration() == headGeneration.getFullGeneration()) {
+            return entry;
+        }
+        return null;
+    }
+
+    private CompactionProgressEntry read() {
+        if (latest == null) {
+            latest = CompactionProgressEntry.EMPTY;
+            if (progressFile != null) {
+                try {
+                    List<String> all = progressFile.readLines();
+                    if (!all.isEmpty()) {
+                        latest = CompactionProgressEntry.fromString(all.get(all.size() - 1));
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    LOG.error("Error reading compaction progress", e);
+                }
+            }
+        }
+        return latest;
+    }
+
+    public static class CompactionProgressEntry {
+
+        static final CompactionProgressEntry EMPTY = new CompactionProgressEntry(
+                GCType.FULL, GCGeneration.NULL, GCGeneration.NULL, -1, -1, "");
+
+        @NotNull
+        private final GCType type;
+
+        @NotNull
+        private final GCGeneration partialGeneration;
+
+        @NotNull
+        private final GCGeneration targetGeneration;
+
+        private final long nodes;
+
+        private final long ts;
+
+        @NotNull
+        private final String root;
+
+        CompactionProgressEntry(@NotNull GCType type, @NotNull GCGeneration partialGeneration,
+                @NotNull GCGeneration targetGeneration, long nodes, long ts, @NotNull String root
+        ) {
+            this.type = type;
+            this.partialGeneration = partialGeneration;
+            this.targetGeneration = targetGeneration;
+            this.nodes = nodes;
+            this.ts = ts;
+            this.root = root;
+        }
+
+        @Override
+        public String toString() {
+            return Joiner.on(",").join(
+                    type,
+                    partialGeneration.getGeneration(),
+                    partialGeneration.getFullGeneration(),
+                    targetGeneration.getGeneration(),
+                    targetGeneration.getFullGeneration(),
+                    nodes,
+                    ts,
+                    root
+            );
+        }
+
+        static CompactionProgressEntry fromString(String in) {
+            String[] items = in.split(",");
+            if (items.length != 8) {
+                throw new IllegalArgumentException("Invalid compaction progress entry: " + in);
+            }
+            GCType type = GCType.valueOf(items[0]);
+            GCGeneration partialGeneration = newGCGeneration(
+                    Integer.parseInt(items[1]), Integer.parseInt(items[2]), true);
+            GCGeneration targetGeneration = newGCGeneration(
+                    Integer.parseInt(items[3]), Integer.parseInt(items[4]), true);
+            return new CompactionProgressEntry(type, partialGeneration, targetGeneration,
+                    Long.parseLong(items[5]), Long.parseLong(items[6]), items[7]);
+        }
+
+        @NotNull
+        public GCType getType() {
+            return type;
+        }
+
+        @NotNull
+        public GCGeneration getPartialGeneration() {
+            return partialGeneration;
+        }
+
+        @NotNull
+        public GCGeneration getTargetGeneration() {
+            return targetGeneration;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getTs() {
+            return ts;
+        }
+
+        @NotNull
+        public String getRoot() {
+            return root;
+        }
+    }
+}
@@ -39,6 +39,8 @@ interface CompactionStrategy {
 
         GCJournal getGCJournal();
 
+        CompactionProgress getCompactionProgress();
+
         SegmentGCOptions getGCOptions();
 
         GCNodeWriteMonitor getCompactionMonitor();
@@ -168,8 +168,11 @@ public class FileStore extends AbstractFileStore {
                 .withFileStoreMonitor(stats)
                 .withMaxFileSize(builder.getMaxFileSize() * MB)
                 .withPersistence(builder.getPersistence())
+                .withSegmentCompression(builder.getSegmentCompression())
                 .withReaderCountStats(readerCountStats)
                 .withSegmentCountStats(segmentCountStats)
+                .withSegmentFilterHitStats(stats.getSegmentFilterHitStats())
+                .withSegmentFilterMissStats(stats.getSegmentFilterMissStats())
                 .withInitialisedReadersAndWriters(false);
 
         this.tarFiles = tarFilesBuilder.build();
@@ -184,6 +187,7 @@ public class FileStore extends AbstractFileStore {
             builder.getGcOptions(),
             builder.getGcListener(),
             new GCJournal(persistence.getGCJournalFile()),
+            new CompactionProgress(persistence.getCompactionProgressFile()),
             sufficientMemory,
             fileReaper,
             tarFiles,
@@ -232,11 +236,12 @@ public class FileStore extends AbstractFileStore {
            }
         });
 
-        log.info("TarMK opened at {}, mmap={}, offHeapAccess={}, size={}",
+        log.info("TarMK opened at {}, mmap={}, offHeapAccess={}, size={}, prefetch={}",
             directory,
             memoryMapping,
             offHeapAccess,
-            newPrintableBytes(size)
+            newPrintableBytes(size),
+            segmentPrefetcher.isEnabled()
         );
         log.debug("TAR files: {}", tarFiles);
     }
@@ -472,6 +477,10 @@ public class FileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        // close the prefetcher before initiating the shutdown as its
+        // threads need to keep the store alive while loading segments
+        segmentPrefetcher.close();
+
         try (ShutDownCloser ignored = shutDown.shutDown()) {
             // avoid deadlocks by closing (and joining) the background
             // thread before acquiring the synchronization lock
@@ -509,7 +518,11 @@ public class FileStore extends AbstractFileStore {
     @NotNull
     public Segment readSegment(final SegmentId id) {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
-            return segmentCache.getSegment(id, () -> readSegmentUncached(tarFiles, id));
+            return segmentCache.getSegment(id, () -> {
+                Segment segment = readSegmentUncached(tarFiles, id);
+                segmentPrefetcher.prefetch(segment, this::prefetchSegment);
+                return segment;
+            });
         } catch (ExecutionException | UncheckedExecutionException e) {
             if (e.getCause() instanceof RepositoryNotReachableException) {
                 RepositoryNotReachableException re = (RepositoryNotReachableException) e.getCause();
@@ -524,6 +537,13 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    @NotNull
+    private Segment prefetchSegment(SegmentId id) {
+        try (ShutDownCloser ignored = shutDown.keepAlive()) {
+            return readSegmentUncached(tarFiles, id);
+        }
+    }
+
     @Override
     public void writeSegment(SegmentId id, byte[] buffer, int offset, int length) throws IOException {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
@@ -24,6 +24,8 @@ import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_STR
 import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_TEMPLATE_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.DEFAULT_SEGMENT_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.SegmentNotFoundExceptionListener.LOG_SNFE;
+import static org.apache.jackrabbit.oak.segment.SegmentPrefetcher.DEFAULT_PREFETCH_DEPTH;
+import static org.apache.jackrabbit.oak.segment.SegmentPrefetcher.DEFAULT_PREFETCH_FAN_OUT;
 import static org.apache.jackrabbit.oak.segment.WriterCacheManager.DEFAULT_NODE_CACHE_SIZE;
 import static org.apache.jackrabbit.oak.segment.WriterCacheManager.DEFAULT_STRING_CACHE_SIZE;
 import static org.apache.jackrabbit.oak.segment.WriterCacheManager.DEFAULT_TEMPLATE_CACHE_SIZE;
@@ -33,16 +35,20 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.jackrabbit.oak.commons.conditions.Validate;
 import org.apache.jackrabbit.oak.segment.CacheWeights.NodeCacheWeigher;
 import org.apache.jackrabbit.oak.segment.CacheWeights.StringCacheWeigher;
 import org.apache.jackrabbit.oak.segment.CacheWeights.TemplateCacheWeigher;
 import org.apache.jackrabbit.oak.segment.RecordCache;
+import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundExceptionListener;
+import org.apache.jackrabbit.oak.segment.SegmentPrefetcher;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.NodeDeduplicationCacheType;
 import org.apache.jackrabbit.oak.segment.file.proc.Proc.Backend;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
@@ -81,6 +87,8 @@ public class FileStoreBuilder {
 
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private int compressedSegmentCacheSize;
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
@@ -141,6 +149,14 @@ public class FileStoreBuilder {
 
     private boolean eagerSegmentCaching;
 
+    private boolean segmentCompression;
+
+    private int segmentPrefetchThreads;
+
+    private int segmentPrefetchDepth = DEFAULT_PREFETCH_DEPTH;
+
+    private int segmentPrefetchFanOut = DEFAULT_PREFETCH_FAN_OUT;
+
     private boolean built;
 
     /**
@@ -196,6 +212,20 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Size in MB of the cache for compressed segments evicted from the segment
+     * cache. This cache resides in direct memory. A size of {@code 0} (the
+     * default) disables it.
+     *
+     * @param compressedSegmentCacheSize None negative cache size
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withCompressedSegmentCacheSize(int compressedSegmentCacheSize) {
+        this.compressedSegmentCacheSize = compressedSegmentCacheSize;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      *
@@ -397,7 +427,62 @@ public class FileStoreBuilder {
         this.eagerSegmentCaching = eagerSegmentCaching;
         return this;
     }
+
+    /**
+     * Compress data segments with LZ4 before writing them to the tar files.
+     * Compressed segments are always read transparently, regardless of this
+     * setting, but older versions of Oak can't read them. Defaults to
+     * {@code false}.
+     *
+     * @param segmentCompression enables segment compression iff {@code true}.
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentCompression(boolean segmentCompression) {
+        this.segmentCompression = segmentCompression;
+        return this;
+    }
     
+    /**
+     * Number of threads asynchronously prefetching the segments referenced
+     * by a segment loaded from disk. See {@link SegmentPrefetcher}.
+     *
+     * @param segmentPrefetchThreads number of prefetch threads, prefetching
+     *                               is disabled for values {@code <= 0}
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchThreads(int segmentPrefetchThreads) {
+        this.segmentPrefetchThreads = segmentPrefetchThreads;
+        return this;
+    }
+
+    /**
+     * Depth up to which the segment prefetcher follows segment references.
+     * A depth of 1 only prefetches the segments directly referenced by the
+     * loaded segment.
+     *
+     * @param segmentPrefetchDepth prefetch depth
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchDepth(int segmentPrefetchDepth) {
+        this.segmentPrefetchDepth = segmentPrefetchDepth;
+        return this;
+    }
+
+    /**
+     * Maximum number of references the segment prefetcher follows per segment.
+     *
+     * @param segmentPrefetchFanOut prefetch fan out
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchFanOut(int segmentPrefetchFanOut) {
+        this.segmentPrefetchFanOut = segmentPrefetchFanOut;
+        return this;
+    }
+
     /**
      * Sets the threshold under which binaries are inlined in data segments.
      * @param binariesInlineThreshold the threshold
@@ -509,6 +594,10 @@ public class FileStoreBuilder {
         return segmentCacheSize;
     }
 
+    int getCompressedSegmentCacheSize() {
+        return compressedSegmentCacheSize;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -560,7 +649,8 @@ public class FileStoreBuilder {
     public WriterCacheManager getCacheManager() {
         if (cacheManager == null) {
             cacheManager = new EvictingWriteCacheManager(stringDeduplicationCacheSize,
-                    templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+                    templateDeduplicationCacheSize, nodeDeduplicationCacheSize,
+                    gcOptions.getNodeDeduplicationCacheType());
         }
         return cacheManager;
     }
@@ -585,11 +675,27 @@ public class FileStoreBuilder {
     boolean getEagerSegmentCaching() {
         return eagerSegmentCaching;
     }
+
+    boolean getSegmentCompression() {
+        return segmentCompression;
+    }
     
     int getBinariesInlineThreshold() {
         return binariesInlineThreshold;
     }
 
+    int getSegmentPrefetchThreads() {
+        return segmentPrefetchThreads;
+    }
+
+    int getSegmentPrefetchDepth() {
+        return segmentPrefetchDepth;
+    }
+
+    int getSegmentPrefetchFanOut() {
+        return segmentPrefetchFanOut;
+    }
+
     @Override
     public String toString() {
         return "FileStoreBuilder{" +
@@ -599,6 +705,7 @@ public class FileStoreBuilder {
                 ", binariesInlineThreshold=" + binariesInlineThreshold +
                 ", maxFileSize=" + maxFileSize +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", compressedSegmentCacheSize=" + compressedSegmentCacheSize +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
@@ -606,6 +713,10 @@ public class FileStoreBuilder {
                 ", nodeDeduplicationCacheSize=" + nodeDeduplicationCacheSize +
                 ", memoryMapping=" + memoryMapping +
                 ", offHeapAccess=" + offHeapAccess +
+                ", segmentCompression=" + segmentCompression +
+                ", segmentPrefetchThreads=" + segmentPrefetchThreads +
+                ", segmentPrefetchDepth=" + segmentPrefetchDepth +
+                ", segmentPrefetchFanOut=" + segmentPrefetchFanOut +
                 ", gcOptions=" + gcOptions +
                 '}';
     }
@@ -614,10 +725,23 @@ public class FileStoreBuilder {
         public EvictingWriteCacheManager(
                 int stringCacheSize,
                 int templateCacheSize,
-                int nodeCacheSize) {
+                int nodeCacheSize,
+                @NotNull NodeDeduplicationCacheType nodeCacheType) {
             super(RecordCache.factory(stringCacheSize, new StringCacheWeigher()),
                     RecordCache.factory(templateCacheSize, new TemplateCacheWeigher()),
-                    PriorityCache.factory(nodeCacheSize, new NodeCacheWeigher()));
+                    nodeCacheFactory(nodeCacheSize, nodeCacheType));
+        }
+
+        private static Supplier<? extends GenerationalCache<String, RecordId>> nodeCacheFactory(
+                int nodeCacheSize,
+                @NotNull NodeDeduplicationCacheType nodeCacheType) {
+            switch (nodeCacheType) {
+                case LOCK_FREE:
+                    return LockFreePriorityCache.factory(nodeCacheSize, new NodeCacheWeigher());
+                case PRIORITY:
+                default:
+                    return PriorityCache.factory(nodeCacheSize, new NodeCacheWeigher());
+            }
         }
 
         void evictOldGeneration(final int newGeneration) {
@@ -39,6 +39,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
     public static final String SEGMENT_REPO_SIZE = "SEGMENT_REPO_SIZE";
     public static final String SEGMENT_WRITES = "SEGMENT_WRITES";
     public static final String JOURNAL_WRITES = "JOURNAL_WRITES";
+    public static final String SEGMENT_FILTER_HITS = "SEGMENT_FILTER_HITS";
+    public static final String SEGMENT_FILTER_MISSES = "SEGMENT_FILTER_MISSES";
     private static final String SNFE_COUNT = "SNFE_COUNT";
 
     private final StatisticsProvider statisticsProvider;
@@ -47,6 +49,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
     private final CounterStats repoSize;
     private final MeterStats journalWriteStats;
     private final CounterStats snfeCountStats;
+    private final CounterStats segmentFilterHitStats;
+    private final CounterStats segmentFilterMissStats;
 
     public FileStoreStats(StatisticsProvider statisticsProvider, FileStore store, long initialSize) {
         this.statisticsProvider = statisticsProvider;
@@ -55,6 +59,8 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         this.repoSize = statisticsProvider.getCounterStats(SEGMENT_REPO_SIZE, StatsOptions.DEFAULT);
         this.journalWriteStats = statisticsProvider.getMeter(JOURNAL_WRITES, StatsOptions.DEFAULT);
         this.snfeCountStats = statisticsProvider.getCounterStats(SNFE_COUNT, StatsOptions.DEFAULT);
+        this.segmentFilterHitStats = statisticsProvider.getCounterStats(SEGMENT_FILTER_HITS, StatsOptions.DEFAULT);
+        this.segmentFilterMissStats = statisticsProvider.getCounterStats(SEGMENT_FILTER_MISSES, StatsOptions.DEFAULT);
         repoSize.inc(initialSize);
     }
 
@@ -62,6 +68,14 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         repoSize.inc(initialSize);
     }
 
+    CounterStats getSegmentFilterHitStats() {
+        return segmentFilterHitStats;
+    }
+
+    CounterStats getSegmentFilterMissStats() {
+        return segmentFilterMissStats;
+    }
+
     //~-----------------------------< SegmentNotFoundExceptionListener >
     @Override
     public void notify(@NotNull SegmentId id, @NotNull SegmentNotFoundException snfe) {
@@ -133,6 +147,23 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         return asCompositeData(getTimeSeries(JOURNAL_WRITES), JOURNAL_WRITES);
     }
 
+    @Override
+    public long getSegmentFilterHitCount() {
+        return segmentFilterHitStats.getCount();
+    }
+
+    @Override
+    public long getSegmentFilterMissCount() {
+        return segmentFilterMissStats.getCount();
+    }
+
+    @Override
+    public double getSegmentFilterHitRate() {
+        long hits = getSegmentFilterHitCount();
+        long lookups = hits + getSegmentFilterMissCount();
+        return lookups == 0 ? 1.0 : (double) hits / lookups;
+    }
+
     private TimeSeries getTimeSeries(String name) {
         return statisticsProvider.getStats().getTimeSeries(name, true);
     }
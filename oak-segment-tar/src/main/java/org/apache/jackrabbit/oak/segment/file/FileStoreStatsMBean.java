@@ -58,4 +58,22 @@ public interface FileStoreStatsMBean {
      * @return  time series of the writes to journal
      */
     CompositeData getJournalWriteStatsAsCompositeData();
+
+    /**
+     * @return  number of tar file index lookups avoided because the Bloom
+     *          filter of the tar file ruled out the segment
+     */
+    long getSegmentFilterHitCount();
+
+    /**
+     * @return  number of tar file index lookups not finding the segment
+     *          although the Bloom filter of the tar file didn't rule it out
+     */
+    long getSegmentFilterMissCount();
+
+    /**
+     * @return  ratio of the tar files not containing a looked up segment
+     *          that were ruled out by their Bloom filter
+     */
+    double getSegmentFilterHitRate();
 }
@@ -51,6 +51,8 @@ interface GarbageCollectionStrategy {
 
         GCJournal getGCJournal();
 
+        CompactionProgress getCompactionProgress();
+
         SegmentTracker getSegmentTracker();
 
         SegmentWriterFactory getSegmentWriterFactory();
@@ -70,6 +70,9 @@ class GarbageCollector {
     @NotNull
     private final GCJournal gcJournal;
 
+    @NotNull
+    private final CompactionProgress compactionProgress;
+
     private final AtomicBoolean sufficientMemory;
 
     private final FileReaper fileReaper;
@@ -118,6 +121,7 @@ class GarbageCollector {
         SegmentGCOptions gcOptions,
         GCListener gcListener,
         GCJournal gcJournal,
+        CompactionProgress compactionProgress,
         AtomicBoolean sufficientMemory,
         FileReaper fileReaper,
         TarFiles tarFiles,
@@ -135,6 +139,7 @@ class GarbageCollector {
         this.gcOptions = gcOptions;
         this.gcListener = new PrefixedGCListener(gcListener, GC_COUNT);
         this.gcJournal = gcJournal;
+        this.compactionProgress = compactionProgress;
         this.sufficientMemory = sufficientMemory;
         this.fileReaper = fileReaper;
         this.tarFiles = tarFiles;
@@ -182,6 +187,11 @@ class GarbageCollector {
                 return gcJournal;
             }
 
+            @Override
+            public CompactionProgress getCompactionProgress() {
+                return compactionProgress;
+            }
+
             @Override
             public SegmentTracker getSegmentTracker() {
                 return tracker;
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import java.util.function.Predicate;
+
+import org.apache.jackrabbit.guava.common.cache.CacheStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A partial mapping from keys of type {@code K} to values of type {@code V},
+ * where each mapping is associated with a generation and a cost. Mappings of
+ * later generations take precedence over mappings of earlier generations and
+ * mappings with a higher cost have a lower chance of being evicted than
+ * mappings with a lower cost.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ * @see PriorityCache
+ * @see LockFreePriorityCache
+ */
+public interface GenerationalCache<K, V> {
+
+    /**
+     * Add a mapping to the cache.
+     * @param key            the key of the mapping
+     * @param value          the value of the mapping
+     * @param generation     the generation of the mapping
+     * @param initialCost    the initial cost associated with this mapping
+     * @return  {@code true} if the mapping has been added, {@code false} otherwise.
+     */
+    boolean put(@NotNull K key, @NotNull V value, int generation, byte initialCost);
+
+    /**
+     * Look up a mapping from this cache by its {@code key} and {@code generation}.
+     * @param key         key of the mapping to look up
+     * @param generation  generation of the mapping to look up
+     * @return  the mapping for {@code key} and {@code generation} or {@code null} if this
+     *          cache does not contain such a mapping.
+     */
+    @Nullable
+    V get(@NotNull K key, int generation);
+
+    /**
+     * Purge all keys from this cache whose entry's generation matches the
+     * passed {@code purge} predicate.
+     * @param purge
+     */
+    void purgeGenerations(@NotNull Predicate<Integer> purge);
+
+    /**
+     * @return  the number of mappings in this cache.
+     */
+    long size();
+
+    /**
+     * @return  access statistics for this cache
+     */
+    @NotNull
+    CacheStats getStats();
+
+    /**
+     * @return  an estimation of the memory occupied by the mappings in this cache
+     */
+    long estimateCurrentWeight();
+}
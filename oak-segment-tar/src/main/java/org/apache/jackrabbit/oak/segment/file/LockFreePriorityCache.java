@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.lang.Integer.bitCount;
+import static java.util.Objects.requireNonNull;
+import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.apache.jackrabbit.guava.common.cache.CacheStats;
+import org.apache.jackrabbit.guava.common.cache.Weigher;
+import org.apache.jackrabbit.oak.segment.CacheWeights;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A lock-free variant of {@link PriorityCache}. It follows the same rules
+ * regarding generations and costs, but instead of guarding the entries with
+ * locks, lookups are plain volatile reads of the slots in the probe sequence
+ * of a key and updates install a new entry by compare-and-set. An update
+ * losing the race for a slot re-evaluates the probe sequence a limited number
+ * of times before giving up.
+ * <p>
+ * Clashes are resolved by double hashing instead of the bit shifting used by
+ * {@code PriorityCache}.
+ * <p>
+ * Incrementing the cost of an entry on a cache hit is not atomic. Concurrent
+ * hits of the same entry might lose increments, which only affects the
+ * eviction heuristic.
+ * <p>
+ * This cache is thread safe.
+ * @param <K>  type of the keys
+ * @param <V>  type of the values
+ */
+public class LockFreePriorityCache<K, V> implements GenerationalCache<K, V> {
+
+    /**
+     * Default number of slots probed per operation
+     */
+    public static final int DEFAULT_PROBES = 8;
+
+    /**
+     * Number of times a put re-evaluates the probe sequence after losing
+     * a race for a slot
+     */
+    private static final int MAX_RETRIES = 2;
+
+    private final int probes;
+
+    private final int mask;
+
+    @NotNull
+    private final AtomicReferenceArray<Entry<K, V>> entries;
+
+    private final AtomicInteger[] evictions;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadExceptionCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder size = new LongAdder();
+    private final LongAdder weight = new LongAdder();
+
+    @NotNull
+    private final Weigher<K, V> weigher;
+
+    /**
+     * Static factory for creating new {@code LockFreePriorityCache} instances.
+     * @param size  size of the cache. Must be a power of 2.
+     * @return  a new {@code LockFreePriorityCache} instance of the given {@code size}.
+     */
+    public static <K, V> Supplier<LockFreePriorityCache<K, V>> factory(final int size, @NotNull final Weigher<K, V> weigher) {
+        checkArgument(bitCount(size) == 1);
+        requireNonNull(weigher);
+        return () -> new LockFreePriorityCache<>(size, weigher);
+    }
+
+    private static class Entry<K, V> {
+        final K key;
+        final V value;
+        final int generation;
+
+        /**
+         * Racily incremented on cache hits, see class comment.
+         */
+        byte cost;
+
+        Entry(K key, V value, int generation, byte cost) {
+            this.key = key;
+            this.value = value;
+            this.generation = generation;
+            this.cost = cost;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" + key + "->" + value + " @" + generation + ", $" + cost + "}";
+        }
+    }
+
+    /**
+     * Create a new instance of the given {@code size}. {@code probes} specifies
+     * the number of slots looked at to find a mapping.
+     * @param size      Size of the cache. Must be a power of {@code 2}.
+     * @param probes    Number of slots probed per operation. Must be greater than {@code 0}.
+     * @param weigher   Needed to provide an estimation of the cache weight in memory
+     */
+    public LockFreePriorityCache(int size, int probes, @NotNull Weigher<K, V> weigher) {
+        checkArgument(bitCount(size) == 1);
+        checkArgument(probes > 0);
+        this.probes = probes;
+        this.mask = size - 1;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.weigher = requireNonNull(weigher);
+
+        evictions = new AtomicInteger[256];
+        for (int i = 0; i < 256; i++) {
+            evictions[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Create a new instance of the given {@code size} probing
+     * {@link #DEFAULT_PROBES} slots per operation.
+     * @param size      Size of the cache. Must be a power of {@code 2}.
+     * @param weigher   Needed to provide an estimation of the cache weight in memory
+     */
+    public LockFreePriorityCache(int size, @NotNull Weigher<K, V> weigher) {
+        this(size, DEFAULT_PROBES, weigher);
+    }
+
+    public LockFreePriorityCache(int size) {
+        this(size, DEFAULT_PROBES, CacheWeights.noopWeigher());
+    }
+
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Double hashing: the step is derived from the upper bits of the hash and
+     * odd, so that the first {@code size} probes visit distinct slots.
+     */
+    private int project(int hash, int probe) {
+        return (hash + probe * ((hash >>> 16) | 1)) & mask;
+    }
+
+    @Override
+    public long size() {
+        return size.sum();
+    }
+
+    @Override
+    public boolean put(@NotNull K key, @NotNull V value, int generation, byte initialCost) {
+        int hash = spread(key.hashCode());
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            int index = -1;
+            Entry<K, V> expected = null;
+            byte cost = initialCost;
+            byte cheapest = initialCost;
+            boolean eviction = false;
+
+            for (int k = 0; k < probes; k++) {
+                int i = project(hash, k);
+                Entry<K, V> entry = entries.get(i);
+                if (entry == null) {
+                    // Empty slot -> use this index
+                    index = i;
+                    expected = null;
+                    cost = initialCost;
+                    eviction = false;
+                    break;
+                } else if (entry.generation <= generation && key.equals(entry.key)) {
+                    // Key exists and generation is greater or equal -> use this index and boost the cost
+                    index = i;
+                    expected = entry;
+                    cost = entry.cost < Byte.MAX_VALUE ? (byte) (entry.cost + 1) : entry.cost;
+                    eviction = false;
+                    break;
+                } else if (entry.generation < generation) {
+                    // Old generation -> use this index
+                    index = i;
+                    expected = entry;
+                    cost = initialCost;
+                    eviction = false;
+                    break;
+                } else if (entry.cost < cheapest) {
+                    // Candidate slot, keep on searching for even cheaper slots
+                    cheapest = entry.cost;
+                    index = i;
+                    expected = entry;
+                    eviction = true;
+                }
+            }
+
+            if (index < 0) {
+                break;
+            }
+
+            Entry<K, V> newEntry = new Entry<>(key, value, generation, cost);
+            if (entries.compareAndSet(index, expected, newEntry)) {
+                loadCount.increment();
+                if (expected != null) {
+                    if (eviction) {
+                        evictions[expected.cost - Byte.MIN_VALUE].incrementAndGet();
+                        evictionCount.increment();
+                    }
+                    weight.add(-weighEntry(expected));
+                } else {
+                    size.increment();
+                }
+                weight.add(weighEntry(newEntry));
+                return true;
+            }
+        }
+
+        loadExceptionCount.increment();
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public V get(@NotNull K key, int generation) {
+        int hash = spread(key.hashCode());
+        for (int k = 0; k < probes; k++) {
+            Entry<K, V> entry = entries.get(project(hash, k));
+            if (entry != null && generation == entry.generation && key.equals(entry.key)) {
+                if (entry.cost < Byte.MAX_VALUE) {
+                    entry.cost++;
+                }
+                hitCount.increment();
+                return entry.value;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    @Override
+    public void purgeGenerations(@NotNull Predicate<Integer> purge) {
+        for (int i = 0; i < entries.length(); i++) {
+            Entry<K, V> entry = entries.get(i);
+            if (entry != null && purge.test(entry.generation) && entries.compareAndSet(i, entry, null)) {
+                size.decrement();
+                weight.add(-weighEntry(entry));
+            }
+        }
+    }
+
+    private int weighEntry(Entry<K, V> entry) {
+        return weigher.weigh(entry.key, entry.value);
+    }
+
+    @Override
+    public String toString() {
+        int[] costs = new int[256];
+        for (int i = 0; i < entries.length(); i++) {
+            Entry<K, V> entry = entries.get(i);
+            if (entry != null) {
+                costs[entry.cost - Byte.MIN_VALUE]++;
+            }
+        }
+        int[] evicted = new int[256];
+        for (int i = 0; i < 256; i++) {
+            evicted[i] = evictions[i].get();
+        }
+        return "LockFreePriorityCache" +
+                "{ costs=" + toString(costs) +
+                ", evictions=" + toString(evicted) + " }";
+    }
+
+    private static String toString(int[] ints) {
+        StringBuilder b = new StringBuilder("[");
+        String sep = "";
+        for (int i = 0; i < ints.length; i++) {
+            if (ints[i] > 0) {
+                b.append(sep).append(i).append("->").append(ints[i]);
+                sep = ",";
+            }
+        }
+        return b.append(']').toString();
+    }
+
+    @NotNull
+    @Override
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadCount.sum(),
+                loadExceptionCount.sum(), 0, evictionCount.sum());
+    }
+
+    @Override
+    public long estimateCurrentWeight() {
+        return weight.sum();
+    }
+
+}
@@ -60,7 +60,7 @@ import org.apache.jackrabbit.guava.common.cache.Weigher;
  * @param <K>  type of the keys
  * @param <V>  type of the values
  */
-public class PriorityCache<K, V> {
+public class PriorityCache<K, V> implements GenerationalCache<K, V> {
     private final int rehash;
     private final Entry<?,?>[] entries;
     private final AtomicInteger[] costs;
@@ -220,6 +220,7 @@ public class PriorityCache<K, V> {
     /**
      * @return  the number of mappings in this cache.
      */
+    @Override
     public long size() {
         return size.sum();
     }
@@ -232,6 +233,7 @@ public class PriorityCache<K, V> {
      * @param initialCost    the initial cost associated with this mapping
      * @return  {@code true} if the mapping has been added, {@code false} otherwise.
      */
+    @Override
     public boolean put(@NotNull K key, @NotNull V value, int generation, byte initialCost) {
         int hashCode = key.hashCode();
         byte cheapest = initialCost;
@@ -320,6 +322,7 @@ public class PriorityCache<K, V> {
      */
     @SuppressWarnings("unchecked")
     @Nullable
+    @Override
     public V get(@NotNull K key, int generation) {
         int hashCode = key.hashCode();
         for (int k = 0; k <= rehash; k++) {
@@ -351,6 +354,7 @@ public class PriorityCache<K, V> {
      * passed {@code purge} predicate.
      * @param purge
      */
+    @Override
     public void purgeGenerations(@NotNull Predicate<Integer> purge) {
         int numSegments = segments.length;
         int entriesPerSegment = entries.length / numSegments;
@@ -400,11 +404,13 @@ public class PriorityCache<K, V> {
      * @return  access statistics for this cache
      */
     @NotNull
+    @Override
     public CacheStats getStats() {
         return new CacheStats(hitCount.sum(), missCount.sum(), loadCount.sum(),
                 loadExceptionCount.sum(), 0, evictionCount.sum());
     }
 
+    @Override
     public long estimateCurrentWeight() {
         return weight.get();
     }
@@ -123,7 +123,9 @@ public class ReadOnlyFileStore extends AbstractFileStore {
             return segmentCache.getSegment(id, new Callable<Segment>() {
                 @Override
                 public Segment call() throws Exception {
-                    return readSegmentUncached(tarFiles, id);
+                    Segment segment = readSegmentUncached(tarFiles, id);
+                    segmentPrefetcher.prefetch(segment, segmentId -> readSegmentUncached(tarFiles, segmentId));
+                    return segment;
                 }
             });
         } catch (ExecutionException | UncheckedExecutionException e) {
@@ -133,6 +135,7 @@ public class ReadOnlyFileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        segmentPrefetcher.close();
         Closer closer = Closer.create();
         closer.register(tarFiles);
         closer.register(revisions);
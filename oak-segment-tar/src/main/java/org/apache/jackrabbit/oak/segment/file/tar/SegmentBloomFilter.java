@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+
+/**
+ * A Bloom filter over the identifiers of the segments contained in a TAR
+ * file. A negative answer from {@link #mightContain(long, long)} is definite
+ * and allows to skip the lookup in the index of that TAR file.
+ * <p>
+ * The filter uses {@link #BITS_PER_ENTRY} bits per segment and {@link
+ * #HASH_FUNCTIONS} hash functions derived from a single 64 bit hash of the
+ * segment identifier by double hashing, which results in a false positive
+ * probability below 1%.
+ * <p>
+ * Instances of this class are immutable once built and thus thread safe.
+ */
+final class SegmentBloomFilter {
+
+    static final int BITS_PER_ENTRY = 10;
+
+    static final int HASH_FUNCTIONS = 7;
+
+    private final long[] bits;
+
+    private final int mask;
+
+    private SegmentBloomFilter(int entries) {
+        // Round the number of bits to a power of 2 to replace the modulo by a mask
+        long size = Long.highestOneBit(Math.max(64L, (long) entries * BITS_PER_ENTRY - 1) << 1);
+        this.bits = new long[(int) (size >>> 6)];
+        this.mask = (int) (size - 1);
+    }
+
+    static SegmentBloomFilter newSegmentBloomFilter(List<SegmentArchiveEntry> entries) {
+        SegmentBloomFilter filter = new SegmentBloomFilter(entries.size());
+        for (SegmentArchiveEntry entry : entries) {
+            filter.add(entry.getMsb(), entry.getLsb());
+        }
+        return filter;
+    }
+
+    /**
+     * Finalization step of MurmurHash3, spreading the bits of the segment
+     * identifier. Segment identifiers are mostly random, but their version
+     * and type bits are not.
+     */
+    private static long hash(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void add(long msb, long lsb) {
+        long h = hash(msb, lsb);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param msb the most significant bits of the segment identifier
+     * @param lsb the least significant bits of the segment identifier
+     * @return {@code false} if the segment is definitely not contained in the
+     * TAR file, {@code true} if it might be.
+     */
+    boolean mightContain(long msb, long lsb) {
+        long h = hash(msb, lsb);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the size of this filter in bytes
+     */
+    int size() {
+        return bits.length * Long.BYTES;
+    }
+}
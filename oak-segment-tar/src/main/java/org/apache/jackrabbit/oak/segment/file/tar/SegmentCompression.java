@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+
+import java.io.IOException;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.jackrabbit.oak.commons.Buffer;
+
+/**
+ * Compression of data segments stored in TAR files.
+ * <p>
+ * A compressed segment starts with the signature {@code 0aZ} instead of the
+ * {@code 0aK} of an uncompressed data segment, followed by one byte
+ * identifying the codec, the length of the uncompressed segment as a four
+ * bytes integer and the compressed content. Since every data segment starts
+ * with {@code 0aK}, compressed and uncompressed data segments can coexist in
+ * the same TAR file and are told apart when reading. Bulk segments contain
+ * arbitrary binary data and are never compressed.
+ * <p>
+ * Older versions of Oak can't read compressed segments, so compression must
+ * only be enabled for stores that won't be opened by them anymore.
+ */
+final class SegmentCompression {
+
+    private static final byte[] SIGNATURE = {'0', 'a', 'Z'};
+
+    private static final byte LZ4 = 1;
+
+    static final int HEADER_SIZE = SIGNATURE.length + 1 + Integer.BYTES;
+
+    /**
+     * Minimum fraction of the size of a segment that compression must save
+     * for the compressed content to be stored. Decompressing costs time on
+     * every read, which isn't worth it for a few bytes.
+     */
+    private static final int MIN_SAVING_DIVISOR = 8;
+
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+
+    private static final LZ4Compressor compressor = factory.fastCompressor();
+
+    private static final LZ4FastDecompressor decompressor = factory.fastDecompressor();
+
+    private SegmentCompression() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Compress a segment.
+     *
+     * @param lsb    the least significant bits of the segment identifier
+     * @param data   the content of the segment
+     * @param offset the offset of the segment in {@code data}
+     * @param size   the size of the segment
+     * @return the compressed segment or {@code null} if the segment isn't a
+     * data segment or compression doesn't save enough space.
+     */
+    static byte[] compress(long lsb, byte[] data, int offset, int size) {
+        if (!isDataSegmentId(lsb)) {
+            return null;
+        }
+
+        int maxLength = size - size / MIN_SAVING_DIVISOR - HEADER_SIZE;
+        if (maxLength <= 0) {
+            return null;
+        }
+
+        byte[] compressed = new byte[HEADER_SIZE + compressor.maxCompressedLength(size)];
+        int length = compressor.compress(data, offset, size, compressed, HEADER_SIZE);
+        if (length > maxLength) {
+            return null;
+        }
+
+        Buffer header = Buffer.wrap(compressed);
+        header.put(SIGNATURE);
+        header.put(LZ4);
+        header.putInt(size);
+
+        byte[] result = new byte[HEADER_SIZE + length];
+        System.arraycopy(compressed, 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * @param lsb    the least significant bits of the segment identifier
+     * @param buffer the content of the segment as stored in the TAR file
+     * @return {@code true} if the segment is compressed
+     */
+    static boolean isCompressed(long lsb, Buffer buffer) {
+        if (!isDataSegmentId(lsb) || buffer.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int position = buffer.position();
+        return buffer.get(position) == SIGNATURE[0]
+                && buffer.get(position + 1) == SIGNATURE[1]
+                && buffer.get(position + 2) == SIGNATURE[2];
+    }
+
+    /**
+     * Decompress a segment if it is compressed.
+     *
+     * @param lsb    the least significant bits of the segment identifier
+     * @param buffer the content of the segment as stored in the TAR file
+     * @return the uncompressed content of the segment, which is {@code buffer}
+     * itself if the segment isn't compressed.
+     * @throws IOException if the segment is compressed with an unknown codec
+     *                     or its compressed content is corrupt.
+     */
+    static Buffer decompress(long lsb, Buffer buffer) throws IOException {
+        if (buffer == null || !isCompressed(lsb, buffer)) {
+            return buffer;
+        }
+
+        int position = buffer.position();
+        byte codec = buffer.get(position + SIGNATURE.length);
+        if (codec != LZ4) {
+            throw new IOException("Unknown segment compression codec " + codec);
+        }
+
+        int size = buffer.getInt(position + SIGNATURE.length + 1);
+        byte[] compressed = new byte[buffer.remaining() - HEADER_SIZE];
+        buffer.duplicate().position(position + HEADER_SIZE).get(compressed);
+
+        byte[] data = new byte[size];
+        try {
+            if (decompressor.decompress(compressed, 0, data, 0, size) != compressed.length) {
+                throw new IOException("Invalid length of compressed segment");
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException("Corrupt compressed segment", e);
+        }
+        return Buffer.wrap(data);
+    }
+
+    /**
+     * Decompress a segment if it is compressed.
+     *
+     * @see #decompress(long, Buffer)
+     */
+    static byte[] decompress(long lsb, byte[] data) throws IOException {
+        Buffer buffer = Buffer.wrap(data);
+        if (!isCompressed(lsb, buffer)) {
+            return data;
+        }
+        return decompress(lsb, buffer).array();
+    }
+}
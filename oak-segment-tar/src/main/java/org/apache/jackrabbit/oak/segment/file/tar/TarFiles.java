@@ -135,8 +135,14 @@ public class TarFiles implements Closeable {
 
         private CounterStats segmentCountStats = NoopStats.INSTANCE;
 
+        private CounterStats segmentFilterHitStats = NoopStats.INSTANCE;
+
+        private CounterStats segmentFilterMissStats = NoopStats.INSTANCE;
+
         private boolean initialiseReadersAndWriters = true;
 
+        private boolean segmentCompression;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -182,6 +188,16 @@ public class TarFiles implements Closeable {
             return this;
         }
 
+        /**
+         * Compress data segments before writing them.
+         *
+         * @see SegmentCompression
+         */
+        public Builder withSegmentCompression(boolean segmentCompression) {
+            this.segmentCompression = segmentCompression;
+            return this;
+        }
+
         public Builder withReadOnly() {
             this.readOnly = true;
             return this;
@@ -202,6 +218,16 @@ public class TarFiles implements Closeable {
             return this;
         }
 
+        public Builder withSegmentFilterHitStats(CounterStats segmentFilterHitStats) {
+            this.segmentFilterHitStats = segmentFilterHitStats;
+            return this;
+        }
+
+        public Builder withSegmentFilterMissStats(CounterStats segmentFilterMissStats) {
+            this.segmentFilterMissStats = segmentFilterMissStats;
+            return this;
+        }
+
         public Builder withInitialisedReadersAndWriters(boolean initialiseReadersAndWriters) {
             this.initialiseReadersAndWriters = initialiseReadersAndWriters;
             return this;
@@ -252,6 +278,10 @@ public class TarFiles implements Closeable {
             return readOnly;
         }
 
+        public boolean isSegmentCompression() {
+            return segmentCompression;
+        }
+
         private SegmentArchiveManager buildArchiveManager() throws IOException {
             return persistence.createArchiveManager(memoryMapping, offHeapAccess, ioMonitor, readOnly && fileStoreMonitor == null ? new FileStoreMonitorAdapter() : fileStoreMonitor, remoteStoreMonitor);
         }
@@ -375,8 +405,23 @@ public class TarFiles implements Closeable {
      */
     private final CounterStats segmentCount;
 
+    /**
+     * Counter exposing the number of index lookups in {@link TarReader}
+     * instances avoided because their Bloom filter ruled out the segment.
+     */
+    private final CounterStats segmentFilterHits;
+
+    /**
+     * Counter exposing the number of index lookups in {@link TarReader}
+     * instances that didn't find the segment although their Bloom filter
+     * didn't rule it out.
+     */
+    private final CounterStats segmentFilterMisses;
+
     private final boolean readOnly;
 
+    private final boolean segmentCompression;
+
     private final TarRecovery tarRecovery;
 
     /**
@@ -393,7 +438,10 @@ public class TarFiles implements Closeable {
         archiveManager = builder.buildArchiveManager();
         readerCount = builder.readerCountStats;
         segmentCount = builder.segmentCountStats;
+        segmentFilterHits = builder.segmentFilterHitStats;
+        segmentFilterMisses = builder.segmentFilterMissStats;
         readOnly = builder.readOnly;
+        segmentCompression = builder.segmentCompression;
         tarRecovery = builder.tarRecovery;
 
         if (builder.initialiseReadersAndWriters) {
@@ -427,7 +475,7 @@ public class TarFiles implements Closeable {
             if (indices.length > 0) {
                 writeNumber = indices[indices.length - 1] + 1;
             }
-            writer = new TarWriter(archiveManager, writeNumber, segmentCount);
+            writer = new TarWriter(archiveManager, writeNumber, segmentCount, segmentCompression);
         }
 
         initialised = true;
@@ -584,15 +632,27 @@ public class TarFiles implements Closeable {
             lock.readLock().unlock();
         }
 
-        for (TarReader reader : iterable(head)) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
+        int hits = 0;
+        int misses = 0;
+        try {
+            for (TarReader reader : iterable(head)) {
+                if (!reader.mightContainEntry(msb, lsb)) {
+                    hits++;
+                } else if (reader.containsEntry(msb, lsb)) {
+                    return true;
+                } else {
+                    misses++;
+                }
             }
+            return false;
+        } finally {
+            updateSegmentFilterStats(hits, misses);
         }
-        return false;
     }
 
     public Buffer readSegment(long msb, long lsb) {
+        int hits = 0;
+        int misses = 0;
         try {
             Node head;
 
@@ -610,18 +670,34 @@ public class TarFiles implements Closeable {
             }
 
             for (TarReader reader : iterable(head)) {
+                if (!reader.mightContainEntry(msb, lsb)) {
+                    hits++;
+                    continue;
+                }
                 Buffer b = reader.readEntry(msb, lsb);
                 if (b != null) {
                     return b;
                 }
+                misses++;
             }
         } catch (IOException e) {
             log.warn("Unable to read from TAR file", e);
+        } finally {
+            updateSegmentFilterStats(hits, misses);
         }
 
         return null;
     }
 
+    private void updateSegmentFilterStats(int hits, int misses) {
+        if (hits > 0) {
+            segmentFilterHits.inc(hits);
+        }
+        if (misses > 0) {
+            segmentFilterMisses.inc(misses);
+        }
+    }
+
     public void writeSegment(UUID id, byte[] buffer, int offset, int length, GCGeneration generation, Set<UUID> references, Set<String> binaryReferences) throws IOException {
         checkInitialised();
         lock.writeLock().lock();
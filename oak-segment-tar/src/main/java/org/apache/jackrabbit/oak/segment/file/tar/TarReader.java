@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.segment.file.tar;
 
 import static java.util.Collections.singletonList;
 import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.apache.jackrabbit.oak.segment.file.tar.SegmentBloomFilter.newSegmentBloomFilter;
 
 import java.io.Closeable;
 import java.io.File;
@@ -182,7 +183,8 @@ public class TarReader implements Closeable {
 
             for (Entry<UUID, byte[]> entry : entries.entrySet()) {
                 try {
-                    recovery.recoverEntry(entry.getKey(), entry.getValue(), new EntryRecovery() {
+                    byte[] content = SegmentCompression.decompress(entry.getKey().getLeastSignificantBits(), entry.getValue());
+                    recovery.recoverEntry(entry.getKey(), content, new EntryRecovery() {
                         @Override
                         public void recoverEntry(long msb, long lsb, byte[] data, int offset, int size, GCGeneration generation) throws IOException {
                             writer.writeEntry(msb, lsb, data, offset, size, generation);
@@ -279,15 +281,19 @@ public class TarReader implements Closeable {
 
     private final Set<UUID> segmentUUIDs;
 
+    private final SegmentBloomFilter segmentFilter;
+
     private volatile boolean hasGraph;
 
     private TarReader(SegmentArchiveManager archiveManager, SegmentArchiveReader archive) {
         this.archiveManager = archiveManager;
         this.archive = archive;
-        this.segmentUUIDs = archive.listSegments()
+        List<SegmentArchiveEntry> segments = archive.listSegments();
+        this.segmentUUIDs = segments
                 .stream()
                 .map(e -> new UUID(e.getMsb(), e.getLsb()))
                 .collect(Collectors.toSet());
+        this.segmentFilter = newSegmentBloomFilter(segments);
     }
 
     long size() {
@@ -316,6 +322,19 @@ public class TarReader implements Closeable {
         return archive.containsSegment(msb, lsb);
     }
 
+    /**
+     * Check if the requested entry might exist in this TAR file without
+     * looking it up in the index.
+     *
+     * @param msb The most significant bits of the entry identifier.
+     * @param lsb The least significant bits of the entry identifier.
+     * @return {@code false} if the entry definitely doesn't exist in this TAR
+     * file, {@code true} if it might exist.
+     */
+    boolean mightContainEntry(long msb, long lsb) {
+        return segmentFilter.mightContain(msb, lsb);
+    }
+
     /**
      * If the given segment is in this file, get the byte buffer that allows
      * reading it.
@@ -328,7 +347,7 @@ public class TarReader implements Closeable {
      * @return the byte buffer, or null if not in this file.
      */
     Buffer readEntry(long msb, long lsb) throws IOException {
-        return archive.readSegment(msb, lsb);
+        return SegmentCompression.decompress(lsb, archive.readSegment(msb, lsb));
     }
 
     /**
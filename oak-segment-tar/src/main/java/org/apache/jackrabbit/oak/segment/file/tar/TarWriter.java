@@ -89,6 +89,13 @@ class TarWriter implements Closeable {
      */
     private final CounterStats segmentCount;
 
+    /**
+     * Whether data segments are compressed before being written.
+     *
+     * @see SegmentCompression
+     */
+    private final boolean compressSegments;
+
     /**
      * Used for maintenance operations (GC or recovery) via the TarReader and
      * tests
@@ -98,14 +105,21 @@ class TarWriter implements Closeable {
         this.archive = archiveManager.create(archiveName);
         this.writeIndex = -1;
         this.segmentCount = NoopStats.INSTANCE;
+        this.compressSegments = false;
     }
 
     TarWriter(SegmentArchiveManager archiveManager, int writeIndex, CounterStats segmentCountStats)
+    throws IOException {
+        this(archiveManager, writeIndex, segmentCountStats, false);
+    }
+
+    TarWriter(SegmentArchiveManager archiveManager, int writeIndex, CounterStats segmentCountStats, boolean compressSegments)
     throws IOException {
         this.archiveManager = archiveManager;
         this.archive = archiveManager.create(format(FILE_NAME_FORMAT, writeIndex, "a"));
         this.writeIndex = writeIndex;
         this.segmentCount = segmentCountStats;
+        this.compressSegments = compressSegments;
     }
 
     synchronized boolean containsEntry(long msb, long lsb) {
@@ -139,13 +153,22 @@ class TarWriter implements Closeable {
         synchronized (this) {
             Validate.checkState(!closed);
         }
-        return archive.readSegment(msb, lsb);
+        return SegmentCompression.decompress(lsb, archive.readSegment(msb, lsb));
     }
 
     long writeEntry(long msb, long lsb, byte[] data, int offset, int size, GCGeneration generation) throws IOException {
         requireNonNull(data);
         checkPositionIndexes(offset, offset + size, data.length);
 
+        if (compressSegments) {
+            byte[] compressed = SegmentCompression.compress(lsb, data, offset, size);
+            if (compressed != null) {
+                data = compressed;
+                offset = 0;
+                size = compressed.length;
+            }
+        }
+
         synchronized (this) {
             Validate.checkState(!closed);
 
@@ -252,7 +275,7 @@ class TarWriter implements Closeable {
         }
         close();
         int newIndex = writeIndex + 1;
-        return new TarWriter(archiveManager, newIndex, segmentCount);
+        return new TarWriter(archiveManager, newIndex, segmentCount, compressSegments);
     }
 
     private void writeBinaryReferences() throws IOException {
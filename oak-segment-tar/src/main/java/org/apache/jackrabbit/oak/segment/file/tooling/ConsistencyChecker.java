@@ -22,7 +22,9 @@ package org.apache.jackrabbit.oak.segment.file.tooling;
 import static org.apache.jackrabbit.oak.api.Type.BINARIES;
 import static org.apache.jackrabbit.oak.api.Type.BINARY;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -33,11 +35,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentBlob;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
@@ -47,8 +59,47 @@ import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 
+/**
+ * Checks the consistency of the revisions of a segment store.
+ * <p>
+ * With a parallelism greater than one, the top levels of each tree are
+ * checked concurrently in a {@link ForkJoinPool}, binary properties are
+ * read in a separate pool while the traversal continues and subtrees
+ * already found consistent in a previously checked revision are skipped.
+ * The consistent revisions found are the same as with a sequential check,
+ * but callbacks are invoked concurrently and not at all for skipped
+ * subtrees.
+ */
 public class ConsistencyChecker {
 
+    /**
+     * Number of levels of a tree whose nodes are checked in separate tasks.
+     */
+    private static final int PARALLEL_DEPTH = 2;
+
+    /**
+     * Maximum number of record ids of consistent subtrees that are
+     * remembered during a parallel check.
+     */
+    private static final int MAX_VERIFIED = 1000000;
+
+    private final int parallelism;
+
+    private volatile ParallelCheck parallelCheck;
+
+    public ConsistencyChecker() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism number of threads used to traverse the trees. A
+     *                    value of {@code 1} checks sequentially.
+     */
+    public ConsistencyChecker(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
     private static NodeState getDescendantOrNull(NodeState root, String path) {
         NodeState descendant = NodeStateUtils.getNode(root, path);
         if (descendant.exists()) {
@@ -212,6 +263,12 @@ public class ConsistencyChecker {
             return path;
         }
 
+        ParallelCheck parallel = parallelCheck;
+
+        if (parallel != null) {
+            return parallel.checkNodeAndDescendants(node, path);
+        }
+
         return checkNodeAndDescendants(node, path, binaries);
     }
 
@@ -336,7 +393,9 @@ public class ConsistencyChecker {
      * during a full traversal of the tree.
      */
     public String checkTreeConsistency(NodeState root, Set<String> corruptedPaths, boolean binaries) {
-        return checkTreeConsistency(root, "/", corruptedPaths, binaries, true);
+        try (ParallelCheck ignored = startParallelCheck(binaries)) {
+            return checkTreeConsistency(root, "/", corruptedPaths, binaries, true);
+        }
     }
 
     public final ConsistencyCheckResult checkConsistency(
@@ -382,48 +441,50 @@ public class ConsistencyChecker {
 
         SegmentNodeStore sns = SegmentNodeStoreBuilders.builder(store).build();
 
-        while (journal.hasNext()) {
-            JournalEntry journalEntry = journal.next();
-            String revision = journalEntry.getRevision();
+        try (ParallelCheck ignored = startParallelCheck(binaries)) {
+            while (journal.hasNext()) {
+                JournalEntry journalEntry = journal.next();
+                String revision = journalEntry.getRevision();
 
-            try {
-                checkedRevisionsCount++;
-                store.setRevision(revision);
-                onCheckRevision(revision);
+                try {
+                    checkedRevisionsCount++;
+                    store.setRevision(revision);
+                    onCheckRevision(revision);
 
-                // Check the consistency of both the head and the checkpoints.
-                // If both are consistent, the current journal entry is the
-                // overall valid entry.
+                    // Check the consistency of both the head and the checkpoints.
+                    // If both are consistent, the current journal entry is the
+                    // overall valid entry.
 
-                boolean overall = checkHeadConsistency(sns, headPaths, journalEntry, binaries);
+                    boolean overall = checkHeadConsistency(sns, headPaths, journalEntry, binaries);
 
-                if (shouldCheckCheckpointsConsistency(checkpointPaths)) {
-                    onCheckChekpoints();
-                    overall = overall && checkCheckpointsConsistency(sns, checkpointPaths, journalEntry, binaries);
-                }
+                    if (shouldCheckCheckpointsConsistency(checkpointPaths)) {
+                        onCheckChekpoints();
+                        overall = overall && checkCheckpointsConsistency(sns, checkpointPaths, journalEntry, binaries);
+                    }
 
-                if (overall) {
-                    lastValidJournalEntry = journalEntry;
-                } else if (failFast) {
-                    break;
-                }
+                    if (overall) {
+                        lastValidJournalEntry = journalEntry;
+                    } else if (failFast) {
+                        break;
+                    }
 
-                // If every PathToCheck is assigned to a JournalEntry, stop
-                // looping through the journal.
+                    // If every PathToCheck is assigned to a JournalEntry, stop
+                    // looping through the journal.
 
-                if (allPathsConsistent(headPaths, checkpointPaths)) {
-                    break;
-                }
+                    if (allPathsConsistent(headPaths, checkpointPaths)) {
+                        break;
+                    }
 
-                // limit the number of revisions to be checked
+                    // limit the number of revisions to be checked
 
-                if (checkedRevisionsCount == revisionsCount) {
-                    break;
-                }
-            } catch (IllegalArgumentException | SegmentNotFoundException e) {
-                onCheckRevisionError(revision, e);
-                if (failFast) {
-                    break;
+                    if (checkedRevisionsCount == revisionsCount) {
+                        break;
+                    }
+                } catch (IllegalArgumentException | SegmentNotFoundException e) {
+                    onCheckRevisionError(revision, e);
+                    if (failFast) {
+                        break;
+                    }
                 }
             }
         }
@@ -530,6 +591,223 @@ public class ConsistencyChecker {
         }
     }
 
+    /**
+     * Reads the full content of the binary properties of a node.
+     *
+     * @param node node to be checked
+     * @param path path of the node
+     * @return {@code null}, if the binaries are consistent, or the path of the
+     * node otherwise.
+     */
+    private String checkBinaries(NodeState node, String path) {
+        try {
+            for (PropertyState propertyState : node.getProperties()) {
+                Type<?> type = propertyState.getType();
+                boolean checked = false;
+
+                if (type == BINARY) {
+                    checked = traverse(propertyState.getValue(BINARY), true);
+                } else if (type == BINARIES) {
+                    for (Blob blob : propertyState.getValue(BINARIES)) {
+                        checked = checked | traverse(blob, true);
+                    }
+                }
+
+                if (checked) {
+                    onCheckPropertyEnd(path, propertyState);
+                }
+            }
+
+            return null;
+        } catch (RuntimeException | IOException e) {
+            onCheckNodeError(path, e);
+            return path;
+        }
+    }
+
+    private static boolean hasBinaries(NodeState node) {
+        for (PropertyState propertyState : node.getProperties()) {
+            if (propertyState.getType() == BINARY || propertyState.getType() == BINARIES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ParallelCheck startParallelCheck(boolean checkBinaries) {
+        if (parallelism == 1) {
+            return null;
+        }
+        parallelCheck = new ParallelCheck(checkBinaries);
+        return parallelCheck;
+    }
+
+    /**
+     * State of a parallel check, which lasts for all the revisions checked
+     * by a single invocation of this checker.
+     */
+    private class ParallelCheck implements Closeable {
+
+        private final boolean checkBinaries;
+
+        private final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        private final ExecutorService binariesExecutor;
+
+        /**
+         * Record ids of the nodes whose subtrees have been found consistent.
+         * Records are immutable, so these subtrees are consistent in every
+         * revision they are reachable from.
+         */
+        private final Set<RecordId> verified = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger verifiedCount = new AtomicInteger();
+
+        ParallelCheck(boolean checkBinaries) {
+            this.checkBinaries = checkBinaries;
+            this.binariesExecutor = checkBinaries ? Executors.newFixedThreadPool(parallelism) : null;
+        }
+
+        String checkNodeAndDescendants(NodeState node, String path) {
+            return pool.invoke(new CheckSubtree(node, path, 0));
+        }
+
+        private boolean isVerified(NodeState node) {
+            return node instanceof SegmentNodeState && verified.contains(((SegmentNodeState) node).getRecordId());
+        }
+
+        private void setVerified(NodeState node) {
+            // Leaves are cheap to check again and would fill up the set quickly
+
+            if (node instanceof SegmentNodeState && node.getChildNodeCount(1) > 0 && verifiedCount.get() < MAX_VERIFIED) {
+                if (verified.add(((SegmentNodeState) node).getRecordId())) {
+                    verifiedCount.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            pool.shutdown();
+            if (binariesExecutor != null) {
+                binariesExecutor.shutdown();
+            }
+            parallelCheck = null;
+        }
+
+        /**
+         * Checks a subtree. Subtrees of the nodes in the first {@link
+         * #PARALLEL_DEPTH} levels are checked in separate tasks, deeper
+         * subtrees sequentially. The results of the child tasks are
+         * evaluated in the order of the child nodes, so that the first
+         * inconsistent path is the same as with a sequential traversal.
+         */
+        private class CheckSubtree extends RecursiveTask<String> {
+
+            private final NodeState node;
+
+            private final String path;
+
+            private final int depth;
+
+            /**
+             * Pending checks of binary properties in the subtree of this task
+             * that aren't covered by a child task.
+             */
+            private final List<Future<String>> binaries = new ArrayList<>();
+
+            CheckSubtree(NodeState node, String path, int depth) {
+                this.node = node;
+                this.path = path;
+                this.depth = depth;
+            }
+
+            @Override
+            protected String compute() {
+                String result = check(node, path, depth);
+
+                if (result == null) {
+                    result = awaitBinaries();
+                }
+
+                if (result == null && checkBinaries) {
+                    setVerified(node);
+                }
+
+                return result;
+            }
+
+            private String check(NodeState node, String path, int depth) {
+                if (isVerified(node)) {
+                    return null;
+                }
+
+                String result = checkNode(node, path, false);
+                if (result != null) {
+                    return result;
+                }
+
+                if (checkBinaries && hasBinaries(node)) {
+                    binaries.add(binariesExecutor.submit(() -> checkBinaries(node, path)));
+                }
+
+                try {
+                    if (depth < PARALLEL_DEPTH) {
+                        List<CheckSubtree> tasks = new ArrayList<>();
+                        for (ChildNodeEntry cne : node.getChildNodeEntries()) {
+                            tasks.add(new CheckSubtree(cne.getNodeState(), concat(path, cne.getName()), depth + 1));
+                        }
+                        invokeAll(tasks);
+                        for (CheckSubtree task : tasks) {
+                            result = task.join();
+                            if (result != null) {
+                                return result;
+                            }
+                        }
+                    } else {
+                        for (ChildNodeEntry cne : node.getChildNodeEntries()) {
+                            result = check(cne.getNodeState(), concat(path, cne.getName()), depth + 1);
+                            if (result != null) {
+                                return result;
+                            }
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    onCheckTreeError(path, e);
+                    return path;
+                }
+
+                // With binaries, a subtree is only consistent once all its
+                // binaries have been read, which is known at the end of the task
+
+                if (!checkBinaries) {
+                    setVerified(node);
+                }
+
+                return null;
+            }
+
+            private String awaitBinaries() {
+                for (Future<String> binary : binaries) {
+                    try {
+                        String result = binary.get();
+                        if (result != null) {
+                            return result;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        onCheckTreeError(path, e);
+                        return path;
+                    } catch (ExecutionException e) {
+                        onCheckTreeError(path, e);
+                        return path;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
     private boolean traverse(Blob blob, boolean checkBinaries) throws IOException {
         if (checkBinaries && !isExternal(blob)) {
             try (InputStream s = blob.getNewStream()) {
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.Closeable;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentOverflowException;
+import org.apache.jackrabbit.oak.segment.scheduler.LockBasedScheduler.LockBasedSchedulerBuilder;
+import org.apache.jackrabbit.oak.spi.commit.ChangeDispatcher;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Observable;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link LockBasedScheduler} that groups concurrent commits. Commits are
+ * queued and the first thread acquiring the commit semaphore becomes the
+ * leader of a group: it drains the queue and applies the commits one after
+ * the other on top of each other, in the order they have been scheduled.
+ * Each commit runs its own commit hooks and conflict handling, a failing
+ * commit does not affect the other commits of the group. Finally the leader
+ * updates the head state once for the whole group.
+ * <p>
+ * Threads waiting for the commit semaphore while their commit is processed
+ * by a leader find it completed once they acquire the semaphore. Observers
+ * still see the state after each individual commit along with its {@link
+ * CommitInfo}. Note that the commit hooks of a group run on the thread of
+ * its leader.
+ */
+public class GroupCommitScheduler extends LockBasedScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitScheduler.class);
+
+    /**
+     * Maximum number of commits applied as a single group.
+     */
+    private static final int GROUP_COMMIT_MAX_SIZE = Integer
+            .getInteger("oak.segmentNodeStore.groupCommitMaxSize", 64);
+
+    /**
+     * Number of microseconds a leader waits for further commits before
+     * draining the queue. By default the leader doesn't wait and a group
+     * consists of the commits queued while the previous group was processed.
+     */
+    private static final long GROUP_COMMIT_WINDOW_MICROS = Long
+            .getLong("oak.segmentNodeStore.groupCommitWindowMicros", 0);
+
+    private final Queue<PendingCommit> queue = new ConcurrentLinkedQueue<>();
+
+    private final Random random = new Random();
+
+    GroupCommitScheduler(LockBasedSchedulerBuilder builder) {
+        super(builder);
+    }
+
+    static GroupCommitScheduler newGroupCommitScheduler(LockBasedSchedulerBuilder builder, boolean dispatchChanges) {
+        if (dispatchChanges) {
+            return new ObservableGroupCommitScheduler(builder);
+        } else {
+            return new GroupCommitScheduler(builder);
+        }
+    }
+
+    @Override
+    public NodeState schedule(@NotNull Commit commit, SchedulerOption... schedulingOptions)
+            throws CommitFailedException {
+        PendingCommit pendingCommit = new PendingCommit(commit);
+        stats.onCommitQueued(currentThread(), commit::getGCGeneration);
+        queue.add(pendingCommit);
+
+        try {
+            commitSemaphoreLogging.warnOnBlockingCommit();
+            commitSemaphore.acquire();
+            commitSemaphoreLogging.commitStarted(commit);
+            try {
+                // A group is bounded in size, keep leading until the group
+                // containing this commit has been processed
+                while (!pendingCommit.isDone() && queue.contains(pendingCommit)) {
+                    if (GROUP_COMMIT_WINDOW_MICROS > 0 && queue.size() < GROUP_COMMIT_MAX_SIZE) {
+                        LockSupport.parkNanos(MICROSECONDS.toNanos(GROUP_COMMIT_WINDOW_MICROS));
+                    }
+                    executeOrFail(drainQueue());
+                }
+            } finally {
+                commitSemaphoreLogging.commitEnded();
+                commitSemaphore.release();
+            }
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            if (queue.remove(pendingCommit)) {
+                throw new CommitFailedException("Segment", 2, "Merge interrupted", e);
+            }
+            // The commit is being processed by the current leader, which
+            // releases the semaphore only after it completed its group.
+            commitSemaphore.acquireUninterruptibly();
+            commitSemaphore.release();
+        }
+        return pendingCommit.getMerged();
+    }
+
+    private List<PendingCommit> drainQueue() {
+        List<PendingCommit> group = new ArrayList<>();
+        PendingCommit pendingCommit;
+        while (group.size() < GROUP_COMMIT_MAX_SIZE && (pendingCommit = queue.poll()) != null) {
+            group.add(pendingCommit);
+        }
+        return group;
+    }
+
+    /**
+     * Executes the group and fails all its commits not done yet if the
+     * execution itself fails. Otherwise threads waiting for the outcome of
+     * such a commit would not be able to tell it from a successful one.
+     */
+    private void executeOrFail(List<PendingCommit> group) throws InterruptedException {
+        try {
+            execute(group);
+        } catch (InterruptedException e) {
+            failAll(group, new CommitFailedException("Segment", 2, "Merge interrupted", e));
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Failed to execute a group of {} commits", group.size(), e);
+            failAll(group, new CommitFailedException("Segment", 3, "Merge failed", e));
+        } catch (Error e) {
+            failAll(group, new CommitFailedException("Segment", 3, "Merge failed", e));
+            throw e;
+        }
+    }
+
+    private static void failAll(List<PendingCommit> group, CommitFailedException e) {
+        for (PendingCommit pendingCommit : group) {
+            if (!pendingCommit.isDone()) {
+                pendingCommit.failed(e);
+            }
+        }
+    }
+
+    /**
+     * Applies the commits of the group to the current head state and sets
+     * the result as the new head state. Should only be called while holding
+     * a permit from the {@link #commitSemaphore}.
+     */
+    private void execute(List<PendingCommit> group) throws InterruptedException {
+        long dequeuedTime = System.nanoTime();
+        for (PendingCommit pendingCommit : group) {
+            stats.onCommitDequeued(pendingCommit.thread, dequeuedTime - pendingCommit.queuedTime);
+        }
+
+        int count = 0;
+        for (long backoff = 1; backoff < MAXIMUM_BACKOFF; backoff *= 2) {
+            refreshHead(true);
+            SegmentNodeState before = head.get();
+            SegmentNodeState after = before;
+            for (PendingCommit pendingCommit : group) {
+                after = pendingCommit.apply(after);
+            }
+
+            if (after == before || revisions.setHead(before.getRecordId(), after.getRecordId())) {
+                head.set(after);
+                for (PendingCommit pendingCommit : group) {
+                    pendingCommit.applied();
+                }
+
+                long commitTime = System.nanoTime() - dequeuedTime;
+                commitTimeHistogram.update(commitTime);
+                for (PendingCommit pendingCommit : group) {
+                    stats.onCommit(pendingCommit.thread, commitTime);
+                }
+                return;
+            }
+
+            count++;
+            int randNs = random.nextInt(1_000_000);
+            log.info("Scheduler detected concurrent commits. Retrying after {} ms and {} ns", backoff, randNs);
+            Thread.sleep(backoff, randNs);
+        }
+
+        String message = MessageFormat.format(
+                "The commit could not be executed after {0} attempts. Total wait time: {1} ms",
+                count, NANOSECONDS.toMillis(System.nanoTime() - dequeuedTime));
+        for (PendingCommit pendingCommit : group) {
+            pendingCommit.failed(new CommitFailedException("Segment", 3, message));
+        }
+    }
+
+    private class PendingCommit {
+
+        @NotNull
+        private final Commit commit;
+
+        @NotNull
+        private final Thread thread = currentThread();
+
+        private final long queuedTime = System.nanoTime();
+
+        @Nullable
+        private SegmentNodeState merged;
+
+        private boolean changed;
+
+        @Nullable
+        private Exception failure;
+
+        private volatile boolean done;
+
+        PendingCommit(@NotNull Commit commit) {
+            this.commit = commit;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Apply this commit to {@code base}, recording its outcome.
+         *
+         * @return the resulting state, or {@code base} if this commit has no
+         * changes or failed.
+         */
+        @NotNull
+        SegmentNodeState apply(@NotNull SegmentNodeState base) {
+            merged = (SegmentNodeState) base.getChildNode(ROOT);
+            changed = false;
+            failure = null;
+            if (!commit.hasChanges()) {
+                return base;
+            }
+            try {
+                SegmentNodeState after = commit.apply(base);
+                merged = (SegmentNodeState) after.getChildNode(ROOT);
+                changed = true;
+                return after;
+            } catch (SegmentOverflowException e) {
+                failure = new CommitFailedException("Segment", 3, "Merge failed", e);
+            } catch (CommitFailedException | RuntimeException e) {
+                failure = e;
+            }
+            return base;
+        }
+
+        /**
+         * Called once the head state including this commit has been set.
+         */
+        void applied() {
+            if (failure == null) {
+                if (changed) {
+                    contentChanged(merged, commit.info());
+                }
+                commit.applied(merged);
+            }
+            done = true;
+        }
+
+        void failed(@NotNull CommitFailedException e) {
+            failure = e;
+            done = true;
+        }
+
+        @NotNull
+        SegmentNodeState getMerged() throws CommitFailedException {
+            if (!done) {
+                throw new CommitFailedException("Segment", 3,
+                        "Merge failed: the commit has neither been applied nor rejected");
+            }
+            if (failure instanceof CommitFailedException) {
+                throw (CommitFailedException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            return merged;
+        }
+    }
+
+    private static class ObservableGroupCommitScheduler extends GroupCommitScheduler implements Observable {
+        private final ChangeDispatcher changeDispatcher;
+
+        ObservableGroupCommitScheduler(LockBasedSchedulerBuilder builder) {
+            super(builder);
+            this.changeDispatcher = new ChangeDispatcher(head.get().getChildNode(ROOT));
+        }
+
+        @Override
+        protected void contentChanged(NodeState root, CommitInfo info) {
+            changeDispatcher.contentChanged(root, info);
+        }
+
+        @Override
+        public Closeable addObserver(Observer observer) {
+            return changeDispatcher.addObserver(observer);
+        }
+    }
+}
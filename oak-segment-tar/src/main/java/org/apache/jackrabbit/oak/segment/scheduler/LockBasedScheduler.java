@@ -67,10 +67,12 @@ public class LockBasedScheduler implements Scheduler {
         private final Revisions revisions;
         
         @NotNull
-        private final SegmentNodeStoreStats stats;
+        final SegmentNodeStoreStats stats;
 
         private boolean dispatchChanges = true;
 
+        private boolean groupCommit;
+
         private LockBasedSchedulerBuilder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
                 @NotNull SegmentNodeStoreStats stats) {
             this.revisions = revisions;
@@ -84,9 +86,23 @@ public class LockBasedScheduler implements Scheduler {
             return this;
         }
 
+        /**
+         * Enable group commits: concurrent commits are applied one after the
+         * other by a single thread and published as a single head state.
+         *
+         * @see GroupCommitScheduler
+         */
+        @NotNull
+        public LockBasedSchedulerBuilder groupCommit(boolean groupCommit) {
+            this.groupCommit = groupCommit;
+            return this;
+        }
+
         @NotNull
         public LockBasedScheduler build() {
-            if (dispatchChanges) {
+            if (groupCommit) {
+                return GroupCommitScheduler.newGroupCommitScheduler(this, dispatchChanges);
+            } else if (dispatchChanges) {
                 return new ObservableLockBasedScheduler(this);
             } else {
                 return new LockBasedScheduler(this);
@@ -126,7 +142,7 @@ public class LockBasedScheduler implements Scheduler {
      * Maximum number of milliseconds to wait before re-attempting to update the current
      * head state after a successful commit, provided a concurrent head state update happens.
      */
-    private static final long MAXIMUM_BACKOFF = MILLISECONDS.convert(10, SECONDS);
+    static final long MAXIMUM_BACKOFF = MILLISECONDS.convert(10, SECONDS);
     
     /**
      * Sets the number of seconds to wait for the attempt to grab the lock to
@@ -141,29 +157,29 @@ public class LockBasedScheduler implements Scheduler {
      * single local commit is allowed at a time. When such a commit is in
      * progress, no external updates will be seen.
      */
-    private final Semaphore commitSemaphore = new Semaphore(1, COMMIT_FAIR_LOCK);
+    final Semaphore commitSemaphore = new Semaphore(1, COMMIT_FAIR_LOCK);
 
     @NotNull
     private final SegmentReader reader;
 
     @NotNull
-    private final Revisions revisions;
+    final Revisions revisions;
 
     protected final AtomicReference<SegmentNodeState> head;
 
-    private final SegmentNodeStoreStats stats;
+    final SegmentNodeStoreStats stats;
     
-    private final Histogram commitTimeHistogram = new Histogram(new UniformReservoir());
+    final Histogram commitTimeHistogram = new Histogram(new UniformReservoir());
     
     private final Random random = new Random();
 
-    private final CommitSemaphoreLogging commitSemaphoreLogging = new CommitSemaphoreLogging();
+    final CommitSemaphoreLogging commitSemaphoreLogging = new CommitSemaphoreLogging();
 
     /*
      * Logging of commits that are either blocked for longer than COMMIT_WAIT_WARN_MILLIS
      * or on a commit that crossed the gc boundary. See OAK-8071.
      */
-    private class CommitSemaphoreLogging {
+    class CommitSemaphoreLogging {
 
         @Nullable
         private volatile Commit commit;
@@ -236,7 +252,7 @@ public class LockBasedScheduler implements Scheduler {
      * @param dispatchChanges
      *            if set to true the changes would also be dispatched
      */
-    private void refreshHead(boolean dispatchChanges) {
+    void refreshHead(boolean dispatchChanges) {
         SegmentNodeState state = reader.readHeadState(revisions);
         if (!state.getRecordId().equals(head.get().getRecordId())) {
             head.set(state);
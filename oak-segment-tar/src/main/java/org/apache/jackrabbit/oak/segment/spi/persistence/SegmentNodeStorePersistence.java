@@ -66,6 +66,21 @@ public interface SegmentNodeStorePersistence {
      */
     GCJournalFile getGCJournalFile() throws IOException;
 
+    /**
+     * Create the file recording the progress of an unfinished, incremental
+     * compaction. It has the same format requirements as the {@link
+     * GCJournalFile}. Persistence implementations not overriding this method
+     * don't persist the compaction progress, which means that an interrupted
+     * compaction can only be resumed within the lifetime of the same process.
+     *
+     * @return object representing the compaction progress file or {@code null}
+     * if the compaction progress should not be persisted
+     * @throws IOException
+     */
+    default GCJournalFile getCompactionProgressFile() throws IOException {
+        return null;
+    }
+
     /**
      * Create the {@link ManifestFile}.
      * @return object representing the manifest file
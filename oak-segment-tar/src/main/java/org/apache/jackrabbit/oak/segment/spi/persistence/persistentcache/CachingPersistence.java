@@ -60,6 +60,11 @@ public class CachingPersistence implements SegmentNodeStorePersistence {
         return delegate.getGCJournalFile();
     }
 
+    @Override
+    public GCJournalFile getCompactionProgressFile() throws IOException {
+        return delegate.getCompactionProgressFile();
+    }
+
     @Override
     public ManifestFile getManifestFile() throws IOException {
         return delegate.getManifestFile();
@@ -111,6 +111,11 @@ public class SplitPersistence implements SegmentNodeStorePersistence {
         return rwPersistence.getGCJournalFile();
     }
 
+    @Override
+    public GCJournalFile getCompactionProgressFile() throws IOException {
+        return rwPersistence.getCompactionProgressFile();
+    }
+
     @Override
     public ManifestFile getManifestFile() throws IOException {
         return rwPersistence.getManifestFile();
@@ -19,9 +19,15 @@ package org.apache.jackrabbit.oak.segment.standby.client;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
@@ -51,6 +57,11 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequestEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingRequestEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.ResponseDecoder;
 import org.apache.jackrabbit.oak.segment.standby.netty.SSLSubjectMatcher;
 import org.jetbrains.annotations.Nullable;
@@ -149,12 +160,24 @@ class StandbyClient implements AutoCloseable {
 
     private final BlockingQueue<GetReferencesResponse> referencesQueue = new LinkedBlockingDeque<>();
 
+    private final BlockingQueue<PingResponse> pingQueue = new LinkedBlockingDeque<>();
+
     private final int readTimeoutMs;
 
     private final String clientId;
 
     private Channel channel;
 
+    /**
+     * The protocol version of the primary, or -1 if not known yet.
+     */
+    private int protocolVersion = -1;
+
+    /**
+     * The token of the last 'ping' request sent.
+     */
+    private long pingToken;
+
     StandbyClient(Builder builder) throws InterruptedException {
         this.clientId = builder.clientId;
         this.readTimeoutMs = builder.readTimeoutMs;
@@ -202,8 +225,10 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new StringEncoder(CharsetUtil.UTF_8));
                     p.addLast(new GetHeadRequestEncoder());
                     p.addLast(new GetSegmentRequestEncoder());
+                    p.addLast(new GetSegmentsRequestEncoder());
                     p.addLast(new GetBlobRequestEncoder());
                     p.addLast(new GetReferencesRequestEncoder());
+                    p.addLast(new PingRequestEncoder());
 
                     // Handlers
 
@@ -211,6 +236,7 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new GetSegmentResponseHandler(segmentQueue));
                     p.addLast(new GetBlobResponseHandler(blobQueue));
                     p.addLast(new GetReferencesResponseHandler(referencesQueue));
+                    p.addLast(new PingResponseHandler(pingQueue));
 
                     // Exception handler
 
@@ -260,6 +286,143 @@ class StandbyClient implements AutoCloseable {
         return response.getSegmentData();
     }
 
+    /**
+     * Get the protocol version of the primary. It is negotiated once per
+     * client by sending a 'ping' request followed by a 'get head' request.
+     * Primaries of older versions silently drop the 'ping' request, so if
+     * only the response to 'get head' arrives, the primary has version 0.
+     *
+     * @return the protocol version of the primary
+     */
+    int getProtocolVersion() throws InterruptedException {
+        if (protocolVersion < 0) {
+            protocolVersion = negotiateProtocolVersion();
+            log.debug("Primary uses protocol version {}", protocolVersion);
+        }
+        return protocolVersion;
+    }
+
+    private int negotiateProtocolVersion() throws InterruptedException {
+        long token = ++pingToken;
+
+        headQueue.clear();
+        channel.write(new PingRequest(clientId, token));
+        channel.writeAndFlush(new GetHeadRequest(clientId));
+
+        if (headQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS) == null) {
+            log.warn("Timeout waiting for the protocol version of the primary, assuming version 0");
+            return 0;
+        }
+
+        // The responses are received in order, so the response to the
+        // 'ping' request, if any, is already there
+
+        PingResponse response;
+
+        while ((response = pingQueue.poll()) != null) {
+            if (response.getToken() == token) {
+                return response.getProtocolVersion();
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Fetch several segments at once. If the primary supports it, the
+     * segments are requested with pipelined 'get segments' requests followed
+     * by a 'ping' request acting as a barrier: since the primary processes
+     * the requests of a channel in order, all responses for the requested
+     * segments have been received once the response to the barrier arrives.
+     * Otherwise the segments are requested one at a time.
+     *
+     * @param segmentIds the identifiers of the segments to fetch
+     * @return the data of the segments that could be fetched, by segment
+     * identifier. Segments missing on the primary are missing from the map.
+     */
+    Map<String, byte[]> getSegments(List<String> segmentIds) throws InterruptedException {
+        Map<String, byte[]> segments = new HashMap<>();
+
+        if (segmentIds.isEmpty()) {
+            return segments;
+        }
+
+        if (getProtocolVersion() < 1) {
+            for (String segmentId : segmentIds) {
+                byte[] data = getSegment(segmentId);
+
+                if (data != null) {
+                    segments.put(segmentId, data);
+                }
+            }
+
+            return segments;
+        }
+
+        for (int i = 0; i < segmentIds.size(); i += GetSegmentsRequest.MAX_SEGMENTS) {
+            List<String> batch = segmentIds.subList(i, Math.min(segmentIds.size(), i + GetSegmentsRequest.MAX_SEGMENTS));
+            channel.write(new GetSegmentsRequest(clientId, batch));
+        }
+
+        Set<String> requested = new HashSet<>(segmentIds);
+
+        // Keep waiting for the barrier as long as segments arrive, since the
+        // transfer of a large batch can take longer than the read timeout
+
+        if (!awaitBarrier(() -> drainSegments(requested, segments))) {
+            log.warn("Timeout waiting for {} segments", segmentIds.size() - segments.size());
+        }
+
+        drainSegments(requested, segments);
+
+        return segments;
+    }
+
+    /**
+     * Send a 'ping' request and wait for its response.
+     *
+     * @param progress called when the read timeout expires, returns whether
+     *                 responses to the previous requests arrived meanwhile
+     * @return {@code true} if the response arrived, {@code false} if the read
+     * timeout expired without progress
+     */
+    private boolean awaitBarrier(BooleanSupplier progress) throws InterruptedException {
+        long token = ++pingToken;
+
+        channel.writeAndFlush(new PingRequest(clientId, token));
+
+        while (true) {
+            PingResponse response = pingQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+
+            if (response == null) {
+                if (!progress.getAsBoolean()) {
+                    return false;
+                }
+            } else if (response.getToken() == token) {
+                return true;
+            } else {
+                log.debug("Dropping stale response to ping {}", response.getToken());
+            }
+        }
+    }
+
+    private boolean drainSegments(Set<String> requested, Map<String, byte[]> segments) {
+        boolean drained = false;
+        GetSegmentResponse response;
+
+        while ((response = segmentQueue.poll()) != null) {
+            drained = true;
+
+            // Stale responses, e.g. to requests that timed out before, are ignored
+
+            if (requested.contains(response.getSegmentId())) {
+                segments.put(response.getSegmentId(), response.getSegmentData());
+            }
+        }
+
+        return drained;
+    }
+
     @Nullable
     InputStream getBlob(String blobId) throws InterruptedException {
         channel.writeAndFlush(new GetBlobRequest(clientId, blobId));
@@ -286,6 +449,64 @@ class StandbyClient implements AutoCloseable {
         return response.getReferences();
     }
 
+    /**
+     * Fetch the references of several segments at once, pipelining the
+     * requests like {@link #getSegments(List)} does if the primary supports
+     * it.
+     *
+     * @param segmentIds the identifiers of the segments
+     * @return the references of the segments that could be found on the
+     * primary, by segment identifier.
+     */
+    Map<String, Iterable<String>> getReferences(List<String> segmentIds) throws InterruptedException {
+        Map<String, Iterable<String>> references = new HashMap<>();
+
+        if (segmentIds.isEmpty()) {
+            return references;
+        }
+
+        if (getProtocolVersion() < 1) {
+            for (String segmentId : segmentIds) {
+                Iterable<String> segmentReferences = getReferences(segmentId);
+
+                if (segmentReferences != null) {
+                    references.put(segmentId, segmentReferences);
+                }
+            }
+
+            return references;
+        }
+
+        for (String segmentId : segmentIds) {
+            channel.write(new GetReferencesRequest(clientId, segmentId));
+        }
+
+        Set<String> requested = new HashSet<>(segmentIds);
+
+        if (!awaitBarrier(() -> drainReferences(requested, references))) {
+            log.warn("Timeout waiting for the references of {} segments", segmentIds.size() - references.size());
+        }
+
+        drainReferences(requested, references);
+
+        return references;
+    }
+
+    private boolean drainReferences(Set<String> requested, Map<String, Iterable<String>> references) {
+        boolean drained = false;
+        GetReferencesResponse response;
+
+        while ((response = referencesQueue.poll()) != null) {
+            drained = true;
+
+            if (requested.contains(response.getSegmentId())) {
+                references.put(response.getSegmentId(), response.getReferences());
+            }
+        }
+
+        return drained;
+    }
+
     public int getReadTimeoutMs() {
         return readTimeoutMs;
     }
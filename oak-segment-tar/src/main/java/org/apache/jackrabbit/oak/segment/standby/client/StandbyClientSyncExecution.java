@@ -16,9 +16,15 @@
  */
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import static java.util.Collections.singletonList;
+import static org.apache.jackrabbit.guava.common.collect.Lists.partition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Supplier;
@@ -41,11 +47,29 @@ import org.slf4j.LoggerFactory;
  * process between the primary and the standby instance. It also contains
  * temporary state that is supposed to be used for the lifetime of a
  * synchronization run.
+ * <p>
+ * Segments are discovered and downloaded in batches, which reduces the
+ * number of round trips per segment. Discovery and download are separate
+ * phases though: the download only starts once the whole graph of missing
+ * segments has been discovered, and the primary never pushes referenced
+ * segments on its own. A synchronization therefore still needs at least one
+ * round trip per level of the segment graph.
  */
 class StandbyClientSyncExecution {
 
     private static final Logger log = LoggerFactory.getLogger(StandbyClientSyncExecution.class);
 
+    /**
+     * Maximum number of segments whose references are requested at once.
+     */
+    private static final int REFERENCES_BATCH_SIZE = 256;
+
+    /**
+     * Maximum number of segments requested at once. Segments are up to 256 KiB
+     * in size, so a batch is kept in memory until it has been written.
+     */
+    private static final int SEGMENTS_BATCH_SIZE = 64;
+
     private final FileStore store;
 
     private final SegmentIdProvider idProvider;
@@ -105,25 +129,76 @@ class StandbyClientSyncExecution {
     }
 
     private void copySegmentHierarchyFromPrimary(StandbyClient client, UUID segmentId) throws Exception {
+        Set<UUID> remote = new HashSet<>();
+        Map<UUID, List<UUID>> references = new HashMap<>();
+
+        discoverSegmentGraph(client, segmentId, remote, references);
+
         Set<UUID> visited = new HashSet<>();
         List<UUID> bulk = new LinkedList<>();
         List<UUID> data = new LinkedList<>();
 
-        deriveTopologicalOrder(client, segmentId, visited, data, bulk);
+        deriveTopologicalOrder(segmentId, remote, references, visited, data, bulk);
+
+        copySegmentsFromPrimary(client, bulk, "bulk");
+        copySegmentsFromPrimary(client, data, "data");
+    }
 
-        for (UUID id : bulk) {
-            log.info("Copying bulk segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+    /**
+     * Collect the segments reachable from {@code segmentId} that are missing
+     * locally, one level of the segment graph at a time. The references of
+     * all the data segments of a level are requested at once, instead of
+     * waiting for one round trip per segment.
+     */
+    private void discoverSegmentGraph(StandbyClient client, UUID segmentId, Set<UUID> remote, Map<UUID, List<UUID>> references) throws Exception {
+        if (isLocal(segmentId)) {
+            return;
         }
 
-        for (UUID id : data) {
-            log.info("Copying data segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+        remote.add(segmentId);
+        List<UUID> level = singletonList(segmentId);
+
+        while (!level.isEmpty()) {
+            List<UUID> next = new ArrayList<>();
+
+            for (List<UUID> batch : partition(dataSegments(level), REFERENCES_BATCH_SIZE)) {
+                Map<String, Iterable<String>> batchReferences = readReferences(client, batch);
+
+                for (UUID id : batch) {
+                    log.debug("Inspecting segment {}", id);
+                    List<UUID> referenced = new ArrayList<>();
+
+                    for (String s : batchReferences.get(id.toString())) {
+                        UUID reference = UUID.fromString(s);
+                        log.debug("Found reference from {} to {}", id, reference);
+                        referenced.add(reference);
+
+                        if (!remote.contains(reference) && !isLocal(reference)) {
+                            remote.add(reference);
+                            next.add(reference);
+                        }
+                    }
+
+                    references.put(id, referenced);
+                }
+            }
+
+            level = next;
         }
     }
 
-    private void deriveTopologicalOrder(StandbyClient client, UUID id, Set<UUID> visited, List<UUID> data, List<UUID> bulk) throws Exception {
-        if (visited.contains(id) || isLocal(id)) {
+    private static List<UUID> dataSegments(List<UUID> ids) {
+        List<UUID> data = new ArrayList<>();
+        for (UUID id : ids) {
+            if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
+                data.add(id);
+            }
+        }
+        return data;
+    }
+
+    private void deriveTopologicalOrder(UUID id, Set<UUID> remote, Map<UUID, List<UUID>> references, Set<UUID> visited, List<UUID> data, List<UUID> bulk) {
+        if (visited.contains(id) || !remote.contains(id)) {
             return;
         }
 
@@ -131,14 +206,11 @@ class StandbyClientSyncExecution {
         // to add each data segment to the data list only
         // after all its references were already added
 
-        log.debug("Inspecting segment {}", id);
         visited.add(id);
 
         if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
-            for (String s : readReferences(client, id)) {
-                UUID referenced = UUID.fromString(s);
-                log.debug("Found reference from {} to {}", id, referenced);
-                deriveTopologicalOrder(client, referenced, visited, data, bulk);
+            for (UUID referenced : references.get(id)) {
+                deriveTopologicalOrder(referenced, remote, references, visited, data, bulk);
             }
 
             data.add(id);
@@ -147,11 +219,13 @@ class StandbyClientSyncExecution {
         }
     }
 
-    private Iterable<String> readReferences(StandbyClient client, UUID id) throws InterruptedException {
-        Iterable<String> references = client.getReferences(id.toString());
+    private Map<String, Iterable<String>> readReferences(StandbyClient client, List<UUID> ids) throws InterruptedException {
+        Map<String, Iterable<String>> references = client.getReferences(toStrings(ids));
 
-        if (references == null) {
-            throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", id));
+        for (UUID id : ids) {
+            if (!references.containsKey(id.toString())) {
+                throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", id));
+            }
         }
 
         return references;
@@ -164,17 +238,36 @@ class StandbyClientSyncExecution {
         ));
     }
 
-    private void copySegmentFromPrimary(StandbyClient client, UUID uuid) throws Exception {
-        byte[] data = client.getSegment(uuid.toString());
+    private void copySegmentsFromPrimary(StandbyClient client, List<UUID> ids, String type) throws Exception {
+        for (List<UUID> batch : partition(ids, SEGMENTS_BATCH_SIZE)) {
+            log.info("Copying {} {} segments from primary", batch.size(), type);
+            Map<String, byte[]> segments = client.getSegments(toStrings(batch));
 
-        if (data == null) {
-            throw new IllegalStateException("Unable to read segment " + uuid);
+            // Write the segments in topological order, regardless of the
+            // order in which they have been received
+
+            for (UUID uuid : batch) {
+                byte[] data = segments.get(uuid.toString());
+
+                if (data == null) {
+                    throw new IllegalStateException("Unable to read segment " + uuid);
+                }
+
+                log.debug("Copying {} segment {} from primary", type, uuid);
+                long msb = uuid.getMostSignificantBits();
+                long lsb = uuid.getLeastSignificantBits();
+                SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
+                store.writeSegment(segmentId, data, 0, data.length);
+            }
         }
+    }
 
-        long msb = uuid.getMostSignificantBits();
-        long lsb = uuid.getLeastSignificantBits();
-        SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
-        store.writeSegment(segmentId, data, 0, data.length);
+    private static List<String> toStrings(List<UUID> ids) {
+        List<String> strings = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            strings.add(id.toString());
+        }
+        return strings;
     }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+import java.util.List;
+
+/**
+ * Request for a batch of segments. The server answers with one 'get segment'
+ * response for every segment it can read, in the order of the request.
+ */
+public class GetSegmentsRequest {
+
+    /**
+     * Maximum number of segments per request. Requests are sent as a single
+     * line, whose length is limited on the server.
+     */
+    public static final int MAX_SEGMENTS = 128;
+
+    private final String clientId;
+
+    private final List<String> segmentIds;
+
+    public GetSegmentsRequest(String clientId, List<String> segmentIds) {
+        this.clientId = clientId;
+        this.segmentIds = segmentIds;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public List<String> getSegmentIds() {
+        return segmentIds;
+    }
+
+}
@@ -19,6 +19,11 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+import java.util.List;
+
 final class Messages {
 
     static final byte HEADER_RECORD = 0x00;
@@ -29,18 +34,26 @@ final class Messages {
 
     static final byte HEADER_REFERENCES = 0x03;
 
+    static final byte HEADER_PING = 0x04;
+
     static final String GET_HEAD = "h";
 
     static final String GET_SEGMENT = "s.";
 
+    static final String GET_SEGMENTS = "ss.";
+
     static final String GET_BLOB = "b.";
 
     static final String GET_REFERENCES = "r.";
 
+    static final String PING = "p.";
+
     private static final String MAGIC = "Standby-CMD@";
 
     private static final String SEPARATOR = ":";
 
+    private static final String LIST_SEPARATOR = ",";
+
     private Messages() {}
 
     private static String newRequest(String clientId, String body, boolean delimited) {
@@ -76,6 +89,22 @@ final class Messages {
         return newGetSegmentRequest(clientId, segmentId, true);
     }
 
+    static String newGetSegmentsRequest(String clientId, List<String> segmentIds, boolean delimited) {
+        return newRequest(clientId, GET_SEGMENTS + String.join(LIST_SEPARATOR, segmentIds), delimited);
+    }
+
+    static String newGetSegmentsRequest(String clientId, List<String> segmentIds) {
+        return newGetSegmentsRequest(clientId, segmentIds, true);
+    }
+
+    static List<String> extractSegmentIdsFrom(String request) {
+        String body = request.substring(GET_SEGMENTS.length());
+        if (body.isEmpty()) {
+            return emptyList();
+        }
+        return asList(body.split(LIST_SEPARATOR));
+    }
+
     static String newGetReferencesRequest(String clientId, String segmentId, boolean delimited) {
         return newRequest(clientId, GET_REFERENCES + segmentId, delimited);
     }
@@ -84,6 +113,14 @@ final class Messages {
         return newGetReferencesRequest(clientId, segmentId, true);
     }
 
+    static String newPingRequest(String clientId, long token, boolean delimited) {
+        return newRequest(clientId, PING + token, delimited);
+    }
+
+    static String newPingRequest(String clientId, long token) {
+        return newPingRequest(clientId, token, true);
+    }
+
     static String newGetBlobRequest(String clientId, String blobId, boolean delimited) {
         return newRequest(clientId, GET_BLOB + blobId, delimited);
     }
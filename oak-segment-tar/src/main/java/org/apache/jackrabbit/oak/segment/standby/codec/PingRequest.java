@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+/**
+ * Request answered with a {@link PingResponse} carrying the same token and
+ * the protocol version of the server. Clients send it to find out which
+ * requests a server understands, and as a barrier after pipelined requests.
+ * Servers of older versions silently drop it.
+ */
+public class PingRequest {
+
+    private final String clientId;
+
+    private final long token;
+
+    public PingRequest(String clientId, long token) {
+        this.clientId = clientId;
+        this.token = token;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+public class PingResponse {
+
+    /**
+     * The protocol version of this server. Version 1 adds 'ping' and 'get
+     * segments' requests. Servers that don't answer 'ping' requests have
+     * version 0.
+     */
+    public static final int PROTOCOL_VERSION = 1;
+
+    private final String clientId;
+
+    private final long token;
+
+    private final int protocolVersion;
+
+    public PingResponse(String clientId, long token, int protocolVersion) {
+        this.clientId = clientId;
+        this.token = token;
+        this.protocolVersion = protocolVersion;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+}
@@ -41,15 +41,34 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         } else if (request.equalsIgnoreCase(Messages.GET_HEAD)) {
             log.debug("Parsed 'get head' message");
             out.add(new GetHeadRequest(Messages.extractClientFrom(msg)));
+        } else if (request.startsWith(Messages.GET_SEGMENTS)) {
+            log.debug("Parsed 'get segments' message");
+            out.add(new GetSegmentsRequest(Messages.extractClientFrom(msg), Messages.extractSegmentIdsFrom(request)));
         } else if (request.startsWith(Messages.GET_SEGMENT)) {
             log.debug("Parsed 'get segment' message");
             out.add(new GetSegmentRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_SEGMENT.length())));
         } else if (request.startsWith(Messages.GET_REFERENCES)) {
             log.debug("Parsed 'get references' message");
             out.add(new GetReferencesRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_REFERENCES.length())));
+        } else if (request.startsWith(Messages.PING)) {
+            decodePingRequest(msg, request, out);
         } else {
             log.debug("Received unrecognizable message {}, dropping", msg);
         }
     }
 
+    private static void decodePingRequest(String msg, String request, List<Object> out) {
+        long token;
+
+        try {
+            token = Long.parseLong(request.substring(Messages.PING.length()));
+        } catch (NumberFormatException e) {
+            log.debug("Received invalid 'ping' message {}, dropping", msg);
+            return;
+        }
+
+        log.debug("Parsed 'ping' message");
+        out.add(new PingRequest(Messages.extractClientFrom(msg), token));
+    }
+
 }
@@ -96,6 +96,10 @@ public class ResponseDecoder extends ByteToMessageDecoder {
                 log.debug("Decoding 'get references' response");
                 decodeGetReferencesResponse(length, in, out);
                 break;
+            case Messages.HEADER_PING:
+                log.debug("Decoding 'ping' response");
+                decodePingResponse(in, out);
+                break;
             default:
                 log.debug("Invalid type, dropping message");
         }
@@ -108,6 +112,12 @@ public class ResponseDecoder extends ByteToMessageDecoder {
         out.add(new GetHeadResponse(null, recordId));
     }
 
+    private static void decodePingResponse(ByteBuf in, List<Object> out) {
+        int protocolVersion = in.readInt();
+        long token = in.readLong();
+        out.add(new PingResponse(null, token, protocolVersion));
+    }
+
     private static void decodeGetSegmentResponse(int length, ByteBuf in, List<Object> out) {
         long msb = in.readLong();
         long lsb = in.readLong();
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles 'ping' requests by echoing their token together with the protocol
+ * version of this server. As requests are processed in order, the response
+ * is written after the responses to all requests received before.
+ */
+class PingRequestHandler extends SimpleChannelInboundHandler<PingRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(PingRequestHandler.class);
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, PingRequest msg) throws Exception {
+        log.debug("Answering ping {} from client {}", msg.getToken(), msg.getClientId());
+        ctx.writeAndFlush(new PingResponse(msg.getClientId(), msg.getToken(), PingResponse.PROTOCOL_VERSION));
+    }
+
+}
@@ -50,6 +50,7 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.RequestDecoder;
 import org.apache.jackrabbit.oak.segment.standby.netty.SSLSubjectMatcher;
 import org.apache.jackrabbit.oak.segment.standby.store.CommunicationObserver;
@@ -276,14 +277,17 @@ class StandbyServer implements AutoCloseable {
                 p.addLast(new GetSegmentResponseEncoder());
                 p.addLast(new GetBlobResponseEncoder(builder.blobChunkSize));
                 p.addLast(new GetReferencesResponseEncoder());
+                p.addLast(new PingResponseEncoder());
                 p.addLast(new ResponseObserverHandler(builder.observer));
 
                 // Handlers
 
                 p.addLast(new GetHeadRequestHandler(builder.standbyHeadReader));
                 p.addLast(new GetSegmentRequestHandler(builder.standbySegmentReader));
+                p.addLast(new GetSegmentsRequestHandler(builder.standbySegmentReader));
                 p.addLast(new GetBlobRequestHandler(builder.standbyBlobReader));
                 p.addLast(new GetReferencesRequestHandler(builder.standbyReferencesReader));
+                p.addLast(new PingRequestHandler());
 
                 // Exception handler
 
@@ -83,6 +83,8 @@ public class Check {
 
         private boolean failFast;
 
+        private int concurrency = 1;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -262,6 +264,21 @@ public class Check {
             return this;
         }
 
+        /**
+         * The number of threads used to traverse the content. With more
+         * than one thread, subtrees already found consistent in a previous
+         * revision aren't checked again. This parameter is not required and
+         * defaults to {@code 1}.
+         *
+         * @param concurrency the number of threads. It must be positive.
+         * @return this builder.
+         */
+        public Builder withConcurrency(int concurrency) {
+            checkArgument(concurrency > 0);
+            this.concurrency = concurrency;
+            return this;
+        }
+
         /**
          * Create an executable version of the {@link Check} command.
          *
@@ -340,6 +357,8 @@ public class Check {
 
     private final boolean failFast;
 
+    private final int concurrency;
+
     private Check(Builder builder) {
         this.path = builder.path;
         this.mmap = builder.mmap;
@@ -355,6 +374,7 @@ public class Check {
         this.journal = journalPath(builder.path, builder.journal);
         this.revisionsCount = revisionsToCheckCount(builder.revisionsCount);
         this.failFast = builder.failFast;
+        this.concurrency = builder.concurrency;
     }
 
     private static File journalPath(File segmentStore, File journal) {
@@ -385,6 +405,7 @@ public class Check {
                 .withCheckHead(checkHead)
                 .withDebugInterval(debugInterval)
                 .withFailFast(failFast)
+                .withConcurrency(concurrency)
                 .withFilterPaths(filterPaths)
                 .withRevisionsCount(revisionsCount)
                 .withErrWriter(err)
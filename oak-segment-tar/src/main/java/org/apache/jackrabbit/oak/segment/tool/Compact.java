@@ -28,7 +28,6 @@ import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defa
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Date;
 import java.util.HashSet;
@@ -36,15 +35,16 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.jackrabbit.guava.common.base.Stopwatch;
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.CompactorType;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.NodeDeduplicationCacheType;
 import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFileWriter;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
-import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
 import org.apache.jackrabbit.oak.segment.file.JournalReader;
 import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalFile;
 import org.jetbrains.annotations.Nullable;
@@ -86,6 +86,8 @@ public class Compact {
 
         private int concurrency = 1;
 
+        private NodeDeduplicationCacheType nodeDeduplicationCacheType = NodeDeduplicationCacheType.PRIORITY;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -199,6 +201,17 @@ public class Compact {
             return this;
         }
 
+        /**
+         * The type of the cache used to deduplicate nodes during compaction. If
+         * not specified it defaults to the "priority" cache.
+         * @param nodeDeduplicationCacheType the node deduplication cache type
+         * @return this builder
+         */
+        public Builder withNodeDeduplicationCacheType(NodeDeduplicationCacheType nodeDeduplicationCacheType) {
+            this.nodeDeduplicationCacheType = requireNonNull(nodeDeduplicationCacheType);
+            return this;
+        }
+
         /**
          * Create an executable version of the {@link Compact} command.
          *
@@ -297,6 +310,8 @@ public class Compact {
 
     private final int concurrency;
 
+    private final NodeDeduplicationCacheType nodeDeduplicationCacheType;
+
     private Compact(Builder builder) {
         this.path = builder.path;
         this.journal = new File(builder.path, "journal.log");
@@ -307,10 +322,12 @@ public class Compact {
         this.gcType = builder.gcType;
         this.compactorType = builder.compactorType;
         this.concurrency = builder.concurrency;
+        this.nodeDeduplicationCacheType = builder.nodeDeduplicationCacheType;
     }
 
     public int run() {
-        System.out.printf("Compacting %s with %s and %s compactor type\n", path, fileAccessMode.description, compactorType.description());
+        System.out.printf("Compacting %s with %s, %s compactor type and %s node deduplication cache\n", path,
+                fileAccessMode.description, compactorType.description(), nodeDeduplicationCacheType.description());
         System.out.printf("    before\n");
         Set<File> beforeFiles = listFiles(path);
         printFiles(System.out, beforeFiles);
@@ -319,7 +336,8 @@ public class Compact {
 
         Stopwatch watch = Stopwatch.createStarted();
 
-        try (FileStore store = newFileStore()) {
+        FileStoreBuilder fileStoreBuilder = newFileStoreBuilder();
+        try (FileStore store = fileStoreBuilder.build()) {
             boolean success = false;
             switch (gcType) {
                 case FULL:
@@ -334,6 +352,7 @@ public class Compact {
                 System.out.printf("Compaction cancelled after %s.\n", printableStopwatch(watch));
                 return 1;
             }
+            printNodeCacheStats(System.out, fileStoreBuilder.getCacheManager().getNodeCacheStats());
             System.out.printf("    -> cleaning up\n");
             store.cleanup();
             JournalFile journal = new LocalJournalFile(path, "journal.log");
@@ -365,7 +384,14 @@ public class Compact {
         return 0;
     }
 
-    private FileStore newFileStore() throws IOException, InvalidFileStoreVersionException {
+    private static void printNodeCacheStats(PrintStream s, @Nullable CacheStatsMBean stats) {
+        if (stats != null) {
+            s.printf("    node deduplication cache: hit rate %.2f%%, %d hits, %d misses, %d evictions\n",
+                    stats.getHitRate() * 100, stats.getHitCount(), stats.getMissCount(), stats.getEvictionCount());
+        }
+    }
+
+    private FileStoreBuilder newFileStoreBuilder() {
         FileStoreBuilder builder = fileStoreBuilder(path.getAbsoluteFile())
             .withStrictVersionCheck(strictVersionCheck)
             .withSegmentCacheSize(segmentCacheSize)
@@ -373,11 +399,12 @@ public class Compact {
                 .setOffline()
                 .setGCLogInterval(gcLogInterval)
                 .setCompactorType(compactorType)
+                .setNodeDeduplicationCacheType(nodeDeduplicationCacheType)
                 .setConcurrency(concurrency));
         if (fileAccessMode.memoryMapped != null) {
             builder.withMemoryMapping(fileAccessMode.memoryMapped);
         }
-        return builder.build();
+        return builder;
     }
 
 }
@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Objects;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.text.DateFormat.getDateTimeInstance;
 import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
@@ -68,6 +69,8 @@ public class CheckHelper {
 
         private boolean failFast;
 
+        private int concurrency = 1;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -174,6 +177,21 @@ public class CheckHelper {
             return this;
         }
 
+        /**
+         * The number of threads used to traverse the content. With more
+         * than one thread, subtrees already found consistent in a previous
+         * revision aren't checked again. This parameter is not required and
+         * defaults to {@code 1}.
+         *
+         * @param concurrency the number of threads. It must be positive.
+         * @return this builder.
+         */
+        public Builder withConcurrency(int concurrency) {
+            checkArgument(concurrency > 0);
+            this.concurrency = concurrency;
+            return this;
+        }
+
         /**
          * Create an executable version of the {@link CheckHelper} command.
          *
@@ -197,21 +215,23 @@ public class CheckHelper {
 
     private final boolean failFast;
 
+    private final int concurrency;
+
     private final long debugInterval;
 
     private final PrintWriter out;
 
     private final PrintWriter err;
 
-    private int currentNodeCount;
+    private final AtomicInteger currentNodeCount = new AtomicInteger();
 
-    private int currentPropertyCount;
+    private final AtomicInteger currentPropertyCount = new AtomicInteger();
 
     private int headNodeCount;
 
     private int headPropertyCount;
 
-    private long lastDebugEvent;
+    private volatile long lastDebugEvent;
 
     private CheckHelper(Builder builder) {
         this.debugInterval = builder.debugInterval;
@@ -223,6 +243,7 @@ public class CheckHelper {
         this.err = builder.errWriter;
         this.failFast = builder.failFast;
         this.revisionsCount = builder.revisionsCount;
+        this.concurrency = builder.concurrency;
     }
 
     public int run(ReadOnlyFileStore store, JournalReader journal) {
@@ -284,7 +305,7 @@ public class CheckHelper {
     }
 
     private ConsistencyChecker newConsistencyChecker() {
-        return new ConsistencyChecker() {
+        return new ConsistencyChecker(concurrency) {
 
             @Override
             protected void onCheckRevision(String revision) {
@@ -330,30 +351,30 @@ public class CheckHelper {
 
             @Override
             protected void onCheckTree(String path, boolean head) {
-                currentNodeCount = 0;
-                currentPropertyCount = 0;
+                currentNodeCount.set(0);
+                currentPropertyCount.set(0);
                 print("Checking {0}", path);
             }
 
             @Override
             protected void onCheckTreeEnd(boolean head) {
                 if (head) {
-                    headNodeCount += currentNodeCount;
-                    headPropertyCount += currentPropertyCount;
+                    headNodeCount += currentNodeCount.get();
+                    headPropertyCount += currentPropertyCount.get();
                 }
 
-                print("Checked {0} nodes and {1} properties", currentNodeCount, currentPropertyCount);
+                print("Checked {0} nodes and {1} properties", currentNodeCount.get(), currentPropertyCount.get());
             }
 
             @Override
             protected void onCheckNode(String path) {
                 debug("Traversing {0}", path);
-                currentNodeCount++;
+                currentNodeCount.incrementAndGet();
             }
 
             @Override
             protected void onCheckProperty() {
-                currentPropertyCount++;
+                currentPropertyCount.incrementAndGet();
             }
 
             @Override
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.CompressedSegmentCache.newCompressedSegmentCache;
+import static org.apache.jackrabbit.oak.segment.SegmentCache.DEFAULT_SEGMENT_CACHE_MB;
+import static org.apache.jackrabbit.oak.segment.SegmentCache.newSegmentCache;
+import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.junit.Test;
+
+public class CompressedSegmentCacheTest {
+
+    private final CompressedSegmentCache compressedCache = newCompressedSegmentCache(16, Runnable::run);
+
+    private final SegmentId id1 = new SegmentId(EMPTY_STORE, 0x0000000000000001L, 0xa000000000000001L);
+
+    private final SegmentId bulkId = new SegmentId(EMPTY_STORE, 0x0000000000000002L, 0xb000000000000002L);
+
+    private static Segment newSegment(SegmentId id, byte[] data, int memoryUsage) throws Exception {
+        Segment segment = mock(Segment.class);
+        when(segment.getSegmentId()).thenReturn(id);
+        when(segment.size()).thenReturn(data.length);
+        when(segment.estimateMemoryUsage()).thenReturn(memoryUsage);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(data);
+            return null;
+        }).when(segment).writeTo(any(OutputStream.class));
+        return segment;
+    }
+
+    private static byte[] newData(int size) {
+        // Half random, half constant to get some but not perfect compression
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        for (int i = 0; i < size / 2; i++) {
+            data[i] = 'a';
+        }
+        return data;
+    }
+
+    private static byte[] toArray(Buffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void emptyCache() throws Exception {
+        CompressedSegmentCache cache = newCompressedSegmentCache(0);
+        cache.putSegment(newSegment(id1, newData(1024), 1));
+        assertNull(cache.getSegment(id1));
+    }
+
+    @Test
+    public void putGet() throws Exception {
+        byte[] data = newData(256 * 1024);
+        compressedCache.putSegment(newSegment(id1, data, 1));
+
+        AbstractCacheStats stats = compressedCache.getCacheStats();
+        assertEquals(1, stats.getElementCount());
+        assertTrue(stats.estimateCurrentWeight() < data.length);
+
+        Buffer buffer = compressedCache.getSegment(id1);
+        assertNotNull(buffer);
+        assertArrayEquals(data, toArray(buffer));
+
+        // The cache is exclusive
+        assertNull(compressedCache.getSegment(id1));
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0, stats.getElementCount());
+        assertEquals(0, stats.estimateCurrentWeight());
+    }
+
+    @Test
+    public void compressAsynchronously() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        CompressedSegmentCache cache = newCompressedSegmentCache(16, tasks::add);
+        byte[] data = newData(1024);
+        Segment segment = newSegment(id1, data, 1);
+        cache.putSegment(segment);
+
+        // Not compressed on the evicting thread
+        verify(segment, never()).writeTo(any(OutputStream.class));
+        assertNull(cache.getSegment(id1));
+
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        Buffer buffer = cache.getSegment(id1);
+        assertNotNull(buffer);
+        assertArrayEquals(data, toArray(buffer));
+    }
+
+    @Test
+    public void clearDiscardsQueuedSegments() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        CompressedSegmentCache cache = newCompressedSegmentCache(16, tasks::add);
+        cache.putSegment(newSegment(id1, newData(1024), 1));
+
+        // Evicted before the clear, compressed after it
+        cache.clear();
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertNull(cache.getSegment(id1));
+        assertEquals(0, cache.getCacheStats().getElementCount());
+    }
+
+    @Test
+    public void ignoreBulkSegments() throws Exception {
+        compressedCache.putSegment(newSegment(bulkId, newData(1024), 1));
+        assertNull(compressedCache.getSegment(bulkId));
+    }
+
+    @Test
+    public void evictedFromSegmentCache() throws Exception {
+        SegmentCache cache = newSegmentCache(DEFAULT_SEGMENT_CACHE_MB, compressedCache);
+        byte[] data = newData(1024);
+
+        // Evicted during put because of its size
+        cache.putSegment(newSegment(id1, data, DEFAULT_SEGMENT_CACHE_MB * 1024 * 1024));
+        Buffer buffer = compressedCache.getSegment(id1);
+        assertNotNull(buffer);
+        assertArrayEquals(data, toArray(buffer));
+    }
+
+    @Test
+    public void clearedWithSegmentCache() throws Exception {
+        SegmentCache cache = newSegmentCache(DEFAULT_SEGMENT_CACHE_MB, compressedCache);
+        compressedCache.putSegment(newSegment(id1, newData(1024), 1));
+
+        cache.clear();
+        assertNull(compressedCache.getSegment(id1));
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Test;
+
+public class ConcurrentSegmentIdTableTest {
+
+    private static SegmentIdFactory newSegmentIdMaker() throws IOException {
+        MemoryStore store = new MemoryStore();
+        return (msb, lsb) -> new SegmentId(store, msb, lsb);
+    }
+
+    @Test
+    public void randomized() throws IOException {
+        SegmentIdFactory maker = newSegmentIdMaker();
+        ConcurrentSegmentIdTable tbl = new ConcurrentSegmentIdTable();
+
+        List<SegmentId> refs = new ArrayList<>();
+        Random r = new Random(1);
+        for (int i = 0; i < 16 * 1024; i++) {
+            refs.add(tbl.newSegmentId(r.nextLong(), r.nextLong(), maker));
+        }
+        assertEquals(16 * 1024, tbl.getEntryCount());
+        assertEquals(16 * 2048, tbl.getMapSize());
+        int rebuildCount = tbl.getMapRebuildCount();
+
+        r = new Random(1);
+        for (int i = 0; i < 16 * 1024; i++) {
+            assertSame(refs.get(i), tbl.newSegmentId(r.nextLong(), r.nextLong(), maker));
+        }
+        assertEquals(16 * 1024, tbl.getEntryCount());
+        assertEquals(rebuildCount, tbl.getMapRebuildCount());
+    }
+
+    @Test
+    public void justHashCollisions() throws IOException {
+        SegmentIdFactory maker = newSegmentIdMaker();
+        ConcurrentSegmentIdTable tbl = new ConcurrentSegmentIdTable();
+
+        List<SegmentId> refs = new ArrayList<>();
+        int originalCount = 1024;
+        for (int i = 0; i < originalCount; i++) {
+            // modulo 128 to ensure we have conflicts
+            refs.add(tbl.newSegmentId(i, i % 128, maker));
+        }
+        assertEquals(originalCount, tbl.getEntryCount());
+        assertEquals(1, tbl.getMapRebuildCount());
+
+        for (SegmentId id : refs) {
+            assertSame(id, tbl.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits(), maker));
+        }
+
+        List<SegmentId> refs2 = new ArrayList<>();
+        tbl.collectReferencedIds(refs2);
+        assertEquals(refs.size(), refs2.size());
+        assertEquals(1, tbl.getMapRebuildCount());
+    }
+
+    @Test
+    public void incrementalTransfer() throws IOException {
+        SegmentIdFactory maker = newSegmentIdMaker();
+        ConcurrentSegmentIdTable tbl = new ConcurrentSegmentIdTable();
+
+        // exceeding 75% of the initial 1024 slots starts the transfer and
+        // moves the first of 16 chunks
+        List<SegmentId> refs = new ArrayList<>();
+        for (int i = 0; i < 769; i++) {
+            refs.add(tbl.newSegmentId(i, i, maker));
+        }
+        assertEquals(0, tbl.getMapRebuildCount());
+
+        // lookups of tracked ids do not move chunks
+        for (SegmentId id : refs) {
+            assertSame(id, tbl.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits(), maker));
+        }
+        assertEquals(0, tbl.getMapRebuildCount());
+
+        // each added id moves one more chunk
+        for (int i = 769; i < 769 + 14; i++) {
+            refs.add(tbl.newSegmentId(i, i, maker));
+        }
+        assertEquals(0, tbl.getMapRebuildCount());
+        refs.add(tbl.newSegmentId(10000, 10000, maker));
+        assertEquals(1, tbl.getMapRebuildCount());
+
+        for (SegmentId id : refs) {
+            assertSame(id, tbl.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits(), maker));
+        }
+        assertEquals(refs.size(), tbl.getEntryCount());
+    }
+
+    @Test
+    public void clearTable() throws IOException {
+        SegmentIdFactory maker = newSegmentIdMaker();
+        ConcurrentSegmentIdTable tbl = new ConcurrentSegmentIdTable();
+
+        List<SegmentId> refs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            refs.add(tbl.newSegmentId(i, i % 2, maker));
+        }
+
+        Set<UUID> reclaimed = new HashSet<>();
+        for (SegmentId id : refs) {
+            if (id.getMostSignificantBits() < 4) {
+                reclaimed.add(id.asUUID());
+            }
+        }
+
+        tbl.clearSegmentIdTables(reclaimed, "TestGcInfo");
+
+        for (SegmentId id : refs) {
+            if (id.getMostSignificantBits() < 4) {
+                assertEquals("TestGcInfo", id.getGcInfo());
+            } else {
+                assertNull(id.getGcInfo());
+            }
+        }
+    }
+
+    @Test
+    public void gc() throws IOException {
+        SegmentIdFactory maker = newSegmentIdMaker();
+        ConcurrentSegmentIdTable tbl = new ConcurrentSegmentIdTable();
+
+        List<SegmentId> refs = new ArrayList<>();
+        int originalCount = 1024;
+        for (int i = 0; i < originalCount; i++) {
+            refs.add(tbl.newSegmentId(i, i % 128, maker));
+        }
+        assertEquals(originalCount, tbl.getEntryCount());
+
+        refs.subList(0, refs.size() / 2).clear();
+
+        for (int gcCalls = 0;; gcCalls++) {
+            // needed here, so some entries can be garbage collected
+            System.gc();
+
+            for (SegmentId id : refs) {
+                long msb = id.getMostSignificantBits();
+                long lsb = id.getLeastSignificantBits();
+                assertSame(id, tbl.newSegmentId(msb, lsb, maker));
+            }
+
+            // adding entries eventually triggers a rebuild, which gets rid
+            // of the unreferenced ids
+            for (int i = 0; i < 1024; i++) {
+                tbl.newSegmentId(originalCount + gcCalls * 1024 + i, i, maker);
+            }
+
+            if (tbl.getEntryCount() < originalCount + (gcCalls + 1) * 1024) {
+                break;
+            } else if (gcCalls > 10) {
+                fail("No entries were garbage collected after 10 times System.gc()");
+            }
+        }
+        for (SegmentId id : refs) {
+            assertSame(id, tbl.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits(), maker));
+        }
+    }
+
+    @Test
+    public void concurrentIdentity() throws Exception {
+        SegmentIdFactory maker = newSegmentIdMaker();
+        ConcurrentSegmentIdTable tbl = new ConcurrentSegmentIdTable();
+        int threads = 8;
+        int count = 32 * 1024;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SegmentId[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    SegmentId[] ids = new SegmentId[count];
+                    for (int i = 0; i < count; i++) {
+                        // few distinct low bits to provoke collisions and rebuilds
+                        ids[i] = tbl.newSegmentId(i, i % 4096, maker);
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            SegmentId[] expected = futures.get(0).get(1, TimeUnit.MINUTES);
+            for (Future<SegmentId[]> future : futures) {
+                SegmentId[] ids = future.get(1, TimeUnit.MINUTES);
+                for (int i = 0; i < count; i++) {
+                    assertSame(expected[i], ids[i]);
+                }
+            }
+            assertEquals(count, tbl.getEntryCount());
+            assertTrue(tbl.getMapRebuildCount() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
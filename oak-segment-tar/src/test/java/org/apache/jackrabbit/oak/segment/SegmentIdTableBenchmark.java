@@ -20,7 +20,13 @@ package org.apache.jackrabbit.oak.segment;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
 import org.jetbrains.annotations.NotNull;
@@ -39,13 +45,74 @@ public class SegmentIdTableBenchmark {
         };
     }
 
-    public static void main(String... args) throws IOException {
+    public static void main(String... args) throws Exception {
         test();
         test();
         test();
         test();
         test();
         test();
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < 5; i++) {
+            stress(threads);
+        }
+    }
+
+    /**
+     * Resolve segment ids from many threads concurrently, the way {@code
+     * SegmentTracker#newSegmentId} is hit by concurrent sessions. Three
+     * quarters of the lookups resolve already tracked ids, the rest create
+     * new ones.
+     */
+    private static void stress(int threads) throws Exception {
+        int count = 1000000;
+        long[] array = new long[count];
+        Random r = new Random(1);
+        for (int i = 0; i < array.length; i++) {
+            array[i] = r.nextLong();
+        }
+
+        MemoryStore store = new MemoryStore();
+        SegmentIdFactory maker = newSegmentIdMaker(store);
+
+        SegmentIdTable tbl = new SegmentIdTable();
+        long time = stress(threads, array, (msb, lsb) -> tbl.newSegmentId(msb, lsb, maker));
+        System.out.println("SegmentIdTable, " + threads + " threads: " + time);
+
+        ConcurrentSegmentIdTable concurrentTbl = new ConcurrentSegmentIdTable();
+        time = stress(threads, array, (msb, lsb) -> concurrentTbl.newSegmentId(msb, lsb, maker));
+        System.out.println("ConcurrentSegmentIdTable, " + threads + " threads: " + time);
+    }
+
+    private static long stress(int threads, long[] array, SegmentIdFactory table) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SegmentId[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    // keep the ids strongly reachable for the duration of the run
+                    SegmentId[] ids = new SegmentId[array.length];
+                    start.await();
+                    for (int i = 0; i < array.length; i++) {
+                        int k = random.nextInt(4) == 0 ? i : random.nextInt(i + 1);
+                        ids[i] = table.newSegmentId(k, array[k]);
+                    }
+                    return ids;
+                }));
+            }
+            long time = System.currentTimeMillis();
+            start.countDown();
+            for (Future<SegmentId[]> future : futures) {
+                future.get();
+            }
+            return System.currentTimeMillis() - time;
+        } finally {
+            executor.shutdown();
+        }
     }
 
     private static void test() throws IOException {
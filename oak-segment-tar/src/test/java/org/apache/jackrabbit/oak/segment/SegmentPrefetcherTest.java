@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.SegmentCache.DEFAULT_SEGMENT_CACHE_MB;
+import static org.apache.jackrabbit.oak.segment.SegmentCache.newSegmentCache;
+import static org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats.SEGMENT_PREFETCH_COUNT;
+import static org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats.SEGMENT_PREFETCH_HITS;
+import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.junit.After;
+import org.junit.Test;
+
+public class SegmentPrefetcherTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+
+    private final SegmentCache cache = newSegmentCache(DEFAULT_SEGMENT_CACHE_MB);
+
+    private final SegmentTracker tracker = new SegmentTracker(
+            (msb, lsb) -> new SegmentId(EMPTY_STORE, msb, lsb, cache::recordHit));
+
+    @After
+    public void tearDown() {
+        new ExecutorCloser(executor).close();
+    }
+
+    private Segment newSegment(long msb, UUID... references) {
+        SegmentId id = tracker.newSegmentId(msb, 0xa000000000000000L | msb);
+        Segment segment = mock(Segment.class);
+        when(segment.getSegmentId()).thenReturn(id);
+        when(segment.estimateMemoryUsage()).thenReturn(1);
+        when(segment.getReferencedSegmentIdCount()).thenReturn(references.length);
+        for (int i = 0; i < references.length; i++) {
+            when(segment.getReferencedSegmentId(i)).thenReturn(references[i]);
+        }
+        return segment;
+    }
+
+    private static UUID uuid(long msb) {
+        return new UUID(msb, 0xa000000000000000L | msb);
+    }
+
+    @Test
+    public void disabled() {
+        SegmentPrefetcher prefetcher = new SegmentPrefetcher(0, 1, 16, cache, tracker, statsProvider);
+        assertFalse(prefetcher.isEnabled());
+        prefetcher.prefetch(newSegment(1, uuid(2)), id -> {
+            throw new AssertionError("Unexpected load of " + id);
+        });
+        prefetcher.close();
+    }
+
+    @Test
+    public void prefetchReferences() throws InterruptedException {
+        Segment s2 = newSegment(2, uuid(4));
+        Segment s3 = newSegment(3);
+        Segment s4 = newSegment(4);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        Set<SegmentId> loaded = ConcurrentHashMap.newKeySet();
+        Function<SegmentId, Segment> loader = id -> {
+            loaded.add(id);
+            latch.countDown();
+            switch ((int) id.getMostSignificantBits()) {
+                case 2: return s2;
+                case 3: return s3;
+                case 4: return s4;
+                default: throw new SegmentNotFoundException(id);
+            }
+        };
+
+        try (SegmentPrefetcher prefetcher = new SegmentPrefetcher(2, 1, 16, cache, tracker, statsProvider)) {
+            prefetcher.prefetch(newSegment(1, uuid(2), uuid(3)), loader);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+
+        // Only direct references are prefetched with a depth of 1
+        assertEquals(Set.of(s2.getSegmentId(), s3.getSegmentId()), loaded);
+        assertEquals(s2, s2.getSegmentId().getSegment());
+        assertEquals(s3, s3.getSegmentId().getSegment());
+        assertEquals(2, statsProvider.getMeter(SEGMENT_PREFETCH_COUNT, StatsOptions.DEFAULT).getCount());
+    }
+
+    @Test
+    public void prefetchDepth() throws InterruptedException {
+        Segment s2 = newSegment(2, uuid(3));
+        Segment s3 = newSegment(3);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        Function<SegmentId, Segment> loader = id -> {
+            latch.countDown();
+            return id.getMostSignificantBits() == 2 ? s2 : s3;
+        };
+
+        try (SegmentPrefetcher prefetcher = new SegmentPrefetcher(1, 2, 16, cache, tracker, statsProvider)) {
+            prefetcher.prefetch(newSegment(1, uuid(2)), loader);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(s3, s3.getSegmentId().getSegment());
+    }
+
+    @Test
+    public void fanOut() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Set<SegmentId> loaded = ConcurrentHashMap.newKeySet();
+        Function<SegmentId, Segment> loader = id -> {
+            loaded.add(id);
+            latch.countDown();
+            return newSegment(id.getMostSignificantBits());
+        };
+
+        try (SegmentPrefetcher prefetcher = new SegmentPrefetcher(1, 1, 1, cache, tracker, statsProvider)) {
+            prefetcher.prefetch(newSegment(1, uuid(2), uuid(3)), loader);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(Set.of(tracker.newSegmentId(2, 0xa000000000000002L)), loaded);
+    }
+
+    @Test
+    public void hits() throws InterruptedException {
+        Segment s2 = newSegment(2);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try (SegmentPrefetcher prefetcher = new SegmentPrefetcher(1, 1, 16, cache, tracker, statsProvider)) {
+            prefetcher.prefetch(newSegment(1, uuid(2)), id -> {
+                latch.countDown();
+                return s2;
+            });
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+            // Wait for the prefetch to be recorded
+            long deadline = System.currentTimeMillis() + 10000;
+            while (statsProvider.getMeter(SEGMENT_PREFETCH_COUNT, StatsOptions.DEFAULT).getCount() == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            SegmentId id = tracker.newSegmentId(2, 0xa000000000000002L);
+            prefetcher.onAccess(id);
+            prefetcher.onAccess(id);
+            // segments that were not prefetched are not counted
+            prefetcher.onAccess(tracker.newSegmentId(3, 0xa000000000000003L));
+        }
+        assertEquals(1, statsProvider.getMeter(SEGMENT_PREFETCH_HITS, StatsOptions.DEFAULT).getCount());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType;
+import org.apache.jackrabbit.oak.segment.file.CompactionProgress.CompactionProgressEntry;
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactionProgressTest {
+
+    @Rule
+    public final TemporaryFolder segmentFolder = new TemporaryFolder(new File("target"));
+
+    private final GCGeneration partial = newGCGeneration(3, 1, true);
+
+    private final GCGeneration target = newGCGeneration(4, 2, true);
+
+    private SegmentNodeStorePersistence getPersistence() {
+        return new TarPersistence(segmentFolder.getRoot());
+    }
+
+    @Test
+    public void noCheckpoint() throws Exception {
+        CompactionProgress progress = new CompactionProgress(getPersistence().getCompactionProgressFile());
+        assertNull(progress.getUnfinished(partial));
+    }
+
+    @Test
+    public void checkpointSurvivesRestart() throws Exception {
+        CompactionProgress progress = new CompactionProgress(getPersistence().getCompactionProgressFile());
+        progress.checkpoint(GCType.FULL, partial, target, 10, "foo");
+        progress.checkpoint(GCType.FULL, partial, target, 20, "bar");
+
+        CompactionProgress reopened = new CompactionProgress(getPersistence().getCompactionProgressFile());
+        CompactionProgressEntry entry = reopened.getUnfinished(partial.nonGC());
+        assertNotNull(entry);
+        assertEquals(GCType.FULL, entry.getType());
+        assertEquals(partial, entry.getPartialGeneration());
+        assertEquals(target, entry.getTargetGeneration());
+        assertEquals(20, entry.getNodes());
+        assertEquals("bar", entry.getRoot());
+    }
+
+    @Test
+    public void checkpointOfOtherGeneration() throws Exception {
+        CompactionProgress progress = new CompactionProgress(getPersistence().getCompactionProgressFile());
+        progress.checkpoint(GCType.TAIL, partial, target, 10, "foo");
+
+        // The head moved on, e.g. because of a compaction without progress file
+        assertNull(progress.getUnfinished(newGCGeneration(4, 1, true)));
+    }
+
+    @Test
+    public void clear() throws Exception {
+        CompactionProgress progress = new CompactionProgress(getPersistence().getCompactionProgressFile());
+        progress.checkpoint(GCType.FULL, partial, target, 10, "foo");
+        progress.clear();
+        assertNull(progress.getUnfinished(partial));
+
+        CompactionProgress reopened = new CompactionProgress(getPersistence().getCompactionProgressFile());
+        assertNull(reopened.getUnfinished(partial));
+        assertEquals(0, getPersistence().getCompactionProgressFile().readLines().size());
+    }
+
+    @Test
+    public void inMemoryOnly() {
+        CompactionProgress progress = new CompactionProgress(null);
+        progress.checkpoint(GCType.FULL, partial, target, 10, "foo");
+        assertNotNull(progress.getUnfinished(partial));
+    }
+}
@@ -41,10 +41,14 @@ import static org.apache.jackrabbit.oak.segment.CompactorTestUtils.addTestConten
 import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class FullCompactionStrategyTest {
@@ -79,6 +83,7 @@ public class FullCompactionStrategyTest {
         when(mockedContext.getSuccessfulCompactionListener()).thenReturn(Mockito.mock(SuccessfulCompactionListener.class));
         when(mockedContext.getGCOptions()).thenReturn(SegmentGCOptions.defaultGCOptions());
         when(mockedContext.getFlusher()).thenReturn(() -> {});
+        when(mockedContext.getCompactionProgress()).thenReturn(new CompactionProgress(null));
 
         GCJournal mockedJournal = Mockito.mock(GCJournal.class);
         when(mockedContext.getGCJournal()).thenReturn(mockedJournal);
@@ -165,4 +170,76 @@ public class FullCompactionStrategyTest {
         SegmentNodeState headState = store.getReader().readNode(store.getRevisions().getHead());
         CompactorTestUtils.checkGeneration(headState, baseGeneration.nextFull());
     }
-}
\ No newline at end of file
+
+    private static MemoryStore newStoreWithTestContent() throws Exception {
+        MemoryStore store = new MemoryStore();
+        NodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+
+        for (int i = 1; i < 100; i++) {
+            addTestContent("node" + i, nodeStore, 42);
+        }
+        return store;
+    }
+
+    @Test
+    public void testResumeCancelledCompaction() throws Exception {
+        // The number of nodes an uninterrupted compaction of the same content compacts
+        MemoryStore referenceStore = newStoreWithTestContent();
+        CompactionStrategy.Context referenceContext = getMockedCompactionContext(referenceStore);
+        GCNodeWriteMonitor referenceMonitor = new GCNodeWriteMonitor(-1, GCMonitor.EMPTY);
+        when(referenceContext.getCompactionMonitor()).thenReturn(referenceMonitor);
+        when(referenceContext.getStateSaveTriggerSupplier()).thenReturn(Canceller::newCanceller);
+        when(referenceContext.getHardCanceller()).thenReturn(Canceller.newCanceller());
+        when(referenceContext.getSoftCanceller()).thenReturn(Canceller.newCanceller());
+        assertTrue(new FullCompactionStrategy().compact(referenceContext).isSuccess());
+        long allNodes = referenceMonitor.getCompactedNodes();
+
+        MemoryStore store = newStoreWithTestContent();
+        CompactionStrategy.Context mockedContext = getMockedCompactionContext(store);
+        GCNodeWriteMonitor gcMonitor = new GCNodeWriteMonitor(-1, GCMonitor.EMPTY);
+        when(mockedContext.getCompactionMonitor()).thenReturn(gcMonitor);
+
+        when(mockedContext.getStateSaveTriggerSupplier()).thenReturn(
+                () -> {
+                    long compactedNodes = gcMonitor.getCompactedNodes();
+                    return Canceller.newCanceller().withCondition("10 more nodes compacted",
+                            () -> gcMonitor.getCompactedNodes() >= compactedNodes + 10);
+                }
+        );
+        when(mockedContext.getHardCanceller()).thenReturn(
+                Canceller.newCanceller().withCondition("50 total nodes compacted",
+                        () -> gcMonitor.getCompactedNodes() >= 50)
+        );
+        when(mockedContext.getSoftCanceller()).thenReturn(Canceller.newCanceller());
+
+        SegmentNodeState initialHeadState = store.getReader().readNode(store.getRevisions().getHead());
+        GCGeneration baseGeneration = initialHeadState.getGcGeneration();
+
+        FullCompactionStrategy strategy = new FullCompactionStrategy();
+        assertFalse(strategy.compact(mockedContext).isSuccess());
+
+        // The checkpoints before the cancellation are recorded
+        CompactionProgress progress = mockedContext.getCompactionProgress();
+        GCGeneration headGeneration = store.getRevisions().getHead().getSegmentId().getGcGeneration();
+        CompactionProgress.CompactionProgressEntry unfinished = progress.getUnfinished(headGeneration);
+        assertNotNull(unfinished);
+        assertEquals(baseGeneration.nextFull(), unfinished.getTargetGeneration());
+        assertTrue(unfinished.getNodes() > 0);
+
+        // The next compaction picks up the unfinished one and clears the progress
+        when(mockedContext.getHardCanceller()).thenReturn(Canceller.newCanceller());
+        assertTrue(strategy.compact(mockedContext).isSuccess());
+        verify(mockedContext.getGCListener()).info("resuming unfinished compaction from {} with {} compacted nodes",
+                unfinished.getRoot(), unfinished.getNodes());
+
+        // The subtrees compacted before the cancellation are reused, not compacted again
+        long resumedNodes = gcMonitor.getCompactedNodes();
+        assertTrue(resumedNodes > 0);
+        assertTrue("resumed compaction compacted " + resumedNodes + " of " + allNodes + " nodes",
+                resumedNodes < allNodes);
+
+        SegmentNodeState headState = store.getReader().readNode(store.getRevisions().getHead());
+        CompactorTestUtils.checkGeneration(headState, baseGeneration.nextFull());
+        assertNull(progress.getUnfinished(headState.getGcGeneration()));
+    }
+}
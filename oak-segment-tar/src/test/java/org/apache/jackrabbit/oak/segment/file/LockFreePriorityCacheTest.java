@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.lang.Integer.valueOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jackrabbit.oak.segment.CacheWeights;
+import org.junit.Test;
+
+public class LockFreePriorityCacheTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalSize() {
+        new LockFreePriorityCache<String, String>(42);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalProbes() {
+        new LockFreePriorityCache<String, String>(16, 0, CacheWeights.noopWeigher());
+    }
+
+    @Test
+    public void singletonCache() {
+        LockFreePriorityCache<String, Integer> cache = new LockFreePriorityCache<>(1, 1, CacheWeights.noopWeigher());
+        assertTrue(cache.put("one", 1, 0, (byte) 0));
+
+        // Cache is full -> cannot put another key of the same cost
+        assertFalse(cache.put("two", 2, 0, (byte) 0));
+
+        // Retrieving "one" leads to a cache hit increasing this key's cost to 1
+        assertEquals(valueOf(1), cache.get("one", 0));
+        assertNull(cache.get("one", 1));
+        assertNull(cache.get("two", 0));
+
+        // Inserting "two" only succeeds for cost 2, which is bigger than "one"'s cost of 1
+        assertFalse(cache.put("two", 2, 0, (byte) 1));
+        assertTrue(cache.put("two", 2, 0, (byte) 2));
+        assertEquals(valueOf(2), cache.get("two", 0));
+        assertNull(cache.get("one", 0));
+    }
+
+    @Test
+    public void updateWithNewGeneration() {
+        LockFreePriorityCache<String, Integer> cache = new LockFreePriorityCache<>(1, 1, CacheWeights.noopWeigher());
+        assertTrue(cache.put("one", 1, 0, (byte) 0));
+
+        // Cache is full but we can still put a key of a higher generation
+        assertTrue(cache.put("two", 2, 1, (byte) 0));
+        assertNull(cache.get("one", 0));
+
+        // Cannot put a key of a lower generation
+        assertFalse(cache.put("two", 2, 0, (byte) 0));
+
+        // But one of the same generation
+        assertTrue(cache.put("two", 2, 1, (byte) 0));
+    }
+
+    @Test
+    public void generationPurge() {
+        LockFreePriorityCache<String, Integer> cache = new LockFreePriorityCache<>(65536);
+
+        for (int gen = 4; gen >= 0; gen--) {
+            // Backward iteration avoids earlier generations are replaced with later ones
+            for (int k = 0; k < 100; k++) {
+                if (!cache.put("key-" + gen + "-" + k, 0, gen, (byte) 0)) {
+                    assumeTrue("All test keys are in the cache", false);
+                }
+            }
+        }
+
+        assertEquals(500, cache.size());
+        cache.purgeGenerations(generation -> generation <= 2);
+        assertEquals(200, cache.size());
+        assertNull(cache.get("key-2-0", 2));
+        assertEquals(valueOf(0), cache.get("key-3-0", 3));
+    }
+
+    @Test
+    public void evictionCount() {
+        Random rnd = new Random();
+        LockFreePriorityCache<String, Integer> cache = new LockFreePriorityCache<>(128, 2, CacheWeights.noopWeigher());
+        int count = 0;
+        for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; b++) {
+            if (cache.put("k-" + b + "-" + rnd.nextInt(1000), b, 0, (byte) b)) {
+                count++;
+            }
+        }
+
+        assertEquals(count, cache.size() + cache.getStats().evictionCount());
+    }
+
+    @Test
+    public void concurrentReadWrite() throws Exception {
+        int size = 16384;
+        LockFreePriorityCache<String, Integer> cache = new LockFreePriorityCache<>(size);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int k = 0; k < size; k++) {
+                        // Threads insert overlapping keys
+                        int key = (k + offset * size / 16) % size;
+                        if (cache.put("key-" + key, key, 0, (byte) 0)) {
+                            Integer value = cache.get("key-" + key, 0);
+                            if (value != null) {
+                                assertEquals(valueOf(key), value);
+                            }
+                        }
+                        assertNull(cache.get("key-" + key, 1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(cache.size() <= size);
+        for (int key = 0; key < size; key++) {
+            Integer value = cache.get("key-" + key, 0);
+            if (value != null) {
+                assertEquals(valueOf(key), value);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.jackrabbit.guava.common.cache.CacheStats;
+
+/**
+ * Compares the throughput and hit rate of {@link PriorityCache} and
+ * {@link LockFreePriorityCache} for an access pattern resembling node
+ * deduplication during parallel compaction: each thread looks up a key and
+ * puts it if it is missing, where keys follow a skewed distribution.
+ */
+public class PriorityCacheBenchmark {
+
+    private static final int CACHE_SIZE = 1 << 20;
+
+    private static final int KEY_SPACE = 4 * CACHE_SIZE;
+
+    private static final int OPERATIONS = 2 * 1000 * 1000;
+
+    public static void main(String... args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < 3; i++) {
+            for (int t = 1; t <= threads; t *= 2) {
+                run("PriorityCache", () -> new PriorityCache<>(CACHE_SIZE), t);
+                run("LockFreePriorityCache", () -> new LockFreePriorityCache<>(CACHE_SIZE), t);
+            }
+        }
+    }
+
+    private static void run(String name, Supplier<GenerationalCache<String, Integer>> factory, int threads)
+            throws Exception {
+        GenerationalCache<String, Integer> cache = factory.get();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random rnd = new Random(seed);
+                    start.await();
+                    for (int k = 0; k < OPERATIONS / threads; k++) {
+                        // Square of a uniform distribution: small keys are accessed more often
+                        double u = rnd.nextDouble();
+                        String key = "node-" + (int) (u * u * KEY_SPACE);
+                        if (cache.get(key, 0) == null) {
+                            cache.put(key, k, 0, (byte) 0);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long millis = (System.nanoTime() - t0) / 1000000;
+
+            CacheStats stats = cache.getStats();
+            System.out.printf("%-22s threads=%2d %8d ops/s hit rate=%.3f failed puts=%d%n",
+                    name, threads, OPERATIONS * 1000L / Math.max(1, millis),
+                    stats.hitRate(), stats.loadExceptionCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Compares the size on disk and the latency of reading segments from the
+ * tar files of a store written with and without segment compression. The
+ * content resembles typical repository content: many nodes sharing a few
+ * templates and repeating property values.
+ */
+public class SegmentCompressionBenchmark {
+
+    private static final int NODES = 200000;
+
+    public static void main(String... args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            run(false);
+            run(true);
+        }
+    }
+
+    private static void run(boolean compression) throws Exception {
+        File directory = Files.createTempDirectory("segment-compression").toFile();
+        try {
+            try (FileStore store = fileStoreBuilder(directory).withSegmentCompression(compression).build()) {
+                SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+                Random random = new Random(42);
+                NodeBuilder root = nodeStore.getRoot().builder();
+                for (int k = 0; k < NODES; k++) {
+                    NodeBuilder node = root.child("folder-" + (k / 1000)).child("node-" + k);
+                    node.setProperty("jcr:primaryType", "nt:unstructured");
+                    node.setProperty("sling:resourceType", "components/page/content-" + random.nextInt(20));
+                    node.setProperty("title", "Title of page " + k);
+                    node.setProperty("hidden", k % 7 == 0);
+                    if (k % 10000 == 0) {
+                        nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                        root = nodeStore.getRoot().builder();
+                    }
+                }
+                nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+
+            long size = FileUtils.sizeOfDirectory(directory);
+
+            try (ReadOnlyFileStore store = fileStoreBuilder(directory).withSegmentCacheSize(0).buildReadOnly()) {
+                int segments = 0;
+                long bytes = 0;
+                long t0 = System.nanoTime();
+                for (SegmentId id : store.getSegmentIds()) {
+                    Segment segment = store.readSegment(id);
+                    bytes += segment.size();
+                    segments++;
+                }
+                long nanos = System.nanoTime() - t0;
+
+                System.out.printf("compression=%-5s size on disk=%10d bytes segments=%6d (%10d bytes) read latency=%6d ns/segment%n",
+                        compression, size, segments, bytes, nanos / Math.max(1, segments));
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.util.Collections.emptyList;
+import static org.apache.jackrabbit.oak.segment.file.tar.SegmentBloomFilter.newSegmentBloomFilter;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.file.tar.index.SimpleIndexEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.junit.Test;
+
+public class SegmentBloomFilterTest {
+
+    private static List<SegmentArchiveEntry> newEntries(List<UUID> ids) {
+        List<SegmentArchiveEntry> entries = new ArrayList<>();
+        for (UUID id : ids) {
+            entries.add(new SimpleIndexEntry(id.getMostSignificantBits(), id.getLeastSignificantBits(), 0, 0, 0, 0, false));
+        }
+        return entries;
+    }
+
+    private static List<UUID> randomIds(int count) {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+
+    @Test
+    public void emptyFilter() {
+        SegmentBloomFilter filter = newSegmentBloomFilter(emptyList());
+        assertFalse(filter.mightContain(1, 2));
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        List<UUID> ids = randomIds(10000);
+        SegmentBloomFilter filter = newSegmentBloomFilter(newEntries(ids));
+        for (UUID id : ids) {
+            assertTrue(filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+    }
+
+    @Test
+    public void falsePositiveProbability() {
+        SegmentBloomFilter filter = newSegmentBloomFilter(newEntries(randomIds(10000)));
+        int falsePositives = 0;
+        for (UUID id : randomIds(100000)) {
+            if (filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test
+    public void sequentialIds() {
+        // Identifiers differing in few bits only must be spread as well
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(new UUID(i, 0xa000000000000000L | i));
+        }
+        SegmentBloomFilter filter = newSegmentBloomFilter(newEntries(ids));
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain(i, 0xa000000000000000L | i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 200);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.commons.Buffer;
+import org.junit.Test;
+
+public class SegmentCompressionTest {
+
+    private static final long DATA_LSB = 0xA000000000000001L;
+
+    private static final long BULK_LSB = 0xB000000000000001L;
+
+    private static byte[] repetitiveSegment() {
+        return ("0aK" + "jcr:primaryType nt:unstructured ".repeat(500)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] data = repetitiveSegment();
+        byte[] compressed = SegmentCompression.compress(DATA_LSB, data, 0, data.length);
+        assertNotNull(compressed);
+        assertTrue(compressed.length < data.length);
+        assertTrue(SegmentCompression.isCompressed(DATA_LSB, Buffer.wrap(compressed)));
+        assertEquals(Buffer.wrap(data), SegmentCompression.decompress(DATA_LSB, Buffer.wrap(compressed)));
+        assertArrayEquals(data, SegmentCompression.decompress(DATA_LSB, compressed));
+    }
+
+    @Test
+    public void roundTripWithOffset() throws IOException {
+        byte[] data = repetitiveSegment();
+        byte[] padded = new byte[data.length + 20];
+        System.arraycopy(data, 0, padded, 10, data.length);
+        byte[] compressed = SegmentCompression.compress(DATA_LSB, padded, 10, data.length);
+        assertNotNull(compressed);
+        assertArrayEquals(data, SegmentCompression.decompress(DATA_LSB, compressed));
+    }
+
+    @Test
+    public void bulkSegmentsAreNotCompressed() throws IOException {
+        byte[] data = repetitiveSegment();
+        assertNull(SegmentCompression.compress(BULK_LSB, data, 0, data.length));
+
+        // Bulk segments may start with anything, even the signature of a compressed segment
+        byte[] compressed = SegmentCompression.compress(DATA_LSB, data, 0, data.length);
+        Buffer buffer = Buffer.wrap(compressed);
+        assertFalse(SegmentCompression.isCompressed(BULK_LSB, buffer));
+        assertSame(buffer, SegmentCompression.decompress(BULK_LSB, buffer));
+    }
+
+    @Test
+    public void incompressibleSegmentsAreNotCompressed() {
+        byte[] data = new byte[4096];
+        new Random(42).nextBytes(data);
+        assertNull(SegmentCompression.compress(DATA_LSB, data, 0, data.length));
+    }
+
+    @Test
+    public void uncompressedSegmentsAreReturnedAsIs() throws IOException {
+        Buffer buffer = Buffer.wrap(repetitiveSegment());
+        assertFalse(SegmentCompression.isCompressed(DATA_LSB, buffer));
+        assertSame(buffer, SegmentCompression.decompress(DATA_LSB, buffer));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownCodec() throws IOException {
+        byte[] data = repetitiveSegment();
+        byte[] compressed = SegmentCompression.compress(DATA_LSB, data, 0, data.length);
+        compressed[3] = 42;
+        SegmentCompression.decompress(DATA_LSB, compressed);
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptContent() throws IOException {
+        byte[] data = repetitiveSegment();
+        byte[] compressed = SegmentCompression.compress(DATA_LSB, data, 0, data.length);
+        // Claim a larger uncompressed size than the actual one
+        Buffer.wrap(compressed).position(4).putInt(data.length * 2);
+        SegmentCompression.decompress(DATA_LSB, compressed);
+    }
+}
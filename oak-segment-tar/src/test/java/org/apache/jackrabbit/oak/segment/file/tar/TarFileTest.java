@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.segment.file.tar;
 import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.internal.util.collections.Sets.newSet;
 
 import java.io.File;
@@ -34,6 +35,7 @@ import java.util.Set;
 import java.util.UUID;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
+import org.apache.jackrabbit.oak.stats.NoopStats;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
@@ -81,6 +83,24 @@ public class TarFileTest {
         }
     }
 
+    @Test
+    public void testWriteAndReadCompressed() throws IOException {
+        UUID id = UUID.randomUUID();
+        long msb = id.getMostSignificantBits();
+        long lsb = 0xA000000000000000L | (id.getLeastSignificantBits() & (-1L >>> 4));
+        byte[] data = ("0aK" + "Hello, World!".repeat(1000)).getBytes(StandardCharsets.UTF_8);
+
+        try (TarWriter writer = new TarWriter(archiveManager, 0, NoopStats.INSTANCE, true)) {
+            writer.writeEntry(msb, lsb, data, 0, data.length, generation(0));
+            assertEquals(Buffer.wrap(data), writer.readEntry(msb, lsb));
+        }
+
+        try (TarReader reader = TarReader.open("data00000a.tar", archiveManager)) {
+            assertTrue(reader.getEntries()[0].getLength() < data.length);
+            assertEquals(Buffer.wrap(data), reader.readEntry(msb, lsb));
+        }
+    }
+
     @Test
     public void testGCGeneration() throws Exception {
         UUID id = UUID.randomUUID();
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.commit.Observable;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class GroupCommitSchedulerTest {
+
+    private static LockBasedScheduler newScheduler(MemoryStore ms) {
+        return newScheduler(ms, ms.getRevisions());
+    }
+
+    private static LockBasedScheduler newScheduler(MemoryStore ms, Revisions revisions) {
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        return LockBasedScheduler.builder(revisions, ms.getReader(), stats)
+                .groupCommit(true)
+                .build();
+    }
+
+    private NodeState getRoot(Scheduler scheduler) {
+        return scheduler.getHeadNodeState().getChildNode("root");
+    }
+
+    private Commit createCommit(Scheduler scheduler, String property, CommitHook hook) {
+        NodeBuilder builder = getRoot(scheduler).builder();
+        builder.setProperty(property, "value");
+        return new Commit(builder, hook, CommitInfo.EMPTY);
+    }
+
+    @Test
+    public void concurrentCommits() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        LockBasedScheduler scheduler = newScheduler(ms);
+        assertTrue(scheduler instanceof GroupCommitScheduler);
+
+        AtomicInteger changes = new AtomicInteger();
+        ((Observable) scheduler).addObserver((root, info) -> {
+            if (!info.isExternal()) {
+                changes.incrementAndGet();
+            }
+        });
+
+        ExecutorService executorService = newFixedThreadPool(10);
+        try {
+            List<Future<NodeState>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String property = "prop" + i;
+                results.add(executorService.submit(
+                        () -> scheduler.schedule(createCommit(scheduler, property, EmptyHook.INSTANCE))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertTrue(results.get(i).get().hasProperty("prop" + i));
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(root.hasProperty("prop" + i));
+        }
+        assertEquals(200, changes.get());
+    }
+
+    @Test
+    public void failedCommitDoesNotAffectOthers() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        LockBasedScheduler scheduler = newScheduler(ms);
+
+        Commit failing = createCommit(scheduler, "failing", (before, after, info) -> {
+            throw new CommitFailedException("Test", 1, "Rejected");
+        });
+        try {
+            scheduler.schedule(failing);
+            fail("Expected CommitFailedException");
+        } catch (CommitFailedException e) {
+            assertTrue(e.isOfType("Test"));
+        }
+
+        NodeState merged = scheduler.schedule(createCommit(scheduler, "succeeding", EmptyHook.INSTANCE));
+        assertTrue(merged.hasProperty("succeeding"));
+        assertFalse(getRoot(scheduler).hasProperty("failing"));
+        assertTrue(getRoot(scheduler).hasProperty("succeeding"));
+    }
+
+    @Test
+    public void failingGroupFailsAllCommits() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        Revisions revisions = ms.getRevisions();
+        AtomicInteger setHeadCalls = new AtomicInteger();
+        LockBasedScheduler scheduler = newScheduler(ms, new Revisions() {
+            @NotNull
+            @Override
+            public RecordId getHead() {
+                return revisions.getHead();
+            }
+
+            @NotNull
+            @Override
+            public RecordId getPersistedHead() {
+                return revisions.getPersistedHead();
+            }
+
+            @Override
+            public boolean setHead(@NotNull RecordId expected, @NotNull RecordId head, @NotNull Option... options) {
+                // Only the first group gets through
+                if (setHeadCalls.incrementAndGet() > 1) {
+                    throw new IllegalStateException("setHead failed");
+                }
+                return revisions.setHead(expected, head, options);
+            }
+
+            @Override
+            public RecordId setHead(@NotNull Function<RecordId, RecordId> newHead, @NotNull Option... options)
+                    throws InterruptedException {
+                return revisions.setHead(newHead, options);
+            }
+        });
+
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Commit blocking = createCommit(scheduler, "blocking", (before, after, info) -> {
+            leading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return after;
+        });
+
+        ExecutorService executorService = newFixedThreadPool(4);
+        try {
+            Future<NodeState> first = executorService.submit(() -> scheduler.schedule(blocking));
+            leading.await();
+
+            List<Future<NodeState>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Commit commit = createCommit(scheduler, "follower" + i, EmptyHook.INSTANCE);
+                followers.add(executorService.submit(() -> scheduler.schedule(commit)));
+            }
+            while (scheduler.commitSemaphore.getQueueLength() < followers.size()) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertTrue(first.get().hasProperty("blocking"));
+            for (Future<NodeState> follower : followers) {
+                try {
+                    assertNotNull(follower.get());
+                    fail("Expected CommitFailedException");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof CommitFailedException);
+                }
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        assertTrue(root.hasProperty("blocking"));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(root.hasProperty("follower" + i));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.client;
+
+import static java.util.Collections.frequency;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.compression.SnappyFrameEncoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.CharsetUtil;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.PingResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.RequestDecoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the batched requests of {@link StandbyClient} against a primary that
+ * either understands the current protocol or behaves like a primary of an
+ * older version, which drops 'ping' and 'get segments' requests.
+ */
+public class StandbyClientTest {
+
+    private static final String HEAD = "head";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final Map<String, byte[]> segments = new HashMap<>();
+
+    private final Map<String, List<String>> references = new HashMap<>();
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile boolean legacy;
+
+    private volatile boolean staleResponses;
+
+    private NioEventLoopGroup group;
+
+    private Channel server;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            String id = new UUID(i, i).toString();
+            segments.put(id, new byte[] {(byte) i, 1, 2, 3});
+            references.put(id, singletonList(new UUID(i + 1, i + 1).toString()));
+        }
+
+        group = new NioEventLoopGroup(2);
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+
+                    @Override
+                    public void initChannel(SocketChannel ch) {
+                        ChannelPipeline p = ch.pipeline();
+                        p.addLast(new LineBasedFrameDecoder(8192));
+                        p.addLast(new StringDecoder(CharsetUtil.UTF_8));
+                        p.addLast(new RequestDecoder());
+                        p.addLast(new SnappyFrameEncoder());
+                        p.addLast(new GetHeadResponseEncoder());
+                        p.addLast(new GetSegmentResponseEncoder());
+                        p.addLast(new GetReferencesResponseEncoder());
+                        p.addLast(new PingResponseEncoder());
+                        p.addLast(new PrimaryHandler());
+                    }
+
+                })
+                .bind("localhost", 0)
+                .sync()
+                .channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    private StandbyClient newClient() throws Exception {
+        return StandbyClient.builder()
+                .withHost("localhost")
+                .withPort(((InetSocketAddress) server.localAddress()).getPort())
+                .withGroup(group)
+                .withClientId("standby")
+                .withReadTimeoutMs(5000)
+                .withSpoolFolder(folder.newFolder())
+                .build();
+    }
+
+    private List<String> segmentIds(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(new UUID(i, i).toString());
+        }
+        return ids;
+    }
+
+    private void assertSegments(List<String> ids, Map<String, byte[]> received) {
+        assertEquals(ids.size(), received.size());
+        for (String id : ids) {
+            assertArrayEquals(segments.get(id), received.get(id));
+        }
+    }
+
+    @Test
+    public void batchedRequests() throws Exception {
+        List<String> ids = segmentIds(300);
+
+        try (StandbyClient client = newClient()) {
+            assertEquals(PingResponse.PROTOCOL_VERSION, client.getProtocolVersion());
+            assertSegments(ids, client.getSegments(ids));
+
+            Map<String, Iterable<String>> received = client.getReferences(ids);
+            assertEquals(ids.size(), received.size());
+            for (String id : ids) {
+                assertEquals(references.get(id), received.get(id));
+            }
+        }
+
+        // 300 segments fit into three 'get segments' requests
+        assertEquals(3, frequency(requests, "get segments"));
+        assertEquals(0, frequency(requests, "get segment"));
+        assertEquals(300, frequency(requests, "get references"));
+    }
+
+    @Test
+    public void staleResponsesAreNotTakenAsBarrier() throws Exception {
+        List<String> ids = segmentIds(10);
+
+        try (StandbyClient client = newClient()) {
+            assertEquals(PingResponse.PROTOCOL_VERSION, client.getProtocolVersion());
+
+            // The primary sends late responses to earlier requests before the
+            // segments, which would end the wait for the segments early if
+            // they were taken as the barrier
+            staleResponses = true;
+            assertSegments(ids, client.getSegments(ids));
+        }
+    }
+
+    @Test
+    public void fallbackForLegacyPrimary() throws Exception {
+        legacy = true;
+        List<String> ids = segmentIds(10);
+
+        try (StandbyClient client = newClient()) {
+            assertEquals(0, client.getProtocolVersion());
+            assertSegments(ids, client.getSegments(ids));
+            assertEquals(ids.size(), client.getReferences(ids).size());
+        }
+
+        // Only the handshake is attempted with a request the primary drops
+        assertEquals(1, frequency(requests, "ping"));
+        assertEquals(0, frequency(requests, "get segments"));
+        assertEquals(10, frequency(requests, "get segment"));
+    }
+
+    /**
+     * Answers the requests from the maps of this test, in order.
+     */
+    private class PrimaryHandler extends SimpleChannelInboundHandler<Object> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof GetHeadRequest) {
+                requests.add("get head");
+                ctx.writeAndFlush(new GetHeadResponse(null, HEAD));
+            } else if (msg instanceof GetSegmentRequest) {
+                requests.add("get segment");
+                String id = ((GetSegmentRequest) msg).getSegmentId();
+                ctx.writeAndFlush(new GetSegmentResponse(null, id, segments.get(id)));
+            } else if (msg instanceof GetSegmentsRequest) {
+                requests.add("get segments");
+                if (legacy) {
+                    return;
+                }
+                if (staleResponses) {
+                    ctx.write(new GetHeadResponse(null, HEAD));
+                    ctx.writeAndFlush(new PingResponse(null, -1, PingResponse.PROTOCOL_VERSION));
+                    Thread.sleep(500);
+                }
+                for (String id : ((GetSegmentsRequest) msg).getSegmentIds()) {
+                    ctx.write(new GetSegmentResponse(null, id, segments.get(id)));
+                }
+                ctx.flush();
+            } else if (msg instanceof GetReferencesRequest) {
+                requests.add("get references");
+                String id = ((GetReferencesRequest) msg).getSegmentId();
+                ctx.writeAndFlush(new GetReferencesResponse(null, id, references.get(id)));
+            } else if (msg instanceof PingRequest) {
+                requests.add("ping");
+                if (legacy) {
+                    return;
+                }
+                ctx.writeAndFlush(new PingResponse(null, ((PingRequest) msg).getToken(), PingResponse.PROTOCOL_VERSION));
+            }
+        }
+
+    }
+
+}
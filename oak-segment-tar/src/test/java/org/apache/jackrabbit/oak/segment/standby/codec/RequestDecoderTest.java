@@ -17,6 +17,7 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -51,6 +52,15 @@ public class RequestDecoderTest {
         assertEquals("segmentId", request.getSegmentId());
     }
 
+    @Test
+    public void shouldDecodeValidGetSegmentsRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetSegmentsRequest("clientId", asList("a", "b"), false));
+        GetSegmentsRequest request = (GetSegmentsRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+        assertEquals(asList("a", "b"), request.getSegmentIds());
+    }
+
     @Test
     public void shouldDecodeValidGetReferencesRequests() throws Exception {
         EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
@@ -60,6 +70,22 @@ public class RequestDecoderTest {
         assertEquals("segmentId", request.getSegmentId());
     }
 
+    @Test
+    public void shouldDecodeValidPingRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newPingRequest("clientId", 42, false));
+        PingRequest request = (PingRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+        assertEquals(42, request.getToken());
+    }
+
+    @Test
+    public void shouldDropInvalidPingRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound("Standby-CMD@clientId:p.x");
+        assertNull(channel.readInbound());
+    }
+
     @Test
     public void shouldDropInvalidMessages() throws Exception {
         EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
@@ -57,6 +57,19 @@ public class ResponseDecoderTest {
         assertNull(channel.readInbound());
     }
 
+    @Test
+    public void shouldDecodeValidPingResponses() throws Exception {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PingResponseEncoder());
+        encoder.writeOutbound(new PingResponse("clientId", 42, PingResponse.PROTOCOL_VERSION));
+        ByteBuf buf = (ByteBuf) encoder.readOutbound();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder(folder.newFolder()));
+        channel.writeInbound(buf);
+        PingResponse response = (PingResponse) channel.readInbound();
+        assertEquals(42, response.getToken());
+        assertEquals(PingResponse.PROTOCOL_VERSION, response.getProtocolVersion());
+    }
+
     @Test
     public void shouldDecodeValidOneChunkGetBlobResponses() throws Exception {
         byte[] blobData = new byte[] {1, 2, 3};
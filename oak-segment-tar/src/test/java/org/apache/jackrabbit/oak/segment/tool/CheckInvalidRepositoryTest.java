@@ -82,6 +82,18 @@ public class CheckInvalidRepositoryTest extends CheckRepositoryTestBase {
         assertExpectedOutput(log.errString(), List.of("Error while traversing /"));
     }
 
+    @Test
+    public void testInvalidRevisionFallbackOnValidWithConcurrency() {
+        int checkResult = check(b -> b
+            .withFilterPaths(Set.of("/"))
+            .withConcurrency(4)
+        );
+
+        assertCheckSucceeded(checkResult);
+        assertExpectedOutput(log.outString(), List.of("Path / is consistent", "Searched through 2 revisions"));
+        assertExpectedOutput(log.errString(), List.of("Error while traversing /"));
+    }
+
     @Test
     public void testPartialBrokenPathWithoutValidRevision() {
         int checkResult = check(b -> b
@@ -123,6 +135,20 @@ public class CheckInvalidRepositoryTest extends CheckRepositoryTestBase {
             "Error while traversing /a: java.lang.IllegalArgumentException: Segment reference out of bounds"));
     }
 
+    @Test
+    public void testCorruptHeadWithValidCheckpointsWithConcurrency() {
+        int checkResult = check(b -> b
+            .withFilterPaths(Set.of("/"))
+            .withConcurrency(4)
+        );
+
+        assertCheckSucceeded(checkResult);
+        assertExpectedOutput(log.outString(), List.of("Checking head", "Checking checkpoints",
+            "Path / is consistent", "Searched through 2 revisions and 2 checkpoints"));
+        assertExpectedOutput(log.errString(), List.of(
+            "Error while traversing /a: java.lang.IllegalArgumentException: Segment reference out of bounds"));
+    }
+
     @Test
     public void testCorruptPathInCp1NoValidRevision() throws Exception {
         corruptPathFromCheckpoint();
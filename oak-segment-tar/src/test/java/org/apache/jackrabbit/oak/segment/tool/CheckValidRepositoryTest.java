@@ -65,6 +65,38 @@ public class CheckValidRepositoryTest extends CheckRepositoryTestBase {
         assertExpectedOutput(strErr.toString(), List.of(""));
     }
 
+    @Test
+    public void testSuccessfulFullCheckWithBinaryTraversalAndConcurrency() throws Exception {
+        StringWriter strOut = new StringWriter();
+        StringWriter strErr = new StringWriter();
+
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add("/");
+
+        Check.builder()
+            .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+            .withDebugInterval(Long.MAX_VALUE)
+            .withCheckBinaries(true)
+            .withCheckHead(true)
+            .withCheckpoints(new HashSet<String>())
+            .withFilterPaths(filterPaths)
+            .withConcurrency(4)
+            .withOutWriter(outWriter)
+            .withErrWriter(errWriter)
+            .build()
+            .run();
+
+        outWriter.close();
+        errWriter.close();
+
+        assertExpectedOutput(strOut.toString(), List.of("Checking head", "Searched through 1 revisions and 0 checkpoints",
+            "Checked 7 nodes and 21 properties", "Path / is consistent"));
+        assertExpectedOutput(strErr.toString(), List.of(""));
+    }
+
     @Test
     public void testSuccessfulOnlyRootKidsCheckWithBinaryTraversalAndFilterPaths() throws Exception {
         StringWriter strOut = new StringWriter();
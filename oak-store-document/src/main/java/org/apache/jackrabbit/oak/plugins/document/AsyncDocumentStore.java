@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An asynchronous companion to a {@link DocumentStore}. The methods have the
+ * same semantics as the corresponding methods of the {@link DocumentStore},
+ * but return immediately with a {@link CompletableFuture}. This allows a
+ * caller to have multiple independent operations in flight at the same time.
+ * <p>
+ * A future completes exceptionally with a {@link DocumentStoreException} when
+ * the operation failed. Operations issued concurrently through this interface
+ * are not ordered with respect to each other. A caller must wait for the
+ * completion of an operation before it issues a dependent one.
+ *
+ * @see DocumentStore#async(java.util.concurrent.Executor)
+ */
+public interface AsyncDocumentStore {
+
+    /**
+     * Asynchronous variant of {@link DocumentStore#find(Collection, String)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param key the key
+     * @return a future for the document, or for {@code null} if not found
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<T> find(Collection<T> collection, String key);
+
+    /**
+     * Asynchronous variant of
+     * {@link DocumentStore#query(Collection, String, String, String, long, int)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param fromKey the start value (excluding)
+     * @param toKey the end value (excluding)
+     * @param indexedProperty the name of the indexed property (optional)
+     * @param startValue the minimum value of the indexed property
+     * @param limit the maximum number of entries to return
+     * @return a future for the list (possibly empty)
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<List<T>> query(Collection<T> collection,
+                                                          String fromKey,
+                                                          String toKey,
+                                                          String indexedProperty,
+                                                          long startValue,
+                                                          int limit);
+
+    /**
+     * Asynchronous variant of
+     * {@link DocumentStore#createOrUpdate(Collection, List)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param updateOps the update operation list
+     * @return a future for the list of old documents, in the same order as
+     *         the update operations
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<List<T>> createOrUpdate(Collection<T> collection,
+                                                                   List<UpdateOp> updateOps);
+
+    /**
+     * Asynchronous variant of
+     * {@link DocumentStore#findAndUpdate(Collection, UpdateOp)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param update the update operation
+     * @return a future for the old document, or for {@code null} if the
+     *         condition is not met or the document doesn't exist
+     */
+    @NotNull
+    <T extends Document> CompletableFuture<T> findAndUpdate(Collection<T> collection,
+                                                            UpdateOp update);
+}
@@ -407,8 +407,12 @@ public class Commit {
             if (conditionalCommit(changedNodes, commitValue)) {
                 success = true;
             } else {
+                // the conditional commit did not change anything, only
+                // batches sent to the store need to be rolled back
+                opLog.clear();
                 int batchSize = nodeStore.getCreateOrUpdateBatchSize();
                 for (List<UpdateOp> updates : CollectionUtils.partitionList(changedNodes, batchSize)) {
+                    opLog.addAll(updates);
                     List<NodeDocument> oldDocs = store.createOrUpdate(NODES, updates);
                     checkConflicts(oldDocs, updates);
                     checkSplitCandidate(oldDocs);
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Paces {@link DocumentNodeStore#merge} calls with an additive increase,
+ * multiplicative decrease (AIMD) controller.
+ * <p>
+ * The controller is updated after each background update and computes a
+ * congestion score from the depth of the {@link CommitQueue}, the duration of
+ * the last background write, the fill ratio of the observer queues and the
+ * throttling time of the {@link DocumentStore}. Each input is normalized
+ * against its threshold and the score is the maximum of them. While the score
+ * is below one, the admission rate increases linearly up to the maximum rate,
+ * otherwise it is cut in half. At the maximum rate merges are not delayed at
+ * all. Below the maximum rate, merges are spaced out evenly, which avoids the
+ * stop-go behaviour of a throttle that is either on or off.
+ */
+final class CommitAdmissionController implements CommitAdmissionMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommitAdmissionController.class);
+
+    /**
+     * Maximum rate in merges per second. Merges are not delayed at this rate.
+     */
+    static final int MAX_RATE = SystemPropertySupplier.create(
+            "oak.documentMK.commitAdmission.maxRate", 1000).loggingTo(LOG).get();
+
+    /**
+     * Lower bound for the rate in merges per second.
+     */
+    static final int MIN_RATE = SystemPropertySupplier.create(
+            "oak.documentMK.commitAdmission.minRate", 5).loggingTo(LOG).get();
+
+    /**
+     * Number of commits in the commit queue considered congested.
+     */
+    static final int QUEUE_THRESHOLD = SystemPropertySupplier.create(
+            "oak.documentMK.commitAdmission.queueThreshold", 100).loggingTo(LOG).get();
+
+    /**
+     * Duration in milliseconds of a background write considered congested.
+     */
+    static final int WRITE_TIME_THRESHOLD_MILLIS = SystemPropertySupplier.create(
+            "oak.documentMK.commitAdmission.writeTimeThresholdMillis", 2000).loggingTo(LOG).get();
+
+    /**
+     * Maximum delay in milliseconds of a single merge.
+     */
+    static final int MAX_DELAY_MILLIS = SystemPropertySupplier.create(
+            "oak.documentMK.commitAdmission.maxDelayMillis", 10000).loggingTo(LOG).get();
+
+    /**
+     * Observer queue fill ratio considered congested.
+     */
+    static final double OBSERVER_FILL_THRESHOLD = 0.5;
+
+    /**
+     * Factor applied to the rate when congested.
+     */
+    static final double DECREASE_FACTOR = 0.5;
+
+    /**
+     * Increase of the rate per update when not congested, as a fraction of
+     * the maximum rate.
+     */
+    static final double INCREASE_FRACTION = 0.05;
+
+    private final Clock clock;
+
+    private final IntSupplier commitQueueSize;
+
+    private final LongSupplier throttlingTime;
+
+    private final DoubleSupplier observerQueueFillRatio;
+
+    private final double maxRate;
+
+    private final double minRate;
+
+    private volatile double rate;
+
+    private volatile double congestion;
+
+    private volatile int lastCommitQueueSize;
+
+    private volatile long lastWriteTime;
+
+    private volatile double lastObserverQueueFillRatio;
+
+    private volatile long lastThrottlingTime;
+
+    /**
+     * Time in microseconds when the next merge is admitted. Never more than
+     * {@link #MAX_DELAY_MILLIS} plus one interval ahead of the current time.
+     * Guarded by {@code this}.
+     */
+    private long nextAdmitMicros;
+
+    private final AtomicLong delayedMerges = new AtomicLong();
+
+    private final AtomicLong totalDelayMillis = new AtomicLong();
+
+    CommitAdmissionController(@NotNull Clock clock,
+                              @NotNull IntSupplier commitQueueSize,
+                              @NotNull LongSupplier throttlingTime,
+                              @NotNull DoubleSupplier observerQueueFillRatio) {
+        this(clock, commitQueueSize, throttlingTime, observerQueueFillRatio, MAX_RATE, MIN_RATE);
+    }
+
+    CommitAdmissionController(@NotNull Clock clock,
+                              @NotNull IntSupplier commitQueueSize,
+                              @NotNull LongSupplier throttlingTime,
+                              @NotNull DoubleSupplier observerQueueFillRatio,
+                              double maxRate,
+                              double minRate) {
+        if (minRate <= 0 || maxRate < minRate) {
+            throw new IllegalArgumentException("Invalid rates: min=" + minRate + ", max=" + maxRate);
+        }
+        this.clock = clock;
+        this.commitQueueSize = commitQueueSize;
+        this.throttlingTime = throttlingTime;
+        this.observerQueueFillRatio = observerQueueFillRatio;
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+        this.rate = maxRate;
+    }
+
+    /**
+     * Updates the admission rate based on the stats of the last background
+     * write and the current state of the other inputs.
+     *
+     * @param stats the stats of the last background write.
+     */
+    void update(@NotNull BackgroundWriteStats stats) {
+        lastCommitQueueSize = commitQueueSize.getAsInt();
+        lastWriteTime = stats.totalWriteTime;
+        lastObserverQueueFillRatio = observerQueueFillRatio.getAsDouble();
+        lastThrottlingTime = throttlingTime.getAsLong();
+
+        double score = (double) lastCommitQueueSize / QUEUE_THRESHOLD;
+        score = Math.max(score, (double) lastWriteTime / WRITE_TIME_THRESHOLD_MILLIS);
+        score = Math.max(score, lastObserverQueueFillRatio / OBSERVER_FILL_THRESHOLD);
+        if (lastThrottlingTime > 0) {
+            score = Math.max(score, 1);
+        }
+        congestion = score;
+
+        double previous = rate;
+        if (score >= 1) {
+            rate = Math.max(minRate, previous * DECREASE_FACTOR);
+        } else {
+            rate = Math.min(maxRate, previous + maxRate * INCREASE_FRACTION);
+        }
+        if (rate != previous) {
+            LOG.debug("Commit admission rate changed from {} to {} (congestion={}, " +
+                            "commitQueue={}, writeTime={}, observerQueueFill={}, throttlingTime={})",
+                    previous, rate, score, lastCommitQueueSize, lastWriteTime,
+                    lastObserverQueueFillRatio, lastThrottlingTime);
+        }
+    }
+
+    /**
+     * Admits a merge, possibly after a delay to keep merges at the current
+     * rate. Returns immediately when the controller is at the maximum rate.
+     */
+    void admit() {
+        double r = rate;
+        if (r >= maxRate) {
+            return;
+        }
+        long interval = (long) (TimeUnit.SECONDS.toMicros(1) / r);
+        long now = TimeUnit.MILLISECONDS.toMicros(clock.getTime());
+        long waitMicros;
+        synchronized (this) {
+            // merges beyond the maximum delay are admitted at the maximum
+            // delay, without pushing the schedule further into the future
+            long admitAt = Math.min(Math.max(now, nextAdmitMicros),
+                    now + TimeUnit.MILLISECONDS.toMicros(MAX_DELAY_MILLIS));
+            nextAdmitMicros = admitAt + interval;
+            waitMicros = admitAt - now;
+        }
+        long waitMillis = TimeUnit.MICROSECONDS.toMillis(waitMicros);
+        if (waitMillis <= 0) {
+            return;
+        }
+        delayedMerges.incrementAndGet();
+        totalDelayMillis.addAndGet(waitMillis);
+        try {
+            clock.waitUntil(clock.getTime() + waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //-----------------------< CommitAdmissionMBean >---------------------------
+
+    @Override
+    public double getRate() {
+        return rate;
+    }
+
+    @Override
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    @Override
+    public double getCongestion() {
+        return congestion;
+    }
+
+    @Override
+    public int getCommitQueueSize() {
+        return lastCommitQueueSize;
+    }
+
+    @Override
+    public long getLastBackgroundWriteTime() {
+        return lastWriteTime;
+    }
+
+    @Override
+    public double getObserverQueueFillRatio() {
+        return lastObserverQueueFillRatio;
+    }
+
+    @Override
+    public long getThrottlingTime() {
+        return lastThrottlingTime;
+    }
+
+    @Override
+    public long getDelayedMergeCount() {
+        return delayedMerges.get();
+    }
+
+    @Override
+    public long getTotalDelayMillis() {
+        return totalDelayMillis.get();
+    }
+}
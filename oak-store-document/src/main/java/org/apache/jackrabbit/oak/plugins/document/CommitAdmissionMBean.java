@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+/**
+ * MBean exposing the state of the DocumentNodeStore commit admission control.
+ */
+public interface CommitAdmissionMBean {
+
+    String TYPE = "CommitAdmission";
+
+    /**
+     * @return the current admission rate in merges per second.
+     */
+    double getRate();
+
+    /**
+     * @return the admission rate in merges per second when there is no
+     *          congestion. Merges are not delayed at this rate.
+     */
+    double getMaxRate();
+
+    /**
+     * @return the congestion score of the last update. A value of one or
+     *          more means the store is considered congested.
+     */
+    double getCongestion();
+
+    int getCommitQueueSize();
+
+    long getLastBackgroundWriteTime();
+
+    double getObserverQueueFillRatio();
+
+    long getThrottlingTime();
+
+    long getDelayedMergeCount();
+
+    long getTotalDelayMillis();
+}
@@ -190,6 +190,16 @@ final class CommitQueue {
         }
     }
 
+    /**
+     * @return the number of commits in this queue, which have a revision but
+     *          are not yet done.
+     */
+    int size() {
+        synchronized (this) {
+            return commits.size();
+        }
+    }
+
     /**
      * Sets the suspend timeout in milliseconds.
      * See also {@link #suspendUntilAll(Set)}.
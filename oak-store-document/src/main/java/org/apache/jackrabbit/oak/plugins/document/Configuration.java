@@ -38,6 +38,7 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreServic
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_EMBEDDED_VERIFICATION_ENABLED;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_PERFLOGGER_INFO_MILLIS;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_THROTTLING_ENABLED;
+import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_COMMIT_ADMISSION_CONTROL_ENABLED;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_FULL_GC_MODE;
 
 @ObjectClassDefinition(
@@ -308,6 +309,14 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreServic
                     "property 'oak.documentstore.throttlingEnabled'")
     boolean throttlingEnabled() default DEFAULT_THROTTLING_ENABLED;
 
+    @AttributeDefinition(
+            name = "Document Node Store commit admission control",
+            description = "Boolean value indicating whether merges should be paced " +
+                    "adaptively based on the commit queue depth, the background write " +
+                    "duration, the observer queue length and the document store " +
+                    "throttling time. The Default value is " + DEFAULT_COMMIT_ADMISSION_CONTROL_ENABLED)
+    boolean commitAdmissionControlEnabled() default DEFAULT_COMMIT_ADMISSION_CONTROL_ENABLED;
+
     @AttributeDefinition(
             name = "Document Node Store Compression",
             description = "Select compressor type for collections. 'Snappy' is the default supported compression.")
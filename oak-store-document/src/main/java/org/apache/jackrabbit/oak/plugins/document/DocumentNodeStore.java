@@ -21,6 +21,7 @@ import static java.util.Objects.requireNonNull;
 import static org.apache.jackrabbit.guava.common.collect.Iterables.partition;
 import static org.apache.jackrabbit.guava.common.collect.Iterables.transform;
 import static org.apache.jackrabbit.guava.common.collect.Lists.reverse;
+import static org.apache.jackrabbit.guava.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Collections.singletonList;
 import static java.util.Objects.nonNull;
 import static java.util.concurrent.TimeUnit.MICROSECONDS;
@@ -62,6 +63,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -76,12 +81,14 @@ import javax.jcr.PropertyType;
 
 import org.apache.jackrabbit.guava.common.cache.Cache;
 import org.apache.jackrabbit.guava.common.util.concurrent.UncheckedExecutionException;
+import org.apache.jackrabbit.guava.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
 import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.conditions.Validate;
 import org.apache.jackrabbit.oak.commons.json.JsopStream;
 import org.apache.jackrabbit.oak.commons.json.JsopWriter;
@@ -98,6 +105,7 @@ import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingConfigHandler;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.DocumentBundlor;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.broadcast.DynamicBroadcastConfig;
+import org.apache.jackrabbit.oak.plugins.document.prefetch.AdaptivePrefetcher;
 import org.apache.jackrabbit.oak.plugins.document.prefetch.CacheWarming;
 import org.apache.jackrabbit.oak.plugins.document.util.LeaseCheckDocumentStoreWrapper;
 import org.apache.jackrabbit.oak.plugins.document.util.LoggingDocumentStoreWrapper;
@@ -160,6 +168,14 @@ public final class DocumentNodeStore
 
     public static final FormatVersion VERSION = FormatVersion.V1_8;
 
+    /**
+     * Format version a store can explicitly be upgraded to with the
+     * unlockUpgrade command, in addition to {@link #VERSION}. It enables the
+     * compact encoding of document data in the RDBDocumentStore, and keeps
+     * older versions, which can't read that encoding, from opening the store.
+     */
+    public static final FormatVersion OPT_IN_VERSION = FormatVersion.V1_74;
+
     /**
      * List of meta properties which are created by DocumentNodeStore and which needs to be
      * retained in any cloned copy of DocumentNodeState.
@@ -216,6 +232,14 @@ public final class DocumentNodeStore
     private final int createOrUpdateBatchSize = SystemPropertySupplier.create("oak.documentMK.createOrUpdateBatchSize", 1000)
             .loggingTo(LOG).get();
 
+    /**
+     * The number of threads writing batches of _lastRev updates concurrently
+     * in the background update. With a value of 1 the batches are written
+     * one after the other by the background update thread.
+     */
+    private final int lastRevWriteThreads = SystemPropertySupplier.create("oak.documentMK.lastRevWriteThreads", 4)
+            .loggingTo(LOG).get();
+
     public static final String SYS_PROP_DISABLE_SWEEP2 = "oak.documentMK.disableSweep2";
     private boolean disableSweep2 = SystemPropertySupplier.create(SYS_PROP_DISABLE_SWEEP2, Boolean.FALSE).loggingTo(LOG)
             .get();
@@ -228,6 +252,13 @@ public final class DocumentNodeStore
     public static final String SYS_PROP_PREFETCH = "oak.documentstore.prefetch";
     private final boolean prefetchEnabled = SystemPropertySupplier.create(SYS_PROP_PREFETCH, false).loggingTo(LOG).get();
 
+    /**
+     * Enables prefetching of node documents predicted from previous node
+     * cache misses.
+     */
+    public static final String SYS_PROP_ADAPTIVE_PREFETCH = "oak.documentstore.adaptivePrefetch";
+    private final boolean adaptivePrefetchEnabled = SystemPropertySupplier.create(SYS_PROP_ADAPTIVE_PREFETCH, false).loggingTo(LOG).get();
+
     /**
      * The document store without potentially lease checking wrapper.
      */
@@ -439,6 +470,19 @@ public final class DocumentNodeStore
      */
     private final DiffCache diffCache;
 
+    /**
+     * Index of the paths changed by background reads, used to compose diffs
+     * over larger intervals without reading the journal.
+     */
+    private final JournalDiffIndex journalDiffIndex;
+
+    /**
+     * Paces merges when the store is congested. {@code null} if commit
+     * admission control is disabled.
+     */
+    @Nullable
+    private final CommitAdmissionController commitAdmission;
+
     /**
      * Tiny cache for non existence of any revisions in previous documents
      * for particular properties.
@@ -512,6 +556,23 @@ public final class DocumentNodeStore
     
     private final Executor executor;
 
+    /**
+     * Executor for concurrent _lastRev writes or {@code null} if they are
+     * written sequentially.
+     */
+    @Nullable
+    private final ExecutorService lastRevWriteExecutor;
+
+    /**
+     * Predicts and prefetches node documents or {@code null} if adaptive
+     * prefetch is disabled.
+     */
+    @Nullable
+    private final AdaptivePrefetcher adaptivePrefetcher;
+
+    @Nullable
+    private final ExecutorService adaptivePrefetchExecutor;
+
     private final MissingLastRevSeeker lastRevSeeker;
 
     private final LastRevRecoveryAgent lastRevRecoveryAgent;
@@ -688,6 +749,7 @@ public final class DocumentNodeStore
                 builder.getWeigher(), builder.getChildrenCacheSize());
 
         diffCache = builder.getDiffCache(this.clusterId);
+        journalDiffIndex = new JournalDiffIndex(builder);
 
         // builder checks for feature toggle directly and returns null if disabled
         prevNoPropCache = builder.buildPrevNoPropCache();
@@ -754,6 +816,13 @@ public final class DocumentNodeStore
         commitQueue.setStatisticsCollector(nodeStoreStatsCollector);
         commitQueue.setSuspendTimeoutMillis(builder.getSuspendTimeoutMillis());
         batchCommitQueue = new BatchCommitQueue(store);
+        if (builder.isCommitAdmissionControlEnabled()) {
+            commitAdmission = new CommitAdmissionController(clock, commitQueue::size,
+                    () -> store.throttler().throttlingTime(),
+                    builder.getObserverQueueFillRatio());
+        } else {
+            commitAdmission = null;
+        }
         // prepare background threads
         backgroundReadThread = new Thread(
                 new BackgroundReadOperation(this, isDisposed),
@@ -774,6 +843,26 @@ public final class DocumentNodeStore
         clusterUpdateThread = new Thread(new BackgroundClusterUpdate(this, isDisposed),
                 "DocumentNodeStore cluster update thread " + threadNamePostfix);
         clusterUpdateThread.setDaemon(true);
+        if (lastRevWriteThreads > 1) {
+            lastRevWriteExecutor = Executors.newFixedThreadPool(lastRevWriteThreads, new ThreadFactoryBuilder()
+                    .setNameFormat("DocumentNodeStore lastRev writer " + threadNamePostfix + " %d")
+                    .setDaemon(true).build());
+        } else {
+            lastRevWriteExecutor = null;
+        }
+        if (adaptivePrefetchEnabled) {
+            // a single thread with a short queue, prefetches are
+            // skipped when the store cannot keep up
+            adaptivePrefetchExecutor = new ThreadPoolExecutor(1, 1, 0L, MILLISECONDS,
+                    new LinkedBlockingQueue<>(16), new ThreadFactoryBuilder()
+                    .setNameFormat("DocumentNodeStore prefetch " + threadNamePostfix)
+                    .setDaemon(true).build());
+            adaptivePrefetcher = new AdaptivePrefetcher(store, adaptivePrefetchExecutor,
+                    nodeStoreStatsCollector, this::getCachedChildNames);
+        } else {
+            adaptivePrefetchExecutor = null;
+            adaptivePrefetcher = null;
+        }
         // now start the background threads
         clusterUpdateThread.start();
         backgroundReadThread.start();
@@ -958,6 +1047,13 @@ public final class DocumentNodeStore
             }
         }
 
+        if (lastRevWriteExecutor != null) {
+            new ExecutorCloser(lastRevWriteExecutor).close();
+        }
+        if (adaptivePrefetchExecutor != null) {
+            new ExecutorCloser(adaptivePrefetchExecutor).close();
+        }
+
         Utils.joinQuietly(clusterUpdateThread);
 
         // attempt diagnostics on lease update thread
@@ -1307,7 +1403,7 @@ public final class DocumentNodeStore
 
     @NotNull
     public Iterable<CacheStats> getDiffCacheStats() {
-        return diffCache.getStats();
+        return Iterables.concat(diffCache.getStats(), journalDiffIndex.getStats());
     }
 
     public Cache<PathRev, DocumentNodeState> getNodeCache() {
@@ -1402,6 +1498,9 @@ public final class DocumentNodeStore
                     if (nodeDoesNotExist){
                         return missing;
                     }
+                    if (adaptivePrefetcher != null) {
+                        adaptivePrefetcher.onRead(path, rev);
+                    }
                     DocumentNodeState n = readNode(path, rev);
                     if (n == null) {
                         n = missing;
@@ -2152,7 +2251,11 @@ public final class DocumentNodeStore
                            @NotNull CommitHook commitHook,
                            @NotNull CommitInfo info)
             throws CommitFailedException {
-        return asDocumentRootBuilder(builder).merge(commitHook, info);
+        DocumentRootBuilder rootBuilder = asDocumentRootBuilder(builder);
+        if (commitAdmission != null) {
+            commitAdmission.admit();
+        }
+        return rootBuilder.merge(commitHook, info);
     }
 
     @NotNull
@@ -2365,6 +2468,9 @@ public final class DocumentNodeStore
         }
         //Push stats outside of sync block
         nodeStoreStatsCollector.doneBackgroundUpdate(stats);
+        if (commitAdmission != null) {
+            commitAdmission.update(stats);
+        }
     }
 
     //----------------------< background read operations >----------------------
@@ -2551,6 +2657,7 @@ public final class DocumentNodeStore
                         try {
                             JournalEntry.applyTo(changedPaths, diffCache,
                                     ROOT, oldHead, newHead);
+                            journalDiffIndex.put(oldHead, newHead, changedPaths);
                         } catch (Exception e1) {
                             LOG.error("backgroundRead: Exception while processing external changes from journal: " + e1, e1);
                         }
@@ -2786,6 +2893,7 @@ public final class DocumentNodeStore
 
     private BackgroundWriteStats backgroundWrite() {
         return unsavedLastRevisions.persist(getDocumentStore(),
+                lastRevWriteExecutor != null ? lastRevWriteExecutor : directExecutor(),
                 new Supplier<Revision>() {
             @Override
             public Revision get() {
@@ -3159,6 +3267,10 @@ public final class DocumentNodeStore
     private static void checkVersion(DocumentStore store, boolean readOnlyMode)
             throws DocumentStoreException {
         FormatVersion storeVersion = FormatVersion.versionOf(store);
+        if (OPT_IN_VERSION.equals(storeVersion)) {
+            // explicitly upgraded, read and written by this version
+            return;
+        }
         if (!VERSION.canRead(storeVersion)) {
             throw new DocumentStoreException("Cannot open DocumentNodeStore. " +
                     "Existing data in DocumentStore was written with more " +
@@ -3610,6 +3722,22 @@ public final class DocumentNodeStore
         }
     }
 
+    /**
+     * Returns the names of the child nodes of the given parent if the parent
+     * and its children are cached.
+     */
+    @Nullable
+    private Iterable<String> getCachedChildNames(@NotNull Path parent,
+                                                 @NotNull RevisionVector rev) {
+        DocumentNodeState state = getNodeIfCached(parent, rev);
+        if (state == null || !state.exists()) {
+            return null;
+        }
+        DocumentNodeState.Children children = nodeChildrenCache.getIfPresent(
+                childNodeCacheKey(parent, state.getLastRevision(), ""));
+        return children == null ? null : children.children;
+    }
+
     private static NamePathRev childNodeCacheKey(@NotNull Path path,
                                                  @NotNull RevisionVector readRevision,
                                                  @NotNull String name) {
@@ -3691,6 +3819,15 @@ public final class DocumentNodeStore
         return mbean;
     }
 
+    /**
+     * @return the commit admission MBean or {@code null} if commit admission
+     *          control is disabled.
+     */
+    @Nullable
+    public CommitAdmissionMBean getCommitAdmissionMBean() {
+        return commitAdmission;
+    }
+
     private DocumentNodeStoreMBean createMBean(DocumentNodeStoreBuilder<?> builder) {
         return new DocumentNodeStoreMBeanImpl(this,
                 builder.getStatisticsProvider().getStats(),
@@ -3969,6 +4106,11 @@ public final class DocumentNodeStore
         return diffCache;
     }
 
+    @NotNull
+    JournalDiffIndex getJournalDiffIndex() {
+        return journalDiffIndex;
+    }
+
     public Checkpoints getCheckpoints() {
         return checkpoints;
     }
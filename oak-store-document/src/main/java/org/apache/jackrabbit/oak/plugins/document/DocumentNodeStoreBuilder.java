@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -176,6 +177,8 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
     private Predicate<Path> nodeCachePredicate = x -> true;
     private boolean clusterInvisible;
     private boolean throttlingEnabled;
+    private boolean commitAdmissionControlEnabled;
+    private DoubleSupplier observerQueueFillRatio = () -> 0;
     private boolean fullGCEnabled;
     private Set<String> fullGCIncludePaths = Set.of();
     private Set<String> fullGCExcludePaths = Set.of();
@@ -307,6 +310,35 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return this.throttlingEnabled;
     }
 
+    /**
+     * Enables adaptive pacing of merges based on the commit queue depth, the
+     * background write duration, the observer queue fill ratio and the
+     * throttling time of the document store.
+     */
+    public T setCommitAdmissionControlEnabled(boolean b) {
+        this.commitAdmissionControlEnabled = b;
+        return thisBuilder();
+    }
+
+    public boolean isCommitAdmissionControlEnabled() {
+        return commitAdmissionControlEnabled;
+    }
+
+    /**
+     * Sets the supplier of the fill ratio of the observer queues, a value
+     * between zero (empty) and one (full). Used by the commit admission
+     * control.
+     */
+    public T setObserverQueueFillRatio(@NotNull DoubleSupplier fillRatio) {
+        this.observerQueueFillRatio = requireNonNull(fillRatio);
+        return thisBuilder();
+    }
+
+    @NotNull
+    public DoubleSupplier getObserverQueueFillRatio() {
+        return observerQueueFillRatio;
+    }
+
     public T setFullGCEnabled(boolean b) {
         this.fullGCEnabled = b;
         return thisBuilder();
@@ -647,7 +679,15 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
     }
 
     public long getMemoryDiffCacheSize() {
-        return getDiffCacheSize() / 2;
+        return getDiffCacheSize() / 2 - getJournalDiffIndexCacheSize();
+    }
+
+    /**
+     * @return the size of the {@link JournalDiffIndex}, which is taken from
+     *          the share of the memory diff cache.
+     */
+    public long getJournalDiffIndexCacheSize() {
+        return getDiffCacheSize() / 16;
     }
 
     public long getLocalDiffCacheSize() {
@@ -914,6 +954,10 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return buildCache(CacheType.LOCAL_DIFF, getLocalDiffCacheSize(), null, null);
     }
 
+    public Cache<RevisionVector, JournalDiffIndex.Changes> buildJournalDiffIndexCache() {
+        return buildCache(CacheType.JOURNAL_DIFF_INDEX, getJournalDiffIndexCacheSize(), null, null);
+    }
+
     public Cache<CacheValue, NodeDocument> buildDocumentCache(DocumentStore docStore) {
         return buildCache(CacheType.DOCUMENT, getDocumentCacheSize(), null, docStore);
     }
@@ -991,7 +1035,8 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         Set<EvictionListener<K, V>> listeners = new CopyOnWriteArraySet<EvictionListener<K,V>>();
         Cache<K, V> cache = buildCache(cacheType.name(), maxWeight, listeners);
         PersistentCache p = null;
-        if (cacheType == CacheType.DIFF || cacheType == CacheType.LOCAL_DIFF) {
+        if (cacheType == CacheType.DIFF || cacheType == CacheType.LOCAL_DIFF
+                || cacheType == CacheType.JOURNAL_DIFF_INDEX) {
             // use separate journal cache if configured
             p = getJournalCache();
         }
@@ -217,6 +217,7 @@ final class DocumentNodeStoreMBeanImpl extends AnnotatedStandardMBean implements
     @Override
     public String cleanAllCaches() {
         nodeStore.getDiffCache().invalidateAll();
+        nodeStore.getJournalDiffIndex().invalidateAll();
         nodeStore.getNodeCache().invalidateAll();
         nodeStore.getNodeChildrenCache().invalidateAll();
         nodeStore.getDocumentStore().invalidateCache();
@@ -228,6 +229,7 @@ final class DocumentNodeStoreMBeanImpl extends AnnotatedStandardMBean implements
         switch(name.toUpperCase()) {
             case "DIFF":
                 nodeStore.getDiffCache().invalidateAll();
+                nodeStore.getJournalDiffIndex().invalidateAll();
                 return "DiffCache invalidated.";
             case "NODE":
                 nodeStore.getNodeCache().invalidateAll();
@@ -136,6 +136,7 @@ public class DocumentNodeStoreService {
     static final String DEFAULT_DB = "oak";
     static final boolean DEFAULT_SO_KEEP_ALIVE = true;
     static final boolean DEFAULT_THROTTLING_ENABLED = false;
+    static final boolean DEFAULT_COMMIT_ADMISSION_CONTROL_ENABLED = false;
     static final boolean DEFAULT_FULL_GC_ENABLED = false;
     static final boolean DEFAULT_EMBEDDED_VERIFICATION_ENABLED = true;
     static final int DEFAULT_FULL_GC_MODE = 0;
@@ -242,6 +243,7 @@ public class DocumentNodeStoreService {
 
     private DocumentNodeStore nodeStore;
     private ObserverTracker observerTracker;
+    private Tracker<BackgroundObserverMBean> backgroundObserverTracker;
     private JournalPropertyHandlerFactory journalPropertyHandlerFactory = new JournalPropertyHandlerFactory();
     private Feature prefetchFeature;
     private Feature docStoreThrottlingFeature;
@@ -495,6 +497,8 @@ public class DocumentNodeStoreService {
         String persistentCache = resolvePath(config.persistentCache(), DEFAULT_PERSISTENT_CACHE);
         String journalCache = resolvePath(config.journalCache(), DEFAULT_JOURNAL_CACHE);
         final Tracker<LeaseFailureHandler> leaseFailureHandlerTracker = whiteboard.track(LeaseFailureHandler.class);
+        final Tracker<BackgroundObserverMBean> backgroundObservers = whiteboard.track(BackgroundObserverMBean.class);
+        backgroundObserverTracker = backgroundObservers;
         builder.setStatisticsProvider(statisticsProvider).
                 setExecutor(executor).
                 memoryCacheSize(config.cache() * MB).
@@ -517,6 +521,8 @@ public class DocumentNodeStoreService {
                 setDocStoreEmbeddedVerificationFeature(docStoreEmbeddedVerificationFeature).
                 setPrevNoPropCacheFeature(prevNoPropCacheFeature).
                 setThrottlingEnabled(config.throttlingEnabled()).
+                setCommitAdmissionControlEnabled(config.commitAdmissionControlEnabled()).
+                setObserverQueueFillRatio(() -> maxFillRatio(backgroundObservers.getServices())).
                 setFullGCEnabled(config.fullGCEnabled()).
                 setFullGCIncludePaths(config.fullGCIncludePaths()).
                 setFullGCExcludePaths(config.fullGCExcludePaths()).
@@ -587,6 +593,17 @@ public class DocumentNodeStoreService {
         ClusterNodeInfo.setRecoveryDelayMillis(builder.getRecoveryDelayMillis());
     }
 
+    private static double maxFillRatio(List<BackgroundObserverMBean> observers) {
+        double ratio = 0;
+        for (BackgroundObserverMBean observer : observers) {
+            int max = observer.getMaxQueueSize();
+            if (max > 0) {
+                ratio = Math.max(ratio, (double) observer.getQueueSize() / max);
+            }
+        }
+        return ratio;
+    }
+
     private boolean isWrappingCustomBlobStore() {
         return customBlobStore && blobStore instanceof BlobStoreWrapper;
     }
@@ -664,6 +681,10 @@ public class DocumentNodeStoreService {
             observerTracker.stop();
         }
 
+        if (backgroundObserverTracker != null) {
+            backgroundObserverTracker.stop();
+        }
+
         if (journalPropertyHandlerFactory != null){
             journalPropertyHandlerFactory.stop();
         }
@@ -858,6 +879,17 @@ public class DocumentNodeStoreService {
                         "Document node store management")
         );
 
+        CommitAdmissionMBean commitAdmission = store.getCommitAdmissionMBean();
+        if (commitAdmission != null) {
+            addRegistration(
+                    registerMBean(whiteboard,
+                            CommitAdmissionMBean.class,
+                            commitAdmission,
+                            CommitAdmissionMBean.TYPE,
+                            "Document node store commit admission")
+            );
+        }
+
         if (mkBuilder.getBlobStoreCacheStats() != null) {
             registerCacheStatsMBean(mkBuilder.getBlobStoreCacheStats());
         }
@@ -65,6 +65,10 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     static final String BRANCH_COMMIT_COUNT = "DOCUMENT_NS_BRANCH_COMMIT_COUNT";
     static final String MERGE_BRANCH_COMMIT_COUNT = "DOCUMENT_NS_MERGE_BRANCH_COMMIT_COUNT";
 
+    static final String PREFETCH_COUNT = "DOCUMENT_NS_PREFETCH_COUNT";
+    static final String PREFETCH_DOCUMENTS = "DOCUMENT_NS_PREFETCH_DOCUMENTS";
+    static final String PREFETCH_HITS = "DOCUMENT_NS_PREFETCH_HITS";
+
     // background read
     private final TimerStats readHead;
     private final TimerStats readCacheInvalidate;
@@ -107,6 +111,10 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final MeterStats branchCommitRate;
     private final MeterStats mergeBranchCommitRate;
 
+    // prefetch stats
+    private final MeterStats prefetchRate;
+    private final MeterStats prefetchDocuments;
+    private final MeterStats prefetchHits;
 
     public DocumentNodeStoreStats(StatisticsProvider sp) {
         readHead = sp.getTimer(BGR_READ_HEAD, StatsOptions.METRICS_ONLY);
@@ -145,6 +153,10 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
 
         branchCommitRate = sp.getMeter(BRANCH_COMMIT_COUNT, StatsOptions.DEFAULT);
         mergeBranchCommitRate = sp.getMeter(MERGE_BRANCH_COMMIT_COUNT, StatsOptions.DEFAULT);
+
+        prefetchRate = sp.getMeter(PREFETCH_COUNT, StatsOptions.METRICS_ONLY);
+        prefetchDocuments = sp.getMeter(PREFETCH_DOCUMENTS, StatsOptions.METRICS_ONLY);
+        prefetchHits = sp.getMeter(PREFETCH_HITS, StatsOptions.METRICS_ONLY);
     }
 
     @Override
@@ -245,4 +257,23 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     public void doneChangesApplied(long timeMicros) {
         mergeChangesApplied.update(timeMicros, TimeUnit.MICROSECONDS);
     }
+
+    @Override
+    public void donePrefetch(int numDocuments) {
+        prefetchRate.mark();
+        prefetchDocuments.mark(numDocuments);
+    }
+
+    @Override
+    public void prefetchHit() {
+        prefetchHits.mark();
+    }
+
+    /**
+     * @return the ratio of prefetched documents that were read afterwards.
+     */
+    public double getPrefetchHitRate() {
+        long prefetched = prefetchDocuments.getCount();
+        return prefetched == 0 ? 0 : (double) prefetchHits.getCount() / prefetched;
+    }
 }
@@ -114,4 +114,18 @@ public interface DocumentNodeStoreStatsCollector {
      * @param timeMicros the time in microseconds.
      */
     void doneChangesApplied(long timeMicros);
+
+    /**
+     * Reports to the collector that documents were prefetched from the
+     * {@code DocumentStore} because they are likely to be read soon.
+     *
+     * @param numDocuments the number of documents prefetched.
+     */
+    void donePrefetch(int numDocuments);
+
+    /**
+     * Reports to the collector that a document read was served by a previous
+     * prefetch, which saved a round trip to the {@code DocumentStore}.
+     */
+    void prefetchHit();
 }
@@ -16,15 +16,20 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
+import org.apache.jackrabbit.guava.common.collect.AbstractIterator;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Condition;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -493,6 +498,21 @@ public interface DocumentStore {
         return NO_THROTTLING;
     }
 
+    /**
+     * Returns an {@link AsyncDocumentStore} for this store, which performs
+     * operations without blocking the caller. The default implementation
+     * performs the blocking operations of this store on the threads of the
+     * given {@link Executor}. Implementations with a non-blocking client may
+     * override this method and ignore the executor.
+     *
+     * @param executor the executor for blocking operations.
+     * @return an asynchronous view on this store.
+     */
+    @NotNull
+    default AsyncDocumentStore async(@NotNull Executor executor) {
+        return new ExecutorAsyncDocumentStore(this, executor);
+    }
+
     /**
      * Get a list of documents with only projected fields (as mentioned in projections param)
      * along with "_id" field and where the key is greater than a start value and
@@ -543,6 +563,73 @@ public interface DocumentStore {
         }).collect(Collectors.toList());
     }
 
+    /**
+     * Get the documents where the key is greater than a start value and less
+     * than an end value <em>and</em> the given "indexed property" is greater
+     * or equals the specified value, like
+     * {@link #query(Collection, String, String, String, long, int)}. Unlike
+     * that method, the documents are not collected into a list up front but
+     * read while iterating, e.g. from a server side cursor. This allows to
+     * process a large number of documents in constant memory.
+     * <p>
+     * The returned documents are sorted by key and are immutable. They are
+     * not necessarily put into the document cache. The returned
+     * {@link CloseableIterable} can be iterated only once and must be closed
+     * by the caller to release resources held by the implementation.
+     * <p>
+     * The default implementation reads the documents in batches with
+     * {@link #query(Collection, String, String, String, long, int)}.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param fromKey the start value (excluding)
+     * @param toKey the end value (excluding)
+     * @param indexedProperty the name of the indexed property (optional)
+     * @param startValue the minimum value of the indexed property
+     * @param limit the maximum number of entries to return
+     * @return the documents (possibly none)
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @NotNull
+    default <T extends Document> CloseableIterable<T> queryAsIterable(final Collection<T> collection,
+                                                                      final String fromKey,
+                                                                      final String toKey,
+                                                                      final String indexedProperty,
+                                                                      final long startValue,
+                                                                      final int limit) throws DocumentStoreException {
+        Iterator<T> documents = new AbstractIterator<T>() {
+
+            private static final int BATCH_SIZE = 100;
+
+            private Iterator<T> batch = Collections.emptyIterator();
+
+            private String lastKey = fromKey;
+
+            private int remaining = limit;
+
+            private boolean exhausted;
+
+            @Override
+            protected T computeNext() {
+                if (!batch.hasNext() && !exhausted && remaining > 0) {
+                    int batchSize = Math.min(remaining, BATCH_SIZE);
+                    List<T> docs = query(collection, lastKey, toKey, indexedProperty, startValue, batchSize);
+                    exhausted = docs.size() < batchSize;
+                    batch = docs.iterator();
+                }
+                if (!batch.hasNext()) {
+                    return endOfData();
+                }
+                T doc = batch.next();
+                lastKey = doc.getId();
+                remaining--;
+                return doc;
+            }
+        };
+        return CloseableIterable.wrap(() -> documents);
+    }
+
     /**
      * Performs a conditional update (e.g. using
      * {@link UpdateOp.Condition.Type#EXISTS} and only update the
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link AsyncDocumentStore} that performs the blocking calls of the
+ * underlying {@link DocumentStore} on the threads of an {@link Executor}.
+ * The number of operations actually in flight is bound by the number of
+ * threads of the executor. With a direct executor the operations run
+ * synchronously on the calling thread.
+ */
+class ExecutorAsyncDocumentStore implements AsyncDocumentStore {
+
+    private final DocumentStore store;
+
+    private final Executor executor;
+
+    ExecutorAsyncDocumentStore(@NotNull DocumentStore store, @NotNull Executor executor) {
+        this.store = requireNonNull(store);
+        this.executor = requireNonNull(executor);
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> find(Collection<T> collection, String key) {
+        return supply(() -> store.find(collection, key));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> query(Collection<T> collection,
+                                                                 String fromKey,
+                                                                 String toKey,
+                                                                 String indexedProperty,
+                                                                 long startValue,
+                                                                 int limit) {
+        return supply(() -> store.query(collection, fromKey, toKey, indexedProperty, startValue, limit));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<List<T>> createOrUpdate(Collection<T> collection,
+                                                                          List<UpdateOp> updateOps) {
+        return supply(() -> store.createOrUpdate(collection, updateOps));
+    }
+
+    @NotNull
+    @Override
+    public <T extends Document> CompletableFuture<T> findAndUpdate(Collection<T> collection,
+                                                                   UpdateOp update) {
+        return supply(() -> store.findAndUpdate(collection, update));
+    }
+
+    private <R> CompletableFuture<R> supply(Supplier<R> operation) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(operation.get());
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(DocumentStoreException.convert(e));
+                } catch (Error e) {
+                    future.completeExceptionally(e);
+                    throw e;
+                }
+            });
+        } catch (RuntimeException e) {
+            // e.g. rejected by an executor that is shut down
+            future.completeExceptionally(DocumentStoreException.convert(e));
+        }
+        return future;
+    }
+}
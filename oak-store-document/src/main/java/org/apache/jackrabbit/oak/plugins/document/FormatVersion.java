@@ -88,6 +88,19 @@ public final class FormatVersion implements Comparable<FormatVersion> {
      */
     static final FormatVersion V1_8 = new FormatVersion(1, 8, 0);
 
+    /**
+     * Format version for Oak 1.74.
+     * <p>
+     * Changes introduced with this version:
+     * <ul>
+     *     <li>optional compact binary encoding of document data in the BDATA
+     *     column of the RDBDocumentStore</li>
+     * </ul>
+     * A store is never upgraded to this version implicitly, see
+     * {@link DocumentNodeStore#OPT_IN_VERSION}.
+     */
+    static final FormatVersion V1_74 = new FormatVersion(1, 74, 0);
+
     /**
      * The ID of the document in the settings collection that contains the
      * version information.
@@ -98,7 +111,7 @@ public final class FormatVersion implements Comparable<FormatVersion> {
      * @return well known format versions.
      */
     public static Iterable<FormatVersion> values() {
-        return ImmutableList.of(V0, V1_0, V1_2, V1_4, V1_6, V1_8);
+        return ImmutableList.of(V0, V1_0, V1_2, V1_4, V1_6, V1_8, V1_74);
     }
 
     /**
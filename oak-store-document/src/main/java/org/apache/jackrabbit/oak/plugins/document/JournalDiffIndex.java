@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
+import org.apache.jackrabbit.oak.commons.sort.StringSort;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the paths changed by external changes, which is filled by the
+ * background read. Each entry is keyed by the head revision before a
+ * background read and holds the head revision after the background read
+ * together with the sorted paths changed in between.
+ * <p>
+ * Entries are chained: the changes for a larger interval are the union of
+ * the changes of consecutive entries, where the 'to' revision of an entry is
+ * the key of the next entry. This allows the {@link JournalDiffLoader} to
+ * compose a diff without reading journal entries from the
+ * {@link DocumentStore}. A local commit between two background reads moves
+ * the head revision and breaks the chain, in which case the loader falls back
+ * to the journal.
+ * <p>
+ * The underlying cache is persisted with the journal cache or the persistent
+ * cache, if configured, and therefore survives a restart.
+ */
+public class JournalDiffIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalDiffIndex.class);
+
+    /**
+     * Background reads with more changed paths are not added to the index.
+     */
+    static final int MAX_PATHS = SystemPropertySupplier.create(
+            "oak.documentMK.journalDiffIndex.maxPaths", 100000).loggingTo(LOG).get();
+
+    /**
+     * Maximum number of entries composed into a single diff.
+     */
+    static final int MAX_CHAIN_LENGTH = SystemPropertySupplier.create(
+            "oak.documentMK.journalDiffIndex.maxChainLength", 1000).loggingTo(LOG).get();
+
+    private final Cache<RevisionVector, Changes> index;
+    private final CacheStats indexStats;
+
+    JournalDiffIndex(DocumentNodeStoreBuilder<?> builder) {
+        this.index = builder.buildJournalDiffIndexCache();
+        this.indexStats = new CacheStats(index, "Document-JournalDiffIndex",
+                builder.getWeigher(), builder.getJournalDiffIndexCacheSize());
+    }
+
+    /**
+     * Adds the changes of a background read to the index.
+     *
+     * @param from the head revision before the background read.
+     * @param to the head revision after the background read.
+     * @param changedPaths the changed paths in ascending order, possibly with
+     *          duplicates.
+     */
+    void put(@NotNull RevisionVector from,
+             @NotNull RevisionVector to,
+             @NotNull Iterable<String> changedPaths) {
+        if (from.equals(to)) {
+            return;
+        }
+        Changes changes = Changes.create(to, changedPaths, MAX_PATHS);
+        if (changes == null) {
+            LOG.debug("Not indexing more than {} changed paths from {} to {}", MAX_PATHS, from, to);
+            index.invalidate(from);
+        } else {
+            index.put(from, changes);
+        }
+    }
+
+    /**
+     * Adds the paths changed between {@code from} and {@code to} at or below
+     * {@code path} to the {@code sort}, if the index contains a chain of
+     * entries for this interval. Nothing is added otherwise.
+     *
+     * @param sort where changed paths are added.
+     * @param path the path of the node to diff.
+     * @param from the from revision.
+     * @param to the to revision.
+     * @return the number of entries the changes were composed from, or
+     *          {@code -1} if the index does not cover the interval.
+     */
+    int addTo(@NotNull StringSort sort,
+              @NotNull Path path,
+              @NotNull RevisionVector from,
+              @NotNull RevisionVector to) throws IOException {
+        List<Changes> chain = getChain(from, to);
+        if (chain == null) {
+            return -1;
+        }
+        String p = path.toString();
+        String prefix = path.isRoot() ? p : p + "/";
+        for (Changes c : chain) {
+            for (String changed : c) {
+                if (changed.startsWith(prefix) || changed.equals(p)) {
+                    sort.add(changed);
+                }
+            }
+        }
+        return chain.size();
+    }
+
+    @NotNull
+    Iterable<CacheStats> getStats() {
+        return Collections.singleton(indexStats);
+    }
+
+    void invalidateAll() {
+        index.invalidateAll();
+    }
+
+    private List<Changes> getChain(RevisionVector from, RevisionVector to) {
+        if (from.equals(to) || !to.pmax(from).equals(to)) {
+            // only forward diffs are indexed
+            return null;
+        }
+        List<Changes> chain = new ArrayList<>();
+        RevisionVector rv = from;
+        while (chain.size() < MAX_CHAIN_LENGTH) {
+            Changes c = index.getIfPresent(rv);
+            if (c == null) {
+                return null;
+            }
+            chain.add(c);
+            rv = c.getToRevision();
+            if (rv.equals(to)) {
+                return chain;
+            }
+            if (!to.pmax(rv).equals(to)) {
+                // entry goes beyond the requested interval
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The changed paths of a background read and the head revision after
+     * it. Paths are stored front coded, which is compact for sorted paths
+     * sharing long prefixes.
+     */
+    public static final class Changes implements CacheValue, Iterable<String> {
+
+        private final RevisionVector to;
+        private final byte[] data;
+
+        public Changes(@NotNull RevisionVector to, @NotNull byte[] data) {
+            this.to = to;
+            this.data = data;
+        }
+
+        static Changes create(RevisionVector to, Iterable<String> sortedPaths, int maxPaths) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String previous = "";
+            int count = 0;
+            for (String path : sortedPaths) {
+                if (path.equals(previous)) {
+                    continue;
+                }
+                if (++count > maxPaths) {
+                    return null;
+                }
+                int prefix = 0;
+                int max = Math.min(previous.length(), path.length());
+                while (prefix < max && previous.charAt(prefix) == path.charAt(prefix)) {
+                    prefix++;
+                }
+                if (prefix > 0 && Character.isHighSurrogate(path.charAt(prefix - 1))) {
+                    // do not split a surrogate pair
+                    prefix--;
+                }
+                byte[] suffix = path.substring(prefix).getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, prefix);
+                writeVarInt(out, suffix.length);
+                out.write(suffix, 0, suffix.length);
+                previous = path;
+            }
+            return new Changes(to, out.toByteArray());
+        }
+
+        @NotNull
+        public RevisionVector getToRevision() {
+            return to;
+        }
+
+        @NotNull
+        public byte[] getData() {
+            return data;
+        }
+
+        @Override
+        public int getMemory() {
+            return 24 + to.getMemory() + 16 + data.length;
+        }
+
+        @NotNull
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int pos;
+                private String previous = "";
+
+                @Override
+                public boolean hasNext() {
+                    return pos < data.length;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int prefix = readVarInt();
+                    int len = readVarInt();
+                    previous = previous.substring(0, prefix)
+                            + new String(data, pos, len, StandardCharsets.UTF_8);
+                    pos += len;
+                    return previous;
+                }
+
+                private int readVarInt() {
+                    int v = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        int b = data[pos++];
+                        v |= (b & 0x7F) << shift;
+                        if ((b & 0x80) == 0) {
+                            return v;
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "Changes{to=" + to + ", " + data.length + " bytes}";
+        }
+
+        private static void writeVarInt(ByteArrayOutputStream out, int v) {
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write(v);
+        }
+    }
+}
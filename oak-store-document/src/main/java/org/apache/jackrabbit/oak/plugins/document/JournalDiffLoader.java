@@ -72,7 +72,9 @@ class JournalDiffLoader implements DiffCache.Loader {
         StringSort changes = JournalEntry.newSorter();
         try {
             Path path = node.getPath();
-            readTrunkChanges(path, beforeRev, afterRev, changes);
+            if (!readIndexedChanges(path, beforeRev, afterRev, changes)) {
+                readTrunkChanges(path, beforeRev, afterRev, changes);
+            }
 
             readBranchChanges(path, beforeRev, changes);
             readBranchChanges(path, afterRev, changes);
@@ -91,6 +93,28 @@ class JournalDiffLoader implements DiffCache.Loader {
         }
     }
 
+    /**
+     * Reads the changes from the {@link JournalDiffIndex} when it covers the
+     * interval with a chain of background reads.
+     *
+     * @return {@code true} if the changes were read from the index,
+     *          {@code false} otherwise.
+     */
+    private boolean readIndexedChanges(Path path,
+                                       RevisionVector beforeRev,
+                                       RevisionVector afterRev,
+                                       StringSort changes) throws IOException {
+        if (beforeRev.isBranch() || afterRev.isBranch()) {
+            return false;
+        }
+        int numEntries = ns.getJournalDiffIndex().addTo(changes, path, beforeRev, afterRev);
+        if (numEntries < 0) {
+            return false;
+        }
+        stats.numIndexEntries = numEntries;
+        return true;
+    }
+
     private void readBranchChanges(Path path,
                                    RevisionVector rv,
                                    StringSort changes) throws IOException {
@@ -212,6 +236,7 @@ class JournalDiffLoader implements DiffCache.Loader {
         private final Path path;
         private final RevisionVector from, to;
         private long numJournalEntries;
+        private long numIndexEntries;
         private long numDiffEntries;
         private long keyMemory;
         private long valueMemory;
@@ -224,10 +249,10 @@ class JournalDiffLoader implements DiffCache.Loader {
 
         @Override
         public String toString() {
-            String msg = "%d diffs for %s (%s/%s) loaded from %d journal entries in %s. " +
-                    "Keys: %s, values: %s, total: %s";
+            String msg = "%d diffs for %s (%s/%s) loaded from %d journal entries " +
+                    "and %d index entries in %s. Keys: %s, values: %s, total: %s";
             return String.format(msg, numDiffEntries, path, from, to,
-                    numJournalEntries, sw,
+                    numJournalEntries, numIndexEntries, sw,
                     byteCountToDisplaySize(keyMemory),
                     byteCountToDisplaySize(valueMemory),
                     byteCountToDisplaySize(keyMemory + valueMemory));
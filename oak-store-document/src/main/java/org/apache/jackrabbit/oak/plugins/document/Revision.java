@@ -37,6 +37,22 @@ public final class Revision implements CacheValue {
     private static volatile long lastRevisionTimestamp;
     private static volatile int lastRevisionCount;
 
+    /**
+     * Number of slots in the {@link #FLYWEIGHTS} table. Must be a power of two.
+     */
+    static final int FLYWEIGHT_SLOTS = 4096;
+
+    /**
+     * A direct-mapped table of recently parsed revisions. The same revision
+     * usually shows up many times, e.g. as key in all the revision maps of a
+     * document, in the {@code _revisions} and {@code _commitRoot} entries of
+     * split documents, and in commit values. Parsing them through this table
+     * returns a shared instance and avoids the allocation. Races on a slot
+     * are benign, because a revision is immutable and all its fields are
+     * final.
+     */
+    private static final Revision[] FLYWEIGHTS = new Revision[FLYWEIGHT_SLOTS];
+
     /**
      * The timestamp in milliseconds since 1970 (unlike in seconds as in
      * MongoDB). The timestamp is local to the machine that generated the
@@ -229,10 +245,25 @@ public final class Revision implements CacheValue {
     }
 
     public static Revision fromString(String rev) {
-        boolean isBranch = rev.charAt(0) == 'b';
-        int idx = isBranch ? 2 : 1;
+        return fromString(rev, 0);
+    }
+
+    /**
+     * Parses the revision starting at {@code beginIndex} of the given string,
+     * without creating an intermediate substring. The returned instance may
+     * be shared with other callers.
+     *
+     * @param rev the string containing a revision.
+     * @param beginIndex the index where the revision starts.
+     * @return the parsed revision.
+     * @throws IllegalArgumentException if the string does not contain a
+     *          revision at {@code beginIndex}.
+     */
+    public static Revision fromString(String rev, int beginIndex) {
+        boolean isBranch = rev.charAt(beginIndex) == 'b';
+        int idx = beginIndex + (isBranch ? 2 : 1);
         if (rev.charAt(idx - 1) != 'r') {
-            throw new IllegalArgumentException(rev);
+            throw new IllegalArgumentException(rev.substring(beginIndex));
         }
         int len = rev.length();
         // Parse timestamp
@@ -262,7 +293,25 @@ public final class Revision implements CacheValue {
             int digit = c >= 'a' ? c - 'a' + 10 : c - '0';
             clusterId = (clusterId << 4) + digit;
         }
-        return new Revision(timestamp, counter, clusterId, isBranch);
+        return flyweight(timestamp, counter, clusterId, isBranch);
+    }
+
+    /**
+     * Returns a revision with the given values, preferably an existing
+     * instance from the {@link #FLYWEIGHTS} table.
+     */
+    static Revision flyweight(long timestamp, int counter, int clusterId, boolean branch) {
+        int h = (int) (timestamp ^ (timestamp >>> 32)) * 31 + counter;
+        h = (h * 31 + clusterId) * 2 + (branch ? 1 : 0);
+        h ^= h >>> 16;
+        int slot = h & (FLYWEIGHT_SLOTS - 1);
+        Revision r = FLYWEIGHTS[slot];
+        if (r == null || r.timestamp != timestamp || r.counter != counter
+                || r.clusterId != clusterId || r.branch != branch) {
+            r = new Revision(timestamp, counter, clusterId, branch);
+            FLYWEIGHTS[slot] = r;
+        }
+        return r;
     }
 
     @Override
@@ -337,7 +386,7 @@ public final class Revision implements CacheValue {
         if (isBranch()) {
             return this;
         } else {
-            return new Revision(timestamp, counter, clusterId, true);
+            return flyweight(timestamp, counter, clusterId, true);
         }
     }
 
@@ -351,7 +400,7 @@ public final class Revision implements CacheValue {
         if (!isBranch()) {
             return this;
         } else {
-            return new Revision(timestamp, counter, clusterId);
+            return flyweight(timestamp, counter, clusterId, false);
         }
     }
 
@@ -16,28 +16,21 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Set;
 
 import org.apache.jackrabbit.guava.common.collect.AbstractIterator;
-import org.apache.jackrabbit.guava.common.collect.Iterators;
-import org.apache.jackrabbit.guava.common.collect.PeekingIterator;
 import org.apache.jackrabbit.guava.common.primitives.Ints;
 import org.apache.jackrabbit.oak.cache.CacheValue;
-import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.util.Objects.requireNonNull;
 import static org.apache.jackrabbit.guava.common.collect.Iterables.toArray;
-import static org.apache.jackrabbit.guava.common.collect.Iterators.peekingIterator;
 import static java.util.Arrays.sort;
 
 /**
@@ -65,12 +58,12 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
                            boolean checkUniqueClusterIds,
                            boolean sort) {
         requireNonNull(revisions);
-        if (checkUniqueClusterIds) {
-            checkUniqueClusterIds(revisions);
-        }
         if (sort) {
             sort(revisions, RevisionComparator.INSTANCE);
         }
+        if (checkUniqueClusterIds) {
+            checkUniqueClusterIds(revisions);
+        }
         this.revisions = revisions;
     }
 
@@ -174,20 +167,20 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
                 return EMPTY;
             }
         }
-        int capacity = Math.min(revisions.length, vector.revisions.length);
-        List<Revision> pmin = new ArrayList<>(capacity);
-        PeekingIterator<Revision> it = peekingIterator(vector.iterator());
-        for (Revision r : revisions) {
-            Revision other = peekRevision(it, r.getClusterId());
-            if (other != null) {
-                if (other.getClusterId() == r.getClusterId()) {
-                    pmin.add(Utils.min(r, other));
-                }
+        Revision[] pmin = new Revision[Math.min(revisions.length, vector.revisions.length)];
+        int n = 0;
+        Revision[] other = vector.revisions;
+        for (int i = 0, j = 0; i < revisions.length && j < other.length; ) {
+            int cmp = Integer.compare(revisions[i].getClusterId(), other[j].getClusterId());
+            if (cmp == 0) {
+                pmin[n++] = Utils.min(revisions[i++], other[j++]);
+            } else if (cmp < 0) {
+                i++;
             } else {
-                break;
+                j++;
             }
         }
-        return new RevisionVector(toArray(pmin, Revision.class), false, false);
+        return new RevisionVector(trim(pmin, n), false, false);
     }
 
     /**
@@ -205,25 +198,27 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
                 return new RevisionVector(revisions[0], vector.revisions[0]);
             }
         }
-        int capacity = Math.max(revisions.length, vector.revisions.length);
-        List<Revision> pmax = new ArrayList<>(capacity);
-        PeekingIterator<Revision> it = peekingIterator(vector.iterator());
-        for (Revision r : revisions) {
-            while (it.hasNext() && it.peek().getClusterId() < r.getClusterId()) {
-                pmax.add(it.next());
-            }
-            Revision other = peekRevision(it, r.getClusterId());
-            if (other != null && other.getClusterId() == r.getClusterId()) {
-                pmax.add(Utils.max(r, other));
-                it.next();
+        Revision[] other = vector.revisions;
+        Revision[] pmax = new Revision[revisions.length + other.length];
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < revisions.length && j < other.length) {
+            int cmp = Integer.compare(revisions[i].getClusterId(), other[j].getClusterId());
+            if (cmp == 0) {
+                pmax[n++] = Utils.max(revisions[i++], other[j++]);
+            } else if (cmp < 0) {
+                pmax[n++] = revisions[i++];
             } else {
-                // other does not have a revision with r.clusterId
-                pmax.add(r);
+                pmax[n++] = other[j++];
             }
         }
-        // add remaining
-        Iterators.addAll(pmax, it);
-        return new RevisionVector(toArray(pmax, Revision.class), false, false);
+        while (i < revisions.length) {
+            pmax[n++] = revisions[i++];
+        }
+        while (j < other.length) {
+            pmax[n++] = other[j++];
+        }
+        return new RevisionVector(trim(pmax, n), false, false);
     }
 
     /**
@@ -235,15 +230,19 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
      * @return the difference of the two vectors.
      */
     public RevisionVector difference(RevisionVector vector) {
-        List<Revision> diff = new ArrayList<>(revisions.length);
-        PeekingIterator<Revision> it = peekingIterator(vector.iterator());
+        Revision[] diff = new Revision[revisions.length];
+        int n = 0;
+        Revision[] other = vector.revisions;
+        int j = 0;
         for (Revision r : revisions) {
-            Revision other = peekRevision(it, r.getClusterId());
-            if (!r.equals(other)) {
-                diff.add(r);
+            while (j < other.length && other[j].getClusterId() < r.getClusterId()) {
+                j++;
+            }
+            if (j >= other.length || !r.equals(other[j])) {
+                diff[n++] = r;
             }
         }
-        return new RevisionVector(toArray(diff, Revision.class), false, false);
+        return new RevisionVector(trim(diff, n), false, false);
     }
 
     /**
@@ -443,12 +442,13 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
 
     @Override
     public int compareTo(@NotNull RevisionVector other) {
-        Iterator<Revision> it = other.iterator();
-        for (Revision r : revisions) {
-            if (!it.hasNext()) {
+        Revision[] others = other.revisions;
+        for (int i = 0; i < revisions.length; i++) {
+            if (i >= others.length) {
                 return 1;
             }
-            Revision otherRev = it.next();
+            Revision r = revisions[i];
+            Revision otherRev = others[i];
             int cmp = -Ints.compare(r.getClusterId(), otherRev.getClusterId());
             if (cmp != 0) {
                 return cmp;
@@ -458,7 +458,7 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
                 return cmp;
             }
         }
-        return it.hasNext() ? -1 : 0;
+        return others.length > revisions.length ? -1 : 0;
     }
 
     //-------------------------< Iterable >-------------------------------------
@@ -508,13 +508,8 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
 
     //-------------------------< internal >-------------------------------------
 
-    @Nullable
-    private Revision peekRevision(PeekingIterator<Revision> it,
-                                  int minClusterId) {
-        while (it.hasNext() && it.peek().getClusterId() < minClusterId) {
-            it.next();
-        }
-        return it.hasNext() ? it.peek() : null;
+    private static Revision[] trim(Revision[] revisions, int length) {
+        return length == revisions.length ? revisions : Arrays.copyOf(revisions, length);
     }
 
     private long revisionArrayMemory() {
@@ -523,14 +518,11 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
 
     private static void checkUniqueClusterIds(Revision[] revisions)
             throws IllegalArgumentException {
-        if (revisions.length < 2) {
-            return;
-        }
-        Set<Integer> known = CollectionUtils.newHashSet(revisions.length);
-        for (Revision revision : revisions) {
-            if (!known.add(revision.getClusterId())) {
+        // revisions are sorted by clusterId
+        for (int i = 1; i < revisions.length; i++) {
+            if (revisions[i - 1].getClusterId() == revisions[i].getClusterId()) {
                 throw new IllegalArgumentException(
-                        "Multiple revisions with clusterId " + revision.getClusterId());
+                        "Multiple revisions with clusterId " + revisions[i].getClusterId());
             }
         }
     }
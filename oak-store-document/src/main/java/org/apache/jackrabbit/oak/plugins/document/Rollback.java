@@ -98,6 +98,7 @@ class Rollback {
         for (List<UpdateOp> ops : CollectionUtils.partitionList(reverseOps, batchSize)) {
             store.createOrUpdate(NODES, ops);
         }
+        // the collision marker is only removed once all changes are reverted
         removeCollisionMarker(store, commitRootId);
     }
 
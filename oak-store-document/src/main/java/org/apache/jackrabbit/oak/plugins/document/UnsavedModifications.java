@@ -22,7 +22,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Supplier;
@@ -40,6 +43,7 @@ import org.apache.jackrabbit.guava.common.collect.Iterables;
 import org.apache.jackrabbit.guava.common.collect.Maps;
 
 import static java.util.Objects.requireNonNull;
+import static org.apache.jackrabbit.guava.common.util.concurrent.MoreExecutors.directExecutor;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Commit.createUpdateOp;
@@ -137,11 +141,37 @@ class UnsavedModifications {
                                         @NotNull Supplier<Revision> sweepRevision,
                                         @NotNull Snapshot snapshot,
                                         @NotNull Lock lock) {
+        return persist(store, directExecutor(), sweepRevision, snapshot, lock);
+    }
+
+    /**
+     * Persist the pending changes to _lastRev to the given store. Like
+     * {@link #persist(DocumentStore, Supplier, Snapshot, Lock)}, but the
+     * batches of updates to documents other than the root document are
+     * written concurrently through the {@link AsyncDocumentStore} of the
+     * store obtained with the given executor. The root document is updated
+     * only after all other updates succeeded.
+     *
+     * @param store the document store.
+     * @param executor the executor for the concurrent writes.
+     * @param sweepRevision supplier for the current sweep revision.
+     * @param snapshot callback when the snapshot of the pending changes is
+     *                 acquired.
+     * @param lock the lock to acquire to get a consistent snapshot of the
+     *             revisions to write back.
+     * @return stats about the write operation.
+     */
+    public BackgroundWriteStats persist(@NotNull DocumentStore store,
+                                        @NotNull Executor executor,
+                                        @NotNull Supplier<Revision> sweepRevision,
+                                        @NotNull Snapshot snapshot,
+                                        @NotNull Lock lock) {
         BackgroundWriteStats stats = new BackgroundWriteStats();
         if (map.size() == 0) {
             return stats;
         }
         requireNonNull(store);
+        requireNonNull(executor);
         requireNonNull(sweepRevision);
         requireNonNull(snapshot);
         requireNonNull(lock);
@@ -162,10 +192,16 @@ class UnsavedModifications {
             lock.unlock();
         }
         stats.num = pending.size();
-        List<UpdateOp> updates = new ArrayList<>();
-        Map<Path, Revision> pathToRevision = Maps.newHashMap();
+        AsyncDocumentStore asyncStore = store.async(executor);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
         for (Iterable<Map.Entry<Path, Revision>> batch : Iterables.partition(
                 pending.entrySet(), BACKGROUND_MULTI_UPDATE_LIMIT)) {
+            if (writes.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                // do not issue further updates after a failure
+                break;
+            }
+            List<UpdateOp> updates = new ArrayList<>();
+            Map<Path, Revision> pathToRevision = Maps.newHashMap();
             for (Map.Entry<Path, Revision> entry : batch) {
                 Path p = entry.getKey();
                 Revision r = entry.getValue();
@@ -177,17 +213,17 @@ class UnsavedModifications {
                 pathToRevision.put(entry.getKey(), r);
             }
             if (!updates.isEmpty()) {
-                store.createOrUpdate(NODES, updates);
+                writes.add(asyncStore.createOrUpdate(NODES, updates).thenRun(() -> {
+                    for (Map.Entry<Path, Revision> entry : pathToRevision.entrySet()) {
+                        map.remove(entry.getKey(), entry.getValue());
+                        LOG.debug("Updated _lastRev to {} on {}", entry.getValue(), entry.getKey());
+                    }
+                }));
                 stats.calls++;
-                for (Map.Entry<Path, Revision> entry : pathToRevision.entrySet()) {
-                    map.remove(entry.getKey(), entry.getValue());
-                    LOG.debug("Updated _lastRev to {} on {}", entry.getValue(), entry.getKey());
-                }
-                // clean up for next batch
-                updates.clear();
-                pathToRevision.clear();
             }
         }
+        // all other documents must be written before the root document
+        awaitAll(writes);
         // finally update remaining root document
         Revision rootRev = pending.get(Path.ROOT);
         if (rootRev != null) {
@@ -225,6 +261,26 @@ class UnsavedModifications {
         return map.toString();
     }
 
+    /**
+     * Waits for all writes to complete, even if some of them failed, and
+     * then throws the first failure, if any.
+     */
+    private static void awaitAll(List<CompletableFuture<Void>> writes) {
+        DocumentStoreException failure = null;
+        for (CompletableFuture<Void> write : writes) {
+            try {
+                write.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = DocumentStoreException.convert(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     private static UpdateOp newUpdateOp(Path path, Revision r) {
         UpdateOp updateOp = createUpdateOp(path, r, false);
         NodeDocument.setLastRev(updateOp, r);
@@ -29,20 +29,23 @@ public class VersionGCOptions {
     public final int maxIterations;
     public final long maxDurationMs;
     public final double delayFactor;
+    public final int parallelism;
 
     public VersionGCOptions() {
         this(100000, 100000, TimeUnit.MINUTES.toMillis(1),
-                0, TimeUnit.HOURS.toMillis(0), 0);
+                0, TimeUnit.HOURS.toMillis(0), 0, 1);
     }
 
     private VersionGCOptions(int overflow, long collectLimit, long precisionMs,
-                             int maxIterations, long maxDurationMs, double delayFactor) {
+                             int maxIterations, long maxDurationMs, double delayFactor,
+                             int parallelism) {
         this.overflowToDiskThreshold = overflow;
         this.collectLimit = collectLimit;
         this.precisionMs = precisionMs;
         this.maxIterations = maxIterations;
         this.maxDurationMs = maxDurationMs;
         this.delayFactor = delayFactor;
+        this.parallelism = parallelism;
     }
 
     /**
@@ -52,7 +55,7 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withOverflowToDiskThreshold(int overflowToDiskThreshold) {
         return new VersionGCOptions(overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor, this.parallelism);
     }
 
     /**
@@ -65,7 +68,7 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withCollectLimit(long limit) {
         return new VersionGCOptions(this.overflowToDiskThreshold, limit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor, this.parallelism);
     }
 
     /**
@@ -79,7 +82,7 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withPrecisionMs(TimeUnit unit, long t) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                unit.toMillis(t), this.maxIterations, this.maxDurationMs, this.delayFactor);
+                unit.toMillis(t), this.maxIterations, this.maxDurationMs, this.delayFactor, this.parallelism);
     }
 
     /**
@@ -93,7 +96,7 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withMaxDuration(TimeUnit unit, long t) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, unit.toMillis(t), this.delayFactor);
+                this.precisionMs, this.maxIterations, unit.toMillis(t), this.delayFactor, this.parallelism);
     }
 
     /**
@@ -106,7 +109,7 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withMaxIterations(int max) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, max, this.delayFactor);
+                this.precisionMs, this.maxIterations, max, this.delayFactor, this.parallelism);
     }
 
     /**
@@ -122,7 +125,25 @@ public class VersionGCOptions {
      */
     public VersionGCOptions withDelayFactor(double f) {
         return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
-                this.precisionMs, this.maxIterations, this.maxDurationMs, f);
+                this.precisionMs, this.maxIterations, this.maxDurationMs, f, this.parallelism);
+    }
+
+    /**
+     * Set the number of threads used to collect documents of deleted nodes. With a value
+     * greater than 1, the <code>_modified</code> range of a collection run is split into
+     * partitions, which are collected concurrently. Completed partitions are recorded in the
+     * settings collection and skipped when an interrupted run is repeated for the same range.
+     * Delays between batched modifications (see {@link #withDelayFactor(double)}) apply to all
+     * threads together. The default is 1, e.g. documents are collected sequentially.
+     *
+     * @param parallelism the number of threads collecting deleted documents
+     */
+    public VersionGCOptions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        return new VersionGCOptions(this.overflowToDiskThreshold, this.collectLimit,
+                this.precisionMs, this.maxIterations, this.maxDurationMs, this.delayFactor, parallelism);
     }
 
 }
@@ -33,8 +33,13 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -48,7 +53,9 @@ import org.apache.jackrabbit.guava.common.base.Stopwatch;
 
 import org.apache.jackrabbit.guava.common.collect.Iterators;
 import org.apache.jackrabbit.guava.common.collect.Maps;
+import org.apache.jackrabbit.guava.common.util.concurrent.ThreadFactoryBuilder;
 
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.sort.StringSort;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
@@ -162,6 +169,12 @@ public class VersionGarbageCollector {
      */
     static final String SETTINGS_COLLECTION_FULL_GC_DRY_RUN_DOCUMENT_ID_PROP = "fullGCDryRunId";
 
+    /**
+     * Property name to the partitions of the _modified range already collected
+     * by a parallel run, in the form {@code <scopeFromMs>:<fromMs>-<toMs>,...}
+     */
+    static final String SETTINGS_COLLECTION_PARALLEL_GC_PARTITIONS_PROP = "parallelGCPartitions";
+
     /**
      * During hardening of FullGC one can choose level type of garbage should be cleaned up.
      * Ultimately the goal is to clean up all possible garbage. After hardening these modes
@@ -248,6 +261,8 @@ public class VersionGarbageCollector {
     private Set<String> fullGCExcludePaths = Collections.emptySet();
     private final VersionGCSupport versionStore;
     private final AtomicReference<GCJob> collector = new AtomicReference<>();
+    /** time until which all threads modifying documents on behalf of the GC pause */
+    private final AtomicLong resumeModificationsAt = new AtomicLong();
     private VersionGCOptions options;
     private GCMonitor gcMonitor = GCMonitor.EMPTY;
     private RevisionGCStats gcStats = new RevisionGCStats(NOOP);
@@ -575,6 +590,19 @@ public class VersionGarbageCollector {
                     ", " + timings + "}";
         }
 
+        /**
+         * Adds the counts of a partition collected by a parallel run of the
+         * deleted documents GC.
+         */
+        void addDeletedDocsCounts(VersionGCStats partition) {
+            this.limitExceeded |= partition.limitExceeded;
+            this.deletedDocGCCount += partition.deletedDocGCCount;
+            this.deletedLeafDocGCCount += partition.deletedLeafDocGCCount;
+            this.splitDocGCCount += partition.splitDocGCCount;
+            this.intermediateSplitDocGCCount += partition.intermediateSplitDocGCCount;
+            this.updateResurrectedGCCount += partition.updateResurrectedGCCount;
+        }
+
         void addRun(VersionGCStats run) {
             ++iterationCount;
             this.ignoredGCDueToCheckPoint = run.ignoredGCDueToCheckPoint;
@@ -763,6 +791,7 @@ public class VersionGarbageCollector {
         private final AtomicBoolean cancel = new AtomicBoolean();
         private final GCMonitor monitor;
         private final Supplier<String> status;
+        private final List<TimeInterval> completedPartitions = new ArrayList<>();
 
         GCJob(long maxRevisionAgeMillis,
               VersionGCOptions options,
@@ -1005,10 +1034,129 @@ public class VersionGarbageCollector {
                                              RevisionVector headRevision,
                                              VersionGCRecommendations rec)
                 throws IOException, LimitExceededException {
+            if (options.parallelism > 1) {
+                collectDeletedDocumentsInParallel(phases, headRevision, rec);
+            } else {
+                collectDeletedDocuments(phases, headRevision, rec.scope, rec.maxCollect);
+            }
+        }
+
+        /**
+         * Splits the scope into partitions of the _modified range and collects
+         * the deleted documents of each partition with its own
+         * {@link DeletedDocsGC} on one of {@link VersionGCOptions#parallelism}
+         * threads. Completed partitions are recorded in the settings
+         * collection and skipped when a run for a scope with the same start
+         * is repeated, e.g. after it was canceled or exceeded the collect
+         * limit.
+         */
+        private void collectDeletedDocumentsInParallel(GCPhases phases,
+                                                       RevisionVector headRevision,
+                                                       VersionGCRecommendations rec)
+                throws IOException, LimitExceededException {
+            List<TimeInterval> partitions;
+            synchronized (completedPartitions) {
+                completedPartitions.clear();
+                completedPartitions.addAll(readCompletedPartitions(rec.scope));
+                partitions = partitionScope(rec.scope, completedPartitions, options.parallelism, options.precisionMs);
+            }
+            if (partitions.isEmpty() || !phases.start(GCPhase.COLLECTING)) {
+                return;
+            }
+            int threads = Math.min(options.parallelism, partitions.size());
+            // the collect limit applies to the documents held by all threads together
+            long maxCollect = rec.maxCollect > 0 ? Math.max(1, rec.maxCollect / threads) : rec.maxCollect;
+            monitor.info("Collecting deleted documents in {} partitions with {} threads",
+                    partitions.size(), threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("oak-version-gc-%d").build());
+            try {
+                List<Future<VersionGCStats>> futures = new ArrayList<>();
+                for (TimeInterval partition : partitions) {
+                    futures.add(executor.submit(() -> collectPartition(headRevision, rec.scope, partition, maxCollect)));
+                }
+                Throwable failure = null;
+                for (Future<VersionGCStats> f : futures) {
+                    try {
+                        phases.stats.addDeletedDocsCounts(f.get());
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while collecting deleted documents", e);
+                    }
+                }
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                } else if (failure != null) {
+                    throw new IOException(failure);
+                }
+            } finally {
+                new ExecutorCloser(executor).close();
+            }
+            phases.stop(GCPhase.COLLECTING);
+            if (phases.stats.limitExceeded) {
+                throw new LimitExceededException();
+            }
+        }
+
+        private VersionGCStats collectPartition(RevisionVector headRevision,
+                                                TimeInterval scope,
+                                                TimeInterval partition,
+                                                long maxCollect)
+                throws IOException {
+            VersionGCStats stats = new VersionGCStats();
+            GCPhases phases = new GCPhases(cancel, stats, GCMonitor.EMPTY);
+            try {
+                collectDeletedDocuments(phases, headRevision, partition, maxCollect);
+                if (!cancel.get()) {
+                    partitionCompleted(scope, partition);
+                }
+            } catch (LimitExceededException e) {
+                stats.limitExceeded = true;
+            } finally {
+                phases.close();
+            }
+            return stats;
+        }
+
+        private List<TimeInterval> readCompletedPartitions(TimeInterval scope) {
+            Document versionGCDoc = ds.find(SETTINGS, SETTINGS_COLLECTION_ID, 0);
+            if (versionGCDoc != null) {
+                Object value = versionGCDoc.get(SETTINGS_COLLECTION_PARALLEL_GC_PARTITIONS_PROP);
+                if (value instanceof String) {
+                    return parsePartitions((String) value, scope.fromMs);
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        private void partitionCompleted(TimeInterval scope, TimeInterval partition) {
+            synchronized (completedPartitions) {
+                addPartition(completedPartitions, partition);
+                UpdateOp op = new UpdateOp(SETTINGS_COLLECTION_ID, true);
+                op.set(SETTINGS_COLLECTION_PARALLEL_GC_PARTITIONS_PROP,
+                        formatPartitions(scope.fromMs, completedPartitions));
+                ds.createOrUpdate(SETTINGS, op);
+            }
+            monitor.info("Collected deleted documents in partition {}", partition);
+        }
+
+        private void collectDeletedDocuments(GCPhases phases,
+                                             RevisionVector headRevision,
+                                             TimeInterval scope,
+                                             long maxCollect)
+                throws IOException, LimitExceededException {
             int docsTraversed = 0;
             try (DeletedDocsGC gc = new DeletedDocsGC(headRevision, cancel, options, monitor)) {
                 if (phases.start(GCPhase.COLLECTING)) {
-                    Iterable<NodeDocument> itr = versionStore.getPossiblyDeletedDocs(rec.scope.fromMs, rec.scope.toMs);
+                    Iterable<NodeDocument> itr = versionStore.getPossiblyDeletedDocs(scope.fromMs, scope.toMs);
                     try {
                         for (NodeDocument doc : itr) {
                             // continue with GC?
@@ -1028,7 +1176,7 @@ public class VersionGarbageCollector {
                                 gc.possiblyDeleted(doc);
                                 phases.stop(GCPhase.CHECKING);
                             }
-                            if (rec.maxCollect > 0 && gc.docIdsToDelete.getSize() > rec.maxCollect) {
+                            if (maxCollect > 0 && gc.docIdsToDelete.getSize() > maxCollect) {
                                 throw new LimitExceededException();
                             }
                             if (gc.hasLeafBatch()) {
@@ -2130,12 +2278,21 @@ public class VersionGarbageCollector {
             return !traversedState.exists();
         }
     }
+    /**
+     * Pauses after a batch of modifications for the duration given by the
+     * delay factor or the {@link Throttler} of the document store, whichever
+     * is longer. The pause is shared by all threads modifying documents on
+     * behalf of the GC: a thread waits until the latest pause requested by
+     * any of them is over.
+     */
     private void delayOnModifications(final long durationMs, final AtomicBoolean cancel, final double delayFactor) {
-        long delayMs = round(durationMs * delayFactor);
-        if (!cancel.get() && delayMs > 0) {
+        long delayMs = Math.max(round(durationMs * delayFactor), ds.throttler().throttlingTime());
+        Clock clock = nodeStore.getClock();
+        long now = clock.getTime();
+        long resumeAt = resumeModificationsAt.accumulateAndGet(now + delayMs, Math::max);
+        if (!cancel.get() && resumeAt > now) {
             try {
-                Clock clock = nodeStore.getClock();
-                clock.waitUntil(clock.getTime() + delayMs);
+                clock.waitUntil(resumeAt);
             }
             catch (InterruptedException ex) {
                 /* ignore */
@@ -2143,6 +2300,104 @@ public class VersionGarbageCollector {
         }
     }
 
+    /**
+     * Splits the part of the {@code scope} not covered by the {@code completed}
+     * partitions into partitions of roughly equal duration, but not shorter
+     * than {@code minDurationMs}.
+     *
+     * @param scope the time interval to split.
+     * @param completed sorted, non overlapping partitions already collected.
+     * @param parallelism the number of partitions to create for the scope.
+     * @param minDurationMs the minimum duration of a partition.
+     * @return the partitions to collect, sorted by time.
+     */
+    static List<TimeInterval> partitionScope(TimeInterval scope, List<TimeInterval> completed,
+                                             int parallelism, long minDurationMs) {
+        List<TimeInterval> remaining = new ArrayList<>();
+        long start = scope.fromMs;
+        for (TimeInterval done : completed) {
+            if (done.fromMs > start) {
+                remaining.add(new TimeInterval(start, Math.min(done.fromMs, scope.toMs)));
+            }
+            start = Math.max(start, done.toMs);
+            if (start >= scope.toMs) {
+                break;
+            }
+        }
+        if (start < scope.toMs) {
+            remaining.add(new TimeInterval(start, scope.toMs));
+        }
+        long total = 0;
+        for (TimeInterval t : remaining) {
+            total += t.getDurationMs();
+        }
+        long durationMs = Math.max(Math.max(1, minDurationMs), total / Math.max(1, parallelism));
+        List<TimeInterval> partitions = new ArrayList<>();
+        for (TimeInterval t : remaining) {
+            for (long from = t.fromMs; from < t.toMs; from += durationMs) {
+                partitions.add(new TimeInterval(from, Math.min(t.toMs, from + durationMs)));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Adds a partition to the sorted list of partitions and merges it with
+     * adjacent or overlapping ones.
+     */
+    static void addPartition(List<TimeInterval> partitions, TimeInterval partition) {
+        long fromMs = partition.fromMs;
+        long toMs = partition.toMs;
+        int idx = 0;
+        for (Iterator<TimeInterval> it = partitions.iterator(); it.hasNext(); ) {
+            TimeInterval t = it.next();
+            if (t.toMs < fromMs) {
+                idx++;
+            } else if (t.fromMs <= toMs) {
+                fromMs = Math.min(fromMs, t.fromMs);
+                toMs = Math.max(toMs, t.toMs);
+                it.remove();
+            }
+        }
+        partitions.add(idx, new TimeInterval(fromMs, toMs));
+    }
+
+    static String formatPartitions(long scopeFromMs, List<TimeInterval> partitions) {
+        StringBuilder sb = new StringBuilder().append(scopeFromMs).append(':');
+        for (int i = 0; i < partitions.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(partitions.get(i).fromMs).append('-').append(partitions.get(i).toMs);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses partitions written by {@link #formatPartitions(long, List)}.
+     * Partitions recorded for a scope with a different start are ignored.
+     */
+    static List<TimeInterval> parsePartitions(String value, long scopeFromMs) {
+        List<TimeInterval> partitions = new ArrayList<>();
+        int idx = value.indexOf(':');
+        try {
+            if (idx < 0 || Long.parseLong(value.substring(0, idx)) != scopeFromMs) {
+                return partitions;
+            }
+            for (String p : value.substring(idx + 1).split(",")) {
+                int sep = p.indexOf('-');
+                if (sep > 0) {
+                    addPartition(partitions, new TimeInterval(
+                            Long.parseLong(p.substring(0, sep)), Long.parseLong(p.substring(sep + 1))));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed {}: {}", SETTINGS_COLLECTION_PARALLEL_GC_PARTITIONS_PROP, value);
+            partitions.clear();
+        }
+        return partitions;
+    }
+
     public void collectGarbageOnDocument(DocumentNodeStore store, NodeDocument doc, boolean verbose) {
         VersionGCStats stats = new VersionGCStats();
         stats.active.start();
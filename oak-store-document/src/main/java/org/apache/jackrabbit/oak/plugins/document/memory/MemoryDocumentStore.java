@@ -33,6 +33,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.jackrabbit.guava.common.base.Splitter;
 import org.apache.jackrabbit.guava.common.collect.ImmutableMap;
+import org.apache.jackrabbit.guava.common.collect.Iterables;
 import org.apache.jackrabbit.guava.common.collect.Maps;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
@@ -47,6 +48,7 @@ import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Condition;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateUtils;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -152,21 +154,8 @@ public class MemoryDocumentStore implements DocumentStore {
             ConcurrentNavigableMap<String, T> sub = map.subMap(fromKey + "\0", toKey);
             ArrayList<T> list = new ArrayList<T>();
             for (T doc : sub.values()) {
-                if (indexedProperty != null) {
-                    Object value = doc.get(indexedProperty);
-                    if (value instanceof Boolean) {
-                        long test = ((Boolean) value) ? 1 : 0;
-                        if (test < startValue) {
-                            continue;
-                        }
-                    } else if (value instanceof Long) {
-                        if ((Long) value < startValue) {
-                            continue;
-                        }
-                    } else if (value != null) {
-                        throw new DocumentStoreException("unexpected type for property " + indexedProperty + ": "
-                                + value.getClass());
-                    }
+                if (!matches(doc, indexedProperty, startValue)) {
+                    continue;
                 }
                 list.add(doc);
                 if (list.size() >= limit) {
@@ -179,6 +168,37 @@ public class MemoryDocumentStore implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> CloseableIterable<T> queryAsIterable(Collection<T> collection,
+                                String fromKey,
+                                String toKey,
+                                String indexedProperty,
+                                long startValue,
+                                int limit) {
+        // iterate over a weakly consistent view on the map, which does not
+        // require to hold the read lock while the caller consumes documents
+        ConcurrentNavigableMap<String, T> sub = getMap(collection).subMap(fromKey + "\0", toKey);
+        return CloseableIterable.wrap(Iterables.limit(
+                Iterables.filter(sub.values(), doc -> matches(doc, indexedProperty, startValue)), limit));
+    }
+
+    private static boolean matches(Document doc, String indexedProperty, long startValue) {
+        if (indexedProperty != null) {
+            Object value = doc.get(indexedProperty);
+            if (value instanceof Boolean) {
+                long test = ((Boolean) value) ? 1 : 0;
+                return test >= startValue;
+            } else if (value instanceof Long) {
+                return (Long) value >= startValue;
+            } else if (value != null) {
+                throw new DocumentStoreException("unexpected type for property " + indexedProperty + ": "
+                        + value.getClass());
+            }
+        }
+        return true;
+    }
+
     @Override
     public <T extends Document> void remove(Collection<T> collection, String key) {
         Lock lock = rwLock.writeLock();
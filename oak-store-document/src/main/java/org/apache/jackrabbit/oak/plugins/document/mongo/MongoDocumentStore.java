@@ -84,6 +84,7 @@ import org.apache.jackrabbit.oak.plugins.document.cache.ModificationStamp;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
@@ -154,6 +155,13 @@ public class MongoDocumentStore implements DocumentStore {
 
     private static final Bson BY_ID_ASC = new BasicDBObject(Document.ID, 1);
 
+    /**
+     * The number of documents fetched per round trip by the server side
+     * cursor of {@link #queryAsIterable(Collection, String, String, String, long, int)}.
+     */
+    private static final int QUERY_CURSOR_BATCH_SIZE = Integer.getInteger(
+            "oak.mongo.queryCursorBatchSize", 1000);
+
     private static final String OPLOG_RS = "oplog.rs";
 
     /**
@@ -262,6 +270,18 @@ public class MongoDocumentStore implements DocumentStore {
     private int bulkRetries =
             Integer.getInteger("oak.mongo.bulkRetries", 0);
 
+    /**
+     * How many times the bulk update request is retried in case of a conflict
+     * when {@link #createOrUpdate(Collection, List)} is called with more
+     * operations than fit into one bulk update. The documents of the failed
+     * updates are then read again with a single query, instead of applying
+     * the failed updates one by one.
+     * <p>
+     * Default is 2.
+     */
+    private int largeBulkRetries =
+            Integer.getInteger("oak.mongo.largeBulkRetries", 2);
+
     /**
      * How many times a query to MongoDB should be retried when it fails with a
      * MongoException.
@@ -797,31 +817,8 @@ public class MongoDocumentStore implements DocumentStore {
                                                          long maxQueryTime) {
         log("query", fromKey, toKey, indexedProperty, startValue, limit);
 
-        List<Bson> clauses = new ArrayList<>();
-        clauses.add(Filters.gt(Document.ID, fromKey));
-        clauses.add(Filters.lt(Document.ID, toKey));
-
-        Bson hint;
-        if (NodeDocument.MODIFIED_IN_SECS.equals(indexedProperty)
-                && canUseModifiedTimeIdx(startValue)) {
-            hint = new BasicDBObject(NodeDocument.MODIFIED_IN_SECS, 1);
-        } else {
-            hint = new BasicDBObject(NodeDocument.ID, 1);
-        }
-
-        if (indexedProperty != null) {
-            if (NodeDocument.DELETED_ONCE.equals(indexedProperty)) {
-                if (startValue != 1) {
-                    throw new DocumentStoreException(
-                            "unsupported value for property " + 
-                                    NodeDocument.DELETED_ONCE);
-                }
-                clauses.add(Filters.eq(indexedProperty, true));
-            } else {
-                clauses.add(Filters.gte(indexedProperty, startValue));
-            }
-        }
-        Bson query = Filters.and(clauses);
+        Bson query = createRangeQuery(fromKey, toKey, indexedProperty, startValue);
+        Bson hint = createRangeQueryHint(indexedProperty, startValue);
         String parentId = Utils.getParentIdFromLowerLimit(fromKey);
         long lockTime = -1;
         final Stopwatch watch = startWatch();
@@ -892,6 +889,75 @@ public class MongoDocumentStore implements DocumentStore {
         }
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> CloseableIterable<T> queryAsIterable(final Collection<T> collection,
+                                                                     final String fromKey,
+                                                                     final String toKey,
+                                                                     final String indexedProperty,
+                                                                     final long startValue,
+                                                                     final int limit) {
+        log("queryAsIterable", fromKey, toKey, indexedProperty, startValue, limit);
+
+        Bson query = createRangeQuery(fromKey, toKey, indexedProperty, startValue);
+        String parentId = Utils.getParentIdFromLowerLimit(fromKey);
+        ReadPreference readPreference =
+                getMongoReadPreference(collection, parentId, getDefaultReadPreference(collection));
+        // no client session and no maxTime: the cursor is consumed at the
+        // pace of the caller and may well outlive both
+        FindIterable<BasicDBObject> result = getDBCollection(collection, readPreference)
+                .find(query).sort(BY_ID_ASC).batchSize(QUERY_CURSOR_BATCH_SIZE);
+        if (limit >= 0) {
+            result.limit(limit);
+        }
+        if (!disableIndexHint && !hasModifiedIdCompoundIndex) {
+            result.hint(createRangeQueryHint(indexedProperty, startValue));
+        }
+
+        MongoCursor<BasicDBObject> cursor;
+        try {
+            cursor = result.iterator();
+        } catch (MongoException e) {
+            throw handleException(e, collection, List.of(fromKey, toKey));
+        }
+        Iterator<T> documents = Iterators.transform(cursor, o -> convertFromDBObject(collection, o));
+        return CloseableIterable.wrap(() -> documents, cursor::close);
+    }
+
+    @NotNull
+    private static Bson createRangeQuery(String fromKey,
+                                         String toKey,
+                                         String indexedProperty,
+                                         long startValue) {
+        List<Bson> clauses = new ArrayList<>();
+        clauses.add(Filters.gt(Document.ID, fromKey));
+        clauses.add(Filters.lt(Document.ID, toKey));
+
+        if (indexedProperty != null) {
+            if (NodeDocument.DELETED_ONCE.equals(indexedProperty)) {
+                if (startValue != 1) {
+                    throw new DocumentStoreException(
+                            "unsupported value for property " + 
+                                    NodeDocument.DELETED_ONCE);
+                }
+                clauses.add(Filters.eq(indexedProperty, true));
+            } else {
+                clauses.add(Filters.gte(indexedProperty, startValue));
+            }
+        }
+        return Filters.and(clauses);
+    }
+
+    @NotNull
+    private Bson createRangeQueryHint(String indexedProperty, long startValue) {
+        if (NodeDocument.MODIFIED_IN_SECS.equals(indexedProperty)
+                && canUseModifiedTimeIdx(startValue)) {
+            return new BasicDBObject(NodeDocument.MODIFIED_IN_SECS, 1);
+        } else {
+            return new BasicDBObject(NodeDocument.ID, 1);
+        }
+    }
+
     boolean canUseModifiedTimeIdx(long modifiedTimeInSecs) {
         if (maxDeltaForModTimeIdxSecs < 0) {
             return false;
@@ -1340,7 +1406,11 @@ public class MongoDocumentStore implements DocumentStore {
                 oldDocs.putAll((Map<String, T>) getCachedNodes(operationsToCover.keySet()));
             }
 
-            for (int i = 0; i <= bulkRetries; i++) {
+            int retries = bulkRetries;
+            if (operationsToCover.size() > bulkSize) {
+                retries = Math.max(retries, largeBulkRetries);
+            }
+            for (int i = 0; i <= retries; i++) {
                 if (operationsToCover.size() <= 2) {
                     // bulkUpdate() method invokes Mongo twice, so sending 2 updates
                     // in bulk mode wouldn't result in any performance gain
@@ -22,6 +22,7 @@ import org.apache.jackrabbit.oak.plugins.document.LocalDiffCache;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.JournalDiffIndex;
 import org.apache.jackrabbit.oak.plugins.document.MemoryDiffCache;
 import org.apache.jackrabbit.oak.plugins.document.NamePathRev;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
@@ -30,6 +31,7 @@ import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.util.RevisionsKey;
 import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.StringDataType;
 
@@ -274,6 +276,50 @@ public enum CacheType {
             return (V) LocalDiffCache.Diff.fromString(readString(buffer));
         }
 
+        @Override
+        public <K> boolean shouldCache(DocumentNodeStore store, K key) {
+            return true;
+        }
+    },
+
+    JOURNAL_DIFF_INDEX {
+
+        @Override
+        public <K> void writeKey(WriteBuffer buffer, K key) {
+            DataTypeUtil.revisionVectorToBuffer((RevisionVector) key, buffer);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K> K readKey(ByteBuffer buffer) {
+            return (K) DataTypeUtil.revisionVectorFromBuffer(buffer);
+        }
+
+        @Override
+        public <K> int compareKeys(K a, K b) {
+            return ((RevisionVector) a).compareTo((RevisionVector) b);
+        }
+
+        @Override
+        public <V> void writeValue(WriteBuffer buffer, V value) {
+            JournalDiffIndex.Changes changes = (JournalDiffIndex.Changes) value;
+            DataTypeUtil.revisionVectorToBuffer(changes.getToRevision(), buffer);
+            byte[] data = changes.getData();
+            buffer.putVarInt(data.length);
+            buffer.put(data);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <V> V readValue(DocumentNodeStore store,
+                               DocumentStore docStore,
+                               ByteBuffer buffer) {
+            RevisionVector to = DataTypeUtil.revisionVectorFromBuffer(buffer);
+            byte[] data = new byte[DataUtils.readVarInt(buffer)];
+            buffer.get(data);
+            return (V) new JournalDiffIndex.Changes(to, data);
+        }
+
         @Override
         public <K> boolean shouldCache(DocumentNodeStore store, K key) {
             return true;
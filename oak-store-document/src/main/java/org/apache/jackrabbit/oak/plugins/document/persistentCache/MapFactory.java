@@ -77,4 +77,14 @@ public abstract class MapFactory {
      */
     abstract long getFileSize();
 
+    /**
+     * Whether the store cannot take more entries, independent of the
+     * configured maximum size.
+     *
+     * @return {@code true} if the store is full
+     */
+    boolean isFull() {
+        return false;
+    }
+
 }
@@ -0,0 +1,596 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.ObjectDataType;
+
+/**
+ * A {@link MapFactory} backed by a log-structured, memory-mapped file instead
+ * of an H2 {@code MVStore}. All maps of a store share the file and a single
+ * open-addressing index.
+ * <p>
+ * Entries are appended to the file as records of the form 'map id, key length,
+ * value length, key, value'. A value length of {@code -1} marks a removed
+ * entry and a key length of {@code -1} marks a cleared map. Records are never
+ * rewritten: once the file or the index is full, {@link #isFull()} returns
+ * {@code true} and the {@link PersistentCache} switches to a new generation,
+ * which replaces the compaction of the H2 store. When an existing file is
+ * opened, the index is rebuilt by replaying the records.
+ * <p>
+ * The index is an array of longs, each slot holding the 32 bit hash of the
+ * map id and the serialized key in the upper half and the offset of the record
+ * in the lower half. Writes are serialized, while reads do not lock: a slot is
+ * published with a volatile write after its record was written. Looking up a
+ * key compares the serialized key with the record in the mapped file, so only
+ * the value returned on a hit is allocated.
+ */
+class MappedFileMapFactory extends MapFactory {
+
+    private static final int MAGIC = 0x4f616b43; // "OakC"
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int RECORD_HEADER_LENGTH = 12;
+
+    private static final long EMPTY = 0L;
+
+    private static final long REMOVED = -1L;
+
+    /**
+     * Expected minimum average size of a record, used to size the index.
+     */
+    private static final int BYTES_PER_SLOT = 512;
+
+    private static final int MIN_SLOTS = 1024;
+
+    private final String fileName;
+
+    private final int capacity;
+
+    private final boolean readOnly;
+
+    private final Map<String, Integer> mapIds = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<WriteBuffer> keyBuffer = ThreadLocal.withInitial(() -> new WriteBuffer(256));
+
+    private final WriteBuffer writeBuffer = new WriteBuffer();
+
+    private volatile Store store;
+
+    /**
+     * @param fileName the name of the file.
+     * @param maxSizeMB the maximum size of the file in MB.
+     * @param readOnly whether the file is opened read-only.
+     */
+    MappedFileMapFactory(String fileName, int maxSizeMB, boolean readOnly) {
+        this.fileName = fileName;
+        long size = ((long) maxSizeMB + 1) * 1024 * 1024;
+        if (size > Integer.MAX_VALUE) {
+            // a single mapped buffer is limited to 2 GB
+            LOG.warn("The maximum size of {} MB is larger than supported for a " +
+                    "memory-mapped cache file, using {} MB for {}",
+                    maxSizeMB, Integer.MAX_VALUE / 1024 / 1024, fileName);
+            size = Integer.MAX_VALUE;
+        }
+        this.capacity = (int) size;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    synchronized void openStore() {
+        if (store != null) {
+            return;
+        }
+        try {
+            store = new Store(new File(fileName));
+        } catch (IOException e) {
+            LOG.warn("Could not open the store " + fileName, e);
+        }
+    }
+
+    @Override
+    synchronized void closeStore() {
+        Store s = store;
+        store = null;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    @Override
+    <K, V> Map<K, V> openMap(String name, MVMap.Builder<K, V> builder) {
+        if (store == null) {
+            return null;
+        }
+        DataType<K> keyType = builder == null ? null : builder.getKeyType();
+        DataType<V> valueType = builder == null ? null : builder.getValueType();
+        return new MappedMap<>(mapIds.computeIfAbsent(name, MappedFileMapFactory::mapId),
+                keyType != null ? keyType : cast(new ObjectDataType()),
+                valueType != null ? valueType : cast(new ObjectDataType()));
+    }
+
+    @Override
+    long getFileSize() {
+        Store s = store;
+        return s == null ? 0 : s.position;
+    }
+
+    @Override
+    boolean isFull() {
+        Store s = store;
+        return s != null && s.full;
+    }
+
+    private static int mapId(String name) {
+        int id = name.hashCode();
+        // zero marks the end of the records
+        return id == 0 ? 1 : id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> DataType<T> cast(DataType<?> type) {
+        return (DataType<T>) type;
+    }
+
+    private static int hash(int mapId, ByteBuffer key, int length) {
+        int h = mapId * 0x9e3779b9;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + key.get(i);
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static long slot(int hash, int offset) {
+        return ((long) hash << 32) | offset;
+    }
+
+    private static int offset(long slot) {
+        return (int) slot;
+    }
+
+    private static int hash(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    /**
+     * The mapped file and its index.
+     */
+    private final class Store {
+
+        private final RandomAccessFile file;
+
+        private final MappedByteBuffer buffer;
+
+        private final ThreadLocal<ByteBuffer> readBuffer;
+
+        private final AtomicLongArray index;
+
+        private final int mask;
+
+        /**
+         * The number of used slots, including slots of removed entries.
+         */
+        private int used;
+
+        private volatile int position = HEADER_LENGTH;
+
+        private volatile boolean full;
+
+        private volatile boolean closed;
+
+        Store(File f) throws IOException {
+            int size = readOnly ? (int) Math.min(f.length(), capacity) : capacity;
+            file = new RandomAccessFile(f, readOnly ? "r" : "rw");
+            try {
+                if (!readOnly && file.length() >= 4 && file.readInt() != MAGIC) {
+                    LOG.info("Discarding unknown content of " + fileName);
+                    file.setLength(0);
+                }
+                buffer = file.getChannel().map(readOnly ? FileChannel.MapMode.READ_ONLY
+                        : FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            readBuffer = ThreadLocal.withInitial(buffer::duplicate);
+            int slots = Integer.highestOneBit(Math.max(MIN_SLOTS, capacity / BYTES_PER_SLOT) - 1) << 1;
+            index = new AtomicLongArray(slots);
+            mask = slots - 1;
+            if (size >= HEADER_LENGTH && buffer.getInt(0) == MAGIC) {
+                replay();
+            } else if (!readOnly) {
+                buffer.putInt(0, MAGIC);
+            } else {
+                full = true;
+            }
+        }
+
+        /**
+         * Rebuild the index from the records in the file.
+         */
+        private void replay() {
+            int pos = HEADER_LENGTH;
+            int limit = buffer.capacity();
+            while (pos + RECORD_HEADER_LENGTH <= limit) {
+                int mapId = buffer.getInt(pos);
+                if (mapId == 0) {
+                    break;
+                }
+                int keyLength = buffer.getInt(pos + 4);
+                int valueLength = buffer.getInt(pos + 8);
+                if (keyLength < -1 || valueLength < -1) {
+                    LOG.warn("Invalid record at {} in {}", pos, fileName);
+                    break;
+                }
+                if (keyLength < 0) {
+                    removeAll(mapId);
+                    pos += RECORD_HEADER_LENGTH;
+                    continue;
+                }
+                int length = RECORD_HEADER_LENGTH + keyLength + Math.max(0, valueLength);
+                if (pos + length > limit) {
+                    break;
+                }
+                ByteBuffer key = buffer.duplicate();
+                ((Buffer) key).position(pos + RECORD_HEADER_LENGTH);
+                key = key.slice();
+                int h = hash(mapId, key, keyLength);
+                if (!update(mapId, h, key, keyLength, valueLength < 0 ? REMOVED : slot(h, pos))) {
+                    full = true;
+                    break;
+                }
+                pos += length;
+            }
+            position = pos;
+        }
+
+        /**
+         * Find the slot of the entry with the given key.
+         *
+         * @return the slot index or -1 if there is no such entry.
+         */
+        int find(int mapId, int hash, ByteBuffer key, int keyLength) {
+            for (int i = hash & mask, n = 0; n <= mask; i = (i + 1) & mask, n++) {
+                long s = index.get(i);
+                if (s == EMPTY) {
+                    return -1;
+                }
+                if (s != REMOVED && hash(s) == hash && keyEquals(offset(s), mapId, key, keyLength)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean keyEquals(int offset, int mapId, ByteBuffer key, int keyLength) {
+            if (buffer.getInt(offset) != mapId || buffer.getInt(offset + 4) != keyLength) {
+                return false;
+            }
+            int start = offset + RECORD_HEADER_LENGTH;
+            for (int i = 0; i < keyLength; i++) {
+                if (buffer.get(start + i) != key.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Set, replace or remove the entry for the given key in the index.
+         * Must be called with the write lock held.
+         *
+         * @return {@code false} if the index is full.
+         */
+        private boolean update(int mapId, int hash, ByteBuffer key, int keyLength, long slot) {
+            int i = find(mapId, hash, key, keyLength);
+            if (i >= 0) {
+                index.set(i, slot);
+                return true;
+            }
+            if (slot == REMOVED) {
+                return true;
+            }
+            if (used >= mask - (mask >> 2)) {
+                return false;
+            }
+            for (i = hash & mask; ; i = (i + 1) & mask) {
+                long s = index.get(i);
+                if (s == EMPTY || s == REMOVED) {
+                    if (s == EMPTY) {
+                        used++;
+                    }
+                    index.set(i, slot);
+                    return true;
+                }
+            }
+        }
+
+        private void removeAll(int mapId) {
+            for (int i = 0; i <= mask; i++) {
+                long s = index.get(i);
+                if (s != EMPTY && s != REMOVED && buffer.getInt(offset(s)) == mapId) {
+                    index.set(i, REMOVED);
+                }
+            }
+        }
+
+        ByteBuffer readKey(int offset) {
+            ByteBuffer b = buffer.duplicate();
+            int start = offset + RECORD_HEADER_LENGTH;
+            ((Buffer) b).limit(start + buffer.getInt(offset + 4));
+            ((Buffer) b).position(start);
+            return b;
+        }
+
+        ByteBuffer read(int offset) {
+            ByteBuffer b = readBuffer.get();
+            int keyLength = buffer.getInt(offset + 4);
+            int valueLength = buffer.getInt(offset + 8);
+            int start = offset + RECORD_HEADER_LENGTH + keyLength;
+            ((Buffer) b).limit(start + valueLength);
+            ((Buffer) b).position(start);
+            return b;
+        }
+
+        /**
+         * Append a record and update the index. Must be called with the write
+         * lock held.
+         *
+         * @param value the serialized value or {@code null} to remove the
+         *              entry or clear the map if the key is {@code null} as
+         *              well.
+         */
+        void append(int mapId, ByteBuffer key, int keyLength, ByteBuffer value, int valueLength) {
+            if (readOnly || full || closed) {
+                return;
+            }
+            int pos = position;
+            int length = RECORD_HEADER_LENGTH + Math.max(0, keyLength) + Math.max(0, valueLength);
+            if ((long) pos + length + 4 > buffer.capacity()) {
+                full = true;
+                return;
+            }
+            int h = 0;
+            if (keyLength >= 0) {
+                h = hash(mapId, key, keyLength);
+                if (value != null && find(mapId, h, key, keyLength) < 0
+                        && used >= mask - (mask >> 2)) {
+                    full = true;
+                    return;
+                }
+            }
+            buffer.putInt(pos + 4, keyLength);
+            buffer.putInt(pos + 8, valueLength);
+            int start = pos + RECORD_HEADER_LENGTH;
+            for (int i = 0; i < keyLength; i++) {
+                buffer.put(start + i, key.get(i));
+            }
+            start += Math.max(0, keyLength);
+            for (int i = 0; i < valueLength; i++) {
+                buffer.put(start + i, value.get(i));
+            }
+            // the map id is written last, it marks the record as complete
+            buffer.putInt(pos, mapId);
+            position = pos + length;
+            if (keyLength < 0) {
+                removeAll(mapId);
+            } else {
+                update(mapId, h, key, keyLength, value == null ? REMOVED : slot(h, pos));
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                if (!readOnly) {
+                    buffer.force();
+                }
+                file.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close the store " + fileName, e);
+            }
+        }
+    }
+
+    /**
+     * A map in the store. Lookups and updates use the index; iterating over
+     * the entries scans the whole index, and is only weakly consistent with
+     * concurrent updates.
+     */
+    private final class MappedMap<K, V> extends AbstractMap<K, V> {
+
+        private final int mapId;
+
+        private final DataType<K> keyType;
+
+        private final DataType<V> valueType;
+
+        MappedMap(int mapId, DataType<K> keyType, DataType<V> valueType) {
+            this.mapId = mapId;
+            this.keyType = keyType;
+            this.valueType = valueType;
+        }
+
+        private Store getStore() {
+            Store s = store;
+            if (s == null || s.closed) {
+                throw new IllegalStateException("Store is closed: " + fileName);
+            }
+            return s;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ByteBuffer serializeKey(Object key) {
+            WriteBuffer buff = keyBuffer.get();
+            buff.clear();
+            keyType.write(buff, (K) key);
+            return buff.getBuffer();
+        }
+
+        @Override
+        public V get(Object key) {
+            Store s = getStore();
+            ByteBuffer k = serializeKey(key);
+            int length = k.position();
+            int i = s.find(mapId, hash(mapId, k, length), k, length);
+            if (i < 0) {
+                return null;
+            }
+            return valueType.read(s.read(offset(s.index.get(i))));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Store s = getStore();
+            ByteBuffer k = serializeKey(key);
+            int length = k.position();
+            return s.find(mapId, hash(mapId, k, length), k, length) >= 0;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            Store s = getStore();
+            ByteBuffer k = serializeKey(key);
+            synchronized (MappedFileMapFactory.this) {
+                writeBuffer.clear();
+                valueType.write(writeBuffer, value);
+                ByteBuffer v = writeBuffer.getBuffer();
+                s.append(mapId, k, k.position(), v, v.position());
+            }
+            // like CacheMap, the previous value is not returned
+            return null;
+        }
+
+        @Override
+        public V remove(Object key) {
+            Store s = getStore();
+            ByteBuffer k = serializeKey(key);
+            synchronized (MappedFileMapFactory.this) {
+                s.append(mapId, k, k.position(), null, -1);
+            }
+            return null;
+        }
+
+        @Override
+        public void clear() {
+            Store s = getStore();
+            synchronized (MappedFileMapFactory.this) {
+                s.append(mapId, null, -1, null, 0);
+            }
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator(getStore());
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Iterator<Entry<K, V>> it = iterator(); it.hasNext(); it.next()) {
+                        size++;
+                    }
+                    return size;
+                }
+            };
+        }
+
+        /**
+         * Iterates over the slots of the index that point to a record of this
+         * map.
+         */
+        private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+            private final Store s;
+
+            private int index;
+
+            private Entry<K, V> next;
+
+            private Entry<K, V> last;
+
+            EntryIterator(Store s) {
+                this.s = s;
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && index <= s.mask) {
+                    long slot = s.index.get(index++);
+                    if (slot == EMPTY || slot == REMOVED) {
+                        continue;
+                    }
+                    int offset = offset(slot);
+                    if (s.buffer.getInt(offset) != mapId) {
+                        continue;
+                    }
+                    K key = keyType.read(s.readKey(offset));
+                    V value = valueType.read(s.read(offset));
+                    next = new SimpleImmutableEntry<>(key, value);
+                }
+                return next != null;
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = null;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                MappedMap.this.remove(last.getKey());
+                last = null;
+            }
+        }
+    }
+}
@@ -56,17 +56,20 @@ public class PersistentCache implements Broadcaster.Listener {
 
     private static final String FILE_PREFIX = "cache-";
     private static final String FILE_SUFFIX = ".data";
+    private static final String MAPPED_FILE_SUFFIX = ".mmap";
     private static final AtomicInteger COUNTER = new AtomicInteger();
 
     private boolean cacheNodes = true;
     private boolean cacheChildren = true;
     private boolean cacheDiff = true;
     private boolean cacheLocalDiff = true;
+    private boolean cacheJournalDiffIndex = true;
     private boolean cachePrevDocs = true;
     private boolean compactOnClose;
     private boolean compress = true;
     private boolean asyncCache = true;
     private boolean asyncDiffCache = false;
+    private boolean mappedFile;
     private HashMap<CacheType, GenerationCache> caches = 
             new HashMap<CacheType, GenerationCache>();
 
@@ -117,6 +120,8 @@ public class PersistentCache implements Broadcaster.Listener {
                 cacheDiff = false;
             } else if (p.equals("-localDiff")) {
                 cacheLocalDiff = false;
+            } else if (p.equals("-journalDiffIndex")) {
+                cacheJournalDiffIndex = false;
             } else if (p.equals("+all")) {
                 logUnsupportedWarning("all");
             } else if (p.equals("-compact")) {
@@ -145,6 +150,13 @@ public class PersistentCache implements Broadcaster.Listener {
                 asyncCache = false;
             } else if (p.equals("+asyncDiff")) {
                 asyncDiffCache = true;
+            } else if (p.startsWith("engine=")) {
+                String engine = p.split("=")[1];
+                if (engine.equals("mmap")) {
+                    mappedFile = true;
+                } else if (!engine.equals("h2")) {
+                    LOG.warn("Unknown persistent cache engine '{}', using h2", engine);
+                }
             }
         }
         this.directory = dir;
@@ -161,13 +173,14 @@ public class PersistentCache implements Broadcaster.Listener {
         if (dr.exists() && !dr.isDirectory()) {
             throw new IllegalArgumentException("A file exists at cache directory " + dir);
         }
+        String suffix = getFileSuffix();
         File[] list = dr.listFiles();
         TreeSet<Integer> generations = new TreeSet<Integer>();
         if (list != null) {
             for (File f : list) {
                 String fn = f.getName();
-                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(FILE_SUFFIX)) {
-                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(FILE_SUFFIX));
+                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(suffix)) {
+                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(suffix));
                     try {
                         int gen = Integer.parseInt(g);
                         if (gen >= 0) {
@@ -244,10 +257,20 @@ public class PersistentCache implements Broadcaster.Listener {
         if (directory.length() == 0) {
             return null;
         }
-        return directory + "/" + FILE_PREFIX + generation + FILE_SUFFIX;
+        return directory + "/" + FILE_PREFIX + generation + getFileSuffix();
+    }
+
+    private String getFileSuffix() {
+        return mappedFile ? MAPPED_FILE_SUFFIX : FILE_SUFFIX;
     }
     
     private MapFactory createMapFactory(final int generation, final boolean readOnly) {
+        String fileName = getFileName(generation);
+        if (mappedFile && fileName != null) {
+            MapFactory f = new MappedFileMapFactory(fileName, maxSizeMB, readOnly);
+            f.openStore();
+            return f;
+        }
         MapFactory f = new MapFactory() {
             
             final String fileName = getFileName(generation);
@@ -417,6 +440,10 @@ public class PersistentCache implements Broadcaster.Listener {
             wrap = cacheLocalDiff;
             async = asyncDiffCache;
             break;
+        case JOURNAL_DIFF_INDEX:
+            wrap = cacheJournalDiffIndex;
+            async = asyncDiffCache;
+            break;
         case PREV_DOCUMENT:
             wrap = cachePrevDocs;
             break;
@@ -487,6 +514,9 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     boolean needSwitch() {
+        if (writeStore.isFull()) {
+            return true;
+        }
         long size = writeStore.getFileSize();
         if (size / 1024 / 1024 <= maxSizeMB) {
             return false;
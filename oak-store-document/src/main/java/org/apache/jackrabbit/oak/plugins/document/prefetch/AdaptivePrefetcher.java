@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.prefetch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreStatsCollector;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Predicts which node documents will be read next, based on the sequence of
+ * node cache misses, and prefetches them with batched asynchronous
+ * {@link DocumentStore#prefetch(Collection, Iterable)} calls. Two access
+ * patterns are learned:
+ * <ul>
+ *     <li>Child reads: for all nodes with the same parent pattern (the
+ *     parent path followed by {@code /*}), the names of child nodes that
+ *     are read right after the node itself are counted. Children read after
+ *     at least {@link #CHILD_RATIO_PERCENT} percent of the nodes of a pattern
+ *     are prefetched together with the next node of that pattern.</li>
+ *     <li>Sibling runs: when a thread reads {@link #SIBLING_RUN_LENGTH}
+ *     consecutive siblings, the next {@link #SIBLING_BATCH_SIZE} siblings are
+ *     prefetched, provided the children of the parent are cached.</li>
+ * </ul>
+ * A later read of a prefetched document is reported as a hit to the
+ * {@link DocumentNodeStoreStatsCollector}, which corresponds to a saved round
+ * trip to the {@code DocumentStore}.
+ */
+public class AdaptivePrefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptivePrefetcher.class);
+
+    /**
+     * Minimum number of reads of a pattern before child reads are predicted.
+     */
+    static final int MIN_OBSERVATIONS = 4;
+
+    static final int CHILD_RATIO_PERCENT = 50;
+
+    static final int SIBLING_RUN_LENGTH = 2;
+
+    static final int SIBLING_BATCH_SIZE = 50;
+
+    private static final int MAX_PATTERNS = 1024;
+
+    private static final int MAX_CHILD_NAMES_PER_PATTERN = 16;
+
+    private static final int MAX_PREFETCHED = 10000;
+
+    /**
+     * Provides the names of the children of a node if they are cached.
+     */
+    public interface CachedChildNames {
+
+        /**
+         * @param parent the path of the parent node.
+         * @param readRevision the read revision.
+         * @return the ascending sorted names of the child nodes or
+         *          {@code null} if they are not cached.
+         */
+        @Nullable
+        Iterable<String> get(@NotNull Path parent,
+                             @NotNull RevisionVector readRevision);
+    }
+
+    private final DocumentStore store;
+
+    private final Executor executor;
+
+    private final DocumentNodeStoreStatsCollector stats;
+
+    private final CachedChildNames childNames;
+
+    private final Cache<String, PatternStats> patterns = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PATTERNS).build();
+
+    /**
+     * The ids of documents prefetched and not read yet.
+     */
+    private final Cache<String, Boolean> prefetched = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PREFETCHED).build();
+
+    private final ThreadLocal<ReadState> lastRead = ThreadLocal.withInitial(ReadState::new);
+
+    public AdaptivePrefetcher(@NotNull DocumentStore store,
+                              @NotNull Executor executor,
+                              @NotNull DocumentNodeStoreStatsCollector stats,
+                              @NotNull CachedChildNames childNames) {
+        this.store = requireNonNull(store);
+        this.executor = requireNonNull(executor);
+        this.stats = requireNonNull(stats);
+        this.childNames = requireNonNull(childNames);
+    }
+
+    /**
+     * Called when the node at the given path is not in the node cache and
+     * about to be read from the {@code DocumentStore}.
+     *
+     * @param path the path of the node.
+     * @param readRevision the read revision.
+     */
+    public void onRead(@NotNull Path path, @NotNull RevisionVector readRevision) {
+        String id = Utils.getIdFromPath(path);
+        boolean hit = prefetched.asMap().remove(id) != null;
+        if (hit) {
+            stats.prefetchHit();
+        }
+
+        ReadState state = lastRead.get();
+        Path previous = state.path;
+        Path parent = path.getParent();
+        state.path = path;
+        if (parent == null) {
+            state.siblingRun = 0;
+            return;
+        }
+
+        // learn
+        if (previous != null && parent.equals(previous.getParent())) {
+            state.siblingRun++;
+        } else {
+            state.siblingRun = 1;
+        }
+        if (previous != null && parent.equals(previous)) {
+            PatternStats parentStats = getPatternStats(previous);
+            if (parentStats != null) {
+                parentStats.childRead(path.getName());
+            }
+        }
+        PatternStats ps = getPatternStats(path);
+        if (ps != null) {
+            ps.reads.incrementAndGet();
+        }
+
+        // predict
+        List<String> ids = new ArrayList<>();
+        addPredictedChildren(path, ps, ids);
+        if (!hit && state.siblingRun >= SIBLING_RUN_LENGTH) {
+            // reading beyond previously prefetched siblings
+            addNextSiblings(path, readRevision, ps, ids);
+        }
+        prefetch(ids);
+    }
+
+    private void addPredictedChildren(Path path, PatternStats ps, List<String> ids) {
+        if (ps == null) {
+            return;
+        }
+        for (String name : ps.getPredictedChildNames()) {
+            addIfNotCached(new Path(path, name), ids);
+        }
+    }
+
+    private void addNextSiblings(Path path,
+                                 RevisionVector readRevision,
+                                 PatternStats ps,
+                                 List<String> ids) {
+        Iterable<String> names = childNames.get(path.getParent(), readRevision);
+        if (names == null) {
+            return;
+        }
+        boolean after = false;
+        int count = 0;
+        for (String name : names) {
+            if (after) {
+                Path sibling = new Path(path.getParent(), name);
+                addIfNotCached(sibling, ids);
+                addPredictedChildren(sibling, ps, ids);
+                if (++count >= SIBLING_BATCH_SIZE) {
+                    break;
+                }
+            } else if (name.equals(path.getName())) {
+                after = true;
+            }
+        }
+    }
+
+    private void addIfNotCached(Path path, List<String> ids) {
+        String id = Utils.getIdFromPath(path);
+        if (prefetched.getIfPresent(id) == null
+                && store.getIfCached(Collection.NODES, id) == null) {
+            ids.add(id);
+        }
+    }
+
+    private void prefetch(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (String id : ids) {
+            prefetched.put(id, Boolean.TRUE);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    store.prefetch(Collection.NODES, ids);
+                    stats.donePrefetch(ids.size());
+                } catch (Exception e) {
+                    LOG.debug("Prefetch of {} documents failed", ids.size(), e);
+                    prefetched.invalidateAll(ids);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // prefetch already busy, skip this one
+            prefetched.invalidateAll(ids);
+        }
+    }
+
+    @Nullable
+    private PatternStats getPatternStats(@NotNull Path path) {
+        Path parent = path.getParent();
+        if (parent == null) {
+            return null;
+        }
+        String pattern = parent.toString() + "/*";
+        PatternStats ps = patterns.getIfPresent(pattern);
+        if (ps == null) {
+            ps = patterns.asMap().computeIfAbsent(pattern, k -> new PatternStats());
+        }
+        return ps;
+    }
+
+    private static final class ReadState {
+
+        Path path;
+
+        int siblingRun;
+    }
+
+    private static final class PatternStats {
+
+        final AtomicInteger reads = new AtomicInteger();
+
+        final Map<String, AtomicInteger> childReads = new ConcurrentHashMap<>();
+
+        void childRead(String name) {
+            AtomicInteger count = childReads.get(name);
+            if (count == null) {
+                if (childReads.size() >= MAX_CHILD_NAMES_PER_PATTERN) {
+                    return;
+                }
+                count = childReads.computeIfAbsent(name, k -> new AtomicInteger());
+            }
+            count.incrementAndGet();
+        }
+
+        List<String> getPredictedChildNames() {
+            int r = reads.get();
+            if (r < MIN_OBSERVATIONS) {
+                return List.of();
+            }
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, AtomicInteger> e : childReads.entrySet()) {
+                if (e.getValue().get() * 100L >= (long) r * CHILD_RATIO_PERCENT) {
+                    names.add(e.getKey());
+                }
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compact binary encoding of the non-column properties of a {@link Document},
+ * used as an alternative to JSON in the BDATA column.
+ * <p>
+ * The encoding starts with {@link #SIGNATURE} followed by the number of
+ * properties and the properties themselves. Revisions are written as varints
+ * (timestamp, counter, clusterId and branch flag) instead of their string
+ * representation and maps are written as a varint size followed by the
+ * entries. The signature never occurs at the start of a JSON object or of a
+ * GZIP stream, which allows readers to tell the formats apart.
+ */
+final class RDBCompactEncoding {
+
+    /**
+     * Signature and format version of the encoding.
+     */
+    static final byte[] SIGNATURE = { 0, 'O', 'C', 1 };
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int MAP = 6;
+
+    private RDBCompactEncoding() {
+    }
+
+    /**
+     * @return {@code true} if the data starts with the signature of this
+     *          encoding.
+     */
+    static boolean isCompact(@NotNull byte[] data) {
+        if (data.length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (data[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes all non-column properties of the {@link Document}.
+     */
+    @NotNull
+    static byte[] encode(@NotNull Document doc, @NotNull Set<String> columnProperties) {
+        Writer w = new Writer();
+        w.bytes(SIGNATURE);
+        int count = 0;
+        for (String key : doc.keySet()) {
+            if (!columnProperties.contains(key)) {
+                count++;
+            }
+        }
+        w.varLong(count);
+        for (Map.Entry<String, Object> entry : doc.entrySet()) {
+            if (!columnProperties.contains(entry.getKey())) {
+                w.string(entry.getKey());
+                w.value(entry.getValue());
+            }
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * Decodes the properties in {@code data} into the {@link Document}.
+     */
+    static void decode(@NotNull byte[] data, @NotNull Document doc) {
+        if (!isCompact(data)) {
+            throw new DocumentStoreException("Not a compact encoded document");
+        }
+        Reader r = new Reader(data, SIGNATURE.length);
+        try {
+            long count = r.varLong();
+            for (long i = 0; i < count; i++) {
+                String key = r.string();
+                doc.put(key, r.value());
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new DocumentStoreException("Truncated compact encoded document", e);
+        }
+        if (r.pos != data.length) {
+            throw new DocumentStoreException("Unexpected trailing data in compact encoded document");
+        }
+    }
+
+    private static final class Writer {
+
+        private byte[] buf = new byte[1024];
+
+        private int pos;
+
+        void value(Object value) {
+            if (value == null) {
+                write(NULL);
+            } else if (value instanceof Boolean) {
+                write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte) {
+                write(LONG);
+                long v = ((Number) value).longValue();
+                varLong((v << 1) ^ (v >> 63));
+            } else if (value instanceof Number) {
+                write(DOUBLE);
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int i = 56; i >= 0; i -= 8) {
+                    write((int) (bits >>> i));
+                }
+            } else if (value instanceof String) {
+                write(STRING);
+                string((String) value);
+            } else if (value instanceof Map) {
+                write(MAP);
+                Map<?, ?> map = (Map<?, ?>) value;
+                varLong(map.size());
+                for (Map.Entry<?, ?> e : map.entrySet()) {
+                    Object k = e.getKey();
+                    revision(k instanceof Revision ? (Revision) k : Revision.fromString(k.toString()));
+                    value(e.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("unexpected type: " + value.getClass());
+            }
+        }
+
+        void revision(Revision r) {
+            varLong(r.getTimestamp());
+            varLong(r.getCounter());
+            varLong(((long) r.getClusterId() << 1) | (r.isBranch() ? 1 : 0));
+        }
+
+        void string(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varLong(b.length);
+            bytes(b);
+        }
+
+        void varLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void bytes(byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, buf, pos, b.length);
+            pos += b.length;
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            buf[pos++] = (byte) b;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensureCapacity(int len) {
+            if (pos + len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + len));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buf;
+
+        private int pos;
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        Object value() {
+            int type = buf[pos++];
+            switch (type) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case LONG:
+                    long v = varLong();
+                    return (v >>> 1) ^ -(v & 1);
+                case DOUBLE:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | (buf[pos++] & 0xFF);
+                    }
+                    return Double.longBitsToDouble(bits);
+                case STRING:
+                    return string();
+                case MAP:
+                    Map<Revision, Object> map = new TreeMap<>(StableRevisionComparator.REVERSE);
+                    long size = varLong();
+                    for (long i = 0; i < size; i++) {
+                        Revision r = revision();
+                        map.put(r, value());
+                    }
+                    return map;
+                default:
+                    throw new DocumentStoreException("Unknown value type " + type + " at offset " + (pos - 1));
+            }
+        }
+
+        Revision revision() {
+            long timestamp = varLong();
+            int counter = (int) varLong();
+            long c = varLong();
+            return new Revision(timestamp, counter, (int) (c >>> 1), (c & 1) != 0);
+        }
+
+        String string() {
+            int len = (int) varLong();
+            if (len < 0 || pos + len > buf.length) {
+                throw new DocumentStoreException("Invalid string length " + len + " at offset " + pos);
+            }
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        long varLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new DocumentStoreException("Malformed varint at offset " + pos);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
@@ -71,8 +72,21 @@ public class RDBDocumentSerializer {
 
     private static final RDBJSONSupport JSON = new RDBJSONSupport(true);
 
+    private final BooleanSupplier compactEncoding;
+
     public RDBDocumentSerializer(DocumentStore store) {
+        this(store, () -> false);
+    }
+
+    /**
+     * @param store the document store.
+     * @param compactEncoding whether the BDATA column is written with the
+     *          compact binary encoding instead of JSON. Documents in either
+     *          format can always be read.
+     */
+    public RDBDocumentSerializer(DocumentStore store, BooleanSupplier compactEncoding) {
         this.store = store;
+        this.compactEncoding = requireNonNull(compactEncoding);
     }
 
     /**
@@ -97,6 +111,20 @@ public class RDBDocumentSerializer {
         return sb.toString();
     }
 
+    /**
+     * Serializes all non-column properties of the {@link Document} for the
+     * BDATA column, either with the compact binary encoding or, based on the
+     * JSON string previously obtained from
+     * {@link #asString(Document, Set)}, as (compressed) JSON.
+     */
+    public byte[] asBlobData(@NotNull Document doc, Set<String> columnProperties, @NotNull String data) {
+        if (compactEncoding.getAsBoolean()) {
+            return RDBDocumentStore.asBytes(RDBCompactEncoding.encode(doc, columnProperties));
+        } else {
+            return RDBDocumentStore.asBytes(data);
+        }
+    }
+
     /**
      * Serializes the changes in the {@link UpdateOp} into a JSON array; each
      * entry is another JSON array holding operation, key, revision, and value.
@@ -184,15 +212,19 @@ public class RDBDocumentSerializer {
         // update operations
         try {
             if (bdata != null && bdata.length != 0) {
-                String s = fromBlobData(bdata);
-                json = new JsopTokenizer(s);
-                json.read('{');
-                readDocumentFromJson(json, doc);
-                json.read(JsopReader.END);
+                byte[] data = fromBlobData(bdata);
+                if (RDBCompactEncoding.isCompact(data)) {
+                    RDBCompactEncoding.decode(data, doc);
+                } else {
+                    json = new JsopTokenizer(new String(data, StandardCharsets.UTF_8));
+                    json.read('{');
+                    readDocumentFromJson(json, doc);
+                    json.read(JsopReader.END);
+                }
                 blobInUse = true;
             }
         } catch (Exception ex) {
-            throw asDocumentStoreException(ex, "parsing blob data as JSON");
+            throw asDocumentStoreException(ex, "parsing blob data");
         }
 
         json = new JsopTokenizer(charData);
@@ -342,15 +374,15 @@ public class RDBDocumentSerializer {
 
     private static byte[] GZIPSIG = { 31, -117 };
 
-    private static String fromBlobData(byte[] bdata) {
+    private static byte[] fromBlobData(byte[] bdata) {
         try {
             if (bdata.length >= 2 && bdata[0] == GZIPSIG[0] && bdata[1] == GZIPSIG[1]) {
                 // GZIP
                 try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(bdata), 65536)) {
-                    return IOUtils.toString(gis, StandardCharsets.UTF_8);
+                    return IOUtils.toByteArray(gis);
                 }
             } else {
-                return new String(bdata, StandardCharsets.UTF_8);
+                return bdata;
             }
         } catch (IOException ex) {
             LOG.debug("Unexpected exception while processing blob data", ex);
@@ -70,6 +70,7 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilder;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreStatsCollector;
+import org.apache.jackrabbit.oak.plugins.document.FormatVersion;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
@@ -82,6 +83,7 @@ import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -296,6 +298,19 @@ public class RDBDocumentStore implements DocumentStore {
         return internalQuery(collection, fromKey, toKey, EMPTY_KEY_PATTERN, conditions, limit);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> CloseableIterable<T> queryAsIterable(Collection<T> collection, String fromKey, String toKey,
+            String indexedProperty, long startValue, int limit) {
+        List<QueryCondition> conditions = Collections.emptyList();
+        if (indexedProperty != null) {
+            conditions = Collections.singletonList(new QueryCondition(indexedProperty, ">=", startValue));
+        }
+        // backed by a forward-only result set, read while iterating
+        Iterable<T> documents = queryAsIterable(collection, fromKey, toKey, EMPTY_KEY_PATTERN, conditions, limit, ID);
+        return CloseableIterable.wrap(documents, (Closeable) documents);
+    }
+
     @NotNull
     protected <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey,
             List<String> excludeKeyPatterns, List<QueryCondition> conditions, int limit) {
@@ -981,7 +996,10 @@ public class RDBDocumentStore implements DocumentStore {
             new String[] { ID, NodeDocument.HAS_BINARY_FLAG, NodeDocument.DELETED_ONCE, COLLISIONSMODCOUNT, MODIFIED, MODCOUNT,
                     NodeDocument.SD_TYPE, NodeDocument.SD_MAX_REV_TIME_IN_SECS, VERSIONPROP }));
 
-    private final RDBDocumentSerializer ser = new RDBDocumentSerializer(this);
+    // whether the BDATA column is written with the compact binary encoding
+    private volatile boolean compactEncoding;
+
+    private final RDBDocumentSerializer ser = new RDBDocumentSerializer(this, () -> compactEncoding);
 
     private void initialize(DataSource ds, DocumentNodeStoreBuilder<?> builder, RDBOptions options) throws Exception {
         this.stats = builder.getDocumentStoreStatsCollector();
@@ -1085,6 +1103,17 @@ public class RDBDocumentStore implements DocumentStore {
             tableDiags.insert(0, ", ");
         }
 
+        if (COMPACTBDATA) {
+            // only write the compact encoding when all cluster nodes are
+            // able to read it
+            FormatVersion version = FormatVersion.versionOf(this);
+            this.compactEncoding = version.compareTo(COMPACTBDATA_VERSION) >= 0;
+            if (!this.compactEncoding) {
+                LOG.info("Compact BDATA encoding requested, but not used with format version " + version
+                        + " (requires " + COMPACTBDATA_VERSION + ")");
+            }
+        }
+
         Map<String, String> diag = dbInfo.getAdditionalDiagnostics(this.ch, this.tableMeta.get(Collection.NODES).getName());
 
         LOG.info("RDBDocumentStore (" + getModuleVersion() + ") instantiated for database " + dbDesc + ", using driver: "
@@ -2091,7 +2120,7 @@ public class RDBDocumentStore implements DocumentStore {
                 data = ser.asString(document, tmd.getColumnOnlyProperties());
                 Object m = document.get(MODIFIED);
                 long modified = (m instanceof Long) ? ((Long)m).longValue() : 0;
-                success = db.update(connection, tmd, document.getId(), modified, hasBinary, deletedOnce, modcount, cmodcount,
+                success = db.update(connection, tmd, document, modified, hasBinary, deletedOnce, modcount, cmodcount,
                         oldmodcount, data);
                 connection.commit();
             }
@@ -2194,6 +2223,13 @@ public class RDBDocumentStore implements DocumentStore {
     private static final boolean NOGZIP = SystemPropertySupplier
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOGZIP", Boolean.FALSE).loggingTo(LOG).get();
 
+    // Whether to write the BDATA column with the compact binary encoding
+    private static final boolean COMPACTBDATA = SystemPropertySupplier
+            .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.COMPACTBDATA", Boolean.FALSE).loggingTo(LOG).get();
+
+    // Minimal format version of the store for the compact BDATA encoding
+    private static final FormatVersion COMPACTBDATA_VERSION = FormatVersion.valueOf("1.74.0");
+
     // Whether to use append operations (string concatenation) in the DATA column
     private static final boolean NOAPPEND = SystemPropertySupplier
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOAPPEND", Boolean.FALSE).loggingTo(LOG).get();
@@ -2221,8 +2257,10 @@ public class RDBDocumentStore implements DocumentStore {
             }).get();
 
     public static byte[] asBytes(@NotNull String data) {
-        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        return asBytes(data.getBytes(StandardCharsets.UTF_8));
+    }
 
+    static byte[] asBytes(@NotNull byte[] bytes) {
         if (NOGZIP) {
             return bytes;
         } else {
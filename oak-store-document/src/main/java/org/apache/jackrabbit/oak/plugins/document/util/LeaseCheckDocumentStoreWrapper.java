@@ -95,6 +95,15 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.query(collection, fromKey, toKey, indexedProperty, startValue, limit, projection);
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> CloseableIterable<T> queryAsIterable(final Collection<T> collection, final String fromKey,
+                                                                     final String toKey, final String indexedProperty,
+                                                                     final long startValue, final int limit) {
+        performLeaseCheck();
+        return delegate.queryAsIterable(collection, fromKey, toKey, indexedProperty, startValue, limit);
+    }
+
     @Override
     public final <T extends Document> void remove(Collection<T> collection, String key) {
         performLeaseCheck();
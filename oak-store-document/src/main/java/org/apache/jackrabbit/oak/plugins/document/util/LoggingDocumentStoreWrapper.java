@@ -157,6 +157,20 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> CloseableIterable<T> queryAsIterable(final Collection<T> collection, final String fromKey,
+                                                                     final String toKey, final String indexedProperty,
+                                                                     final long startValue, final int limit) throws DocumentStoreException {
+        try {
+            logMethod("queryAsIterable", collection, fromKey, toKey, indexedProperty, startValue, limit);
+            return store.queryAsIterable(collection, fromKey, toKey, indexedProperty, startValue, limit);
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @Override
     public <T extends Document> void remove(Collection<T> collection, String key) {
         try {
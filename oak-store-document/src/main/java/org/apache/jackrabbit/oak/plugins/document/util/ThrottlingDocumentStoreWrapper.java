@@ -93,6 +93,14 @@ public class ThrottlingDocumentStoreWrapper implements DocumentStore {
         return store.query(collection, fromKey, toKey, indexedProperty, startValue, limit, projection);
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> CloseableIterable<T> queryAsIterable(final Collection<T> collection, final String fromKey,
+                                                                     final String toKey, final String indexedProperty,
+                                                                     final long startValue, final int limit) throws DocumentStoreException {
+        return store.queryAsIterable(collection, fromKey, toKey, indexedProperty, startValue, limit);
+    }
+
     @Override
     public <T extends Document> void remove(Collection<T> collection, String key) {
         long throttlingTime = performThrottling(collection);
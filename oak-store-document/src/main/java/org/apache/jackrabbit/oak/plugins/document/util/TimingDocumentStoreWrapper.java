@@ -206,6 +206,25 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> CloseableIterable<T> queryAsIterable(final Collection<T> collection, final String fromKey,
+                                                                     final String toKey, final String indexedProperty,
+                                                                     final long startValue, final int limit) throws DocumentStoreException {
+        try {
+            long start = now();
+            // only the time to open the cursor, documents are read later
+            CloseableIterable<T> result = base.queryAsIterable(collection, fromKey, toKey, indexedProperty, startValue, limit);
+            updateAndLogTimes("queryAsIterable", start, 0, 0);
+            if (logCommonCall()) {
+                logCommonCall(start, "queryAsIterable " + collection + " " + fromKey + " " + toKey + " " + indexedProperty + " " + startValue + " " + limit);
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     public <T extends Document> void remove(Collection<T> collection, String key) {
         try {
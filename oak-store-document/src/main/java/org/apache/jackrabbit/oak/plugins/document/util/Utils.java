@@ -626,7 +626,7 @@ public class Utils {
     public static Revision resolveCommitRevision(@NotNull Revision rev,
                                                  @NotNull String tag) {
         return requireNonNull(tag).startsWith("c-") ?
-                Revision.fromString(tag.substring(2)) : rev;
+                Revision.fromString(tag, 2) : rev;
     }
 
     /**
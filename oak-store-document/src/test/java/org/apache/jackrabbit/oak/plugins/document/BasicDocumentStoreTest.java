@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -1063,6 +1064,52 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         assertTrue(result.contains(base + "9"));
     }
 
+    @Test
+    public void testQueryAsIterable() throws Exception {
+        // create more documents than fit into a single batch
+        String base = this.getClass().getName() + ".testQueryAsIterable-";
+        List<UpdateOp> creates = new ArrayList<UpdateOp>();
+        for (int i = 0; i < 250; i++) {
+            String id = base + String.format("%03d", i);
+            UpdateOp up = new UpdateOp(id, true);
+            up.set(NodeDocument.HAS_BINARY_FLAG, i % 2L);
+            creates.add(up);
+            removeMe.add(id);
+        }
+        assertTrue(super.ds.create(Collection.NODES, creates));
+
+        List<String> result = new ArrayList<String>();
+        try (CloseableIterable<NodeDocument> docs = ds.queryAsIterable(Collection.NODES, base, base + "Z",
+                null, 0, Integer.MAX_VALUE)) {
+            for (NodeDocument doc : docs) {
+                result.add(doc.getId());
+            }
+        }
+        assertEquals(250, result.size());
+        assertEquals(base + "000", result.get(0));
+        assertEquals(base + "249", result.get(249));
+        List<String> sorted = new ArrayList<String>(result);
+        Collections.sort(sorted);
+        assertEquals(sorted, result);
+
+        result.clear();
+        try (CloseableIterable<NodeDocument> docs = ds.queryAsIterable(Collection.NODES, base, base + "Z",
+                NodeDocument.HAS_BINARY_FLAG, NodeDocument.HAS_BINARY_VAL, 20)) {
+            for (NodeDocument doc : docs) {
+                result.add(doc.getId());
+            }
+        }
+        assertEquals(20, result.size());
+        assertEquals(base + "001", result.get(0));
+        assertFalse(result.contains(base + "002"));
+
+        // closing before the end must release the resources of the query
+        CloseableIterable<NodeDocument> docs = ds.queryAsIterable(Collection.NODES, base, base + "Z",
+                null, 0, Integer.MAX_VALUE);
+        assertTrue(docs.iterator().hasNext());
+        docs.close();
+    }
+
     @Test
     public void testQueryBinary() {
         // create ten documents
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommitAdmissionControllerTest {
+
+    private final Clock clock = new Clock.Virtual();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final AtomicLong throttlingTime = new AtomicLong();
+
+    private volatile double observerFill;
+
+    private CommitAdmissionController controller;
+
+    @Before
+    public void before() throws Exception {
+        clock.waitUntil(System.currentTimeMillis());
+        controller = new CommitAdmissionController(clock, queueSize::get,
+                throttlingTime::get, () -> observerFill, 100, 5);
+    }
+
+    @Test
+    public void noDelayAtMaxRate() {
+        for (int i = 0; i < 1000; i++) {
+            controller.admit();
+        }
+        assertEquals(0, controller.getDelayedMergeCount());
+        assertEquals(0, controller.getTotalDelayMillis());
+    }
+
+    @Test
+    public void multiplicativeDecrease() {
+        queueSize.set(CommitAdmissionController.QUEUE_THRESHOLD);
+        controller.update(new BackgroundWriteStats());
+        assertEquals(50, controller.getRate(), 0.001);
+        assertEquals(1, controller.getCongestion(), 0.001);
+        controller.update(new BackgroundWriteStats());
+        assertEquals(25, controller.getRate(), 0.001);
+        for (int i = 0; i < 10; i++) {
+            controller.update(new BackgroundWriteStats());
+        }
+        assertEquals(5, controller.getRate(), 0.001);
+    }
+
+    @Test
+    public void additiveIncrease() {
+        throttlingTime.set(10);
+        controller.update(new BackgroundWriteStats());
+        assertEquals(50, controller.getRate(), 0.001);
+
+        throttlingTime.set(0);
+        controller.update(new BackgroundWriteStats());
+        assertEquals(55, controller.getRate(), 0.001);
+        for (int i = 0; i < 20; i++) {
+            controller.update(new BackgroundWriteStats());
+        }
+        assertEquals(100, controller.getRate(), 0.001);
+    }
+
+    @Test
+    public void congestionInputs() {
+        BackgroundWriteStats stats = new BackgroundWriteStats();
+        stats.totalWriteTime = CommitAdmissionController.WRITE_TIME_THRESHOLD_MILLIS * 2;
+        controller.update(stats);
+        assertEquals(2, controller.getCongestion(), 0.001);
+        assertEquals(stats.totalWriteTime, controller.getLastBackgroundWriteTime());
+
+        observerFill = CommitAdmissionController.OBSERVER_FILL_THRESHOLD / 2;
+        controller.update(new BackgroundWriteStats());
+        assertEquals(0.5, controller.getCongestion(), 0.001);
+        assertEquals(observerFill, controller.getObserverQueueFillRatio(), 0.001);
+    }
+
+    @Test
+    public void pacing() {
+        queueSize.set(CommitAdmissionController.QUEUE_THRESHOLD);
+        for (int i = 0; i < 5; i++) {
+            controller.update(new BackgroundWriteStats());
+        }
+        // 100 / 2^4 = 6.25, halved once more to 5 (min rate)
+        assertEquals(5, controller.getRate(), 0.001);
+
+        long start = clock.getTime();
+        int merges = 10;
+        for (int i = 0; i < merges; i++) {
+            controller.admit();
+        }
+        long elapsed = clock.getTime() - start;
+        // first merge is admitted immediately, others every 200 ms
+        assertTrue("elapsed: " + elapsed, elapsed >= (merges - 1) * 200 && elapsed < merges * 200);
+        assertEquals(merges - 1, controller.getDelayedMergeCount());
+    }
+
+    @Test
+    public void saturated() throws Exception {
+        // a clock that does not advance while merges wait, like many
+        // concurrent merges arriving at the same time
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        Clock stopped = new Clock() {
+            @Override
+            public long getTime() {
+                return now.get();
+            }
+
+            @Override
+            public void waitUntil(long timestamp) {
+            }
+        };
+        controller = new CommitAdmissionController(stopped, queueSize::get,
+                throttlingTime::get, () -> observerFill, 100, 5);
+        queueSize.set(CommitAdmissionController.QUEUE_THRESHOLD);
+        for (int i = 0; i < 5; i++) {
+            controller.update(new BackgroundWriteStats());
+        }
+        assertEquals(5, controller.getRate(), 0.001);
+
+        // far more merges than the rate admits within the maximum delay
+        int merges = 1000;
+        for (int i = 0; i < merges; i++) {
+            controller.admit();
+        }
+        assertEquals(merges - 1, controller.getDelayedMergeCount());
+        long maxDelay = CommitAdmissionController.MAX_DELAY_MILLIS;
+        assertTrue(controller.getTotalDelayMillis() <= (merges - 1) * maxDelay);
+
+        // the schedule does not run ahead by more than the maximum delay
+        // plus one interval, congestion has cleared after that time
+        now.addAndGet(maxDelay + 200);
+        long delayed = controller.getDelayedMergeCount();
+        controller.admit();
+        assertEquals(delayed, controller.getDelayedMergeCount());
+    }
+}
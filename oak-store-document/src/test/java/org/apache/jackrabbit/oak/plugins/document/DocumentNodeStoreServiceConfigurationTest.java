@@ -94,6 +94,8 @@ public class DocumentNodeStoreServiceConfigurationTest {
         assertEquals(of(), of(config.fullGCExcludePaths()));
         assertEquals("STRICT", config.leaseCheckMode());
         assertEquals(DEFAULT_THROTTLING_ENABLED, config.throttlingEnabled());
+        assertEquals(DocumentNodeStoreService.DEFAULT_COMMIT_ADMISSION_CONTROL_ENABLED,
+                config.commitAdmissionControlEnabled());
         assertEquals(DEFAULT_FULL_GC_ENABLED, config.fullGCEnabled());
         assertEquals(DEFAULT_FULL_GC_MODE, config.fullGCMode());
         assertEquals(DEFAULT_FGC_DELAY_FACTOR, config.fullGCDelayFactor(), 0.01);
@@ -3421,6 +3421,28 @@ public class DocumentNodeStoreTest {
         }
     }
 
+    @Test
+    public void newStoreKeepsVersion() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        builderProvider.newBuilder().setDocumentStore(store).getNodeStore().dispose();
+        assertEquals(DocumentNodeStore.VERSION, FormatVersion.versionOf(store));
+        assertEquals(FormatVersion.V1_8, FormatVersion.versionOf(store));
+    }
+
+    @Test
+    public void readWriteOptInVersion() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        builderProvider.newBuilder().setDocumentStore(store).getNodeStore().dispose();
+        // explicit upgrade as done by the unlockUpgrade command
+        assertTrue(DocumentNodeStore.OPT_IN_VERSION.writeTo(store));
+        DocumentNodeStore ns = builderProvider.newBuilder().setDocumentStore(store).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo");
+        merge(ns, builder);
+        ns.dispose();
+        assertEquals(DocumentNodeStore.OPT_IN_VERSION, FormatVersion.versionOf(store));
+    }
+
     @Test
     public void updateHeadWhenIdle() throws Exception {
         Clock clock = new Clock.Virtual();
@@ -21,6 +21,7 @@ import java.util.Map;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -68,6 +69,18 @@ public class DocumentStoreWrapper implements DocumentStore {
                 indexedProperty, startValue, limit);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> CloseableIterable<T> queryAsIterable(Collection<T> collection,
+                                                                     String fromKey,
+                                                                     String toKey,
+                                                                     String indexedProperty,
+                                                                     long startValue,
+                                                                     int limit) {
+        return store.queryAsIterable(collection, fromKey, toKey,
+                indexedProperty, startValue, limit);
+    }
+
     @Override
     public <T extends Document> void remove(Collection<T> collection,
                                             String key) {
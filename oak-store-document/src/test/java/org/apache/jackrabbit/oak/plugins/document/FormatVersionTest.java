@@ -30,6 +30,7 @@ import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.V1_0;
 import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.V1_2;
 import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.V1_4;
 import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.V1_6;
+import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.V1_74;
 import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.V1_8;
 import static org.apache.jackrabbit.oak.plugins.document.FormatVersion.valueOf;
 import static org.apache.jackrabbit.oak.plugins.document.RecoveryHandler.NOOP;
@@ -42,6 +43,14 @@ public class FormatVersionTest {
 
     @Test
     public void canRead() {
+        assertTrue(V1_74.canRead(V1_74));
+        assertTrue(V1_74.canRead(V1_8));
+        assertTrue(V1_74.canRead(V1_6));
+        assertTrue(V1_74.canRead(V1_4));
+        assertTrue(V1_74.canRead(V1_2));
+        assertTrue(V1_74.canRead(V1_0));
+        assertTrue(V1_74.canRead(V0));
+        assertFalse(V1_8.canRead(V1_74));
         assertTrue(V1_8.canRead(V1_8));
         assertTrue(V1_8.canRead(V1_6));
         assertTrue(V1_8.canRead(V1_4));
@@ -102,7 +111,7 @@ public class FormatVersionTest {
         // must not write dummy version
         assertFalse(V0.writeTo(store));
         // upgrade
-        for (FormatVersion v : ImmutableList.of(V1_0, V1_2, V1_4, V1_6, V1_8)) {
+        for (FormatVersion v : ImmutableList.of(V1_0, V1_2, V1_4, V1_6, V1_8, V1_74)) {
             assertTrue(v.writeTo(store));
             assertSame(v, FormatVersion.versionOf(store));
         }
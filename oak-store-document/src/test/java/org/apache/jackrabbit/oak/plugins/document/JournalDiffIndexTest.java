@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.commons.sort.StringSort;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JournalDiffIndexTest {
+
+    private final JournalDiffIndex index = new JournalDiffIndex(
+            DocumentNodeStoreBuilder.newDocumentNodeStoreBuilder());
+
+    @Test
+    public void frontCodedChanges() {
+        List<String> paths = List.of("/", "/content", "/content", "/content/site",
+                "/content/site/\u00e4", "/content/site/\u00e4/child", "/var");
+        JournalDiffIndex.Changes changes = JournalDiffIndex.Changes.create(rv(1), paths, 100);
+        List<String> read = new ArrayList<>();
+        changes.forEach(read::add);
+        assertEquals(List.of("/", "/content", "/content/site",
+                "/content/site/\u00e4", "/content/site/\u00e4/child", "/var"), read);
+
+        // round trip with the persisted form
+        JournalDiffIndex.Changes copy = new JournalDiffIndex.Changes(
+                changes.getToRevision(), changes.getData());
+        read.clear();
+        copy.forEach(read::add);
+        assertEquals(6, read.size());
+
+        assertNull(JournalDiffIndex.Changes.create(rv(1), paths, 5));
+    }
+
+    @Test
+    public void composeChain() throws Exception {
+        index.put(rv(1), rv(2), List.of("/", "/a", "/a/b"));
+        index.put(rv(2), rv(3), List.of("/", "/c"));
+        index.put(rv(3), rv(4), List.of("/", "/a", "/a/d"));
+
+        assertEquals(List.of("/", "/a", "/a", "/a/b", "/a/d", "/c"),
+                changes(Path.ROOT, rv(1), rv(4), 3));
+        assertEquals(List.of("/a", "/a/d"),
+                changes(Path.fromString("/a"), rv(2), rv(4), 2));
+        assertEquals(List.of("/c"),
+                changes(Path.fromString("/c"), rv(2), rv(3), 1));
+    }
+
+    @Test
+    public void notCovered() throws Exception {
+        index.put(rv(1), rv(2), List.of("/", "/a"));
+        index.put(rv(3), rv(4), List.of("/", "/c"));
+
+        // gap in the chain
+        assertEquals(List.of(), changes(Path.ROOT, rv(1), rv(4), -1));
+        // reverse diff
+        assertEquals(List.of(), changes(Path.ROOT, rv(2), rv(1), -1));
+        // entry goes beyond the interval
+        index.put(rv(2), rv(4), List.of("/", "/b"));
+        assertEquals(List.of(), changes(Path.ROOT, rv(1), rv(3), -1));
+
+        index.invalidateAll();
+        assertEquals(List.of(), changes(Path.ROOT, rv(1), rv(2), -1));
+    }
+
+    private List<String> changes(Path path,
+                                 RevisionVector from,
+                                 RevisionVector to,
+                                 int expectedEntries) throws Exception {
+        List<String> paths = new ArrayList<>();
+        try (StringSort sort = JournalEntry.newSorter()) {
+            assertEquals(expectedEntries, index.addTo(sort, path, from, to));
+            sort.sort();
+            sort.forEach(paths::add);
+        }
+        return paths;
+    }
+
+    private static RevisionVector rv(long timestamp) {
+        return new RevisionVector(new Revision(timestamp, 0, 1), new Revision(timestamp, 0, 2));
+    }
+}
@@ -362,6 +362,40 @@ public class JournalDiffLoaderTest {
         assertEquals(0, store.getNumFindCalls(Collection.JOURNAL));
     }
 
+    @Test
+    public void fromJournalDiffIndex() throws Exception {
+        CountingDocumentStore store = new CountingDocumentStore(new MemoryDocumentStore());
+        DocumentNodeStore ns1 = builderProvider.newBuilder().setClusterId(1)
+                .clock(clock).setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+        DocumentNodeStore ns2 = builderProvider.newBuilder().setClusterId(2)
+                .clock(clock).setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+        ns1.runBackgroundOperations();
+
+        DocumentNodeState s1 = ns1.getRoot();
+        for (String name : new String[]{"foo", "bar", "baz"}) {
+            NodeBuilder builder = ns2.getRoot().builder();
+            builder.child(name).child("child");
+            merge(ns2, builder);
+            ns2.runBackgroundOperations();
+            // each background read adds an entry to the index
+            ns1.runBackgroundOperations();
+        }
+        DocumentNodeState s2 = ns1.getRoot();
+
+        store.resetCounters();
+        assertEquals(Set.of("foo", "bar", "baz"), changeChildNodes(ns1, s1, s2));
+        // composed from the index without reading the journal
+        assertEquals(0, store.getNumQueryCalls(Collection.JOURNAL));
+        assertEquals(0, store.getNumFindCalls(Collection.JOURNAL));
+
+        // a local change breaks the chain of background reads
+        NodeBuilder builder = ns1.getRoot().builder();
+        builder.child("qux");
+        merge(ns1, builder);
+        DocumentNodeState s3 = ns1.getRoot();
+        assertEquals(Set.of("foo", "bar", "baz", "qux"), changeChildNodes(ns1, s1, s3));
+    }
+
     private static CacheStats getMemoryDiffStats(DocumentNodeStore ns) {
         for (CacheStats cs : ns.getDiffCache().getStats()) {
             if (cs.getName().equals("Document-MemoryDiff")) {
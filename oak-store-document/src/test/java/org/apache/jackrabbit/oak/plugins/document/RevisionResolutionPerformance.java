@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Measures how fast a node is resolved from a heavily split document, at
+ * read revisions which require lookups in previous documents.
+ */
+public class RevisionResolutionPerformance {
+
+    private static final int SPLITS = 20;
+
+    private static final int READS = 20000;
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    @Test
+    public void getNodeAtRevision() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+        List<RevisionVector> readRevisions = new ArrayList<>();
+        for (int i = 0; i < SPLITS; i++) {
+            for (int j = 0; j < NodeDocument.NUM_REVS_THRESHOLD; j++) {
+                NodeBuilder builder = ns.getRoot().builder();
+                builder.child("foo").setProperty("p", i * NodeDocument.NUM_REVS_THRESHOLD + j);
+                builder.child("foo").setProperty("q-" + (j % 10), j);
+                merge(ns, builder);
+            }
+            readRevisions.add(ns.getHeadRevision());
+            ns.runBackgroundOperations();
+        }
+        NodeDocument doc = store.find(NODES, Utils.getIdFromPath("/foo"));
+        assertNotNull(doc);
+        assertFalse(doc.getPreviousRanges().isEmpty());
+
+        long time = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            RevisionVector readRev = readRevisions.get(i % readRevisions.size());
+            assertNotNull(doc.getNodeAtRevision(ns, readRev, null));
+        }
+        time = System.nanoTime() - time;
+        System.out.println("resolved " + READS + " nodes from " + doc.getPreviousRanges().size()
+                + " previous ranges in " + TimeUnit.NANOSECONDS.toMillis(time) + " ms.");
+    }
+}
@@ -29,7 +29,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -91,6 +93,19 @@ public class RevisionTest {
         }
     }
 
+    @Test
+    public void fromStringFlyweight() {
+        Revision r = new Revision(0x12345L, 3, 7);
+        Revision r1 = Revision.fromString(r.toString());
+        assertEquals(r, r1);
+        assertSame(r1, Revision.fromString(r.toString()));
+        assertSame(r1, Revision.fromString("c-" + r, 2));
+        Revision b = Revision.fromString(r.asBranchRevision().toString());
+        assertTrue(b.isBranch());
+        assertNotSame(r1, b);
+        assertSame(r1, b.asTrunkRevision());
+    }
+
     @Test
     public void difference() throws InterruptedException {
         long t0 = Revision.getCurrentTimestamp();
@@ -41,11 +41,13 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import static java.util.Arrays.asList;
 import static org.apache.jackrabbit.oak.plugins.document.TestUtils.isFinalCommitRootUpdate;
 import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
@@ -155,6 +157,48 @@ public class RollbackTest {
         assertThat(maxBatchSize.get(), lessThanOrEqualTo(batchSize));
     }
 
+    @Test
+    public void collisionMarkerRemovedAfterReverseBatches() {
+        List<String> calls = new ArrayList<>();
+        AtomicBoolean failBatch = new AtomicBoolean();
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                               List<UpdateOp> updateOps) {
+                calls.add("createOrUpdate");
+                if (failBatch.get() && calls.size() == 2) {
+                    throw new DocumentStoreException("failed batch");
+                }
+                return super.createOrUpdate(collection, updateOps);
+            }
+
+            @Override
+            public <T extends Document> T findAndUpdate(Collection<T> collection,
+                                                        UpdateOp update) {
+                calls.add("findAndUpdate");
+                return super.findAndUpdate(collection, update);
+            }
+        };
+        Revision r = Revision.newRevision(1);
+        List<UpdateOp> updates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            updates.add(new UpdateOp("id-" + i, false));
+        }
+        new Rollback(r, updates, "id-0", 5).perform(store);
+        assertEquals(asList("createOrUpdate", "createOrUpdate", "findAndUpdate"), calls);
+
+        // the marker stays when a reverse batch fails
+        calls.clear();
+        failBatch.set(true);
+        try {
+            new Rollback(r, updates, "id-0", 5).perform(store);
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        assertEquals(asList("createOrUpdate", "createOrUpdate"), calls);
+    }
+
     private class TestStore extends MemoryDocumentStore {
 
         final AtomicBoolean failCommitOnce = new AtomicBoolean();
@@ -16,13 +16,24 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.Rule;
 import org.junit.Test;
 
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class UnsavedModificationsTest {
 
@@ -41,4 +52,89 @@ public class UnsavedModificationsTest {
         ns.runBackgroundUpdateOperations();
         assertEquals(0, store.getNumFindCalls(Collection.CLUSTER_NODES));
     }
+
+    @Test
+    public void persistConcurrently() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+        int clusterId = ns.getClusterId();
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.child("node-" + i);
+        }
+        merge(ns, builder);
+
+        UnsavedModifications pending = new UnsavedModifications();
+        Revision r = Revision.newRevision(clusterId);
+        for (int i = 0; i < 1000; i++) {
+            pending.put(Path.fromString("/node-" + i), r);
+        }
+        pending.put(Path.ROOT, r);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BackgroundWriteStats stats = pending.persist(store, executor, () -> null,
+                    UnsavedModifications.Snapshot.IGNORE, new ReentrantLock());
+            assertEquals(1001, stats.num);
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+
+        assertTrue(pending.getPaths().isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            NodeDocument doc = store.find(NODES, Utils.getIdFromPath("/node-" + i));
+            assertEquals(r, doc.getLastRev().get(clusterId));
+        }
+        assertEquals(r, Utils.getRootDocument(store).getLastRev().get(clusterId));
+    }
+
+    @Test
+    public void persistConcurrentlyWithFailure() throws Exception {
+        MemoryDocumentStore memStore = new MemoryDocumentStore();
+        DocumentStore store = new DocumentStoreWrapper(memStore) {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                               List<UpdateOp> updateOps) {
+                for (UpdateOp op : updateOps) {
+                    if (op.getId().equals(Utils.getIdFromPath("/node-42"))) {
+                        throw new DocumentStoreException("failure");
+                    }
+                }
+                return super.createOrUpdate(collection, updateOps);
+            }
+        };
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(memStore).setAsyncDelay(0).getNodeStore();
+        int clusterId = ns.getClusterId();
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.child("node-" + i);
+        }
+        merge(ns, builder);
+
+        UnsavedModifications pending = new UnsavedModifications();
+        Revision r = Revision.newRevision(clusterId);
+        for (int i = 0; i < 1000; i++) {
+            pending.put(Path.fromString("/node-" + i), r);
+        }
+        pending.put(Path.ROOT, r);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            pending.persist(store, executor, () -> null,
+                    UnsavedModifications.Snapshot.IGNORE, new ReentrantLock());
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            // expected
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+
+        // the root document must not be updated and the failed batch is
+        // still pending
+        assertNotEquals(r, Utils.getRootDocument(store).getLastRev().get(clusterId));
+        assertTrue(pending.getPaths().contains(Path.ROOT));
+        assertTrue(pending.getPaths().contains(Path.fromString("/node-42")));
+    }
 }
@@ -35,6 +35,7 @@ import org.apache.jackrabbit.guava.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.TimeInterval;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
@@ -65,7 +66,9 @@ import static org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector
 import static org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.SETTINGS_COLLECTION_FULL_GC_DRY_RUN_TIMESTAMP_PROP;
 import static org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.SETTINGS_COLLECTION_FULL_GC_TIMESTAMP_PROP;
 import static org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.SETTINGS_COLLECTION_ID;
+import static org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.SETTINGS_COLLECTION_PARALLEL_GC_PARTITIONS_PROP;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -535,6 +538,60 @@ public class VersionGCTest {
 
     // OAK-10370 END
 
+    @Test
+    public void parallelGC() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            createNode("node-" + i);
+            removeNode("node-" + i);
+            advanceClock(5, MINUTES);
+        }
+        advanceClock(1, HOURS);
+
+        gc.setOptions(gc.getOptions().withParallelism(4));
+        VersionGCStats stats = gc.gc(30, MINUTES);
+        // foo and node-0 to node-9
+        assertEquals(11, stats.deletedDocGCCount);
+        assertFalse(stats.limitExceeded);
+        for (int i = 0; i < 10; i++) {
+            assertNull(store.find(Collection.NODES, Utils.getIdFromPath("/node-" + i)));
+        }
+
+        // completed partitions are merged into a single interval
+        Document settings = store.find(SETTINGS, SETTINGS_COLLECTION_ID);
+        assertNotNull(settings);
+        String partitions = (String) settings.get(SETTINGS_COLLECTION_PARALLEL_GC_PARTITIONS_PROP);
+        assertNotNull(partitions);
+        assertFalse(partitions.contains(","));
+    }
+
+    @Test
+    public void partitionScope() {
+        TimeInterval scope = new TimeInterval(0, 1000);
+        List<TimeInterval> partitions = VersionGarbageCollector.partitionScope(
+                scope, new ArrayList<>(), 4, 100);
+        assertEquals(List.of(new TimeInterval(0, 250), new TimeInterval(250, 500),
+                new TimeInterval(500, 750), new TimeInterval(750, 1000)), partitions);
+
+        // skip completed partitions
+        List<TimeInterval> completed = new ArrayList<>();
+        VersionGarbageCollector.addPartition(completed, new TimeInterval(500, 750));
+        VersionGarbageCollector.addPartition(completed, new TimeInterval(0, 250));
+        partitions = VersionGarbageCollector.partitionScope(scope, completed, 4, 100);
+        assertEquals(List.of(new TimeInterval(250, 375), new TimeInterval(375, 500),
+                new TimeInterval(750, 875), new TimeInterval(875, 1000)), partitions);
+
+        // minimum duration of a partition
+        partitions = VersionGarbageCollector.partitionScope(scope, new ArrayList<>(), 4, 600);
+        assertEquals(List.of(new TimeInterval(0, 600), new TimeInterval(600, 1000)), partitions);
+
+        // checkpoints of a scope with a different start are ignored
+        VersionGarbageCollector.addPartition(completed, new TimeInterval(250, 500));
+        String value = VersionGarbageCollector.formatPartitions(scope.fromMs, completed);
+        assertEquals("0:0-750", value);
+        assertEquals(List.of(new TimeInterval(0, 750)), VersionGarbageCollector.parsePartitions(value, 0));
+        assertTrue(VersionGarbageCollector.parsePartitions(value, 1).isEmpty());
+    }
+
     // OAK-10745
     @Test
     public void testVGCWithBatchSizeSmallerThanProgressSize() throws IllegalAccessException {
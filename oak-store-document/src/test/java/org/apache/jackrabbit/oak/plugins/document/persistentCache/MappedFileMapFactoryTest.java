@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileMapFactoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void putGetRemove() {
+        PersistentCache cache = new PersistentCache(folder.getRoot().getAbsolutePath() + ",engine=mmap");
+        try {
+            CacheMap<String, String> m1 = cache.openMap(0, "m1", null);
+            CacheMap<String, String> m2 = cache.openMap(0, "m2", null);
+            for (int i = 0; i < 1000; i++) {
+                m1.put("k" + i, "v" + i);
+            }
+            m2.put("k1", "other");
+            m1.put("k1", "updated");
+            m1.remove("k2");
+            assertEquals("updated", m1.get("k1"));
+            assertEquals("other", m2.get("k1"));
+            assertNull(m1.get("k2"));
+            assertFalse(m1.containsKey("k2"));
+            assertTrue(m1.containsKey("k3"));
+            assertEquals("v999", m1.get("k999"));
+            m1.clear();
+            assertNull(m1.get("k3"));
+            assertEquals("other", m2.get("k1"));
+        } finally {
+            cache.close();
+        }
+        assertTrue(new File(folder.getRoot(), "cache-0.mmap").exists());
+    }
+
+    @Test
+    public void mapView() {
+        MappedFileMapFactory f = new MappedFileMapFactory(
+                new File(folder.getRoot(), "map.mmap").getAbsolutePath(), 1, false);
+        f.openStore();
+        try {
+            Map<String, String> m1 = f.openMap("m1", null);
+            Map<String, String> m2 = f.openMap("m2", null);
+            assertTrue(m1.isEmpty());
+            Map<String, String> expected = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                m1.put("k" + i, "v" + i);
+                expected.put("k" + i, "v" + i);
+            }
+            m2.put("k1", "other");
+            m1.put("k1", "updated");
+            expected.put("k1", "updated");
+            m1.remove("k2");
+            expected.remove("k2");
+            assertEquals(expected, new HashMap<>(m1));
+            assertEquals(99, m1.size());
+            assertTrue(m1.containsValue("updated"));
+            assertFalse(m1.containsValue("other"));
+            assertEquals(1, m2.size());
+
+            for (Iterator<String> it = m1.keySet().iterator(); it.hasNext();) {
+                if (!it.next().equals("k1")) {
+                    it.remove();
+                }
+            }
+            assertEquals(1, m1.size());
+            assertEquals("updated", m1.get("k1"));
+            m1.clear();
+            assertTrue(m1.isEmpty());
+            assertEquals("other", m2.get("k1"));
+        } finally {
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void reopen() {
+        String url = folder.getRoot().getAbsolutePath() + ",engine=mmap";
+        PersistentCache cache = new PersistentCache(url);
+        CacheMap<String, String> map = cache.openMap(0, "test", null);
+        for (int i = 0; i < 100; i++) {
+            map.put("k" + i, "v" + i);
+        }
+        map.put("k1", "updated");
+        map.remove("k2");
+        cache.close();
+
+        cache = new PersistentCache(url);
+        try {
+            map = cache.openMap(0, "test", null);
+            assertEquals("updated", map.get("k1"));
+            assertNull(map.get("k2"));
+            assertEquals("v99", map.get("k99"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void switchGenerationWhenFull() {
+        PersistentCache pCache = new PersistentCache(folder.getRoot().getAbsolutePath() + ",engine=mmap,size=1");
+        try {
+            CacheLIRS<PathRev, StringValue> mem = new CacheLIRS.Builder<PathRev, StringValue>()
+                    .maximumSize(1).build();
+            Cache<PathRev, StringValue> cache = pCache.wrap(null, null, mem, CacheType.DIFF);
+            String value = new String(new char[10 * 1024]);
+            for (int i = 0; i < 1000; i++) {
+                cache.put(key(i), new StringValue(value));
+            }
+            // recent entries are still available
+            assertEquals(value, cache.getIfPresent(key(999)).asString());
+            // the oldest generations were switched out and removed
+            assertFalse(new File(folder.getRoot(), "cache-0.mmap").exists());
+        } finally {
+            pCache.close();
+        }
+    }
+
+    private static PathRev key(int i) {
+        return new PathRev(Path.fromString("/" + i), new RevisionVector(new Revision(0, 0, 1)));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compares the H2 and the memory-mapped persistent cache engine. The in-memory
+ * cache only holds a single entry, so reads are served by the persistent
+ * cache.
+ */
+public class PersistentCacheEnginePerformance {
+
+    private static final int ENTRIES = 50000;
+
+    private static final int READS = 500000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void h2() throws Exception {
+        run("h2", folder.newFolder().getAbsolutePath());
+    }
+
+    @Test
+    public void mmap() throws Exception {
+        run("mmap", folder.newFolder().getAbsolutePath() + ",engine=mmap");
+    }
+
+    private static void run(String name, String url) {
+        PersistentCache pCache = new PersistentCache(url);
+        try {
+            CacheLIRS<PathRev, StringValue> mem = new CacheLIRS.Builder<PathRev, StringValue>()
+                    .maximumSize(1).build();
+            Cache<PathRev, StringValue> cache = pCache.wrap(null, null, mem, CacheType.DIFF);
+            String value = new String(new char[200]).replace('\0', 'x');
+
+            long time = System.nanoTime();
+            for (int i = 0; i < ENTRIES; i++) {
+                cache.put(key(i), new StringValue(value));
+            }
+            long writeTime = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                assertNotNull(cache.getIfPresent(key((i * 7919) % ENTRIES)));
+            }
+            long readTime = System.nanoTime() - time;
+
+            System.out.println(name + ": write " + TimeUnit.NANOSECONDS.toMillis(writeTime)
+                    + " ms, read " + TimeUnit.NANOSECONDS.toMillis(readTime) + " ms.");
+        } finally {
+            pCache.close();
+        }
+    }
+
+    private static PathRev key(int i) {
+        return new PathRev(Path.fromString("/node-" + i), new RevisionVector(new Revision(0, 0, 1)));
+    }
+}
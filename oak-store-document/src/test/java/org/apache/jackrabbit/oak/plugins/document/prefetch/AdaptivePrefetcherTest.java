@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.prefetch;
+
+import static org.apache.jackrabbit.guava.common.util.concurrent.MoreExecutors.directExecutor;
+import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getIdFromPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreStatsCollector;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreWrapper;
+import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+public class AdaptivePrefetcherTest {
+
+    private final RevisionVector rev = new RevisionVector(Revision.newRevision(1));
+
+    private final List<String> prefetched = new ArrayList<>();
+
+    private final DocumentNodeStoreStatsCollector stats = mock(DocumentNodeStoreStatsCollector.class);
+
+    private final DocumentStoreWrapper store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+        @Override
+        public <T extends Document> T getIfCached(Collection<T> collection, String key) {
+            return null;
+        }
+
+        @Override
+        public <T extends Document> void prefetch(Collection<T> collection,
+                                                  Iterable<String> keys) {
+            keys.forEach(prefetched::add);
+        }
+    };
+
+    @Test
+    public void learnChildReads() {
+        List<String> children = new ArrayList<>();
+        AdaptivePrefetcher prefetcher = new AdaptivePrefetcher(store, directExecutor(), stats, (p, r) -> children);
+        for (int i = 0; i < AdaptivePrefetcher.MIN_OBSERVATIONS; i++) {
+            Path page = Path.fromString("/content/page-" + i);
+            prefetcher.onRead(page, rev);
+            prefetcher.onRead(new Path(page, "jcr:content"), rev);
+        }
+        prefetched.clear();
+        reset(stats);
+
+        Path page = Path.fromString("/content/page-x");
+        prefetcher.onRead(page, rev);
+        String contentId = getIdFromPath(new Path(page, "jcr:content"));
+        assertEquals(List.of(contentId), prefetched);
+        verify(stats).donePrefetch(1);
+
+        prefetcher.onRead(new Path(page, "jcr:content"), rev);
+        verify(stats).prefetchHit();
+    }
+
+    @Test
+    public void siblingRun() {
+        List<String> children = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            children.add("child-" + (1000 + i));
+        }
+        Path parent = Path.fromString("/parent");
+        AdaptivePrefetcher prefetcher = new AdaptivePrefetcher(store, directExecutor(), stats, (p, r) -> {
+            assertEquals(parent, p);
+            return children;
+        });
+        prefetcher.onRead(new Path(parent, children.get(0)), rev);
+        assertTrue(prefetched.isEmpty());
+        prefetcher.onRead(new Path(parent, children.get(1)), rev);
+        assertEquals(AdaptivePrefetcher.SIBLING_BATCH_SIZE, prefetched.size());
+        assertEquals(getIdFromPath(new Path(parent, children.get(2))), prefetched.get(0));
+
+        // reads of prefetched siblings do not trigger another prefetch
+        for (int i = 2; i < 2 + AdaptivePrefetcher.SIBLING_BATCH_SIZE; i++) {
+            prefetcher.onRead(new Path(parent, children.get(i)), rev);
+        }
+        verify(stats, times(AdaptivePrefetcher.SIBLING_BATCH_SIZE)).prefetchHit();
+        assertEquals(AdaptivePrefetcher.SIBLING_BATCH_SIZE, prefetched.size());
+
+        // continue beyond the prefetched siblings
+        prefetcher.onRead(new Path(parent, children.get(2 + AdaptivePrefetcher.SIBLING_BATCH_SIZE)), rev);
+        assertEquals(2 * AdaptivePrefetcher.SIBLING_BATCH_SIZE, prefetched.size());
+    }
+
+    @Test
+    public void randomReads() {
+        AdaptivePrefetcher prefetcher = new AdaptivePrefetcher(store, directExecutor(), stats, (p, r) -> null);
+        for (int i = 0; i < 100; i++) {
+            prefetcher.onRead(Path.fromString("/a-" + i + "/b-" + i), rev);
+        }
+        assertTrue(prefetched.isEmpty());
+        verify(stats, never()).prefetchHit();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares size and parse throughput of the JSON and the compact binary
+ * encoding of the BDATA column for a document with large revision maps.
+ * <p>
+ * This test is disabled by default. On the command line specify
+ * {@code -DRDBCompactEncodingPerformanceTest=true} to enable it.
+ */
+public class RDBCompactEncodingPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RDBCompactEncodingPerformanceTest.class);
+    private static final boolean ENABLED = Boolean.getBoolean(RDBCompactEncodingPerformanceTest.class.getSimpleName());
+
+    private static final int REVISIONS = 2000;
+    private static final int READS = 2000;
+
+    @Test
+    public void compareEncodings() {
+        assumeTrue(ENABLED);
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        NodeDocument doc = createDocument(store);
+        Set<String> columnProperties = Set.of(NodeDocument.ID, NodeDocument.MOD_COUNT);
+
+        RDBDocumentSerializer json = new RDBDocumentSerializer(store, () -> false);
+        RDBDocumentSerializer compact = new RDBDocumentSerializer(store, () -> true);
+        String data = json.asString(doc, columnProperties);
+        run("json", json, doc, columnProperties, data);
+        run("compact", compact, doc, columnProperties, data);
+    }
+
+    private static void run(String name, RDBDocumentSerializer ser, NodeDocument doc,
+                            Set<String> columnProperties, String data) {
+        byte[] bdata = ser.asBlobData(doc, columnProperties, data);
+        RDBRow row = new RDBRow(doc.getId(), 0L, false, 1L, 2L, 3L, 0L, 0L, 0L, "\"blob\"", bdata);
+
+        long time = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            NodeDocument read = ser.fromRow(Collection.NODES, row);
+            assertEquals(REVISIONS, ((Map<?, ?>) read.get("_commitRoot")).size());
+        }
+        long elapsed = System.nanoTime() - time;
+
+        LOG.info("{}: BDATA {} bytes, {} documents parsed in {} ms ({} docs/s)", name, bdata.length, READS,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), READS * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsed));
+    }
+
+    private static NodeDocument createDocument(MemoryDocumentStore store) {
+        NodeDocument doc = new NodeDocument(store);
+        doc.put(NodeDocument.ID, "2:/content/node");
+        doc.put(NodeDocument.MOD_COUNT, 1L);
+        Map<Revision, Object> commitRoot = new TreeMap<>(StableRevisionComparator.REVERSE);
+        Map<Revision, Object> deleted = new TreeMap<>(StableRevisionComparator.REVERSE);
+        Map<Revision, Object> property = new TreeMap<>(StableRevisionComparator.REVERSE);
+        long timestamp = 1700000000000L;
+        for (int i = 0; i < REVISIONS; i++) {
+            Revision r = new Revision(timestamp + i * 1000L, i % 3, 1 + i % 4);
+            commitRoot.put(r, "0");
+            deleted.put(r, "false");
+            property.put(r, "\"value-" + i + "\"");
+        }
+        doc.put("_commitRoot", commitRoot);
+        doc.put("_deleted", deleted);
+        doc.put("prop", property);
+        return doc;
+    }
+}
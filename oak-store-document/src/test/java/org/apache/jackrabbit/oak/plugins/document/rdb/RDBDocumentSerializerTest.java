@@ -26,8 +26,11 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
@@ -35,6 +38,8 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreFixture;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -144,6 +149,58 @@ public class RDBDocumentSerializerTest {
         }
     }
 
+    @Test
+    public void testCompactBlobAndDiff() {
+        Revision r1 = new Revision(1234567890L, 0, 1);
+        Revision r2 = new Revision(1234567891L, 3, 2, true);
+        NodeDocument in = new NodeDocument(store);
+        in.put(NodeDocument.ID, "1:/foo");
+        in.put(NodeDocument.MOD_COUNT, 2L);
+        in.put("s", "\u20ac\uD834\uDD1E");
+        in.put("b", true);
+        in.put("l", -42L);
+        in.put("d", 1.5d);
+        in.put("n", null);
+        Map<Revision, Object> revisions = new TreeMap<>(StableRevisionComparator.REVERSE);
+        revisions.put(r1, "c");
+        revisions.put(r2, "\"value\"");
+        in.put("p", revisions);
+
+        Set<String> columnProperties = Set.of(NodeDocument.ID, NodeDocument.MOD_COUNT);
+        RDBDocumentSerializer compact = new RDBDocumentSerializer(store, () -> true);
+        String json = compact.asString(in, columnProperties);
+        byte[] bdata = compact.asBlobData(in, columnProperties, json);
+
+        RDBRow row = new RDBRow("1:/foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L,
+                "\"blob\", [[\"=\", \"p\", \"" + r1 + "\", null],[\"+\", \"l\", 2]]", bdata);
+        NodeDocument doc = this.ser.fromRow(Collection.NODES, row);
+        assertEquals("1:/foo", doc.getId());
+        assertEquals("\u20ac\uD834\uDD1E", doc.get("s"));
+        assertEquals(Boolean.TRUE, doc.get("b"));
+        assertEquals(-40L, doc.get("l"));
+        assertEquals(1.5d, doc.get("d"));
+        assertTrue(doc.keySet().contains("n"));
+        assertNull(doc.get("n"));
+        Map<?, ?> p = (Map<?, ?>) doc.get("p");
+        assertEquals(2, p.size());
+        assertNull(p.get(r1));
+        assertEquals("\"value\"", p.get(r2));
+    }
+
+    @Test
+    public void testCompactBlobTruncated() {
+        NodeDocument in = new NodeDocument(store);
+        in.put("s", "string");
+        byte[] bytes = RDBCompactEncoding.encode(in, Set.of());
+        try {
+            RDBRow row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"",
+                    Arrays.copyOf(bytes, bytes.length - 2));
+            this.ser.fromRow(Collection.NODES, row);
+            fail("should fail");
+        } catch (DocumentStoreException expected) {
+        }
+    }
+
     @Test
     public void testNullModified() {
         RDBRow row = new RDBRow("_foo", 1L, true, null, 2l, 3l, 0L, 0L, 0L, "{}", null);